@@ -55,7 +55,7 @@ public class SlowTestObserver implements DisabledTestListener, TestResultsListen
 		// is remarkably
 		// similar to the process of detecting slow/fast/ignored/disabled tests.
 		SlowTestMarkerInfo marker = new SlowTestMarkerInfo(testName, newStats, lookup);
-		if (newStats.duration() > getSlowTestTimeLimit()) {
+		if ((newStats.duration() > getSlowTestTimeLimit()) || (newStats.allocatedBytes() > getHeavyTestAllocationLimit())) {
 			slowMarkerRegistry.addMarker(marker);
 		} else {
 			slowMarkerRegistry.removeMarker(marker);
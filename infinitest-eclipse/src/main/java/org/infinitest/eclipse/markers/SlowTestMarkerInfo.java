@@ -28,6 +28,7 @@
 package org.infinitest.eclipse.markers;
 
 import static com.google.common.collect.Maps.*;
+import static java.util.concurrent.TimeUnit.*;
 import static org.eclipse.core.resources.IMarker.*;
 import static org.infinitest.util.InfinitestUtils.*;
 
@@ -68,7 +69,11 @@ public class SlowTestMarkerInfo extends AbstractMarkerInfo {
 	}
 
 	private String buildMessage() {
-		return stripPackageName(testName) + "." + methodStats.methodName + " ran in " + methodStats.duration() + "ms";
+		String message = stripPackageName(testName) + "." + methodStats.methodName + " ran in " + methodStats.duration() + "ms";
+		if (methodStats.cpuTime() > 0) {
+			message += " (" + NANOSECONDS.toMillis(methodStats.cpuTime()) + "ms CPU, " + methodStats.allocatedBytes() / (1024 * 1024) + "MB allocated)";
+		}
+		return message;
 	}
 
 	@Override
@@ -45,8 +45,8 @@ public class VisualStatusPresenter extends TestQueueAdapter implements VisualSta
 
 	@Override
 	public void testQueueUpdated(TestQueueEvent event) {
-		if (!event.getTestQueue().isEmpty()) {
-			statusChanged(runningTests(event.getTestQueue().size(), event.getCurrentTest()));
+		if (!event.isEmpty()) {
+			statusChanged(runningTests(event.getSize(), event.getCurrentTest()));
 		} else {
 			statusChanged(testRunFinished(testsRan));
 		}
@@ -29,6 +29,7 @@ package org.infinitest.eclipse.workspace;
 
 import java.net.*;
 
+import org.eclipse.core.runtime.jobs.*;
 import org.infinitest.*;
 import org.springframework.beans.factory.annotation.*;
 import org.springframework.stereotype.*;
@@ -37,11 +38,15 @@ import org.springframework.stereotype.*;
 class CoreFactory implements CoreSettings {
 	private final EventQueue eventQueue;
 	private final ConcurrencyController concurrencyController;
+	private final ConcurrencyGovernor governor;
 
 	@Autowired
 	public CoreFactory(EventQueue eventQueue) {
 		this.eventQueue = eventQueue;
 		this.concurrencyController = new MultiCoreConcurrencyController();
+		governor = new ConcurrencyGovernor(concurrencyController, new OperatingSystemLoad());
+		governor.start();
+		Job.getJobManager().addJobChangeListener(new IdeActivityListener(governor));
 	}
 
 	public InfinitestCore createCore(String projectName, RuntimeEnvironment environment) {
@@ -52,8 +57,11 @@ class CoreFactory implements CoreSettings {
 		return coreBuilder.createCore();
 	}
 
+	/**
+	 * The preference is the most cores the governor will use.
+	 */
 	@Override
 	public void setConcurrentCoreCount(int coreCount) {
-		concurrencyController.setCoreCount(coreCount);
+		governor.setMaximumCoreCount(coreCount);
 	}
 }
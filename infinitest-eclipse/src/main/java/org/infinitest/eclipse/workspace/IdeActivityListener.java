@@ -0,0 +1,78 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.eclipse.workspace;
+
+import java.util.concurrent.atomic.*;
+
+import org.eclipse.core.resources.*;
+import org.eclipse.core.runtime.jobs.*;
+import org.infinitest.*;
+
+/**
+ * Tells the governor when Eclipse is building or indexing, so tests give the
+ * processors back to the IDE in the meantime.
+ */
+class IdeActivityListener extends JobChangeAdapter {
+	private final ConcurrencyGovernor governor;
+	private final AtomicInteger busyJobs = new AtomicInteger();
+
+	IdeActivityListener(ConcurrencyGovernor governor) {
+		this.governor = governor;
+	}
+
+	@Override
+	public void running(IJobChangeEvent event) {
+		if (isBuildingOrIndexing(event.getJob())) {
+			governor.setIdeBusy(busyJobs.incrementAndGet() > 0);
+		}
+	}
+
+	@Override
+	public void done(IJobChangeEvent event) {
+		if (isBuildingOrIndexing(event.getJob())) {
+			governor.setIdeBusy(finishJob() > 0);
+		}
+	}
+
+	// A job that was already running when we started listening finishes
+	// without having been counted
+	private int finishJob() {
+		while (true) {
+			int running = busyJobs.get();
+			if ((running == 0) || busyJobs.compareAndSet(running, running - 1)) {
+				return Math.max(0, running - 1);
+			}
+		}
+	}
+
+	private boolean isBuildingOrIndexing(Job job) {
+		return job.belongsTo(ResourcesPlugin.FAMILY_AUTO_BUILD) || job.belongsTo(ResourcesPlugin.FAMILY_MANUAL_BUILD) || "Java indexing".equals(job.getName());
+	}
+}
@@ -84,6 +84,17 @@ public class WhenWatchingForSlowTests {
 		verify(mockMarkerRegistry).removeMarker(expectedMarker);
 	}
 
+	@Test
+	public void shouldAddMarkersForTestsThatAllocateHeavily() {
+		methodStats.startTime = 1000;
+		methodStats.stopTime = 1001;
+		methodStats.stopAllocatedBytes = getHeavyTestAllocationLimit() + 1;
+
+		observer.testCaseComplete(event);
+
+		verify(mockMarkerRegistry).addMarker(expectedMarker);
+	}
+
 	@Test
 	public void shouldRemoveMarkersWhenTestsAreDisabled() {
 		methodStats.startTime = 1000;
@@ -34,12 +34,15 @@ import com.intellij.openapi.compiler.*;
 
 public class IdeaCompilationListener implements CompilationStatusListener, TestControl {
 	private final InfinitestCore core;
+	private final UpdateScheduler scheduler;
 	private final ModuleSettings moduleSettings;
 	private boolean shouldRunTests = true;
 
 	public IdeaCompilationListener(InfinitestCore core, ModuleSettings moduleSettings) {
 		this.core = core;
 		this.moduleSettings = moduleSettings;
+		// fileGenerated is called for every class file of a build
+		scheduler = new UpdateScheduler(core);
 	}
 
 	@Override
@@ -54,6 +57,13 @@ public class IdeaCompilationListener implements CompilationStatusListener, TestC
 		doRunTests();
 	}
 
+	/**
+	 * Stops the update scheduler, once the listener is removed.
+	 */
+	public void dispose() {
+		scheduler.shutdown();
+	}
+
 	@Override
 	public void setRunTests(boolean shouldRunTests) {
 		if (shouldRunTests && !this.shouldRunTests) {
@@ -78,6 +88,6 @@ public class IdeaCompilationListener implements CompilationStatusListener, TestC
 		}
 
 		core.setRuntimeEnvironment(runtimeEnvironment);
-		core.update();
+		scheduler.requestUpdate();
 	}
 }
@@ -99,6 +99,9 @@ public class InfinitestLauncherImpl implements InfinitestLauncher {
 	public void stop() {
 		toolWindowRegistry.unregisterToolWindow(toolWindowId());
 		compilationNotifier.removeCompilationStatusListener(testControl);
+		if (testControl != null) {
+			testControl.dispose();
+		}
 	}
 
 	private String toolWindowId() {
@@ -51,7 +51,7 @@ public class WhenCompilationCompletes {
 		listener.compilationFinished(false, 0, 0, null);
 
 		verify(core).setRuntimeEnvironment(Matchers.any(RuntimeEnvironment.class));
-		verify(core).update();
+		verify(core, timeout(1000)).update();
 	}
 
 	@Test
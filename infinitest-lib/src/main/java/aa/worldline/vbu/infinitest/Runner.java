@@ -1,223 +1,215 @@
-/*
- * Infinitest, a Continuous Test Runner.
- *
- * Copyright (C) 2014-2017 Atos Worldline
- *
- * Permission is hereby granted, free of charge, to any person obtaining a copy
- * of this software and associated documentation files (the "Software"), to deal
- * in the Software without restriction, including without limitation the rights
- * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
- * copies of the Software, and to permit persons to whom the Software is
- * furnished to do so, subject to the following conditions:
- *
- * The above copyright notice and this permission notice shall be included in all
- * copies or substantial portions of the Software.
- *
- * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
- * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
- * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
- * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
- * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
- * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
- * SOFTWARE.
- */
-
-
-
-package aa.worldline.vbu.infinitest;
-
-import static java.util.Arrays.asList;
-
-
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.UnsupportedEncodingException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
-
-
-
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.filefilter.DirectoryFileFilter;
-import org.apache.commons.io.filefilter.NotFileFilter;
-import org.apache.commons.io.filefilter.TrueFileFilter;
-import org.infinitest.ConcurrencyController;
-import org.infinitest.EventQueue;
-import org.infinitest.InfinitestCore;
-import org.infinitest.InfinitestCoreBuilder;
-import org.infinitest.MultiCoreConcurrencyController;
-import org.infinitest.RuntimeEnvironment;
-import org.infinitest.parser.JavaClass;
-import org.jgraph.JGraph;
-import org.jgrapht.DirectedGraph;
-import org.jgrapht.ListenableGraph;
-import org.jgrapht.ext.JGraphModelAdapter;
-import org.jgrapht.graph.DefaultEdge;
-import org.jgrapht.graph.ListenableDirectedGraph;
-import org.junit.runner.manipulation.Sortable;
-
-import com.google.common.reflect.ClassPath;
-
-public class Runner {
-	
-	public static String root;
-
-	public static File currentJavaHome() {
-		return new File(System.getProperty("java.home"));
-	}
-
-	public static String systemClasspath() {
-		String classpath = null;
-		try {
-			FileInputStream classpathFile = new FileInputStream(root
-					+ "/classpath.cp");
-			classpath = IOUtils.toString(classpathFile);
-		} catch (IOException e) {
-			System.out
-					.println("[Infinitest]Classpath.cp file doesn't exist or is unreadable: "
-							+ e.getMessage() + "! \nEXIT");
-			System.exit(10);
-		}
-
-		return classpath;
-	}
-
-		public static File workingDirectory() {
-		return new File(root);
-	}
-
-	public static List<File> buildPaths() {
-		 Collection<File> allFolders  = FileUtils.listFilesAndDirs(workingDirectory(),
-				 	new NotFileFilter(TrueFileFilter.INSTANCE),
-					new TargetClassesFilter());
-		 List<File> selectedFiles = new ArrayList<File>(); 
-		 for(File file : allFolders){
-			 if(file.getName().equals("classes") || file.getName().equals("test-classes")){
-				 selectedFiles.add(file);
-			 }
-		 }
-		return selectedFiles;
-	}
-
-	public static Collection<File> getCollectionOfFileFromFolder(File folder) {
-		// Directory path here
-		System.out.println("[Infninitest debug]Folder=" + folder + " class?:" + folder.getClass() + " is dir?:"+folder.isDirectory());
-		Collection<File> listOfFiles = FileUtils.listFiles(folder,
-				new org.apache.commons.io.filefilter.RegexFileFilter(
-						".*\\.class"), DirectoryFileFilter.DIRECTORY);
-
-		return listOfFiles;
-
-	}
-
-	public static void main(String[] args) {
-		System.out.println("[Infinitest]Begin treatment");
-		System.out.println("[infinitest] pathSeparator: "+ File.pathSeparator);
-		root = args[0];
-		System.out.println("[Infinitest]The directory used is:" + root);
-		final EventQueue eventQueue = null;
-		final ConcurrencyController concurrencyController = new MultiCoreConcurrencyController();
-		RuntimeEnvironment environment = new RuntimeEnvironment(buildPaths(),
-				workingDirectory(), systemClasspath(), currentJavaHome());
-	/*	System.out.println("[Infinitest]Env: buildPaths" + buildPaths());
-		System.out.println("[Infinitest]Env: PWD: " + workingDirectory());
-		System.out.println("[Infinitest]Env: System CP: " + systemClasspath());
-		System.out.println("[Infinitest]Env: JavaHome: " + currentJavaHome());
-*/
-		InfinitestCoreBuilder coreBuilder = new InfinitestCoreBuilder(
-				environment, eventQueue);
-		coreBuilder.setUpdateSemaphore(concurrencyController);
-		coreBuilder.setName("infinitest-lib");
-
-		InfinitestCore core = coreBuilder.createCore();
-
-		List<File> collectionOfFiles = environment
-				.classDirectoriesInClasspath();
-		collectionOfFiles.addAll(buildPaths());
-		List<File> changeFiles = new ArrayList<File>();
-
-		for (File f : collectionOfFiles) {
-			changeFiles.addAll(getCollectionOfFileFromFolder(f));
-		}
-		System.out.println("[Infinitest debug]Files changed:" + changeFiles);
-		for (File f : changeFiles) {
-			List<File> newColl = new ArrayList<File>();
-			newColl.add(f);
-			core.update((Collection<File>) newColl);
-		}
-		System.out.println("[Infinitest]End step 1!");
-		// exec twice to have the model created to have the graph representing
-		// the code made
-		for (File f : changeFiles) {
-			List<File> newColl = new ArrayList<File>();
-			newColl.add(f);
-			core.update((Collection<File>) newColl);
-		}
-		System.out.println("[Infinitest]End step 2!");
-		// a third time is necessary -> should comparison made!
-		String targetDirectory = "infinitestExport/";
-		new File(targetDirectory).mkdirs();
-		PrintWriter writer = null;
-		Comparator<File> comparator = new Comparator<File>() {
-			@Override
-			public int compare(File file1, File file2) {
-
-				return file1.toString().compareTo(file2.toString());
-			}
-		};
-		Collections.sort(changeFiles, comparator);
-		executeAndSerialize(targetDirectory + "infinitestExport", core,
-				changeFiles, writer);
-		executeAndSerialize("infinitestExport3", core, changeFiles, writer);
-		// executeAndSerialize("infinitestExport4", core, changeFiles, writer);
-
-		System.out.println("[Infinitest]All treatments ended!");
-	}
-
-	private static void executeAndSerialize(String name, InfinitestCore core,
-			List<File> changeFiles, PrintWriter writer) {
-		try {
-			writer = new PrintWriter(
-					name + System.currentTimeMillis() + ".txt", "UTF-8");
-
-			for (File f : changeFiles) {
-				List<File> newColl = new ArrayList<File>();
-				newColl.add(f);
-
-				Collection<JavaClass> res = core
-						.update((Collection<File>) newColl);
-				writer.println(f + "[");
-				Comparator<JavaClass> comparator = new Comparator<JavaClass>() {
-					@Override
-					public int compare(JavaClass clazz1, JavaClass clazz2) {
-
-						return clazz1.toString().compareTo(clazz2.toString());
-					}
-				};
-				List<JavaClass> list = new ArrayList<JavaClass>(res);
-				Collections.sort(list, comparator);
-
-				for (JavaClass clazz : res) {
-					writer.println("\t" + clazz + ",");
-				}
-				writer.println("]");
-			}
-		} catch (FileNotFoundException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (UnsupportedEncodingException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} finally {
-			writer.close();
-		}
-		System.out.println("[Infinitest]Treatment of " + name + "ended!");
-	}
-}
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package aa.worldline.vbu.infinitest;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.infinitest.RuntimeEnvironment;
+import org.infinitest.filter.RegexFileFilter;
+import org.infinitest.parser.ClassFileTestDetector;
+import org.infinitest.parser.export.GraphExporter;
+import org.infinitest.parser.export.GraphFilter;
+import org.infinitest.parser.export.GraphFormat;
+import org.infinitest.parser.export.GraphWriter;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * Exports, for every class file of a working directory, the tests a change to
+ * that file would run:
+ * 
+ * <pre>
+ * Runner &lt;working directory&gt; [export file] [--graph &lt;file&gt; [--tests] [--package &lt;prefix&gt;]]
+ * </pre>
+ * 
+ * The classpath is read from classpath.cp in the working directory. Classes
+ * are taken from every classes and test-classes directory below it and from
+ * the class directories of the classpath. All class files are indexed in one
+ * batch, then the impact of each file is read from the finished dependency
+ * graph.
+ * <p>
+ * With --graph, the dependency graph is also exported, in the format given by
+ * the file extension: .dot, .graphml or .edges. --tests and --package limit
+ * it to the dependencies of tests, or of classes in a package.
+ */
+public class Runner {
+	private static final String EXPORT_DIRECTORY = "infinitestExport";
+
+	public static File currentJavaHome() {
+		return new File(System.getProperty("java.home"));
+	}
+
+	public static String systemClasspath(File root) throws IOException {
+		return Files.toString(new File(root, "classpath.cp"), Charsets.UTF_8).trim();
+	}
+
+	/**
+	 * The classes and test-classes directories below the root. Hidden
+	 * directories are skipped, and so is the content of class directories.
+	 */
+	public static List<File> buildPaths(File root) {
+		List<File> classDirectories = new ArrayList<File>();
+		findClassDirectories(root, classDirectories);
+		return classDirectories;
+	}
+
+	private static void findClassDirectories(File directory, List<File> classDirectories) {
+		File[] children = directory.listFiles();
+		if (children == null) {
+			return;
+		}
+		for (File child : children) {
+			if (child.isDirectory() && !child.isHidden()) {
+				if (child.getName().equals("classes") || child.getName().equals("test-classes")) {
+					classDirectories.add(child);
+				} else {
+					findClassDirectories(child, classDirectories);
+				}
+			}
+		}
+	}
+
+	public static void findClassFiles(File directory, Collection<File> classFiles) {
+		File[] children = directory.listFiles();
+		if (children == null) {
+			return;
+		}
+		for (File child : children) {
+			if (child.isDirectory()) {
+				findClassFiles(child, classFiles);
+			} else if (child.getName().endsWith(".class")) {
+				classFiles.add(child);
+			}
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		List<String> arguments = new ArrayList<String>();
+		File graphFile = null;
+		boolean testsOnly = false;
+		String packagePrefix = "";
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--graph") && (i + 1 < args.length)) {
+				graphFile = new File(args[++i]);
+			} else if (args[i].equals("--package") && (i + 1 < args.length)) {
+				packagePrefix = args[++i];
+			} else if (args[i].equals("--tests")) {
+				testsOnly = true;
+			} else {
+				arguments.add(args[i]);
+			}
+		}
+		if (arguments.isEmpty()) {
+			System.err.println("Usage: Runner <working directory> [export file] [--graph <file.dot|file.graphml|file.edges> [--tests] [--package <prefix>]]");
+			System.exit(1);
+		}
+		GraphFormat graphFormat = (graphFile == null) ? null : GraphFormat.forFile(graphFile);
+		long start = System.currentTimeMillis();
+		File root = new File(arguments.get(0)).getCanonicalFile();
+		File exportFile = (arguments.size() > 1) ? new File(arguments.get(1)) : new File(EXPORT_DIRECTORY, EXPORT_DIRECTORY + System.currentTimeMillis() + ".txt");
+
+		String classpath;
+		try {
+			classpath = systemClasspath(root);
+		} catch (IOException e) {
+			System.err.println("[Infinitest] classpath.cp doesn't exist or is unreadable: " + e.getMessage());
+			System.exit(10);
+			return;
+		}
+		RuntimeEnvironment environment = new RuntimeEnvironment(buildPaths(root), root, classpath, currentJavaHome());
+
+		Set<File> classDirectories = new LinkedHashSet<File>();
+		for (File each : environment.getClassOutputDirs()) {
+			classDirectories.add(each.getCanonicalFile());
+		}
+		for (File each : environment.classDirectoriesInClasspath()) {
+			classDirectories.add(each.getCanonicalFile());
+		}
+		List<File> classFiles = new ArrayList<File>();
+		for (File each : classDirectories) {
+			findClassFiles(each, classFiles);
+		}
+		Collections.sort(classFiles);
+		System.out.println("[Infinitest] Indexing " + classFiles.size() + " class files from " + classDirectories.size() + " directories");
+
+		ClassFileTestDetector detector = new ClassFileTestDetector(new RegexFileFilter(new File(root, "infinitest.filters")));
+		detector.setClasspathProvider(environment);
+		Map<File, Set<String>> affectedTests = detector.findTestsAffectedByEachFile(classFiles);
+		System.out.println("[Infinitest] Found " + detector.getCurrentTests().size() + " tests in " + (System.currentTimeMillis() - start) + "ms");
+
+		export(affectedTests, exportFile);
+		System.out.println("[Infinitest] Exported to " + exportFile + " in " + (System.currentTimeMillis() - start) + "ms");
+
+		if (graphFormat != null) {
+			GraphWriter writer = graphFormat.createWriter(new FileOutputStream(graphFile));
+			new GraphExporter().export(detector.getIndexSnapshot(), new GraphFilter(testsOnly, packagePrefix), writer);
+			System.out.println("[Infinitest] Exported the dependency graph to " + graphFile + " in " + (System.currentTimeMillis() - start) + "ms");
+		}
+	}
+
+	/**
+	 * Writes each file followed by its affected tests, in name order:
+	 * 
+	 * <pre>
+	 * /path/to/Foo.class[
+	 * 	FooTest,
+	 * ]
+	 * </pre>
+	 */
+	static void export(Map<File, Set<String>> affectedTests, File exportFile) throws IOException {
+		File directory = exportFile.getAbsoluteFile().getParentFile();
+		directory.mkdirs();
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(exportFile), Charsets.UTF_8), 1 << 16);
+		try {
+			for (Map.Entry<File, Set<String>> each : affectedTests.entrySet()) {
+				writer.write(each.getKey().getPath());
+				writer.write("[\n");
+				String[] tests = each.getValue().toArray(new String[0]);
+				Arrays.sort(tests);
+				for (String test : tests) {
+					writer.write('\t');
+					writer.write(test);
+					writer.write(",\n");
+				}
+				writer.write("]\n");
+			}
+		} finally {
+			writer.close();
+		}
+	}
+}
@@ -0,0 +1,305 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest;
+
+import static com.google.common.collect.Lists.*;
+import static com.google.common.collect.Sets.*;
+import static java.util.logging.Level.*;
+import static org.infinitest.util.InfinitestUtils.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.google.common.annotations.*;
+import com.google.common.base.*;
+import com.google.common.hash.*;
+import com.google.common.io.*;
+
+/**
+ * Maintains class data sharing archives, so test runner processes map the JDK
+ * classes they need from a file instead of loading and verifying them again
+ * on every launch.
+ * <p>
+ * The first runner process of a given JDK records the classes it loads. A
+ * later launch turns that list into an archive in the background, and every
+ * launch after that uses the archive. A different JDK gets its own list and
+ * archive, and only the most recently used archives are kept.
+ * <p>
+ * From JDK 11 on, the classes of the jars on the classpath are archived too:
+ * JUnit, TestNG, the runner and the project's libraries. Class data sharing
+ * refuses to archive application classes when a class directory precedes
+ * them, so the archive is created with the jars only and the runner is
+ * launched with the jars before the class directories. The archive then
+ * stays valid for the launch classpath, of which its classpath is a prefix,
+ * and a change to any of the jars gets a new archive. Older JDKs only share
+ * application classes in commercial builds, so only the JDK classes are
+ * archived for them. A JDK that already ships a default archive gains
+ * nothing from one with only JDK classes, so when there are no jars it is
+ * left alone. A missing or stale archive is silently ignored by the JVM.
+ */
+public class ClassDataSharing {
+	private static final long QUIET_PERIOD = 5000;
+	private static final int MAXIMUM_ARCHIVES = 4;
+	private static ClassDataSharing defaultSharing;
+
+	private final File directory;
+	private final Set<String> pendingArchives = newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final Set<String> failedArchives = newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final ExecutorService archiver = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Infinitest class data sharing");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	public ClassDataSharing(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * The archives shared by all the cores, stored in the .infinitest
+	 * directory of the user home.
+	 */
+	public static synchronized ClassDataSharing getDefault() {
+		if (defaultSharing == null) {
+			File infinitestDirectory = new File(System.getProperty("user.home"), ".infinitest");
+			defaultSharing = new ClassDataSharing(new File(infinitestDirectory, "cds"));
+		}
+		return defaultSharing;
+	}
+
+	/**
+	 * @return the classpath to launch the runner with, the jars first when
+	 *         their classes can be archived, otherwise unchanged. A class
+	 *         directory then no longer shadows a class of a jar.
+	 */
+	public String arrangeClasspath(File javaHome, String classpath) {
+		if (!sharesApplicationClasses(readRelease(javaHome))) {
+			return classpath;
+		}
+		List<String> jars = newArrayList();
+		List<String> others = newArrayList();
+		for (String each : classpath.split(File.pathSeparator)) {
+			if (isJar(each)) {
+				jars.add(each);
+			} else {
+				others.add(each);
+			}
+		}
+		jars.addAll(others);
+		return Joiner.on(File.pathSeparator).join(jars);
+	}
+
+	/**
+	 * @param classpath
+	 *            the classpath the runner process is launched with, as
+	 *            arranged by {@link #arrangeClasspath(File, String)}
+	 * @return the JVM arguments that make a runner process use, or help
+	 *         create, the archive for its JDK and jars
+	 */
+	public List<String> createProcessArguments(File javaHome, File javaExecutable, String classpath) {
+		String release = readRelease(javaHome);
+		if (!isSupported(release)) {
+			return newArrayList();
+		}
+		List<String> jars = sharesApplicationClasses(release) ? leadingJars(classpath) : new ArrayList<String>();
+		if (jars.isEmpty() && new File(javaHome, "lib/server/classes.jsa").isFile()) {
+			return newArrayList();
+		}
+
+		String key = archiveKey(javaHome, release, jars);
+		if (failedArchives.contains(key)) {
+			return newArrayList();
+		}
+		File archive = new File(directory, key + ".jsa");
+		if (archive.exists()) {
+			archive.setLastModified(System.currentTimeMillis());
+			return newArrayList("-XX:+UnlockDiagnosticVMOptions", "-XX:SharedArchiveFile=" + archive.getAbsolutePath(), "-Xshare:auto");
+		}
+
+		File classList = new File(directory, key + ".classlist");
+		if (!classList.exists()) {
+			directory.mkdirs();
+			return newArrayList("-XX:DumpLoadedClassList=" + classList.getAbsolutePath());
+		}
+
+		// The list is written while the runner that records it is running
+		if (((System.currentTimeMillis() - classList.lastModified()) > QUIET_PERIOD) && pendingArchives.add(key)) {
+			scheduleArchive(key, javaExecutable, Joiner.on(File.pathSeparator).join(jars), classList, archive);
+		}
+		return newArrayList();
+	}
+
+	// Rewriting a jar keeps its path, so its size and time stamp are part of
+	// the key
+	private static String archiveKey(File javaHome, String release, List<String> jars) {
+		Hasher hasher = Hashing.sha1().newHasher();
+		hasher.putString(javaHome.getAbsolutePath() + '\n' + release, Charsets.UTF_8);
+		for (String each : jars) {
+			File jar = new File(each);
+			hasher.putString('\n' + each + ':' + jar.length() + ':' + jar.lastModified(), Charsets.UTF_8);
+		}
+		return hasher.hash().toString();
+	}
+
+	// The archive records the classpath it was created with, which has to be
+	// a prefix of the launch classpath. Relative entries depend on the working
+	// directory, so they end the prefix.
+	private static List<String> leadingJars(String classpath) {
+		List<String> jars = newArrayList();
+		for (String each : classpath.split(File.pathSeparator)) {
+			if (!isJar(each) || !new File(each).isAbsolute()) {
+				break;
+			}
+			jars.add(each);
+		}
+		return jars;
+	}
+
+	private static boolean isJar(String entry) {
+		return entry.toLowerCase(Locale.ENGLISH).endsWith(".jar") && new File(entry).isFile();
+	}
+
+	private void scheduleArchive(final String key, final File javaExecutable, final String classpath, final File classList, final File archive) {
+		archiver.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					if (createArchive(javaExecutable, classpath, classList, archive)) {
+						evictLeastRecentlyUsed();
+					} else {
+						failedArchives.add(key);
+					}
+				} finally {
+					pendingArchives.remove(key);
+				}
+			}
+		});
+	}
+
+	/**
+	 * @param classpath
+	 *            the jars whose classes are archived, empty for JDK classes
+	 *            only
+	 * @return false if this JDK cannot create the archive, so there is no
+	 *         point in trying again
+	 */
+	@VisibleForTesting
+	boolean createArchive(File javaExecutable, String classpath, File classList, File archive) {
+		File temporaryArchive = new File(archive.getPath() + ".tmp");
+		List<String> command = newArrayList(javaExecutable.getAbsolutePath(), "-XX:+UnlockDiagnosticVMOptions", "-Xshare:dump", "-XX:SharedClassListFile=" + classList.getAbsolutePath(), "-XX:SharedArchiveFile=" + temporaryArchive.getAbsolutePath());
+		if (classpath.length() > 0) {
+			command.add("-cp");
+			command.add(classpath);
+		}
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectErrorStream(true);
+		try {
+			Process process = builder.start();
+			ByteStreams.copy(process.getInputStream(), ByteStreams.nullOutputStream());
+			if ((process.waitFor() == 0) && temporaryArchive.renameTo(archive)) {
+				log(CONFIG, "Created class data sharing archive " + archive);
+				return true;
+			}
+			log(INFO, "Could not create class data sharing archive " + archive);
+		} catch (IOException e) {
+			log("Error creating class data sharing archive " + archive, e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		temporaryArchive.delete();
+		classList.delete();
+		return false;
+	}
+
+	/**
+	 * Archives are several megabytes each. Using an archive touches it, so the
+	 * ones that have not been used for the longest time are deleted, together
+	 * with their class lists.
+	 */
+	@VisibleForTesting
+	void evictLeastRecentlyUsed() {
+		File[] archives = directory.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(".jsa");
+			}
+		});
+		if ((archives == null) || (archives.length <= MAXIMUM_ARCHIVES)) {
+			return;
+		}
+		Arrays.sort(archives, new Comparator<File>() {
+			@Override
+			public int compare(File first, File second) {
+				return Long.valueOf(second.lastModified()).compareTo(first.lastModified());
+			}
+		});
+		for (File each : Arrays.asList(archives).subList(MAXIMUM_ARCHIVES, archives.length)) {
+			String key = each.getName().substring(0, each.getName().length() - ".jsa".length());
+			each.delete();
+			new File(directory, key + ".classlist").delete();
+			log(CONFIG, "Deleted class data sharing archive " + each);
+		}
+	}
+
+	/**
+	 * OpenJ9 has its own shared classes cache, and JDKs without a release
+	 * file are too old or too unusual to guess about.
+	 */
+	private static boolean isSupported(String release) {
+		return release.contains("JAVA_VERSION=") && !release.contains("OpenJ9") && !release.contains("JAVA_VERSION=\"1.7") && !release.contains("JAVA_VERSION=\"1.6");
+	}
+
+	private static boolean sharesApplicationClasses(String release) {
+		return isSupported(release) && !release.contains("JAVA_VERSION=\"1.") && !release.contains("JAVA_VERSION=\"9") && !release.contains("JAVA_VERSION=\"10");
+	}
+
+	// java.home points to the jre directory of a JDK 8, its parent has the
+	// release file
+	private static String readRelease(File javaHome) {
+		for (File each : Arrays.asList(javaHome, javaHome.getAbsoluteFile().getParentFile())) {
+			if (each == null) {
+				continue;
+			}
+			File release = new File(each, "release");
+			if (release.isFile()) {
+				try {
+					return Files.toString(release, Charsets.UTF_8);
+				} catch (IOException e) {
+					return "";
+				}
+			}
+		}
+		return "";
+	}
+}
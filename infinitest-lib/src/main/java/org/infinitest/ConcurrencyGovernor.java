@@ -0,0 +1,169 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest;
+
+import static com.google.common.base.Preconditions.*;
+import static java.util.concurrent.TimeUnit.*;
+import static java.util.logging.Level.*;
+import static org.infinitest.util.InfinitestUtils.*;
+
+import java.util.concurrent.*;
+
+import com.google.common.annotations.*;
+import com.google.common.base.*;
+
+/**
+ * Adjusts how many cores test at the same time to what the machine has to
+ * spare. The core count grows by one at a time while there are idle
+ * processors and free memory for another runner process, drops as soon as
+ * the machine is overloaded, and falls back to a single core while the IDE is
+ * compiling or indexing. It never exceeds the maximum the user chose.
+ * <p>
+ * The load average takes a minute to show the work of another core, so the
+ * count grows at most once per minute. It still drops right away.
+ */
+public class ConcurrencyGovernor {
+	static final long MEMORY_PER_CORE = 512L * 1024 * 1024;
+	static final long GROWTH_INTERVAL = MINUTES.toNanos(1);
+	private static final long INTERVAL = 2000;
+
+	private final ConcurrencyController controller;
+	private final SystemLoad systemLoad;
+	private final Ticker ticker;
+	private int maximumCoreCount = 1;
+	private int coreCount = 1;
+	private boolean ideBusy;
+	private boolean grown;
+	private long lastGrowth;
+	private ScheduledExecutorService scheduler;
+
+	public ConcurrencyGovernor(ConcurrencyController controller, SystemLoad systemLoad) {
+		this(controller, systemLoad, Ticker.systemTicker());
+	}
+
+	@VisibleForTesting
+	ConcurrencyGovernor(ConcurrencyController controller, SystemLoad systemLoad, Ticker ticker) {
+		this.controller = controller;
+		this.systemLoad = systemLoad;
+		this.ticker = ticker;
+	}
+
+	public synchronized void setMaximumCoreCount(int maximumCoreCount) {
+		checkArgument(maximumCoreCount > 0, "The maximum core count must be positive");
+		this.maximumCoreCount = maximumCoreCount;
+		adjust();
+	}
+
+	/**
+	 * Called when the IDE starts or stops compiling or indexing.
+	 */
+	public synchronized void setIdeBusy(boolean ideBusy) {
+		this.ideBusy = ideBusy;
+		adjust();
+	}
+
+	/**
+	 * Sets the core count of the controller from the current load.
+	 * 
+	 * @return the new core count
+	 */
+	public synchronized int adjust() {
+		int newCoreCount = computeCoreCount();
+		if (newCoreCount > coreCount) {
+			long now = ticker.read();
+			if (grown && ((now - lastGrowth) < GROWTH_INTERVAL)) {
+				newCoreCount = coreCount;
+			} else {
+				grown = true;
+				lastGrowth = now;
+			}
+		}
+		if (newCoreCount != coreCount) {
+			log(CONFIG, "Testing on " + newCoreCount + " cores, was " + coreCount);
+		}
+		coreCount = newCoreCount;
+		controller.setCoreCount(coreCount);
+		return coreCount;
+	}
+
+	private int computeCoreCount() {
+		if (ideBusy) {
+			return 1;
+		}
+		int processors = systemLoad.availableProcessors();
+		int target = Math.min(maximumCoreCount, processors);
+
+		// Our own runner processes are part of the load
+		double loadAverage = systemLoad.loadAverage();
+		if (loadAverage >= 0) {
+			target = Math.min(target, coreCount + (int) Math.floor(processors - loadAverage));
+		}
+		long availableMemory = systemLoad.availableMemory();
+		if (availableMemory >= 0) {
+			target = Math.min(target, coreCount + (int) (availableMemory / MEMORY_PER_CORE));
+		}
+		target = Math.min(target, coreCount + 1);
+		return Math.max(1, target);
+	}
+
+	public synchronized void start() {
+		if (scheduler == null) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "Infinitest concurrency governor");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			scheduler.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						adjust();
+					}
+					// CHECKSTYLE:OFF
+					catch (RuntimeException e)
+					// CHECKSTYLE:ON
+					{
+						log("Error adjusting the number of concurrent cores", e);
+					}
+				}
+			}, 0, INTERVAL, MILLISECONDS);
+		}
+	}
+
+	public synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+}
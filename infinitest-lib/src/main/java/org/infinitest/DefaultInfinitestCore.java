@@ -30,18 +30,24 @@
 package org.infinitest;
 
 import static com.google.common.collect.Lists.*;
+import static com.google.common.collect.Maps.*;
 import static com.google.common.collect.Sets.*;
 import static java.util.logging.Level.*;
 import static org.infinitest.util.InfinitestUtils.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import org.infinitest.changedetect.*;
 import org.infinitest.parser.*;
 import org.infinitest.testrunner.*;
 import org.infinitest.testrunner.queue.*;
 
+import com.google.common.base.*;
+import com.google.common.hash.*;
+
 /**
  * @author <a href="mailto:benrady@gmail.com">Ben Rady</a>
  */
@@ -56,6 +62,15 @@ class DefaultInfinitestCore implements InfinitestCore {
 	private final List<ReloadListener> reloadListeners;
 	private final List<DisabledTestListener> disabledTestListeners;
 	private final RunStatistics stats;
+	private TestResultCache resultCache;
+	private final Map<String, String> inputsOfSelectedTests;
+	private final Map<String, String> inputsOfRunningTests;
+	private final List<TestResultsListener> resultsListeners;
+	private final Set<File> filesOfCancelledUpdates;
+	private final AtomicBoolean updateCancelled;
+	private GitHead gitHead;
+	private IndexSnapshotStore indexStore;
+	private String currentCommit;
 
 	DefaultInfinitestCore(TestRunner testRunner, EventQueue eventQueue) {
 		normalizer = new EventNormalizer(eventQueue);
@@ -65,12 +80,36 @@ class DefaultInfinitestCore implements InfinitestCore {
 		disabledTestListeners = newArrayList();
 
 		stats = new RunStatistics();
-		runner.addTestResultsListener(stats);
+		inputsOfSelectedTests = newHashMap();
+		inputsOfRunningTests = newHashMap();
+		resultsListeners = new CopyOnWriteArrayList<TestResultsListener>();
+		filesOfCancelledUpdates = newLinkedHashSet();
+		updateCancelled = new AtomicBoolean();
+		runner.addTestResultsListener(new TestResultsListener() {
+			@Override
+			public void testCaseStarting(TestEvent event) {
+				stats.testCaseStarting(event);
+			}
+
+			@Override
+			public void testCaseComplete(TestCaseEvent event) {
+				stats.testCaseComplete(event);
+				recordResult(event);
+			}
+		});
 		runner.setTestPriority(new TestComparator(stats));
 	}
 
+	/**
+	 * Tests that passed with the same inputs are not run again.
+	 */
+	public void setResultCache(TestResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
 	public void setTestDetector(TestDetector testDetector) {
 		this.testDetector = testDetector;
+		testDetector.setCancellationFlag(updateCancelled);
 	}
 
 	public void setChangeDetector(ChangeDetector changeDetector) {
@@ -79,24 +118,66 @@ class DefaultInfinitestCore implements InfinitestCore {
 
 	@Override
 	public synchronized Collection<JavaClass> update(Collection<File> changedFiles) {
+		// A cancellation meant for an earlier update must not stop this one
+		updateCancelled.set(false);
+		return analyze(changedFiles);
+	}
+
+	private Collection<JavaClass> analyze(Collection<File> changedFiles) {
 		log(CONFIG, "Core Update " + name);
-		Collection<JavaClass> testsRun = runOptimizedTestSet2(changedFiles);
+		if (!filesOfCancelledUpdates.isEmpty()) {
+			filesOfCancelledUpdates.addAll(changedFiles);
+			changedFiles = newArrayList(filesOfCancelledUpdates);
+			filesOfCancelledUpdates.clear();
+		}
+		Collection<JavaClass> testsRun;
+		try {
+			testsRun = runOptimizedTestSet2(changedFiles);
+		} catch (CancellationException e) {
+			// Cancelled by the update scheduler, the next update picks up the
+			// files this one did not get to
+			log(CONFIG, name + " Update cancelled, " + changedFiles.size() + " files postponed");
+			filesOfCancelledUpdates.addAll(changedFiles);
+			return Collections.emptyList();
+		}
 		caughtExceptions.clear();
 		return testsRun;
 	}
 
+	@Override
+	public void cancelUpdate() {
+		updateCancelled.set(true);
+	}
+
 	// If this returned the number of tests that were scheduled to be run, we
 	// could warn the user when they make changes that don't trigger tests
 	@Override
 	public synchronized int update() {
+		updateCancelled.set(false);
 		try {
-			return update(findChangedClassFiles()).size();
+			return analyze(findChangedClassFiles()).size();
 		} catch (IOException e) {
 			checkForFatalError(e);
 		}
 		return 0;
 	}
 
+	@Override
+	public void runTests(List<String> testNames) {
+		if (!testNames.isEmpty()) {
+			log(name + " Running tests: " + testNames);
+			synchronized (inputsOfRunningTests) {
+				for (String each : testNames) {
+					String inputs = inputsOfSelectedTests.remove(each);
+					if (inputs != null) {
+						inputsOfRunningTests.put(each, inputs);
+					}
+				}
+			}
+			getRunner().runTests(testNames);
+		}
+	}
+
 	@Override
 	public void reload() {
 		log("Reloading core " + name);
@@ -111,20 +192,21 @@ class DefaultInfinitestCore implements InfinitestCore {
 		if ((currentEnvironment == null)
 				|| !environment.equals(currentEnvironment)) {
 			currentEnvironment = environment;
+			log(name + " Launching test runners with the " + environment.getLaunchProfile() + " launch profile");
+			environment.setTestHistory(stats);
 			runner.setRuntimeEnvironment(environment);
 			changeDetector.setClasspathProvider(environment);
 			testDetector.setClasspathProvider(environment);
+			followCommitsIn(environment.getWorkingDirectory());
 			reload();
 		}
 	}
 
 	private Collection<JavaClass> runOptimizedTestSet2(
 			Collection<File> changedFiles) {
-		Set<String> oldTests = testDetector.getCurrentTests();
-		Collection<JavaClass> testsToRun = testDetector
-				.findTestsToRun(changedFiles);
-		Set<String> newTests = testDetector.getCurrentTests();
-		fireDisabledTestEvents(difference(oldTests, newTests));
+		Collection<JavaClass> testsToRun = skipTestsWithUnchangedInputs(testDetector
+				.findTestsToRun(changedFiles));
+		fireDisabledTestEvents(testDetector.getDisabledTests());
 		if (!testsToRun.isEmpty()) {
 			log(name + " Running tests: " + testsToRun);
 			runTests(testsToRun);
@@ -132,11 +214,132 @@ class DefaultInfinitestCore implements InfinitestCore {
 		return testsToRun;
 	}
 
+	private Collection<JavaClass> skipTestsWithUnchangedInputs(Collection<JavaClass> tests) {
+		if (resultCache == null) {
+			return tests;
+		}
+		String jvmArguments = jvmArguments();
+		List<JavaClass> testsToRun = newArrayList();
+		synchronized (inputsOfRunningTests) {
+			// Tests selected before but never run are stale by now
+			inputsOfSelectedTests.clear();
+		}
+		for (JavaClass each : tests) {
+			String inputs = withJvmArguments(testDetector.getInputFingerprint(each), jvmArguments);
+			if ((inputs != null) && resultCache.hasPassed(inputs)) {
+				log(CONFIG, name + " Skipping " + each + ", it passed with the same inputs");
+				fireSkippedTestPassed(each.getName());
+				continue;
+			}
+			if (inputs != null) {
+				synchronized (inputsOfRunningTests) {
+					inputsOfSelectedTests.put(each.getName(), inputs);
+				}
+			}
+			testsToRun.add(each);
+		}
+		return testsToRun;
+	}
+
+	private String jvmArguments() {
+		if (currentEnvironment == null) {
+			return "";
+		}
+		return Joiner.on('\n').join(currentEnvironment.getUserArguments());
+	}
+
+	// A test passes with other JVM arguments, for example system properties,
+	// does not say anything about the current ones
+	private static String withJvmArguments(String inputs, String jvmArguments) {
+		if ((inputs == null) || jvmArguments.isEmpty()) {
+			return inputs;
+		}
+		return Hashing.sha1().hashString(inputs + '\n' + jvmArguments, Charsets.UTF_8).toString();
+	}
+
+	// Clears the failures the test may still show from before it last passed.
+	// The run statistics and the cache are not told, the test did not run.
+	private void fireSkippedTestPassed(String testName) {
+		TestCaseEvent event = new TestCaseEvent(testName, getRunner(), new TestResults());
+		for (TestResultsListener each : resultsListeners) {
+			each.testCaseComplete(event);
+		}
+	}
+
+	private void recordResult(TestCaseEvent event) {
+		String inputs;
+		synchronized (inputsOfRunningTests) {
+			inputs = inputsOfRunningTests.remove(event.getTestName());
+		}
+		if ((inputs == null) || (resultCache == null)) {
+			return;
+		}
+		if (event.failed()) {
+			resultCache.recordFailure(inputs);
+		} else {
+			resultCache.recordPass(inputs);
+		}
+	}
+
 	private int runOptimizedTestSet(Collection<File> changedFiles) {
 		return runOptimizedTestSet2(changedFiles).size();
 	}
 
+	private void followCommitsIn(File workingDirectory) {
+		gitHead = null;
+		indexStore = null;
+		currentCommit = null;
+		if (workingDirectory != null) {
+			gitHead = new GitHead(workingDirectory);
+			indexStore = new IndexSnapshotStore(indexDirectoryOf(workingDirectory));
+		}
+	}
+
+	/**
+	 * The indexes are kept in the .infinitest directory of the user home,
+	 * out of the working tree, in a directory of their own for each working
+	 * directory.
+	 */
+	private static File indexDirectoryOf(File workingDirectory) {
+		File indexes = new File(System.getProperty("user.home"), ".infinitest/index");
+		return new File(indexes, Hashing.sha1().hashString(workingDirectory.getAbsolutePath(), Charsets.UTF_8).toString());
+	}
+
+	/**
+	 * When another commit was checked out since the last update, the index of
+	 * the previous commit is saved and the one of the new commit restored, if
+	 * it was saved before. The same happens for the commit found by the first
+	 * update, so a restarted core does not parse the whole workspace again.
+	 * 
+	 * @return the class files to analyze again, or null if no index was
+	 *         restored
+	 */
+	private Collection<File> followCheckouts() {
+		if (gitHead == null) {
+			return null;
+		}
+		String commit = gitHead.readCommit();
+		if ((commit == null) || commit.equals(currentCommit)) {
+			return null;
+		}
+		if (currentCommit != null) {
+			log(name + " Checked out " + commit + ", was " + currentCommit);
+		}
+		String previousCommit = currentCommit;
+		currentCommit = commit;
+		Collection<File> filesToAnalyze = testDetector.switchCommit(indexStore, previousCommit, commit);
+		return filesToAnalyze.isEmpty() ? null : filesToAnalyze;
+	}
+
 	private Collection<File> findChangedClassFiles() throws IOException {
+		Collection<File> filesOfCheckout = followCheckouts();
+		if (filesOfCheckout != null) {
+			// The restored index already left out the classes of removed files
+			Set<File> changedFiles = newLinkedHashSet(filesOfCheckout);
+			changedFiles.addAll(changeDetector.findChangedFiles());
+			log(name + " Files changed since the restored index: " + changedFiles.size());
+			return changedFiles;
+		}
 		if (changeDetector.filesWereRemoved()) {
 			// Instead of reloading the core when a file is removed,
 			// we should ask the test detector to remove it from the dependency
@@ -157,12 +360,16 @@ class DefaultInfinitestCore implements InfinitestCore {
 
 	@Override
 	public void addTestResultsListener(TestResultsListener l) {
-		getRunner().addTestResultsListener(normalizer.testEventNormalizer(l));
+		TestResultsListener normalized = normalizer.testEventNormalizer(l);
+		resultsListeners.add(normalized);
+		getRunner().addTestResultsListener(normalized);
 	}
 
 	@Override
 	public void removeTestResultsListener(TestResultsListener l) {
-		getRunner().removeTestStatusListener(normalizer.testEventNormalizer(l));
+		TestResultsListener normalized = normalizer.testEventNormalizer(l);
+		resultsListeners.remove(normalized);
+		getRunner().removeTestStatusListener(normalized);
 	}
 
 	@Override
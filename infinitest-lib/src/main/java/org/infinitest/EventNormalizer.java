@@ -27,141 +27,263 @@
  */
 package org.infinitest;
 
+import static com.google.common.collect.Lists.*;
 import static com.google.common.collect.Maps.*;
-import static java.lang.System.*;
-import static java.lang.reflect.Proxy.*;
 import static org.infinitest.util.InfinitestUtils.*;
 
-import java.lang.reflect.*;
 import java.util.*;
 
+import org.infinitest.ConsoleOutputListener.OutputType;
 import org.infinitest.testrunner.*;
 
-// Refactoring attempts to date: 4
-//
-// DEBT This class is totally insane. One of these days, I'm going to find a way to do this better.
+/**
+ * Moves events fired by the test runner threads onto the {@link EventQueue}.
+ * <p>
+ * Events are collected in a batch and the whole batch is dispatched by a
+ * single runnable, so a chatty test run does not flood the event queue. While
+ * an event waits for dispatch, newer events of the same kind for the same
+ * listener are merged into it: console output is concatenated and queue
+ * updates are replaced by the latest one.
+ */
 class EventNormalizer {
 	private final EventQueue eventQueue;
+	private List<PendingEvent> pendingEvents;
+	private final Map<Object, PendingEvent> lastPendingEvents;
+
+	public EventNormalizer(EventQueue eventQueue) {
+		this.eventQueue = eventQueue;
+		pendingEvents = newArrayList();
+		lastPendingEvents = newIdentityHashMap();
+	}
+
+	public TestQueueListener testQueueNormalizer(TestQueueListener listener) {
+		return new NormalizedTestQueueListener(listener);
+	}
+
+	public TestResultsListener testEventNormalizer(TestResultsListener listener) {
+		return new NormalizedTestResultsListener(listener);
+	}
+
+	public ConsoleOutputListener consoleEventNormalizer(ConsoleOutputListener listener) {
+		return new NormalizedConsoleOutputListener(listener);
+	}
+
+	private synchronized void post(Object listener, PendingEvent event) {
+		PendingEvent lastEvent = lastPendingEvents.get(listener);
+		if ((lastEvent != null) && lastEvent.coalesce(event)) {
+			return;
+		}
+		lastPendingEvents.put(listener, event);
+		pendingEvents.add(event);
+		if (pendingEvents.size() == 1) {
+			eventQueue.pushNamed(new NamedRunnable("Processing Results") {
+				@Override
+				public void run() {
+					dispatchPendingEvents();
+				}
+			});
+		}
+	}
+
+	private void dispatchPendingEvents() {
+		List<PendingEvent> events;
+		synchronized (this) {
+			events = pendingEvents;
+			pendingEvents = newArrayList();
+			lastPendingEvents.clear();
+		}
+		for (PendingEvent each : events) {
+			try {
+				each.dispatch();
+			} catch (RuntimeException e) {
+				log("Error in event normalizer", e);
+			}
+		}
+	}
+
+	private abstract static class PendingEvent {
+		abstract void dispatch();
 
-	// The proxy cache is a suck. Boo, Java.
-	//
-	// Because there's no way to detect a proxy object when doing an equality
-	// comparison,
-	// and because even if you could detect it, there's no way to get the
-	// decorated listener,
-	// it's impossible to compare decorated listeners when (for example)
-	// removing them from a
-	// listener
-	// list.
-	//
-	// To address this, we map all the decorated listeners to their proxies, and
-	// always return
-	// the same proxy for a given listener. Then we can fall back on regular
-	// object equality.
-	private final Map<Pair, Object> proxyCache;
-
-	// preloaded Method objects for the methods in java.lang.Object
-	private static Method hashCodeMethod;
-	private static Method equalsMethod;
-
-	static {
-		try {
-			hashCodeMethod = Object.class.getMethod("hashCode");
-			equalsMethod = Object.class.getMethod("equals", Object.class);
-		} catch (NoSuchMethodException e) {
-			throw new NoSuchMethodError(e.getMessage());
+		/**
+		 * @return true if the newer event was merged into this one
+		 */
+		boolean coalesce(PendingEvent newerEvent) {
+			return false;
 		}
 	}
 
-	// The pair is necessary because if we simply use the listener as a key,
-	// objects that implement
-	// multiple interfaces will overwrite the proxy values in the map.
-	private static class Pair {
-		private final Object listener;
-		private final Class<?> clazz;
+	private abstract static class NormalizedListener<T> {
+		protected final T listener;
 
-		public Pair(Class<?> clazz, Object listener) {
-			this.clazz = clazz;
+		NormalizedListener(T listener) {
 			this.listener = listener;
 		}
 
 		@Override
 		public boolean equals(Object obj) {
-			if (obj instanceof Pair) {
-				Pair other = (Pair) obj;
-				return other.listener.equals(listener) && other.clazz.equals(clazz);
+			if ((obj != null) && obj.getClass().equals(getClass())) {
+				return ((NormalizedListener<?>) obj).listener.equals(listener);
 			}
 			return false;
 		}
 
 		@Override
 		public int hashCode() {
-			return clazz.hashCode() ^ listener.hashCode();
+			return listener.hashCode();
 		}
 	}
 
-	public EventNormalizer(EventQueue eventQueue) {
-		this.eventQueue = eventQueue;
-		proxyCache = newHashMap();
-	}
+	private class NormalizedTestQueueListener extends NormalizedListener<TestQueueListener> implements TestQueueListener {
+		NormalizedTestQueueListener(TestQueueListener listener) {
+			super(listener);
+		}
 
-	public TestQueueListener testQueueNormalizer(TestQueueListener listener) {
-		return createProxy(listener, TestQueueListener.class);
-	}
+		@Override
+		public void testQueueUpdated(TestQueueEvent event) {
+			post(listener, new QueueUpdate(listener, event));
+		}
 
-	public TestResultsListener testEventNormalizer(TestResultsListener listener) {
-		return createProxy(listener, TestResultsListener.class);
-	}
+		@Override
+		public void testRunComplete() {
+			post(listener, new PendingEvent() {
+				@Override
+				void dispatch() {
+					listener.testRunComplete();
+				}
+			});
+		}
 
-	public ConsoleOutputListener consoleEventNormalizer(ConsoleOutputListener listener) {
-		return createProxy(listener, ConsoleOutputListener.class);
+		@Override
+		public void reloading() {
+			post(listener, new PendingEvent() {
+				@Override
+				void dispatch() {
+					listener.reloading();
+				}
+			});
+		}
 	}
 
-	private <T> T createProxy(T listener, Class<T> proxyInterface) {
-		Pair key = new Pair(proxyInterface, listener);
-		if (!proxyCache.containsKey(key)) {
-			ClassLoader classLoader = getClass().getClassLoader();
-			Class<?>[] interfaces = { proxyInterface };
-			proxyCache.put(key, newProxyInstance(classLoader, interfaces, createHandler(listener)));
+	private static class QueueUpdate extends PendingEvent {
+		private final TestQueueListener listener;
+		private TestQueueEvent event;
+
+		QueueUpdate(TestQueueListener listener, TestQueueEvent event) {
+			this.listener = listener;
+			this.event = event;
+		}
+
+		@Override
+		void dispatch() {
+			listener.testQueueUpdated(event);
+		}
+
+		@Override
+		boolean coalesce(PendingEvent newerEvent) {
+			if (newerEvent instanceof QueueUpdate) {
+				event = event.followedBy(((QueueUpdate) newerEvent).event);
+				return true;
+			}
+			return false;
 		}
-		return (T) proxyCache.get(key);
 	}
 
-	private <T> InvocationHandler createHandler(final T listener) {
-		return new InvocationHandler() {
-			@Override
-			public Object invoke(Object proxy, final Method method, final Object[] args) {
-				if (method.equals(hashCodeMethod)) {
-					return proxyHashCode(proxy);
-				} else if (method.equals(equalsMethod)) {
-					return proxyEquals(proxy, args[0]);
+	private class NormalizedTestResultsListener extends NormalizedListener<TestResultsListener> implements TestMethodListener {
+		NormalizedTestResultsListener(TestResultsListener listener) {
+			super(listener);
+		}
+
+		@Override
+		public void testCaseStarting(final TestEvent event) {
+			post(listener, new PendingEvent() {
+				@Override
+				void dispatch() {
+					listener.testCaseStarting(event);
 				}
+			});
+		}
 
-				eventQueue.pushNamed(new NamedRunnable("Processing Results") {
+		@Override
+		public void testCaseComplete(final TestCaseEvent event) {
+			post(listener, new PendingEvent() {
+				@Override
+				void dispatch() {
+					listener.testCaseComplete(event);
+				}
+			});
+		}
+
+		@Override
+		public void testMethodStarting(final TestEvent event) {
+			if (listener instanceof TestMethodListener) {
+				post(listener, new PendingEvent() {
 					@Override
-					public void run() {
-						try {
-							method.invoke(listener, args);
-						} catch (IllegalAccessException e) {
-							log("Illegal Access in event normalizer", e);
-							throw new RuntimeException(e);
-						} catch (InvocationTargetException e) {
-							log("Error in event normalizer", e);
-							throw new RuntimeException(e);
-						}
+					void dispatch() {
+						((TestMethodListener) listener).testMethodStarting(event);
 					}
 				});
+			}
+		}
 
-				return null;
+		@Override
+		public void testMethodFailed(final TestEvent event) {
+			if (listener instanceof TestMethodListener) {
+				post(listener, new PendingEvent() {
+					@Override
+					void dispatch() {
+						((TestMethodListener) listener).testMethodFailed(event);
+					}
+				});
 			}
-		};
+		}
+
+		@Override
+		public void testMethodFinished(final TestEvent event) {
+			if (listener instanceof TestMethodListener) {
+				post(listener, new PendingEvent() {
+					@Override
+					void dispatch() {
+						((TestMethodListener) listener).testMethodFinished(event);
+					}
+				});
+			}
+		}
 	}
 
-	private Integer proxyHashCode(Object proxy) {
-		return identityHashCode(proxy);
+	private class NormalizedConsoleOutputListener extends NormalizedListener<ConsoleOutputListener> implements ConsoleOutputListener {
+		NormalizedConsoleOutputListener(ConsoleOutputListener listener) {
+			super(listener);
+		}
+
+		@Override
+		public void consoleOutputUpdate(String newText, OutputType outputType) {
+			post(listener, new ConsoleUpdate(listener, newText, outputType));
+		}
 	}
 
-	private Boolean proxyEquals(Object proxy, Object other) {
-		return proxy == other;
+	private static class ConsoleUpdate extends PendingEvent {
+		private final ConsoleOutputListener listener;
+		private final StringBuilder text;
+		private final OutputType outputType;
+
+		ConsoleUpdate(ConsoleOutputListener listener, String newText, OutputType outputType) {
+			this.listener = listener;
+			this.outputType = outputType;
+			text = new StringBuilder(newText);
+		}
+
+		@Override
+		void dispatch() {
+			listener.consoleOutputUpdate(text.toString(), outputType);
+		}
+
+		@Override
+		boolean coalesce(PendingEvent newerEvent) {
+			if ((newerEvent instanceof ConsoleUpdate) && (((ConsoleUpdate) newerEvent).outputType == outputType)) {
+				text.append(((ConsoleUpdate) newerEvent).text);
+				return true;
+			}
+			return false;
+		}
 	}
 }
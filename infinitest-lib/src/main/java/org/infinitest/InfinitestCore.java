@@ -81,6 +81,20 @@ public interface InfinitestCore {
 	 */
 	Collection<JavaClass> update(Collection<File> changedFiles);
 
+	/**
+	 * Stops the update in progress at the next class file it indexes. The
+	 * files it did not get to are analyzed by the next update. Does nothing
+	 * when no update is running.
+	 */
+	void cancelUpdate();
+
+	/**
+	 * Runs the given tests, whether or not they were affected by a change.
+	 * This call is asynchronous, results are published like those of an
+	 * update.
+	 */
+	void runTests(List<String> testNames);
+
 	/**
 	 * Re-indexes all the classes in the output directory and re-runs all the
 	 * tests.
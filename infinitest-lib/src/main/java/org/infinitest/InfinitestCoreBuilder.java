@@ -48,6 +48,8 @@ public class InfinitestCoreBuilder {
 	private final EventQueue eventQueue;
 	private String coreName = "";
 	private ConcurrencyController controller;
+	private TestResultCache resultCache;
+	private int batchSize;
 
 	public InfinitestCoreBuilder(RuntimeEnvironment environment, EventQueue eventQueue) {
 		checkNotNull(environment, "No runtime environment is configured. Maybe because the project has no jdk.");
@@ -58,6 +60,8 @@ public class InfinitestCoreBuilder {
 		filterList = new RegexFileFilter(new File(filterFileLocation));
 		runnerClass = MultiProcessRunner.class;
 		controller = new SingleLockConcurrencyController();
+		resultCache = TestResultCache.getDefault();
+		batchSize = environment.getBatchSize();
 	}
 
 	/**
@@ -66,10 +70,14 @@ public class InfinitestCoreBuilder {
 	public InfinitestCore createCore() {
 		TestRunner runner = createRunner();
 		runner.setConcurrencyController(controller);
+		if (runner instanceof MultiProcessRunner) {
+			((MultiProcessRunner) runner).setBatchSize(batchSize);
+		}
 		DefaultInfinitestCore core = new DefaultInfinitestCore(runner, eventQueue);
 		core.setName(coreName);
 		core.setChangeDetector(new FileChangeDetector());
 		core.setTestDetector(createTestDetector(filterList));
+		core.setResultCache(resultCache);
 		core.setRuntimeEnvironment(runtimeEnvironment);
 		return core;
 	}
@@ -101,6 +109,22 @@ public class InfinitestCoreBuilder {
 		this.coreName = coreName;
 	}
 
+	/**
+	 * Sets the cache used to skip tests that already passed with the same
+	 * inputs, or null to always run them.
+	 */
+	public void setResultCache(TestResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	/**
+	 * Sets how many test classes are handed to the runner process at once. The
+	 * default is read from the infinitest.args file of the environment.
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
 	public void setUpdateSemaphore(ConcurrencyController semaphore) {
 		controller = semaphore;
 	}
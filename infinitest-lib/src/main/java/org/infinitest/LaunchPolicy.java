@@ -0,0 +1,158 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest;
+
+import static com.google.common.base.Preconditions.*;
+import static com.google.common.collect.Lists.*;
+import static org.infinitest.LaunchProfile.*;
+
+import java.util.*;
+
+import org.infinitest.testrunner.*;
+
+/**
+ * The profile and heap size a test runner process is launched with, and why
+ * they were chosen.
+ */
+public class LaunchPolicy {
+	static final long THROUGHPUT_THRESHOLD = 10000;
+	static final int FAST_START_INITIAL_HEAP_SIZE = 32;
+
+	private final LaunchProfile profile;
+	private final int heapSize;
+	private final String reason;
+
+	LaunchPolicy(LaunchProfile profile, int heapSize, String reason) {
+		checkArgument(profile != ADAPTIVE, "The adaptive profile must be resolved before launching");
+		this.profile = profile;
+		this.heapSize = heapSize;
+		this.reason = reason;
+	}
+
+	/**
+	 * Resolves the requested profile. The heap is at least as large as any of
+	 * the scheduled tests turned out to need. The adaptive profile switches to
+	 * the throughput profile when the scheduled tests took long enough last
+	 * time for startup time not to matter, and doubles the heap when one of
+	 * them ran out of memory.
+	 */
+	public static LaunchPolicy choose(LaunchProfile requested, int heapSize, Collection<String> scheduledTests, TestHistory history) {
+		long expectedDuration = 0;
+		int testsOutOfMemory = 0;
+		int requiredHeapSize = 0;
+		for (String test : scheduledTests) {
+			expectedDuration += history.getLastDuration(test);
+			if (history.ranOutOfMemory(test)) {
+				testsOutOfMemory++;
+			}
+			requiredHeapSize = Math.max(requiredHeapSize, history.getRequiredHeapSize(test));
+		}
+
+		String learned = "";
+		if (requiredHeapSize > heapSize) {
+			learned = ", tests needed " + requiredHeapSize + "m";
+		}
+		if (requested != ADAPTIVE) {
+			return new LaunchPolicy(requested, Math.max(heapSize, requiredHeapSize), "requested" + learned);
+		}
+
+		String observed = "adaptive: " + scheduledTests.size() + " scheduled tests last took " + expectedDuration + "ms" + learned;
+		if (testsOutOfMemory > 0) {
+			return new LaunchPolicy(THROUGHPUT, Math.max(heapSize * 2, requiredHeapSize), observed + ", " + testsOutOfMemory + " ran out of memory");
+		}
+		if (expectedDuration >= THROUGHPUT_THRESHOLD) {
+			return new LaunchPolicy(THROUGHPUT, Math.max(heapSize, requiredHeapSize), observed);
+		}
+		return new LaunchPolicy(FAST_START, Math.max(heapSize, requiredHeapSize), observed);
+	}
+
+	public LaunchProfile getProfile() {
+		return profile;
+	}
+
+	/**
+	 * The maximum heap size, in megabytes.
+	 */
+	public int getHeapSize() {
+		return heapSize;
+	}
+
+	/**
+	 * The JVM options of this policy. Options the user already chose in
+	 * {@code userArguments} are left out, so they neither conflict nor get
+	 * overridden.
+	 */
+	public List<String> createArguments(List<String> userArguments) {
+		List<String> args = newArrayList("-mx" + heapSize + "m");
+		if (profile == STANDARD) {
+			return args;
+		}
+		if (profile == FAST_START) {
+			addUnlessChosen(args, userArguments, "-Xms" + Math.min(FAST_START_INITIAL_HEAP_SIZE, heapSize) + "m");
+			args.add("-XX:+TieredCompilation");
+			args.add("-XX:TieredStopAtLevel=1");
+			addUnlessChosen(args, userArguments, "-XX:+UseSerialGC");
+		} else {
+			addUnlessChosen(args, userArguments, "-Xms" + heapSize + "m");
+			addUnlessChosen(args, userArguments, "-XX:+UseParallelGC");
+		}
+		return args;
+	}
+
+	private static void addUnlessChosen(List<String> args, List<String> userArguments, String option) {
+		for (String each : userArguments) {
+			if (sameSetting(option, each)) {
+				return;
+			}
+		}
+		args.add(option);
+	}
+
+	private static boolean sameSetting(String option, String userArgument) {
+		if (isGarbageCollectorSelection(option)) {
+			return isGarbageCollectorSelection(userArgument);
+		}
+		// A user chosen maximum heap could be smaller than our initial heap
+		return isHeapSetting(userArgument);
+	}
+
+	private static boolean isGarbageCollectorSelection(String argument) {
+		return argument.startsWith("-XX:+Use") && argument.endsWith("GC");
+	}
+
+	private static boolean isHeapSetting(String argument) {
+		return argument.startsWith("-Xms") || argument.startsWith("-Xmx") || argument.startsWith("-mx") || argument.startsWith("-ms");
+	}
+
+	@Override
+	public String toString() {
+		return profile + " profile, " + heapSize + "m heap (" + reason + ")";
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest;
+
+/**
+ * How the JVM of the test runner process is tuned.
+ */
+public enum LaunchProfile {
+	/**
+	 * Only sets the maximum heap and leaves the rest of the tuning to the JVM,
+	 * the way the runner process has always been launched.
+	 */
+	STANDARD("standard"),
+
+	/**
+	 * Gets the runner process going as quickly as possible: only the client
+	 * compiler, the serial collector and a small initial heap. Best for the few
+	 * short tests a typical change triggers.
+	 */
+	FAST_START("fast-start"),
+
+	/**
+	 * Trades startup time for steady state speed: full tiered compilation, the
+	 * parallel collector and a heap that is committed up front. Best for long
+	 * suites.
+	 */
+	THROUGHPUT("throughput"),
+
+	/**
+	 * Picks one of the other profiles, and the heap size, from how long the
+	 * scheduled tests took and whether they ran out of memory last time.
+	 */
+	ADAPTIVE("adaptive");
+
+	private final String displayName;
+
+	private LaunchProfile(String displayName) {
+		this.displayName = displayName;
+	}
+
+	@Override
+	public String toString() {
+		return displayName;
+	}
+
+	/**
+	 * @return the profile with the given display name, or null if there is
+	 *         none
+	 */
+	public static LaunchProfile forName(String name) {
+		for (LaunchProfile each : values()) {
+			if (each.displayName.equals(name)) {
+				return each;
+			}
+		}
+		return null;
+	}
+}
@@ -35,9 +35,10 @@ public class MultiCoreConcurrencyController implements ConcurrencyController {
 	private int coreCount;
 	private final Semaphore semaphore;
 	private final int maxNumberOfPermits;
+	private int owedPermits;
 
 	public MultiCoreConcurrencyController() {
-		this(1, DEFAULT_MAX_CORES);
+		this(1, Math.max(DEFAULT_MAX_CORES, Runtime.getRuntime().availableProcessors()));
 	}
 
 	public MultiCoreConcurrencyController(int intitalCoreCount, int numberOfProcessors) {
@@ -52,8 +53,18 @@ public class MultiCoreConcurrencyController implements ConcurrencyController {
 		semaphore.acquire();
 	}
 
+	/**
+	 * A permit that is owed after the core count shrank is kept instead of
+	 * going back to the semaphore.
+	 */
 	@Override
 	public void release() {
+		synchronized (this) {
+			if (owedPermits > 0) {
+				owedPermits--;
+				return;
+			}
+		}
 		semaphore.release();
 	}
 
@@ -66,17 +77,25 @@ public class MultiCoreConcurrencyController implements ConcurrencyController {
 		acquireNecessaryPermits(newCoreCount);
 	}
 
+	// Permits held by running tests cannot be taken back right away, they
+	// are owed and kept as they are released
 	private void acquireNecessaryPermits(int newCoreCount) {
 		if (newCoreCount < coreCount) {
-			if (semaphore.tryAcquire(coreCount - newCoreCount)) {
-				coreCount = newCoreCount;
+			int permitsToTake = coreCount - newCoreCount;
+			while ((permitsToTake > 0) && semaphore.tryAcquire()) {
+				permitsToTake--;
 			}
+			owedPermits += permitsToTake;
+			coreCount = newCoreCount;
 		}
 	}
 
 	private void releaseNecessaryPermits(int newCoreCount) {
 		if (newCoreCount > coreCount) {
-			semaphore.release(newCoreCount - coreCount);
+			int permitsToGive = newCoreCount - coreCount;
+			int forgivenPermits = Math.min(owedPermits, permitsToGive);
+			owedPermits -= forgivenPermits;
+			semaphore.release(permitsToGive - forgivenPermits);
 			coreCount = newCoreCount;
 		}
 	}
@@ -0,0 +1,194 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest;
+
+import static com.google.common.base.Charsets.*;
+
+import java.io.*;
+import java.lang.management.*;
+
+import com.google.common.annotations.*;
+import com.google.common.io.*;
+
+/**
+ * Reads the load of the machine from the platform MXBeans and, on Linux, from
+ * the CPU quota of the cgroup we run in and /proc/meminfo.
+ * <p>
+ * Inside a cgroup with a CPU quota, the load average is the one of the host,
+ * so the load is the CPU time the cgroup used since the last reading instead.
+ */
+public class OperatingSystemLoad implements SystemLoad {
+	private static final File CGROUP_V2_CPU_MAX = new File("/sys/fs/cgroup/cpu.max");
+	private static final File CGROUP_V2_CPU_STAT = new File("/sys/fs/cgroup/cpu.stat");
+	private static final File CGROUP_V1_QUOTA = new File("/sys/fs/cgroup/cpu/cpu.cfs_quota_us");
+	private static final File CGROUP_V1_PERIOD = new File("/sys/fs/cgroup/cpu/cpu.cfs_period_us");
+	private static final File CGROUP_V1_USAGE = new File("/sys/fs/cgroup/cpuacct/cpuacct.usage");
+	private static final File MEMINFO = new File("/proc/meminfo");
+
+	private final OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+	private long lastCpuUsage = -1;
+	private long lastCpuUsageTime;
+
+	@Override
+	public int availableProcessors() {
+		int processors = Runtime.getRuntime().availableProcessors();
+		int quota = cpuQuota();
+		if (quota > 0) {
+			return Math.min(processors, quota);
+		}
+		return processors;
+	}
+
+	private int cpuQuota() {
+		try {
+			if (CGROUP_V2_CPU_MAX.isFile()) {
+				return cpusFromCpuMax(read(CGROUP_V2_CPU_MAX));
+			}
+			if (CGROUP_V1_QUOTA.isFile() && CGROUP_V1_PERIOD.isFile()) {
+				return cpusFromQuota(Long.parseLong(read(CGROUP_V1_QUOTA)), Long.parseLong(read(CGROUP_V1_PERIOD)));
+			}
+		} catch (IOException e) {
+			// No quota we can read
+		} catch (NumberFormatException e) {
+			// No quota we can read
+		}
+		return 0;
+	}
+
+	/**
+	 * @return the number of CPUs a cgroup v2 cpu.max line allows, or 0 if it is
+	 *         unlimited
+	 */
+	@VisibleForTesting
+	static int cpusFromCpuMax(String cpuMax) {
+		String[] fields = cpuMax.trim().split("\\s+");
+		if ((fields.length != 2) || "max".equals(fields[0])) {
+			return 0;
+		}
+		return cpusFromQuota(Long.parseLong(fields[0]), Long.parseLong(fields[1]));
+	}
+
+	private static int cpusFromQuota(long quota, long period) {
+		if ((quota <= 0) || (period <= 0)) {
+			return 0;
+		}
+		return (int) Math.max(1, (quota + period - 1) / period);
+	}
+
+	@Override
+	public double loadAverage() {
+		if (cpuQuota() > 0) {
+			return cgroupLoad();
+		}
+		return operatingSystem.getSystemLoadAverage();
+	}
+
+	private synchronized double cgroupLoad() {
+		long usage = cgroupCpuUsage();
+		long now = System.nanoTime();
+		if (usage < 0) {
+			return -1;
+		}
+		double load = -1;
+		if ((lastCpuUsage >= 0) && (now > lastCpuUsageTime)) {
+			load = (double) (usage - lastCpuUsage) / (now - lastCpuUsageTime);
+		}
+		lastCpuUsage = usage;
+		lastCpuUsageTime = now;
+		return load;
+	}
+
+	/**
+	 * @return the CPU time, in nanoseconds, used by the processes of our
+	 *         cgroup, or -1 if it cannot be read
+	 */
+	private long cgroupCpuUsage() {
+		try {
+			if (CGROUP_V2_CPU_STAT.isFile()) {
+				return cpuUsageFromCpuStat(read(CGROUP_V2_CPU_STAT));
+			}
+			if (CGROUP_V1_USAGE.isFile()) {
+				return Long.parseLong(read(CGROUP_V1_USAGE));
+			}
+		} catch (IOException e) {
+			// No usage we can read
+		} catch (NumberFormatException e) {
+			// No usage we can read
+		}
+		return -1;
+	}
+
+	@VisibleForTesting
+	static long cpuUsageFromCpuStat(String cpuStat) {
+		for (String line : cpuStat.split("\n")) {
+			if (line.startsWith("usage_usec ")) {
+				return Long.parseLong(line.substring("usage_usec ".length()).trim()) * 1000;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public long availableMemory() {
+		try {
+			if (MEMINFO.isFile()) {
+				long available = availableMemoryFromMeminfo(Files.toString(MEMINFO, UTF_8));
+				if (available >= 0) {
+					return available;
+				}
+			}
+		} catch (IOException e) {
+			// Fall back to the free memory reported by the JVM
+		}
+		if (operatingSystem instanceof com.sun.management.OperatingSystemMXBean) {
+			return ((com.sun.management.OperatingSystemMXBean) operatingSystem).getFreePhysicalMemorySize();
+		}
+		return -1;
+	}
+
+	/**
+	 * Free memory does not count the page cache the kernel gives back when
+	 * asked, MemAvailable does.
+	 */
+	@VisibleForTesting
+	static long availableMemoryFromMeminfo(String meminfo) {
+		for (String line : meminfo.split("\n")) {
+			if (line.startsWith("MemAvailable:")) {
+				String[] fields = line.trim().split("\\s+");
+				return Long.parseLong(fields[1]) * 1024;
+			}
+		}
+		return -1;
+	}
+
+	private static String read(File file) throws IOException {
+		return Files.toString(file, UTF_8).trim();
+	}
+}
@@ -33,8 +33,16 @@ import static java.lang.Math.*;
 
 import java.util.*;
 
+import com.google.common.base.*;
+
+/**
+ * Combines the test queues of several cores into one. The aggregated counters
+ * are updated from each core event in constant time; the combined list of
+ * queued tests is only built when a listener asks for it.
+ */
 public class QueueAggregator {
 	private int initialSize = 0;
+	private int size = 0;
 	private final Map<InfinitestCore, AggregatingQueueListener> coreQueueListeners;
 	public static final String STATUS_PROPERTY = "status";
 	private final List<TestQueueListener> queueListeners;
@@ -59,24 +67,42 @@ public class QueueAggregator {
 	}
 
 	public void detach(InfinitestCore core) {
-		core.removeTestQueueListener(coreQueueListeners.remove(core));
+		AggregatingQueueListener listener = coreQueueListeners.remove(core);
+		if (listener != null) {
+			size -= listener.getSize();
+		}
+		core.removeTestQueueListener(listener);
 	}
 
-	private void fireTestQueueEvent() {
-		List<String> aggregatedQueue = getAggregatedQueue();
-		initialSize = max(initialSize, aggregatedQueue.size());
+	private void fireTestQueueEvent(TestQueueEvent coreEvent) {
+		initialSize = max(initialSize, size);
+		TestQueueEvent event = new TestQueueEvent(coreEvent.getAddedTests(), coreEvent.getCompletedTest(), findCurrentTest(coreEvent), size, initialSize, new AggregatedQueue());
 		for (TestQueueListener each : queueListeners) {
-			each.testQueueUpdated(new TestQueueEvent(aggregatedQueue, initialSize));
+			each.testQueueUpdated(event);
 		}
-		if (aggregatedQueue.isEmpty()) {
+		if (size == 0) {
 			initialSize = 0;
 		}
 	}
 
+	private String findCurrentTest(TestQueueEvent coreEvent) {
+		if (!coreEvent.isEmpty() || (size == 0)) {
+			return coreEvent.getCurrentTest();
+		}
+		for (AggregatingQueueListener each : coreQueueListeners.values()) {
+			if (each.getSize() > 0) {
+				return each.lastEvent.getCurrentTest();
+			}
+		}
+		return null;
+	}
+
 	private List<String> getAggregatedQueue() {
 		List<String> aggregatedQueue = newArrayList();
 		for (AggregatingQueueListener each : coreQueueListeners.values()) {
-			aggregatedQueue.addAll(each.currentQueue);
+			if (each.lastEvent != null) {
+				aggregatedQueue.addAll(each.lastEvent.getTestQueue());
+			}
 		}
 		return aggregatedQueue;
 	}
@@ -88,7 +114,7 @@ public class QueueAggregator {
 	}
 
 	private void fireCompleteEvent() {
-		if (getAggregatedQueue().isEmpty()) {
+		if (size == 0) {
 			for (TestQueueListener each : queueListeners) {
 				each.testRunComplete();
 			}
@@ -99,8 +125,19 @@ public class QueueAggregator {
 		return coreQueueListeners;
 	}
 
+	private class AggregatedQueue implements Supplier<List<String>> {
+		@Override
+		public List<String> get() {
+			return getAggregatedQueue();
+		}
+	}
+
 	private class AggregatingQueueListener extends TestQueueAdapter {
-		private List<String> currentQueue = newArrayList();
+		private TestQueueEvent lastEvent;
+
+		int getSize() {
+			return lastEvent == null ? 0 : lastEvent.getSize();
+		}
 
 		@Override
 		public void reloading() {
@@ -114,8 +151,9 @@ public class QueueAggregator {
 
 		@Override
 		public void testQueueUpdated(TestQueueEvent event) {
-			currentQueue = event.getTestQueue();
-			fireTestQueueEvent();
+			size += event.getSize() - getSize();
+			lastEvent = event;
+			fireTestQueueEvent(event);
 		}
 	}
 
@@ -36,6 +36,7 @@ import static org.infinitest.util.InfinitestUtils.*;
 import java.util.*;
 
 import org.infinitest.testrunner.*;
+import org.infinitest.util.*;
 
 import com.google.common.collect.*;
 
@@ -45,12 +46,13 @@ import com.google.common.collect.*;
  * 
  * @author bjrady
  */
-public class ResultCollector implements DisabledTestListener, TestQueueListener, TestResultsListener {
+public class ResultCollector implements DisabledTestListener, TestQueueListener, TestMethodListener {
 	private CoreStatus status;
 	private final Map<String, TestCaseEvent> resultMap;
 	private final List<FailureListListener> changeListeners;
 	private final List<StatusChangeListener> statusChangeListeners;
 	private final ListMultimap<PointOfFailure, TestEvent> failuresByPointOfFailure;
+	private final ListMultimap<String, TestEvent> streamedFailures;
 	private final QueueAggregator queueAggregator;
 
 	public ResultCollector() {
@@ -58,6 +60,7 @@ public class ResultCollector implements DisabledTestListener, TestQueueListener,
 		changeListeners = newArrayList();
 		statusChangeListeners = newArrayList();
 		failuresByPointOfFailure = ArrayListMultimap.create();
+		streamedFailures = ArrayListMultimap.create();
 		status = SCANNING;
 		queueAggregator = new QueueAggregator();
 		queueAggregator.addListener(this);
@@ -102,6 +105,34 @@ public class ResultCollector implements DisabledTestListener, TestQueueListener,
 	public void testCaseStarting(TestEvent event) {
 	}
 
+	@Override
+	public void testMethodStarting(TestEvent event) {
+	}
+
+	@Override
+	public void testMethodFinished(TestEvent event) {
+	}
+
+	/**
+	 * Reports a failure as soon as the runner streams it, rather than when the
+	 * whole test case is done. It is reconciled with the complete results of
+	 * the test case in {@link #testCaseComplete(TestCaseEvent)}.
+	 */
+	@Override
+	public void testMethodFailed(TestEvent event) {
+		String testName = ClassNameTable.canonical(event.getTestName());
+		TestCaseEvent previousResult = resultMap.get(testName);
+		if ((previousResult != null) && previousResult.getFailureEvents().contains(event)) {
+			return;
+		}
+		if (streamedFailures.containsEntry(testName, event)) {
+			return;
+		}
+		streamedFailures.put(testName, event);
+		failuresByPointOfFailure.put(event.getPointOfFailure(), event);
+		fireChangeEvent(singletonList(event), noEvents());
+	}
+
 	@Override
 	public void testCaseComplete(TestCaseEvent event) {
 		TestCaseFailures failureSet = getCurrentFailuresForTestCase(event);
@@ -109,16 +140,25 @@ public class ResultCollector implements DisabledTestListener, TestQueueListener,
 			failuresByPointOfFailure.put(each.getPointOfFailure(), each);
 			failureSet.addNewFailure(each);
 		}
-		resultMap.put(event.getTestName(), event);
+		resultMap.put(ClassNameTable.canonical(event.getTestName()), event);
 		fireCachedFailureEvents(failureSet);
 	}
 
+	// Failures that were streamed while the test case ran have already been
+	// reported, so they count as existing ones
 	private TestCaseFailures getCurrentFailuresForTestCase(TestCaseEvent event) {
+		List<TestEvent> currentFailures = newArrayList();
 		TestCaseEvent oldEvent = resultMap.get(event.getTestName());
 		if (oldEvent != null) {
-			return new TestCaseFailures(oldEvent.getFailureEvents());
+			currentFailures.addAll(oldEvent.getFailureEvents());
+		}
+		for (TestEvent each : streamedFailures.removeAll(ClassNameTable.canonical(event.getTestName()))) {
+			failuresByPointOfFailure.remove(each.getPointOfFailure(), each);
+			if (!currentFailures.contains(each)) {
+				currentFailures.add(each);
+			}
 		}
-		return new TestCaseFailures(noEvents());
+		return new TestCaseFailures(currentFailures);
 	}
 
 	private void fireCachedFailureEvents(TestCaseFailures testCaseFailures) {
@@ -182,6 +222,7 @@ public class ResultCollector implements DisabledTestListener, TestQueueListener,
 	public void clear() {
 		resultMap.clear();
 		failuresByPointOfFailure.clear();
+		streamedFailures.clear();
 	}
 
 	public List<TestEvent> getFailuresForPointOfFailure(PointOfFailure pointOfFailure) {
@@ -212,6 +253,7 @@ public class ResultCollector implements DisabledTestListener, TestQueueListener,
 
 	@Override
 	public void testRunComplete() {
+		removeUnconfirmedFailures();
 		if (hasFailures()) {
 			setStatus(FAILING);
 		} else {
@@ -222,7 +264,7 @@ public class ResultCollector implements DisabledTestListener, TestQueueListener,
 
 	@Override
 	public void testQueueUpdated(TestQueueEvent event) {
-		if (!event.getTestQueue().isEmpty()) {
+		if (!event.isEmpty()) {
 			setStatus(RUNNING);
 		}
 	}
@@ -235,6 +277,20 @@ public class ResultCollector implements DisabledTestListener, TestQueueListener,
 		fireChangeEvent(noEvents(), failuresRemoved);
 	}
 
+	// A streamed failure that was not attributed to the test case it was
+	// reported for would otherwise stay around forever
+	private void removeUnconfirmedFailures() {
+		List<TestEvent> unconfirmedFailures = newArrayList(streamedFailures.values());
+		streamedFailures.clear();
+		unconfirmedFailures.removeAll(getFailures());
+		if (!unconfirmedFailures.isEmpty()) {
+			for (TestEvent each : unconfirmedFailures) {
+				failuresByPointOfFailure.remove(each.getPointOfFailure(), each);
+			}
+			fireChangeEvent(noEvents(), unconfirmedFailures);
+		}
+	}
+
 	private List<TestEvent> noEvents() {
 		return emptyList();
 	}
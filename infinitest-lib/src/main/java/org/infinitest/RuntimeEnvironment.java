@@ -32,6 +32,7 @@ package org.infinitest;
 import static com.google.common.collect.Lists.*;
 import static com.google.common.collect.Maps.*;
 import static java.io.File.*;
+import static java.util.Collections.*;
 import static java.util.logging.Level.*;
 import static org.infinitest.util.InfinitestUtils.*;
 
@@ -48,7 +49,12 @@ import com.google.common.annotations.*;
  * @author bjrady
  */
 public class RuntimeEnvironment implements ClasspathProvider {
+	private static final String BATCH_SIZE_ARGUMENT = "-Dinfinitest.batch.size=";
+	private static final String LAUNCH_PROFILE_ARGUMENT = "-Dinfinitest.launch.profile=";
+
 	private final int heapSize = 256;
+	private int maximumHeapSize = 1024;
+	private boolean lowPriority = true;
 	private final File javaHome;
 	private final File workingDirectory;
 	private final List<File> classOutputDirs;
@@ -57,6 +63,10 @@ public class RuntimeEnvironment implements ClasspathProvider {
 	private String infinitestRuntimeClasspath;
 	private List<File> classDirs;
 	private final CustomJvmArgumentsReader customArgumentsReader;
+	private ClassDataSharing classDataSharing = ClassDataSharing.getDefault();
+	private LaunchProfile launchProfile = LaunchProfile.STANDARD;
+	private TestHistory testHistory = new RunStatistics();
+	private final Collection<String> scheduledTests;
 
 	/**
 	 * Creates a new environment for test execution.
@@ -82,26 +92,150 @@ public class RuntimeEnvironment implements ClasspathProvider {
 		infinitestRuntimeClasspath = classpath;
 		additionalArgs = newArrayList();
 		customArgumentsReader = new FileCustomJvmArgumentReader(workingDirectory);
+		scheduledTests = emptyList();
+	}
+
+	private RuntimeEnvironment(RuntimeEnvironment original, Collection<String> scheduledTests) {
+		classOutputDirs = original.classOutputDirs;
+		workingDirectory = original.workingDirectory;
+		rawClasspath = original.rawClasspath;
+		javaHome = original.javaHome;
+		infinitestRuntimeClasspath = original.infinitestRuntimeClasspath;
+		additionalArgs = original.additionalArgs;
+		customArgumentsReader = original.customArgumentsReader;
+		classDataSharing = original.classDataSharing;
+		launchProfile = original.launchProfile;
+		testHistory = original.testHistory;
+		maximumHeapSize = original.maximumHeapSize;
+		lowPriority = original.lowPriority;
+		classDirs = original.classDirs;
+		this.scheduledTests = newArrayList(scheduledTests);
+	}
+
+	/**
+	 * The same environment, for launching a process that will run the given
+	 * tests. The adaptive launch profile is resolved against them.
+	 */
+	public RuntimeEnvironment withScheduledTests(Collection<String> tests) {
+		return new RuntimeEnvironment(this, tests);
 	}
 
 	public List<String> createProcessArguments() {
-		String memorySetting = "-mx" + getHeapSize() + "m";
-		List<String> args = newArrayList(getJavaExecutable(), memorySetting);
-		args.addAll(additionalArgs);
-		args.addAll(addCustomArguments());
+		return createProcessArguments(getLaunchPolicy());
+	}
+
+	public List<String> createProcessArguments(LaunchPolicy policy) {
+		String javaExecutable = getJavaExecutable();
+		List<String> userArgs = getUserArguments();
+
+		List<String> args = newArrayList(javaExecutable);
+		args.addAll(policy.createArguments(userArgs));
+		if (classDataSharing != null) {
+			args.addAll(classDataSharing.createProcessArguments(javaHome, new File(javaExecutable), getLaunchClasspath()));
+		}
+		args.addAll(userArgs);
 		return args;
 	}
 
+	/**
+	 * The JVM arguments added by the IDE and the infinitest.args file.
+	 */
+	public List<String> getUserArguments() {
+		List<String> userArgs = newArrayList(additionalArgs);
+		userArgs.addAll(addCustomArguments());
+		return userArgs;
+	}
+
+	/**
+	 * How many test classes are handed to the runner process at once, set with
+	 * -Dinfinitest.batch.size in the infinitest.args file. Defaults to one.
+	 */
+	public int getBatchSize() {
+		for (String each : getUserArguments()) {
+			if (each.startsWith(BATCH_SIZE_ARGUMENT)) {
+				try {
+					return Math.max(1, Integer.parseInt(each.substring(BATCH_SIZE_ARGUMENT.length()).trim()));
+				} catch (NumberFormatException e) {
+					log(WARNING, "Ignoring invalid batch size " + each);
+				}
+			}
+		}
+		return 1;
+	}
+
+	/**
+	 * The launch profile and heap size the next test runner process gets.
+	 */
+	public LaunchPolicy getLaunchPolicy() {
+		return LaunchPolicy.choose(getLaunchProfile(), getHeapSize(), scheduledTests, testHistory);
+	}
+
+	/**
+	 * The launch profile set with -Dinfinitest.launch.profile in the
+	 * infinitest.args file: standard, fast-start, throughput or adaptive.
+	 * Without it, the profile set on this environment.
+	 */
+	public LaunchProfile getLaunchProfile() {
+		for (String each : getUserArguments()) {
+			if (each.startsWith(LAUNCH_PROFILE_ARGUMENT)) {
+				LaunchProfile profile = LaunchProfile.forName(each.substring(LAUNCH_PROFILE_ARGUMENT.length()).trim());
+				if (profile != null) {
+					return profile;
+				}
+				log(WARNING, "Ignoring unknown launch profile " + each);
+			}
+		}
+		return launchProfile;
+	}
+
+	/**
+	 * Defaults to {@link LaunchProfile#STANDARD}.
+	 */
+	public void setLaunchProfile(LaunchProfile launchProfile) {
+		this.launchProfile = launchProfile;
+	}
+
+	/**
+	 * The durations and failures the adaptive launch profile bases its choice
+	 * on.
+	 */
+	public void setTestHistory(TestHistory testHistory) {
+		this.testHistory = testHistory;
+	}
+
+	public TestHistory getTestHistory() {
+		return testHistory;
+	}
+
 	public Map<String, String> createProcessEnvironment() {
 		Map<String, String> environment = newHashMap();
-		environment.put("CLASSPATH", getCompleteClasspath());
+		environment.put("CLASSPATH", getLaunchClasspath());
 		return environment;
 	}
 
+	/**
+	 * The complete classpath, in the order class data sharing needs it.
+	 */
+	public String getLaunchClasspath() {
+		String completeClasspath = getCompleteClasspath();
+		if (classDataSharing == null) {
+			return completeClasspath;
+		}
+		return classDataSharing.arrangeClasspath(javaHome, completeClasspath);
+	}
+
 	private List<String> addCustomArguments() {
 		return customArgumentsReader.readCustomArguments();
 	}
 
+	/**
+	 * Sets the class data sharing archives used to speed up the launch of the
+	 * test runner process, or null to launch it without.
+	 */
+	public void setClassDataSharing(ClassDataSharing classDataSharing) {
+		this.classDataSharing = classDataSharing;
+	}
+
 	/**
 	 * The classpath that is used to launch Infinitest, not the classpath of the
 	 * project that you're trying to test
@@ -159,12 +293,37 @@ public class RuntimeEnvironment implements ClasspathProvider {
 
 	/**
 	 * The heap size, in megabytes, that will be used when launching the test
-	 * runner process.
+	 * runner process, unless the adaptive launch profile raises it.
 	 */
 	public int getHeapSize() {
 		return heapSize;
 	}
 
+	/**
+	 * The largest heap size, in megabytes, the test runner process is
+	 * relaunched with when a test exhausts its heap.
+	 */
+	public int getMaximumHeapSize() {
+		return maximumHeapSize;
+	}
+
+	public void setMaximumHeapSize(int maximumHeapSize) {
+		this.maximumHeapSize = maximumHeapSize;
+	}
+
+	/**
+	 * True if the test runner process is started at a lower scheduling
+	 * priority than the IDE, so the IDE stays responsive while tests use every
+	 * core. Defaults to true.
+	 */
+	public boolean isLowPriority() {
+		return lowPriority;
+	}
+
+	public void setLowPriority(boolean lowPriority) {
+		this.lowPriority = lowPriority;
+	}
+
 	/**
 	 * The working directory that will be used when launching the test runner
 	 * process. That is, if a test run by the core creates a new File object
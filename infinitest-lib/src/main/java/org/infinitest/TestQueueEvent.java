@@ -27,19 +27,71 @@
  */
 package org.infinitest;
 
+import static com.google.common.collect.Lists.*;
+import static java.util.Collections.*;
+
 import java.util.*;
 
+import com.google.common.base.*;
+
+/**
+ * Describes a change to a test queue: the tests that were added, the test that
+ * was completed, and the resulting counters. Building the full list of queued
+ * tests is left to the listeners that need it, see {@link #getTestQueue()}.
+ */
 public class TestQueueEvent {
-	private final List<String> testQueue;
+	private final List<String> addedTests;
+	private final String completedTest;
+	private final String currentTest;
+	private final int size;
 	private final int initialSize;
+	private final Supplier<List<String>> testQueue;
 
 	public TestQueueEvent(List<String> testQueue, int initialSize) {
-		this.testQueue = testQueue;
+		this(Collections.<String> emptyList(), null, testQueue.isEmpty() ? null : testQueue.get(0), testQueue.size(), initialSize, Suppliers.ofInstance(testQueue));
+	}
+
+	/**
+	 * @param testQueue
+	 *            builds the list of queued tests the first time it is
+	 *            requested
+	 */
+	public TestQueueEvent(List<String> addedTests, String completedTest, String currentTest, int size, int initialSize, Supplier<List<String>> testQueue) {
+		this.addedTests = unmodifiableList(addedTests);
+		this.completedTest = completedTest;
+		this.currentTest = currentTest;
+		this.size = size;
 		this.initialSize = initialSize;
+		this.testQueue = Suppliers.memoize(testQueue);
 	}
 
+	/**
+	 * The tests left in the queue. This list is built on demand and reflects
+	 * the queue at the time it is first requested, so listeners that only need
+	 * counters should use {@link #getSize()} and {@link #getTestsRun()}.
+	 */
 	public List<String> getTestQueue() {
-		return testQueue;
+		return testQueue.get();
+	}
+
+	public List<String> getAddedTests() {
+		return addedTests;
+	}
+
+	/**
+	 * @return the test that was just completed, or null if this event was not
+	 *         fired for a completed test
+	 */
+	public String getCompletedTest() {
+		return completedTest;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
 	}
 
 	public int getInitialSize() {
@@ -48,10 +100,20 @@ public class TestQueueEvent {
 
 	// Now that we can execute tests in parallel, what does this mean?
 	public String getCurrentTest() {
-		return testQueue.get(0);
+		return currentTest;
+	}
+
+	/**
+	 * Merges a newer event into this one, for listeners that only need to see
+	 * the latest state of the queue.
+	 */
+	TestQueueEvent followedBy(TestQueueEvent newerEvent) {
+		List<String> allAddedTests = newArrayList(addedTests);
+		allAddedTests.addAll(newerEvent.addedTests);
+		return new TestQueueEvent(allAddedTests, newerEvent.completedTest, newerEvent.currentTest, newerEvent.size, newerEvent.initialSize, newerEvent.testQueue);
 	}
 
 	public int getTestsRun() {
-		return getInitialSize() - getTestQueue().size();
+		return getInitialSize() - getSize();
 	}
 }
@@ -0,0 +1,209 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest;
+
+import static com.google.common.collect.Sets.*;
+import static java.lang.Math.*;
+import static java.util.concurrent.TimeUnit.*;
+import static org.infinitest.util.InfinitestUtils.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.google.common.annotations.*;
+
+/**
+ * Sits in front of {@link InfinitestCore#update()} and coalesces bursts of
+ * update requests (one per generated class file, or several build events for
+ * the same build) into a single analysis.
+ * <p>
+ * An analysis starts once no request has been received for a quiet period, or
+ * once the oldest pending request has waited for the maximum delay. The quiet
+ * period adapts to the time the last analysis took, so a slow project waits a
+ * little longer for a build to settle. Requests received while an analysis is
+ * running are merged into a single follow-up analysis, and the running
+ * analysis is cancelled: the core stops at the next class file and keeps the
+ * files it did not analyze for the follow-up. The analysis thread is never
+ * interrupted, so the test runs and file IO of the core are not disturbed. An analysis that follows a
+ * cancelled one is not cancelled, so a steady stream of requests cannot
+ * starve the core.
+ */
+public class UpdateScheduler {
+	private static final long DEFAULT_QUIET_PERIOD = 100;
+	private static final long DEFAULT_MAXIMUM_DELAY = 2000;
+
+	private final InfinitestCore core;
+	private final ScheduledExecutorService executor;
+	private final long minimumQuietPeriod;
+	private final long maximumDelay;
+	private final Set<File> pendingFiles;
+	private boolean scanRequested;
+	private long firstRequestTime;
+	private long lastRequestTime;
+	private long quietPeriod;
+	private boolean analysisScheduled;
+	private boolean analysisCancellable;
+	private boolean previousAnalysisCancelled;
+
+	public UpdateScheduler(InfinitestCore core) {
+		this(core, DEFAULT_QUIET_PERIOD, DEFAULT_MAXIMUM_DELAY);
+	}
+
+	@VisibleForTesting
+	UpdateScheduler(InfinitestCore core, long minimumQuietPeriod, long maximumDelay) {
+		this.core = core;
+		this.minimumQuietPeriod = minimumQuietPeriod;
+		this.maximumDelay = maximumDelay;
+		quietPeriod = minimumQuietPeriod;
+		pendingFiles = newLinkedHashSet();
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Infinitest Update Scheduler");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Asks the core to look for changed class files, once things have settled.
+	 */
+	public synchronized void requestUpdate() {
+		scanRequested = true;
+		requestAnalysis();
+	}
+
+	/**
+	 * Asks the core to analyze the given files, merged with any other files
+	 * requested before the analysis starts.
+	 */
+	public synchronized void requestUpdate(Collection<File> changedFiles) {
+		pendingFiles.addAll(changedFiles);
+		requestAnalysis();
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private void requestAnalysis() {
+		long now = System.currentTimeMillis();
+		if (!hasPendingRequest()) {
+			firstRequestTime = now;
+		}
+		lastRequestTime = now;
+		cancelRunningAnalysis();
+		if (!analysisScheduled) {
+			analysisScheduled = true;
+			executor.schedule(new AnalysisTask(), quietPeriod, MILLISECONDS);
+		}
+	}
+
+	private void cancelRunningAnalysis() {
+		if (analysisCancellable) {
+			core.cancelUpdate();
+			analysisCancellable = false;
+			previousAnalysisCancelled = true;
+		}
+	}
+
+	private boolean hasPendingRequest() {
+		return scanRequested || !pendingFiles.isEmpty();
+	}
+
+	private synchronized long remainingDelay() {
+		long now = System.currentTimeMillis();
+		long startTime = min(lastRequestTime + quietPeriod, firstRequestTime + maximumDelay);
+		return startTime - now;
+	}
+
+	private void analyze() {
+		boolean scan;
+		Collection<File> changedFiles;
+		synchronized (this) {
+			long delay = remainingDelay();
+			if (delay > 0) {
+				executor.schedule(new AnalysisTask(), delay, MILLISECONDS);
+				return;
+			}
+			analysisScheduled = false;
+			scan = scanRequested;
+			changedFiles = newLinkedHashSet(pendingFiles);
+			scanRequested = false;
+			pendingFiles.clear();
+			analysisCancellable = !previousAnalysisCancelled;
+			previousAnalysisCancelled = false;
+		}
+
+		long start = System.currentTimeMillis();
+		try {
+			if (!changedFiles.isEmpty()) {
+				core.update(changedFiles);
+			}
+			if (scan) {
+				core.update();
+			}
+		} finally {
+			finishAnalysis();
+		}
+		adaptQuietPeriod(System.currentTimeMillis() - start);
+	}
+
+	private synchronized void finishAnalysis() {
+		analysisCancellable = false;
+	}
+
+	private synchronized void adaptQuietPeriod(long analysisDuration) {
+		quietPeriod = max(minimumQuietPeriod, min(analysisDuration, maximumDelay / 2));
+	}
+
+	@VisibleForTesting
+	synchronized long getQuietPeriod() {
+		return quietPeriod;
+	}
+
+	private class AnalysisTask implements Runnable {
+		@Override
+		public void run() {
+			try {
+				analyze();
+			}
+			// CHECKSTYLE:OFF
+			// Errors must not kill the scheduler thread
+			catch (Throwable e)
+			// CHECKSTYLE:ON
+			{
+				log("Error occurred while updating " + core.getName(), e);
+			}
+		}
+	}
+}
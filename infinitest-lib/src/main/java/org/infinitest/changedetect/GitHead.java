@@ -0,0 +1,131 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.changedetect;
+
+import java.io.*;
+
+import com.google.common.base.*;
+import com.google.common.io.*;
+
+/**
+ * Reads the commit checked out in a working directory straight from the git
+ * metadata on disk: HEAD, then the loose or packed ref it points to. Linked
+ * worktrees and submodules, where .git is a file pointing elsewhere, are
+ * supported.
+ */
+public class GitHead {
+	private static final String REF_PREFIX = "ref: ";
+	private static final String GITDIR_PREFIX = "gitdir: ";
+	private static final CharMatcher HEXADECIMAL = CharMatcher.anyOf("0123456789abcdef");
+
+	private final File workingDirectory;
+
+	public GitHead(File workingDirectory) {
+		this.workingDirectory = workingDirectory;
+	}
+
+	/**
+	 * @return the hash of the checked out commit, or null if the working
+	 *         directory is not in a git repository or HEAD cannot be resolved
+	 */
+	public String readCommit() {
+		try {
+			File gitDirectory = findGitDirectory();
+			if (gitDirectory == null) {
+				return null;
+			}
+			String head = firstLine(new File(gitDirectory, "HEAD"));
+			if ((head != null) && head.startsWith(REF_PREFIX)) {
+				head = resolveRef(gitDirectory, head.substring(REF_PREFIX.length()).trim());
+			}
+			return isObjectName(head) ? head : null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private File findGitDirectory() throws IOException {
+		for (File directory = workingDirectory.getAbsoluteFile(); directory != null; directory = directory.getParentFile()) {
+			File git = new File(directory, ".git");
+			if (git.isDirectory()) {
+				return git;
+			}
+			if (git.isFile()) {
+				String pointer = firstLine(git);
+				if ((pointer != null) && pointer.startsWith(GITDIR_PREFIX)) {
+					return resolve(directory, pointer.substring(GITDIR_PREFIX.length()).trim());
+				}
+			}
+		}
+		return null;
+	}
+
+	private String resolveRef(File gitDirectory, String ref) throws IOException {
+		// Branches of a linked worktree live in the main repository
+		File commonDirectory = gitDirectory;
+		String common = firstLine(new File(gitDirectory, "commondir"));
+		if (common != null) {
+			commonDirectory = resolve(gitDirectory, common);
+		}
+		for (File directory : new File[] { gitDirectory, commonDirectory }) {
+			String commit = firstLine(new File(directory, ref));
+			if (commit != null) {
+				return commit;
+			}
+		}
+		File packedRefs = new File(commonDirectory, "packed-refs");
+		if (packedRefs.isFile()) {
+			for (String line : Files.readLines(packedRefs, Charsets.UTF_8)) {
+				if (line.endsWith(" " + ref)) {
+					return line.substring(0, line.indexOf(' '));
+				}
+			}
+		}
+		return null;
+	}
+
+	// SHA-1 or SHA-256
+	private static boolean isObjectName(String name) {
+		return (name != null) && ((name.length() == 40) || (name.length() == 64)) && HEXADECIMAL.matchesAllOf(name);
+	}
+
+	private static File resolve(File directory, String path) {
+		File file = new File(path);
+		return file.isAbsolute() ? file : new File(directory, path);
+	}
+
+	private static String firstLine(File file) throws IOException {
+		if (!file.isFile()) {
+			return null;
+		}
+		String line = Files.readFirstLine(file, Charsets.UTF_8);
+		return ((line == null) || line.trim().isEmpty()) ? null : line.trim();
+	}
+}
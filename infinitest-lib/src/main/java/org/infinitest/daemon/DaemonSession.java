@@ -0,0 +1,146 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.daemon;
+
+import static com.google.common.base.Charsets.*;
+import static com.google.common.collect.Lists.*;
+import static org.infinitest.util.InfinitestUtils.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+/**
+ * One client connection to the {@link InfinitestDaemon}.
+ */
+class DaemonSession implements Runnable {
+	private final InfinitestDaemon daemon;
+	private final Socket socket;
+	private PrintWriter writer;
+
+	DaemonSession(InfinitestDaemon daemon, Socket socket) {
+		this.daemon = daemon;
+		this.socket = socket;
+	}
+
+	@Override
+	public void run() {
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+			writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), UTF_8));
+			if (!authenticate(reader.readLine())) {
+				send("error Not authenticated");
+				return;
+			}
+			String line;
+			while (((line = reader.readLine()) != null) && handle(line.trim())) {
+				// Keep serving until the client quits
+			}
+		} catch (IOException e) {
+			log("Daemon client disconnected", e);
+		} finally {
+			daemon.unsubscribe(this);
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Already gone
+			}
+		}
+	}
+
+	private boolean authenticate(String line) {
+		if ((line == null) || !line.startsWith("auth ") || !daemon.isAuthentic(line.substring("auth ".length()).trim())) {
+			return false;
+		}
+		reply(Collections.<String> emptyList());
+		return true;
+	}
+
+	private boolean handle(String line) {
+		String command = line;
+		String arguments = "";
+		int space = line.indexOf(' ');
+		if (space > 0) {
+			command = line.substring(0, space);
+			arguments = line.substring(space + 1).trim();
+		}
+		try {
+			if ("changed".equals(command)) {
+				reply(daemon.changed(files(arguments)));
+			} else if ("tests".equals(command)) {
+				reply(daemon.getAffectedTests());
+			} else if ("run".equals(command)) {
+				if (arguments.isEmpty()) {
+					reply(daemon.runAffectedTests());
+				} else {
+					List<String> tests = newArrayList(arguments.split("\\s+"));
+					daemon.runTests(tests);
+					reply(tests);
+				}
+			} else if ("subscribe".equals(command)) {
+				daemon.subscribe(this);
+				reply(Collections.<String> emptyList());
+			} else if ("quit".equals(command)) {
+				return false;
+			} else if (!command.isEmpty()) {
+				send("error Unknown command " + command);
+			}
+		} catch (IOException e) {
+			send("error " + e.getMessage());
+		} catch (RuntimeException e) {
+			log("Error handling daemon command " + line, e);
+			send("error " + e);
+		}
+		return true;
+	}
+
+	private List<File> files(String arguments) {
+		List<File> files = newArrayList();
+		if (!arguments.isEmpty()) {
+			for (String path : arguments.split(File.pathSeparator)) {
+				files.add(new File(path));
+			}
+		}
+		return files;
+	}
+
+	private synchronized void reply(List<String> tests) {
+		for (String each : tests) {
+			writer.println("test " + each);
+		}
+		writer.println("ok " + tests.size());
+		writer.flush();
+	}
+
+	synchronized void send(String line) {
+		writer.println(line);
+		writer.flush();
+	}
+}
@@ -0,0 +1,344 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.daemon;
+
+import static com.google.common.base.Charsets.*;
+import static com.google.common.collect.Lists.*;
+import static java.util.logging.Level.*;
+import static org.infinitest.util.InfinitestUtils.*;
+
+import java.io.*;
+import java.math.*;
+import java.net.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.infinitest.*;
+import org.infinitest.changedetect.*;
+import org.infinitest.parser.*;
+import org.infinitest.testrunner.*;
+
+import com.google.common.io.*;
+
+/**
+ * Keeps a core, with its dependency index and test runner processes, warm for
+ * a working directory, and serves it to any number of clients (IDEs, the
+ * command line, git hooks) over a local socket. The port is written to
+ * {@value #PORT_FILE} in the working directory, and a random token that only
+ * the user can read to {@value #TOKEN_FILE}.
+ * <p>
+ * The protocol is line based. A client first sends
+ * <code>auth &lt;token&gt;</code>, which is answered by <code>ok 0</code>; any
+ * other first line closes the connection. Each command is answered by zero or
+ * more
+ * <code>test &lt;name&gt;</code> lines followed by <code>ok &lt;count&gt;</code>,
+ * or by <code>error &lt;message&gt;</code>:
+ * 
+ * <pre>
+ * changed [file{path separator}file...]  finds the tests affected by the given class files, or by any changed class file
+ * tests                                  lists the affected tests that have not run yet
+ * run [test test...]                     runs the given tests, or the affected tests that have not run yet
+ * subscribe                              streams results to this client
+ * quit                                   closes the connection
+ * </pre>
+ * 
+ * Subscribed clients receive <code>starting &lt;test&gt;</code>,
+ * <code>passed &lt;test&gt;</code>,
+ * <code>failed &lt;test&gt; &lt;method&gt;: &lt;message&gt;</code> and
+ * <code>complete</code> lines as tests run.
+ */
+public class InfinitestDaemon {
+	public static final String PORT_FILE = ".infinitest/daemon.port";
+	public static final String TOKEN_FILE = ".infinitest/daemon.token";
+	private static final int LIVE_DAEMON_TIMEOUT = 1000;
+
+	private final InfinitestCore core;
+	private final ChangeDetector changeDetector;
+	private final File workingDirectory;
+	private final Set<String> affectedTests = new LinkedHashSet<String>();
+	private final List<DaemonSession> subscribers = new CopyOnWriteArrayList<DaemonSession>();
+	private ServerSocket serverSocket;
+	private String token;
+
+	public InfinitestDaemon(InfinitestCore core, ChangeDetector changeDetector, File workingDirectory) {
+		this.core = core;
+		this.changeDetector = changeDetector;
+		this.workingDirectory = workingDirectory;
+		core.addTestResultsListener(new TestResultsListener() {
+			@Override
+			public void testCaseStarting(TestEvent event) {
+				publish("starting " + event.getTestName());
+			}
+
+			@Override
+			public void testCaseComplete(TestCaseEvent event) {
+				if (!event.failed()) {
+					publish("passed " + event.getTestName());
+				}
+				for (TestEvent failure : event.getFailureEvents()) {
+					publish("failed " + event.getTestName() + " " + failure.getTestMethod() + ": " + oneLine(failure.getMessage()));
+				}
+			}
+		});
+		core.addTestQueueListener(new TestQueueAdapter() {
+			@Override
+			public void testRunComplete() {
+				publish("complete");
+			}
+		});
+	}
+
+	/**
+	 * Creates a daemon for a working directory. Class directories of the
+	 * classpath that are inside the working directory are watched for
+	 * changes.
+	 */
+	public static InfinitestDaemon create(File workingDirectory, String classpath) {
+		RuntimeEnvironment environment = new RuntimeEnvironment(findClassOutputDirs(workingDirectory, classpath), workingDirectory, classpath, new File(System.getProperty("java.home")));
+		environment.setInfinitestRuntimeClassPath(System.getProperty("java.class.path"));
+
+		MultiCoreConcurrencyController controller = new MultiCoreConcurrencyController();
+		new ConcurrencyGovernor(controller, new OperatingSystemLoad()).start();
+
+		InfinitestCoreBuilder builder = new InfinitestCoreBuilder(environment, new ThreadEventQueue());
+		builder.setUpdateSemaphore(controller);
+		builder.setName(workingDirectory.getName());
+
+		ChangeDetector changeDetector = new FileChangeDetector();
+		changeDetector.setClasspathProvider(environment);
+		return new InfinitestDaemon(builder.createCore(), changeDetector, workingDirectory);
+	}
+
+	private static List<File> findClassOutputDirs(File workingDirectory, String classpath) {
+		List<File> classOutputDirs = newArrayList();
+		for (String entry : classpath.split(File.pathSeparator)) {
+			File directory = new File(entry);
+			if (!directory.isAbsolute()) {
+				directory = new File(workingDirectory, entry);
+			}
+			if (directory.isDirectory() && directory.getAbsolutePath().startsWith(workingDirectory.getAbsolutePath())) {
+				classOutputDirs.add(directory);
+			}
+		}
+		return classOutputDirs;
+	}
+
+	/**
+	 * Starts accepting clients on the loopback interface.
+	 * 
+	 * @param port
+	 *            the port to listen on, or 0 for any free port
+	 * @return the port the daemon listens on
+	 * @throws IOException
+	 *             if another daemon already serves the working directory
+	 */
+	public int start(int port) throws IOException {
+		checkForLiveDaemon();
+		serverSocket = new ServerSocket(port, 50, InetAddress.getByName("127.0.0.1"));
+		int localPort = serverSocket.getLocalPort();
+		token = new BigInteger(128, new SecureRandom()).toString(16);
+		writeTokenFile(token);
+		writePortFile(localPort);
+
+		Thread acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				acceptClients();
+			}
+		}, "Infinitest daemon");
+		acceptor.start();
+		log(INFO, "Infinitest daemon for " + workingDirectory + " listening on port " + localPort);
+		return localPort;
+	}
+
+	public void stop() {
+		try {
+			if (serverSocket != null) {
+				serverSocket.close();
+			}
+		} catch (IOException e) {
+			log(INFO, "Tried to close daemon socket, but was already closed");
+		}
+		new File(workingDirectory, PORT_FILE).delete();
+		new File(workingDirectory, TOKEN_FILE).delete();
+	}
+
+	// A port file can be left behind by a daemon that was killed, only a
+	// daemon that still accepts connections counts
+	private void checkForLiveDaemon() throws IOException {
+		File portFile = new File(workingDirectory, PORT_FILE);
+		if (!portFile.isFile()) {
+			return;
+		}
+		int port;
+		try {
+			port = Integer.parseInt(Files.toString(portFile, UTF_8).trim());
+		} catch (NumberFormatException e) {
+			return;
+		}
+		Socket socket = new Socket();
+		try {
+			socket.connect(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), port), LIVE_DAEMON_TIMEOUT);
+		} catch (IOException e) {
+			return;
+		} finally {
+			socket.close();
+		}
+		throw new IOException("An Infinitest daemon for " + workingDirectory + " is already listening on port " + port);
+	}
+
+	private void writePortFile(int port) throws IOException {
+		File portFile = new File(workingDirectory, PORT_FILE);
+		portFile.getParentFile().mkdirs();
+		Files.write(String.valueOf(port), portFile, UTF_8);
+	}
+
+	// The permissions are narrowed before the token is written
+	private void writeTokenFile(String token) throws IOException {
+		File tokenFile = new File(workingDirectory, TOKEN_FILE);
+		tokenFile.getParentFile().mkdirs();
+		tokenFile.delete();
+		if (!tokenFile.createNewFile()) {
+			throw new IOException("Could not create " + tokenFile);
+		}
+		// Windows file systems do not let us take the permissions of others
+		// away this way
+		if (!ownerOnly(tokenFile)) {
+			log(WARNING, "Could not make " + tokenFile + " readable only by its owner");
+		}
+		Files.write(token, tokenFile, UTF_8);
+	}
+
+	private static boolean ownerOnly(File file) {
+		return file.setReadable(false, false) && file.setReadable(true, true) && file.setWritable(false, false) && file.setWritable(true, true);
+	}
+
+	boolean isAuthentic(String clientToken) {
+		return MessageDigest.isEqual(token.getBytes(UTF_8), clientToken.getBytes(UTF_8));
+	}
+
+	private void acceptClients() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				Thread session = new Thread(new DaemonSession(this, socket), "Infinitest daemon client " + socket.getPort());
+				session.setDaemon(true);
+				session.start();
+			} catch (IOException e) {
+				if (!serverSocket.isClosed()) {
+					log("Error accepting daemon client", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the tests affected by changed class files.
+	 * 
+	 * @param changedFiles
+	 *            the class files that changed, relative to the working
+	 *            directory, or an empty collection to look for changes in the
+	 *            class output directories
+	 */
+	public synchronized List<String> changed(Collection<File> changedFiles) throws IOException {
+		Collection<File> files = newArrayList();
+		for (File each : changedFiles) {
+			files.add(each.isAbsolute() ? each : new File(workingDirectory, each.getPath()));
+		}
+		if (files.isEmpty()) {
+			if (changeDetector.filesWereRemoved()) {
+				core.reload();
+				changeDetector.clear();
+			}
+			files = changeDetector.findChangedFiles();
+		}
+		List<String> tests = newArrayList();
+		if (!files.isEmpty()) {
+			for (JavaClass each : core.update(files)) {
+				tests.add(each.getName());
+			}
+		}
+		affectedTests.addAll(tests);
+		return tests;
+	}
+
+	/**
+	 * The affected tests that have not run yet.
+	 */
+	public synchronized List<String> getAffectedTests() {
+		return newArrayList(affectedTests);
+	}
+
+	/**
+	 * Runs the affected tests that have not run yet.
+	 */
+	public synchronized List<String> runAffectedTests() {
+		List<String> tests = newArrayList(affectedTests);
+		affectedTests.clear();
+		core.runTests(tests);
+		return tests;
+	}
+
+	public synchronized void runTests(List<String> testNames) {
+		affectedTests.removeAll(testNames);
+		core.runTests(testNames);
+	}
+
+	void subscribe(DaemonSession session) {
+		subscribers.add(session);
+	}
+
+	void unsubscribe(DaemonSession session) {
+		subscribers.remove(session);
+	}
+
+	private void publish(String line) {
+		for (DaemonSession each : subscribers) {
+			each.send(line);
+		}
+	}
+
+	private static String oneLine(String message) {
+		return (message == null) ? "" : message.replaceAll("\\s*[\\r\\n]+\\s*", " ");
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: InfinitestDaemon <working directory> <classpath file> [port]");
+			System.exit(1);
+		}
+		File workingDirectory = new File(args[0]).getAbsoluteFile();
+		String classpath = Files.toString(new File(args[1]), UTF_8).trim();
+		int port = (args.length > 2) ? Integer.parseInt(args[2]) : 0;
+		int localPort = create(workingDirectory, classpath).start(port);
+		System.out.println("Infinitest daemon listening on port " + localPort);
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.daemon;
+
+import static org.infinitest.util.InfinitestUtils.*;
+
+import java.util.concurrent.*;
+
+import org.infinitest.*;
+
+/**
+ * Runs events on a single background thread, for cores that have no UI event
+ * queue to publish their results on.
+ */
+public class ThreadEventQueue implements EventQueue {
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Infinitest events");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	@Override
+	public void pushNamed(final NamedRunnable runnable) {
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					runnable.run();
+				}
+				// CHECKSTYLE:OFF
+				// We don't want a failure in the processing of one event to
+				// prevent the next.
+				catch (Exception e)
+				// CHECKSTYLE:ON
+				{
+					log("Error executing event runnable: " + runnable.getName(), e);
+				}
+			}
+		});
+	}
+
+	@Override
+	public void push(final Runnable runnable) {
+		pushNamed(new NamedRunnable("") {
+			@Override
+			public void run() {
+				runnable.run();
+			}
+		});
+	}
+
+	public void shutdown() {
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.filter;
+
+import static com.google.common.collect.Lists.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.*;
+
+/**
+ * An immutable, compiled form of a list of filter expressions. Expressions
+ * that are plain class name prefixes are merged into a {@link PrefixTrie}, the
+ * remaining regular expressions are compiled into a single alternation, and
+ * the decision for each class name is remembered.
+ */
+class CompiledFilters {
+	static final CompiledFilters NONE = new CompiledFilters(Collections.<String> emptyList());
+
+	private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\[1-9]|\\\\k<");
+	private static final int MAXIMUM_DECISIONS = 100000;
+
+	private final List<String> expressions;
+	private final PrefixTrie prefixes;
+	private final Pattern alternation;
+	private final List<Pattern> separatePatterns;
+	private final ConcurrentMap<String, Boolean> decisions;
+
+	CompiledFilters(List<String> expressions) {
+		this.expressions = expressions;
+		prefixes = new PrefixTrie();
+		separatePatterns = newArrayList();
+		decisions = new ConcurrentHashMap<String, Boolean>();
+
+		List<String> regexes = newArrayList();
+		for (String each : expressions) {
+			String literalPrefix = literalPrefixOf(each);
+			if (literalPrefix != null) {
+				prefixes.add(literalPrefix);
+			} else if (BACK_REFERENCE.matcher(each).find()) {
+				// Group numbers would shift inside the alternation
+				separatePatterns.add(Pattern.compile(each));
+			} else if (hasUnterminatedQuote(each)) {
+				// The quote would run into the expressions that follow it
+				separatePatterns.add(Pattern.compile(each));
+			} else {
+				Pattern.compile(each); // Fail on the offending line, not the alternation
+				regexes.add(each);
+			}
+		}
+		alternation = compileAlternation(regexes);
+	}
+
+	List<String> getExpressions() {
+		return expressions;
+	}
+
+	boolean matches(String className) {
+		Boolean decision = decisions.get(className);
+		if (decision == null) {
+			decision = evaluate(className);
+			if (decisions.size() >= MAXIMUM_DECISIONS) {
+				decisions.clear();
+			}
+			decisions.put(className, decision);
+		}
+		return decision;
+	}
+
+	private boolean evaluate(String className) {
+		if (prefixes.matchesPrefixOf(className)) {
+			return true;
+		}
+		if ((alternation != null) && alternation.matcher(className).lookingAt()) {
+			return true;
+		}
+		for (Pattern each : separatePatterns) {
+			if (each.matcher(className).lookingAt()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static Pattern compileAlternation(List<String> regexes) {
+		if (regexes.isEmpty()) {
+			return null;
+		}
+		StringBuilder alternation = new StringBuilder();
+		for (String each : regexes) {
+			if (alternation.length() > 0) {
+				alternation.append('|');
+			}
+			alternation.append("(?:").append(each).append(')');
+		}
+		return Pattern.compile(alternation.toString());
+	}
+
+	/**
+	 * @return <code>true</code> if a <code>\Q</code> of the expression is
+	 *         not closed by a <code>\E</code>
+	 */
+	static boolean hasUnterminatedQuote(String expression) {
+		boolean quoted = false;
+		for (int i = 0; i < (expression.length() - 1); i++) {
+			if (expression.charAt(i) != '\\') {
+				continue;
+			}
+			char next = expression.charAt(i + 1);
+			if (quoted) {
+				// Backslashes are literal inside a quote, only \E ends it
+				if (next == 'E') {
+					quoted = false;
+					i++;
+				}
+			} else {
+				quoted = next == 'Q';
+				i++;
+			}
+		}
+		return quoted;
+	}
+
+	/**
+	 * Filters are matched against the start of the class name, so an
+	 * expression made only of class name characters and escaped dots, with an
+	 * optional trailing <code>.*</code>, is just a prefix.
+	 * 
+	 * @return the unescaped prefix, or <code>null</code> if the expression
+	 *         needs a regular expression engine
+	 */
+	static String literalPrefixOf(String expression) {
+		String body = expression;
+		while (body.endsWith(".*") && !body.endsWith("\\.*")) {
+			body = body.substring(0, body.length() - 2);
+		}
+
+		StringBuilder prefix = new StringBuilder();
+		for (int i = 0; i < body.length(); i++) {
+			char c = body.charAt(i);
+			if (c == '\\') {
+				if ((i + 1) < body.length() && isEscapedLiteral(body.charAt(i + 1))) {
+					prefix.append(body.charAt(++i));
+				} else {
+					return null;
+				}
+			} else if (Character.isJavaIdentifierPart(c) && (c != '$')) {
+				prefix.append(c);
+			} else {
+				return null;
+			}
+		}
+		return prefix.toString();
+	}
+
+	private static boolean isEscapedLiteral(char c) {
+		return (c == '.') || (c == '$');
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.filter;
+
+import static com.google.common.collect.Maps.*;
+
+import java.util.*;
+
+/**
+ * A character trie of literal class name prefixes. Matching a class name walks
+ * the trie once, whatever the number of prefixes it holds.
+ */
+class PrefixTrie {
+	private final Node root = new Node();
+	private boolean empty = true;
+
+	void add(String prefix) {
+		Node node = root;
+		for (int i = 0; i < prefix.length(); i++) {
+			node = node.childFor(prefix.charAt(i));
+		}
+		node.terminal = true;
+		empty = false;
+	}
+
+	boolean isEmpty() {
+		return empty;
+	}
+
+	/**
+	 * @return <code>true</code> if one of the prefixes in this trie is a
+	 *         prefix of the given name
+	 */
+	boolean matchesPrefixOf(String name) {
+		Node node = root;
+		if (node.terminal) {
+			return true;
+		}
+		for (int i = 0; i < name.length(); i++) {
+			node = node.children.get(name.charAt(i));
+			if (node == null) {
+				return false;
+			}
+			if (node.terminal) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static class Node {
+		private final Map<Character, Node> children = newHashMap();
+		private boolean terminal;
+
+		Node childFor(char c) {
+			Node child = children.get(c);
+			if (child == null) {
+				child = new Node();
+				children.put(c, child);
+			}
+			return child;
+		}
+	}
+}
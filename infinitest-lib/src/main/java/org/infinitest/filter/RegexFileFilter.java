@@ -34,16 +34,22 @@ import static org.infinitest.util.InfinitestUtils.*;
 
 import java.io.*;
 import java.util.*;
-import java.util.regex.*;
 
 import org.infinitest.parser.*;
 
 import com.google.common.base.*;
 import com.google.common.io.*;
 
+/**
+ * Filters out tests whose class names match one of the regular expressions in
+ * a filter file. The file is only read again when its timestamp or size
+ * changes, and is then compiled into a {@link CompiledFilters}.
+ */
 public class RegexFileFilter implements TestFilter {
   private final File file;
-  private final List<Pattern> filters = newArrayList();
+  private volatile CompiledFilters filters = CompiledFilters.NONE;
+  private long lastModified = -1;
+  private long lastLength = -1;
 
   public RegexFileFilter(File file) {
     this.file = file;
@@ -54,34 +60,39 @@ public class RegexFileFilter implements TestFilter {
   }
 
   public boolean match(JavaClass javaClass) {
-    String className = javaClass.getName();
-    for (Pattern pattern : filters) {
-      if (pattern.matcher(className).lookingAt()) {
-        return true;
-      }
-    }
-    return false;
+    return filters.matches(javaClass.getName());
   }
 
   @Override
-  public void updateFilterList() {
-    filters.clear();
+  public synchronized boolean updateFilterList() {
+    long modified = file.lastModified();
+    long length = file.length();
+    if ((modified == lastModified) && (length == lastLength)) {
+      return false;
+    }
+    lastModified = modified;
+    lastLength = length;
 
-    if (file.exists()) {
-      readFilterFile();
+    List<String> expressions = file.exists() ? readFilterFile() : Collections.<String> emptyList();
+    if (expressions.equals(filters.getExpressions())) {
+      return false;
     }
+    filters = new CompiledFilters(expressions);
+    return true;
   }
 
-  private void readFilterFile() {
+  private List<String> readFilterFile() {
+    List<String> expressions = newArrayList();
     try {
       for (String line : Files.readLines(file, Charsets.UTF_8)) {
         if (isValidFilter(line)) {
-          filters.add(Pattern.compile(line));
+          expressions.add(line);
         }
       }
     } catch (IOException e) {
       throw new RuntimeException("Something horrible happened to the filter file", e);
     }
+    return expressions;
   }
 
   private boolean isValidFilter(String line) {
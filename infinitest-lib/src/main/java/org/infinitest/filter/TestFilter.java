@@ -40,8 +40,11 @@ public interface TestFilter {
 	 * Forces an update of the filter, if controlled by an external resource.
 	 * This may be necessary if a test class has been removed or added from the
 	 * dependency graph.
+	 * 
+	 * @return <code>true</code> if the filter may now match a different set of
+	 *         classes than before the update
 	 */
-	void updateFilterList();
+	boolean updateFilterList();
 
 	/**
 	 * Check if a test class should be removed from the test run.
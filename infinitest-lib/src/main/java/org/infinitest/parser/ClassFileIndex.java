@@ -32,25 +32,32 @@ package org.infinitest.parser;
 import static com.google.common.collect.Sets.*;
 import static org.jgrapht.Graphs.*;
 
-import java.awt.Color;
-import java.awt.Dimension;
 import java.io.*;
 import java.util.*;
-
-import javax.swing.JApplet;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import org.infinitest.*;
-import org.jgraph.JGraph;
 import org.jgrapht.*;
-import org.jgrapht.ext.*;
 import org.jgrapht.graph.*;
 
 import com.google.common.annotations.*;
 import com.google.common.collect.*;
 
 public class ClassFileIndex {
+	private static final int PREFETCH_CHUNK_SIZE = 512;
+
 	private final JavaClassBuilder builder;
-	public DirectedGraph<JavaClass, DefaultEdge> graph; // TODO
+	private DirectedGraph<JavaClass, DefaultEdge> graph;
+	private Map<String, JavaClass> classesByName;
+	private volatile ClassIndexSnapshot snapshot;
+	private final Set<String> updatedClasses;
+	private final Map<String, IndexedFile> indexedFiles;
+	private final Set<String> restoredFiles;
+	private final Set<String> restoredChanges;
+	private boolean modified;
+	private boolean cleared;
+	private volatile AtomicBoolean cancelled;
 
 	public ClassFileIndex(ClasspathProvider classpath) {
 		this(new JavaClassBuilder(classpath));
@@ -61,32 +68,188 @@ public class ClassFileIndex {
 		builder = classBuilder;
 		graph = new DefaultDirectedGraph<JavaClass, DefaultEdge>(
 				DefaultEdge.class);
+		classesByName = Maps.newHashMap();
+		updatedClasses = newHashSet();
+		indexedFiles = Maps.newHashMap();
+		restoredFiles = newHashSet();
+		restoredChanges = newHashSet();
+		snapshot = ClassIndexSnapshot.EMPTY;
+		cancelled = new AtomicBoolean();
+	}
+
+	/**
+	 * Indexing stops at the next class file once the flag is set. The index
+	 * only reads the flag, whoever cancels clears it.
+	 */
+	public void setCancellationFlag(AtomicBoolean cancelled) {
+		this.cancelled = cancelled;
+	}
+
+	/**
+	 * Indexes the given class files and returns the classes they hold. Files
+	 * restored from a stored index that still have the content the index had
+	 * before, like the ones a checkout only touches, are left out.
+	 */
+	public synchronized Set<JavaClass> findClasses(Collection<File> changedFiles) {
+		Set<JavaClass> changedClasses = newHashSet();
+		for (Map.Entry<File, JavaClass> each : indexClassFiles(changedFiles, false)) {
+			changedClasses.add(each.getValue());
+		}
+		return changedClasses;
+	}
+
+	/**
+	 * Indexes the given class files as one batch. The files are read and
+	 * hashed in parallel before they are added to the graph.
+	 * 
+	 * @return the class found in each file, leaving out files that could not
+	 *         be parsed
+	 */
+	public synchronized Map<File, JavaClass> findClassesByFile(Collection<File> changedFiles) {
+		Map<File, JavaClass> changedClasses = new LinkedHashMap<File, JavaClass>();
+		for (Map.Entry<File, JavaClass> each : indexClassFiles(changedFiles, true)) {
+			changedClasses.put(each.getKey(), each.getValue());
+		}
+		return changedClasses;
 	}
 
-	public Set<JavaClass> findClasses(Collection<File> changedFiles) {
-		// First update class index
+	private List<Map.Entry<File, JavaClass>> indexClassFiles(Collection<File> changedFiles, boolean includeUnchanged) {
+		List<Map.Entry<File, JavaClass>> changedClasses = new ArrayList<Map.Entry<File, JavaClass>>();
+		List<File> parsedFiles = new ArrayList<File>();
 		List<String> changedClassesNames = new ArrayList<String>();
-		for (File changedFile : changedFiles) {
-			String changedClassname = builder.classFileChanged(changedFile);
-			if (changedClassname != null) {
-				changedClassesNames.add(changedClassname);
+		List<String> parsedHashes = new ArrayList<String>();
+		List<File> files = new ArrayList<File>(changedFiles);
+		try {
+			// First update class index. Files are read ahead a chunk at a
+			// time, so a huge update does not hold all of them in memory.
+			for (int i = 0; i < files.size(); i++) {
+				if ((i % PREFETCH_CHUNK_SIZE) == 0) {
+					builder.prefetch(files.subList(i, Math.min(i + PREFETCH_CHUNK_SIZE, files.size())));
+				}
+				if (cancelled.get()) {
+					throw new CancellationException("Indexing was cancelled by a newer update");
+				}
+				File changedFile = files.get(i);
+				String path = changedFile.getAbsolutePath();
+				String hash = builder.contentHash(changedFile);
+				JavaClass unchangedClass = findUnchangedClass(path, hash);
+				if (unchangedClass != null) {
+					builder.discard(changedFile);
+					if (restoredChanges.remove(path) || !restoredFiles.contains(path)) {
+						markAsUpdated(unchangedClass);
+						changedClasses.add(Maps.<File, JavaClass> immutableEntry(changedFile, unchangedClass));
+					} else if (includeUnchanged) {
+						changedClasses.add(Maps.<File, JavaClass> immutableEntry(changedFile, unchangedClass));
+					}
+					continue;
+				}
+				restoredFiles.remove(path);
+				restoredChanges.remove(path);
+				String changedClassname = builder.classFileChanged(changedFile);
+				if (changedClassname != null) {
+					parsedFiles.add(changedFile);
+					changedClassesNames.add(changedClassname);
+					parsedHashes.add(hash);
+				}
 			}
+		} finally {
+			builder.clear();
 		}
 
-		// Then find dependencies
-		Set<JavaClass> changedClasses = newHashSet();
-		for (String changedClassesName : changedClassesNames) {
-			JavaClass javaClass = builder.getClass(changedClassesName);
+		// Then find dependencies. Hashes are only recorded from here on, a
+		// cancelled update must not leave a hash without its class.
+		for (int i = 0; i < changedClassesNames.size(); i++) {
+			JavaClass javaClass = builder.getClass(changedClassesNames.get(i));
 			if (javaClass != null) {
 				addToIndex(javaClass);
-				changedClasses.add(javaClass);
+				if (parsedHashes.get(i) != null) {
+					indexedFiles.put(parsedFiles.get(i).getAbsolutePath(), new IndexedFile(parsedHashes.get(i), javaClass.getName()));
+				}
+				changedClasses.add(Maps.immutableEntry(parsedFiles.get(i), javaClass));
 			}
 		}
-		builder.clear();
+		publishSnapshot();
 		return changedClasses;
 	}
 
-	public JavaClass findJavaClass(String classname) {
+	/**
+	 * A file with the same content as when it was indexed does not need to be
+	 * parsed again, whether it was indexed by an update or restored.
+	 */
+	private JavaClass findUnchangedClass(String path, String hash) {
+		IndexedFile indexedFile = indexedFiles.get(path);
+		if ((hash == null) || (indexedFile == null) || !indexedFile.hash.equals(hash)) {
+			return null;
+		}
+		return findClass(indexedFile.classname);
+	}
+
+	/**
+	 * Replaces the content of the index with classes that were indexed
+	 * earlier, typically on another branch, without parsing them. Classes
+	 * whose file no longer exists are left out.
+	 * 
+	 * @param fileHashes
+	 *            the hash of the class file of each class, by absolute path.
+	 *            The classes of files that are later found with the same hash
+	 *            are not parsed again. The ones whose hash differs from the
+	 *            replaced index count as changed once, the others do not.
+	 */
+	public synchronized void restore(Collection<? extends JavaClass> classes, Map<String, String> fileHashes) {
+		Map<String, String> previousHashes = getFileHashes();
+		graph = new DefaultDirectedGraph<JavaClass, DefaultEdge>(DefaultEdge.class);
+		classesByName = Maps.newHashMap();
+		updatedClasses.clear();
+		indexedFiles.clear();
+		restoredFiles.clear();
+		restoredChanges.clear();
+		for (JavaClass each : classes) {
+			if (each.locatedInClassFile() && each.getClassFile().exists()) {
+				graph.addVertex(each);
+				markAsUpdated(each);
+				String path = each.getClassFile().getAbsolutePath();
+				String hash = fileHashes.get(path);
+				if (hash != null) {
+					indexedFiles.put(path, new IndexedFile(hash, each.getName()));
+					restoredFiles.add(path);
+					if (!hash.equals(previousHashes.get(path))) {
+						restoredChanges.add(path);
+					}
+				}
+			}
+		}
+		for (JavaClass parent : graph.vertexSet()) {
+			for (String child : parent.getImports()) {
+				JavaClass childClass = findClass(child);
+				if ((childClass != null) && !childClass.equals(parent)) {
+					graph.addEdge(parent, childClass);
+				}
+			}
+		}
+		modified = true;
+		cleared = true;
+		publishSnapshot();
+	}
+
+	/**
+	 * The hash of each class file indexed since the index was last cleared,
+	 * by absolute path.
+	 */
+	public synchronized Map<String, String> getFileHashes() {
+		Map<String, String> fileHashes = Maps.newHashMap();
+		for (Map.Entry<String, IndexedFile> each : indexedFiles.entrySet()) {
+			fileHashes.put(each.getKey(), each.getValue().hash);
+		}
+		return fileHashes;
+	}
+
+	public synchronized JavaClass findJavaClass(String classname) {
+		JavaClass clazz = findOrIndexClass(classname);
+		publishSnapshot();
+		return clazz;
+	}
+
+	private JavaClass findOrIndexClass(String classname) {
 		JavaClass clazz = findClass(classname);
 		if (clazz == null) {
 			clazz = builder.getClass(classname);
@@ -98,23 +261,55 @@ public class ClassFileIndex {
 	}
 
 	private JavaClass findClass(String classname) {
-		for (JavaClass jClass : graph.vertexSet()) {
-			if (jClass.getName().equals(classname)) {
-				return jClass;
-			}
-		}
-		return null;
+		return classesByName.get(classname);
 	}
 
 	private void addToIndex(JavaClass newClass) {
+		JavaClass indexedClass = findClass(newClass.getName());
+		if ((indexedClass != null) && hasSameDependencies(indexedClass, newClass)) {
+			// Only method bodies changed, the edges in the graph are still valid
+			if (indexedClass != newClass) {
+				replaceVertexKeepingEdges(newClass);
+			}
+			markAsUpdated(newClass);
+			return;
+		}
 		addToGraph(newClass);
 		updateParentReferences(newClass);
 	}
 
+	/**
+	 * Compares what a class exposes to the graph: the classes it references
+	 * (including its annotations) and whether it is a test.
+	 */
+	@VisibleForTesting
+	static boolean hasSameDependencies(JavaClass indexedClass, JavaClass newClass) {
+		if (indexedClass == newClass) {
+			return true;
+		}
+		if ((indexedClass instanceof JavaAssistClass) && (newClass instanceof JavaAssistClass)) {
+			int[] indexedImports = ((JavaAssistClass) indexedClass).getImportIds();
+			int[] newImports = ((JavaAssistClass) newClass).getImportIds();
+			if (!Arrays.equals(indexedImports, newImports)) {
+				return false;
+			}
+		} else if (!newHashSet(indexedClass.getImports()).equals(newHashSet(newClass.getImports()))) {
+			return false;
+		}
+		return indexedClass.isATest() == newClass.isATest();
+	}
+
 	private void addToGraph(JavaClass newClass) {
 		if (!graph.addVertex(newClass)) {
 			replaceVertex(newClass);
 		}
+		markAsUpdated(newClass);
+	}
+
+	private void markAsUpdated(JavaClass newClass) {
+		classesByName.put(newClass.getName(), newClass);
+		updatedClasses.add(newClass.getName());
+		modified = true;
 	}
 
 	private List<JavaClass> getParents(JavaClass childClass) {
@@ -129,25 +324,70 @@ public class ClassFileIndex {
 		for (JavaClass each : incomingEdges) {
 			graph.addEdge(each, newClass);
 		}
-		export();
+	}
+
+	// The graph holds vertices by name, so the new instance has to take the
+	// place of the old one explicitly
+	private void replaceVertexKeepingEdges(JavaClass newClass) {
+		if (!graph.containsVertex(newClass)) {
+			graph.addVertex(newClass);
+			return;
+		}
+		List<JavaClass> parents = getParents(newClass);
+		List<JavaClass> children = successorListOf(graph, newClass);
+		graph.removeVertex(newClass);
+		graph.addVertex(newClass);
+		for (JavaClass each : parents) {
+			graph.addEdge(each, newClass);
+		}
+		for (JavaClass each : children) {
+			graph.addEdge(newClass, each);
+		}
 	}
 
 	private void updateParentReferences(JavaClass parentClass) {
 		for (String child : parentClass.getImports()) {
-			JavaClass childClass = findJavaClass(child);
+			JavaClass childClass = findOrIndexClass(child);
 			if ((childClass != null) && !childClass.equals(parentClass)) {
 				if (graph.containsVertex(childClass)) {
 					graph.addEdge(parentClass, childClass);
-					export();
 				}
 			}
 		}
 	}
 
+	/**
+	 * Makes the current state of the index visible to readers. Updates are
+	 * applied to the working graph and only published once they are complete,
+	 * so a reader either sees the index as it was before an update or as it is
+	 * after it. Only a cleared index is copied as a whole, otherwise the new
+	 * snapshot shares what did not change with the previous one.
+	 */
+	private void publishSnapshot() {
+		if (modified) {
+			if (cleared) {
+				snapshot = new ClassIndexSnapshot(snapshot.getVersion() + 1, classesByName, updatedClasses, false);
+			} else {
+				snapshot = snapshot.update(classesByName, updatedClasses);
+			}
+			updatedClasses.clear();
+			modified = false;
+			cleared = false;
+		}
+	}
+
+	/**
+	 * The last complete state of the index. This never blocks, even while an
+	 * update is in progress.
+	 */
+	public ClassIndexSnapshot getSnapshot() {
+		return snapshot;
+	}
+
 	// Loop through all changed classes, adding their parents (and their
 	// parents)
 	// to another set of changed classes
-	public Set<JavaClass> findChangedParents(Set<JavaClass> classes) {
+	public synchronized Set<JavaClass> findChangedParents(Set<JavaClass> classes) {
 		Set<JavaClass> changedParents = Sets.newHashSet(classes);
 		for (JavaClass jclass : classes) {
 			findParents(jclass, changedParents);
@@ -155,6 +395,47 @@ public class ClassFileIndex {
 		return changedParents;
 	}
 
+	/**
+	 * @return the class and every indexed class it depends on, directly or
+	 *         through other classes
+	 */
+	public synchronized Set<JavaClass> findDependencies(JavaClass jclass) {
+		Set<JavaClass> dependencies = newHashSet();
+		if (!graph.containsVertex(jclass)) {
+			dependencies.add(jclass);
+			return dependencies;
+		}
+		Deque<JavaClass> toVisit = new ArrayDeque<JavaClass>();
+		toVisit.push(jclass);
+		while (!toVisit.isEmpty()) {
+			JavaClass current = toVisit.pop();
+			if (dependencies.add(current)) {
+				toVisit.addAll(successorListOf(graph, current));
+			}
+		}
+		return dependencies;
+	}
+
+	/**
+	 * For every class reachable from the given classes, which of them depend
+	 * on it, directly or through other classes. A class depends on itself.
+	 * The graph is walked once from each given class.
+	 */
+	public synchronized Map<String, Set<String>> findDependents(Collection<JavaClass> classes) {
+		Map<String, Set<String>> dependents = Maps.newHashMap();
+		for (JavaClass each : classes) {
+			for (JavaClass dependency : findDependencies(each)) {
+				Set<String> dependentsOfClass = dependents.get(dependency.getName());
+				if (dependentsOfClass == null) {
+					dependentsOfClass = newHashSet();
+					dependents.put(dependency.getName(), dependentsOfClass);
+				}
+				dependentsOfClass.add(each.getName());
+			}
+		}
+		return dependents;
+	}
+
 	private void findParents(JavaClass jclass, Set<JavaClass> changedParents) {
 		for (JavaClass parent : getParents(jclass)) {
 			if (changedParents.add(parent)) {
@@ -163,35 +444,34 @@ public class ClassFileIndex {
 		}
 	}
 
-	public void export() {
-
-		/*DOTExporter exporter = new DOTExporter();
-		String targetDirectory = "graph/";
-		new File(targetDirectory).mkdirs();
-		try {
-			exporter.export(new FileWriter(targetDirectory
-					+ "initial-graph"+System.currentTimeMillis()+".dot"), graph);
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}*/
-	}
-
-	public void clear() {
+	public synchronized void clear() {
 		graph = new DefaultDirectedGraph<JavaClass, DefaultEdge>(
 				DefaultEdge.class);
+		classesByName = Maps.newHashMap();
+		updatedClasses.clear();
+		indexedFiles.clear();
+		restoredFiles.clear();
+		restoredChanges.clear();
+		modified = true;
+		cleared = true;
+		publishSnapshot();
 	}
 
 	public boolean isIndexed(Class<Object> clazz) {
-		return getIndexedClasses().contains(clazz.getName());
+		return getSnapshot().isIndexed(clazz.getName());
 	}
 
 	public Set<String> getIndexedClasses() {
-		Set<String> classes = newHashSet();
-		Set<JavaClass> vertexSet = graph.vertexSet();
-		for (JavaClass each : vertexSet) {
-			classes.add(each.getName());
+		return getSnapshot().getIndexedClasses();
+	}
+
+	private static class IndexedFile {
+		private final String hash;
+		private final String classname;
+
+		IndexedFile(String hash, String classname) {
+			this.hash = hash;
+			this.classname = classname;
 		}
-		return classes;
 	}
 }
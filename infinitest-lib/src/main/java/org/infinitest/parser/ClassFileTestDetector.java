@@ -29,16 +29,20 @@
  */
 package org.infinitest.parser;
 
+import static com.google.common.collect.Lists.*;
 import static com.google.common.collect.Sets.*;
 import static org.infinitest.util.InfinitestUtils.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.atomic.*;
 import java.util.logging.*;
 
 import org.infinitest.*;
 import org.infinitest.filter.*;
 
+import com.google.common.collect.*;
+
 /**
  * @author <a href="mailto:benrady@gmail.com"Ben Rady</a>
  */
@@ -46,14 +50,34 @@ public class ClassFileTestDetector implements TestDetector {
 	private final TestFilter filters;
 	public ClassFileIndex index;//TODO
 	private ClasspathProvider classpath;
+	private final Set<String> currentTests;
+	private volatile Set<String> publishedTests;
+	private Set<String> disabledTests;
+	private long evaluatedVersion;
+	private final TestInputFingerprints fingerprints;
+	private AtomicBoolean cancelled;
 
 	public ClassFileTestDetector(TestFilter testFilterList) {
 		filters = testFilterList;
+		fingerprints = new TestInputFingerprints();
+		currentTests = newHashSet();
+		publishedTests = ImmutableSet.of();
+		disabledTests = ImmutableSet.of();
+		evaluatedVersion = -1;
+		cancelled = new AtomicBoolean();
 	}
 
 	@Override
-	public void clear() {
+	public synchronized void clear() {
 		index.clear();
+		resetCurrentTests();
+	}
+
+	private void resetCurrentTests() {
+		currentTests.clear();
+		publishedTests = ImmutableSet.of();
+		disabledTests = ImmutableSet.of();
+		evaluatedVersion = -1;
 	}
 
 	/**
@@ -62,7 +86,7 @@ public class ClassFileTestDetector implements TestDetector {
 	 */
 	@Override
 	public synchronized Set<JavaClass> findTestsToRun(Collection<File> changedFiles) {
-		filters.updateFilterList();
+		boolean filtersChanged = filters.updateFilterList();
 
 		// Find changed classes
 		Set<JavaClass> changedClasses = index.findClasses(changedFiles);
@@ -73,7 +97,85 @@ public class ClassFileTestDetector implements TestDetector {
 
 		// run through total set, and pick out tests to run
 		log(Level.FINE, "Total changeset: " + changedParents);
-		return filterTests(changedClasses);
+		Set<JavaClass> testsToRun = filterTests(changedClasses);
+		updateCurrentTests(filtersChanged);
+		return testsToRun;
+	}
+
+	/**
+	 * The tests affected by a change to each of the given class files. All
+	 * files are indexed in one batch, then the finished graph is walked once
+	 * from each test, instead of once per file.
+	 * 
+	 * @return the names of the affected tests for each file, in the order of
+	 *         the files. Files that could not be parsed affect no test.
+	 */
+	public synchronized Map<File, Set<String>> findTestsAffectedByEachFile(Collection<File> classFiles) {
+		boolean filtersChanged = filters.updateFilterList();
+		Map<File, JavaClass> classesByFile = index.findClassesByFile(classFiles);
+		updateCurrentTests(filtersChanged);
+
+		ClassIndexSnapshot snapshot = index.getSnapshot();
+		List<JavaClass> tests = newArrayList();
+		for (String each : currentTests) {
+			tests.add(snapshot.findClass(each));
+		}
+		Map<String, Set<String>> dependents = index.findDependents(tests);
+
+		Map<File, Set<String>> affectedTests = new LinkedHashMap<File, Set<String>>();
+		for (File each : classFiles) {
+			JavaClass javaClass = classesByFile.get(each);
+			Set<String> testsOfClass = (javaClass == null) ? null : dependents.get(javaClass.getName());
+			affectedTests.put(each, (testsOfClass == null) ? ImmutableSet.<String> of() : testsOfClass);
+		}
+		return affectedTests;
+	}
+
+	/**
+	 * Brings the set of current tests up to date with the index. When the
+	 * index changed incrementally since the last evaluation and the filters are
+	 * unchanged, only the classes updated in between are re-evaluated.
+	 */
+	private void updateCurrentTests(boolean filtersChanged) {
+		ClassIndexSnapshot snapshot = index.getSnapshot();
+		Set<String> previousTests = ImmutableSet.of();
+		Collection<String> classesToEvaluate = snapshot.getUpdatedClasses();
+		if (filtersChanged || !canUpdateIncrementally(snapshot)) {
+			previousTests = ImmutableSet.copyOf(currentTests);
+			currentTests.clear();
+			classesToEvaluate = snapshot.getIndexedClasses();
+		} else if (snapshot.getVersion() == evaluatedVersion) {
+			classesToEvaluate = ImmutableSet.of();
+		}
+
+		boolean testsChanged = !previousTests.isEmpty();
+		Set<String> removedTests = newHashSet();
+		for (String each : classesToEvaluate) {
+			JavaClass javaClass = snapshot.findClass(each);
+			if ((javaClass != null) && isATest(javaClass)) {
+				testsChanged |= currentTests.add(each);
+			} else if (currentTests.remove(each)) {
+				removedTests.add(each);
+			}
+		}
+		for (String each : previousTests) {
+			if (!currentTests.contains(each)) {
+				removedTests.add(each);
+			}
+		}
+
+		if (testsChanged || !removedTests.isEmpty()) {
+			publishedTests = ImmutableSet.copyOf(currentTests);
+		}
+		disabledTests = ImmutableSet.copyOf(removedTests);
+		evaluatedVersion = snapshot.getVersion();
+	}
+
+	private boolean canUpdateIncrementally(ClassIndexSnapshot snapshot) {
+		if (snapshot.getVersion() == evaluatedVersion) {
+			return true;
+		}
+		return snapshot.isIncremental() && (snapshot.getVersion() == (evaluatedVersion + 1));
 	}
 
 	private Set<JavaClass> filterTests(Set<JavaClass> changedClasses) {
@@ -116,24 +218,95 @@ public class ClassFileTestDetector implements TestDetector {
 		return index.getIndexedClasses();
 	}
 
+	/**
+	 * The classes of the index as of its last complete update.
+	 */
+	public ClassIndexSnapshot getIndexSnapshot() {
+		return index.getSnapshot();
+	}
+
 	public JavaClass findJavaClass(String name) {
 		return index.findJavaClass(name);
 	}
 
 	@Override
-	public void setClasspathProvider(ClasspathProvider classpath) {
+	public synchronized Collection<File> switchCommit(IndexSnapshotStore store, String previousCommit, String commit) {
+		Map<String, String> previousHashes = index.getFileHashes();
+		if (previousCommit != null) {
+			store.save(previousCommit, index.getSnapshot().getClasses(), previousHashes);
+		}
+		IndexSnapshotStore.StoredIndex storedIndex = store.load(commit);
+		if (storedIndex == null) {
+			return ImmutableSet.of();
+		}
+		index.restore(storedIndex.getClasses(), storedIndex.getFileHashes());
+		log(Level.CONFIG, "Restored the index of " + commit + " with " + index.getIndexedClasses().size() + " classes");
+
+		// The class files that differ from the index the detector had, or
+		// that the restored index does not know, are seen as changed. Classes
+		// indexed as a dependency have no hash in either index, a change to
+		// their file is left to the change detector.
+		Map<String, String> restoredHashes = index.getFileHashes();
+		Set<File> filesToAnalyze = newLinkedHashSet();
+		for (JavaClass each : index.getSnapshot().getClasses()) {
+			String path = each.getClassFile().getAbsolutePath();
+			String restoredHash = restoredHashes.get(path);
+			String previousHash = previousHashes.get(path);
+			if ((restoredHash == null) ? (previousHash != null) : !restoredHash.equals(previousHash)) {
+				filesToAnalyze.add(each.getClassFile());
+			}
+		}
+		for (String each : previousHashes.keySet()) {
+			File classFile = new File(each);
+			if (!restoredHashes.containsKey(each) && classFile.exists()) {
+				filesToAnalyze.add(classFile);
+			}
+		}
+		return filesToAnalyze;
+	}
+
+	@Override
+	public synchronized void setClasspathProvider(ClasspathProvider classpath) {
 		this.classpath = classpath;
 		index = new ClassFileIndex(classpath);
+		index.setCancellationFlag(cancelled);
+		resetCurrentTests();
 	}
 
+	@Override
+	public synchronized void setCancellationFlag(AtomicBoolean cancelled) {
+		this.cancelled = cancelled;
+		if (index != null) {
+			index.setCancellationFlag(cancelled);
+		}
+	}
+
+	/**
+	 * The tests found by the last call to {@link #findTestsToRun(Collection)}.
+	 * This is maintained incrementally and never waits for an update in
+	 * progress.
+	 */
 	@Override
 	public Set<String> getCurrentTests() {
-		Set<String> tests = newHashSet();
-		for (String each : getIndexedClasses()) {
-			if (isATest(index.findJavaClass(each))) {
-				tests.add(each);
-			}
+		return publishedTests;
+	}
+
+	@Override
+	public synchronized Set<String> getDisabledTests() {
+		return disabledTests;
+	}
+
+	@Override
+	public String getInputFingerprint(JavaClass test) {
+		ClassFileIndex currentIndex;
+		ClasspathProvider currentClasspath;
+		synchronized (this) {
+			currentIndex = index;
+			currentClasspath = classpath;
+		}
+		if (currentIndex == null) {
+			return null;
 		}
-		return tests;
+		return fingerprints.fingerprintOf(test, currentIndex.findDependencies(test), currentClasspath);
 	}
 }
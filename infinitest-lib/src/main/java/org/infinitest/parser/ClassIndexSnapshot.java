@@ -0,0 +1,207 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import java.util.*;
+
+import com.google.common.collect.*;
+
+/**
+ * An immutable, point-in-time view of the classes held by a
+ * {@link ClassFileIndex}. A new snapshot is published at the end of every
+ * index update, so readers never block on an update in progress and never see
+ * a partially updated index.
+ * <p>
+ * The classes are spread over shards by name, and a snapshot shares the
+ * shards of the previous version that hold none of its updated classes. An
+ * update of a few classes copies a few small shards, not the whole index.
+ */
+public final class ClassIndexSnapshot {
+	static final ClassIndexSnapshot EMPTY = new ClassIndexSnapshot(0, ImmutableMap.<String, JavaClass> of(), ImmutableSet.<String> of(), false);
+	private static final int SHARDS = 256;
+
+	private final long version;
+	private final ImmutableMap<String, JavaClass>[] shards;
+	private final int size;
+	private final ImmutableSet<String> updatedClasses;
+	private final boolean incremental;
+	private final Set<String> indexedClasses;
+	private final Collection<JavaClass> classes;
+
+	ClassIndexSnapshot(long version, Map<String, JavaClass> classesByName, Set<String> updatedClasses, boolean incremental) {
+		this(version, shard(classesByName), updatedClasses, incremental);
+	}
+
+	private ClassIndexSnapshot(long version, ImmutableMap<String, JavaClass>[] shards, Set<String> updatedClasses, boolean incremental) {
+		this.version = version;
+		this.shards = shards;
+		this.updatedClasses = ImmutableSet.copyOf(updatedClasses);
+		this.incremental = incremental;
+		int classCount = 0;
+		for (ImmutableMap<String, JavaClass> each : shards) {
+			classCount += each.size();
+		}
+		size = classCount;
+		indexedClasses = new IndexedClasses();
+		classes = new Classes();
+	}
+
+	/**
+	 * The next, incremental, version of this snapshot.
+	 * 
+	 * @param classesByName
+	 *            all the classes of the index, of which only the updated ones
+	 *            are read. An updated class that is no longer in it was
+	 *            removed.
+	 */
+	ClassIndexSnapshot update(Map<String, JavaClass> classesByName, Set<String> updatedClasses) {
+		ListMultimap<Integer, String> updatedClassesByShard = ArrayListMultimap.create();
+		for (String each : updatedClasses) {
+			updatedClassesByShard.put(shardOf(each), each);
+		}
+		ImmutableMap<String, JavaClass>[] updatedShards = shards.clone();
+		for (Integer shard : updatedClassesByShard.keySet()) {
+			Map<String, JavaClass> updatedShard = Maps.newHashMap(shards[shard]);
+			for (String each : updatedClassesByShard.get(shard)) {
+				JavaClass updatedClass = classesByName.get(each);
+				if (updatedClass == null) {
+					updatedShard.remove(each);
+				} else {
+					updatedShard.put(each, updatedClass);
+				}
+			}
+			updatedShards[shard] = ImmutableMap.copyOf(updatedShard);
+		}
+		return new ClassIndexSnapshot(version + 1, updatedShards, updatedClasses, true);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ImmutableMap<String, JavaClass>[] shard(Map<String, JavaClass> classesByName) {
+		List<ImmutableMap.Builder<String, JavaClass>> builders = Lists.newArrayList();
+		for (int i = 0; i < SHARDS; i++) {
+			builders.add(ImmutableMap.<String, JavaClass> builder());
+		}
+		for (Map.Entry<String, JavaClass> each : classesByName.entrySet()) {
+			builders.get(shardOf(each.getKey())).put(each);
+		}
+		ImmutableMap<String, JavaClass>[] shards = new ImmutableMap[SHARDS];
+		for (int i = 0; i < SHARDS; i++) {
+			shards[i] = builders.get(i).build();
+		}
+		return shards;
+	}
+
+	private static int shardOf(String classname) {
+		int hash = classname.hashCode();
+		return (hash ^ (hash >>> 16)) & (SHARDS - 1);
+	}
+
+	/**
+	 * Incremented each time the index publishes a new snapshot.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return <code>true</code> if this snapshot only differs from the
+	 *         previous version by the classes in {@link #getUpdatedClasses()}.
+	 *         Snapshots published after the index was cleared are not
+	 *         incremental.
+	 */
+	public boolean isIncremental() {
+		return incremental;
+	}
+
+	/**
+	 * The names of the classes that were added or replaced since the previous
+	 * version.
+	 */
+	public Set<String> getUpdatedClasses() {
+		return updatedClasses;
+	}
+
+	public Set<String> getIndexedClasses() {
+		return indexedClasses;
+	}
+
+	public Collection<JavaClass> getClasses() {
+		return classes;
+	}
+
+	/**
+	 * @return the indexed class with the given name, or <code>null</code> if
+	 *         it was not indexed when this snapshot was taken
+	 */
+	public JavaClass findClass(String classname) {
+		return shards[shardOf(classname)].get(classname);
+	}
+
+	public boolean isIndexed(String classname) {
+		return shards[shardOf(classname)].containsKey(classname);
+	}
+
+	private class IndexedClasses extends AbstractSet<String> {
+		@Override
+		public Iterator<String> iterator() {
+			List<Set<String>> names = Lists.newArrayList();
+			for (ImmutableMap<String, JavaClass> each : shards) {
+				names.add(each.keySet());
+			}
+			return Iterables.concat(names).iterator();
+		}
+
+		@Override
+		public boolean contains(Object classname) {
+			return (classname instanceof String) && isIndexed((String) classname);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
+	private class Classes extends AbstractCollection<JavaClass> {
+		@Override
+		public Iterator<JavaClass> iterator() {
+			List<Collection<JavaClass>> values = Lists.newArrayList();
+			for (ImmutableMap<String, JavaClass> each : shards) {
+				values.add(each.values());
+			}
+			return Iterables.concat(values).iterator();
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Lists.*;
+import static com.google.common.collect.Maps.*;
+import static java.util.logging.Level.*;
+import static org.infinitest.util.InfinitestUtils.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import org.infinitest.util.*;
+
+import com.google.common.base.*;
+
+/**
+ * Keeps the content of a {@link ClassFileIndex} for each git commit it was
+ * built on, so switching back to a branch restores its dependency graph
+ * instead of parsing every class file again. Only the most recently used
+ * snapshots are kept.
+ */
+public class IndexSnapshotStore {
+	private static final String HEADER = "infinitest-index 1";
+	private static final String EXTENSION = ".index";
+	private static final String NO_HASH = "-";
+	private static final int MAXIMUM_SNAPSHOTS = 16;
+	private static final Splitter FIELDS = Splitter.on('\t');
+	private static final Splitter IMPORTS = Splitter.on(',').omitEmptyStrings();
+	private static final Joiner IMPORT_JOINER = Joiner.on(',');
+
+	private final File directory;
+
+	public IndexSnapshotStore(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Stores the given classes as the index of the given commit, replacing any
+	 * earlier snapshot of it.
+	 * 
+	 * @param fileHashes
+	 *            the hash of the class file of each class, by absolute path
+	 */
+	public void save(String commit, Collection<JavaClass> classes, Map<String, String> fileHashes) {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			log(WARNING, "Could not create " + directory + ", the index of " + commit + " is not saved");
+			return;
+		}
+		File snapshotFile = snapshotFile(commit);
+		File temporaryFile = new File(directory, commit + ".tmp");
+		try {
+			Writer writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(temporaryFile)), Charsets.UTF_8));
+			try {
+				writer.write(HEADER);
+				writer.write('\n');
+				for (JavaClass each : classes) {
+					if (each.locatedInClassFile()) {
+						writeClass(writer, each, fileHashes);
+					}
+				}
+			} finally {
+				writer.close();
+			}
+			if (snapshotFile.exists() && !snapshotFile.delete()) {
+				throw new IOException("Could not replace " + snapshotFile);
+			}
+			if (!temporaryFile.renameTo(snapshotFile)) {
+				throw new IOException("Could not rename " + temporaryFile + " to " + snapshotFile);
+			}
+		} catch (IOException e) {
+			log(WARNING, "Could not save the index of " + commit + ": " + e.getMessage());
+			temporaryFile.delete();
+			return;
+		}
+		removeLeastRecentlyUsed();
+	}
+
+	private void writeClass(Writer writer, JavaClass javaClass, Map<String, String> fileHashes) throws IOException {
+		String path = javaClass.getClassFile().getAbsolutePath();
+		String hash = fileHashes.get(path);
+		writer.write(javaClass.getName());
+		writer.write('\t');
+		writer.write(javaClass.isATest() ? "T" : "F");
+		writer.write('\t');
+		writer.write(path);
+		writer.write('\t');
+		writer.write((hash == null) ? NO_HASH : hash);
+		writer.write('\t');
+		writer.write(IMPORT_JOINER.join(javaClass.getImports()));
+		writer.write('\n');
+	}
+
+	/**
+	 * @return the index saved for the given commit, or null if there is none
+	 *         or it cannot be read
+	 */
+	public StoredIndex load(String commit) {
+		File snapshotFile = snapshotFile(commit);
+		if (!snapshotFile.isFile()) {
+			return null;
+		}
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(snapshotFile)), Charsets.UTF_8));
+			try {
+				if (!HEADER.equals(reader.readLine())) {
+					return null;
+				}
+				StoredIndex index = new StoredIndex();
+				String line;
+				while ((line = reader.readLine()) != null) {
+					readClass(index, line);
+				}
+				snapshotFile.setLastModified(System.currentTimeMillis());
+				return index;
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			log(WARNING, "Could not read the index of " + commit + ": " + e.getMessage());
+			return null;
+		} catch (RuntimeException e) {
+			log(WARNING, "Could not read the index of " + commit + ": " + e);
+			return null;
+		}
+	}
+
+	private void readClass(StoredIndex index, String line) {
+		List<String> fields = newArrayList(FIELDS.split(line));
+		List<String> imports = newArrayList();
+		for (String each : IMPORTS.split(fields.get(4))) {
+			imports.add(ClassNameTable.canonical(each));
+		}
+		String path = fields.get(2);
+		String hash = fields.get(3);
+		index.classes.add(new StoredJavaClass(ClassNameTable.canonical(fields.get(0)), imports.toArray(new String[imports.size()]), "T".equals(fields.get(1)), new File(path)));
+		if (!NO_HASH.equals(hash)) {
+			index.fileHashes.put(path, hash);
+		}
+	}
+
+	private void removeLeastRecentlyUsed() {
+		File[] snapshots = directory.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(EXTENSION);
+			}
+		});
+		if ((snapshots == null) || (snapshots.length <= MAXIMUM_SNAPSHOTS)) {
+			return;
+		}
+		Arrays.sort(snapshots, new Comparator<File>() {
+			@Override
+			public int compare(File first, File second) {
+				return Long.valueOf(second.lastModified()).compareTo(first.lastModified());
+			}
+		});
+		for (int i = MAXIMUM_SNAPSHOTS; i < snapshots.length; i++) {
+			snapshots[i].delete();
+		}
+	}
+
+	private File snapshotFile(String commit) {
+		return new File(directory, commit + EXTENSION);
+	}
+
+	/**
+	 * The classes and class file hashes of an index, as they were saved.
+	 */
+	public static class StoredIndex {
+		private final List<JavaClass> classes = newArrayList();
+		private final Map<String, String> fileHashes = newHashMap();
+
+		public List<JavaClass> getClasses() {
+			return classes;
+		}
+
+		public Map<String, String> getFileHashes() {
+			return fileHashes;
+		}
+	}
+}
@@ -41,6 +41,7 @@ import javassist.bytecode.*;
 import javassist.bytecode.annotation.*;
 import junit.framework.*;
 
+import org.infinitest.util.*;
 import org.junit.Test;
 import org.junit.runner.*;
 
@@ -52,7 +53,7 @@ import com.google.common.collect.*;
  * so we should keep its footprint minimal.
  */
 public class JavaAssistClass extends AbstractJavaClass {
-	private final String[] imports;
+	private final int[] imports;
 	private final boolean isATest;
 	private final String className;
 	private File classFile;
@@ -60,16 +61,22 @@ public class JavaAssistClass extends AbstractJavaClass {
 	public JavaAssistClass(CtClass classReference) {
 		imports = findImports(classReference);
 		isATest = !isAbstract(classReference) && hasTests(classReference) && canInstantiate(classReference);
-		className = classReference.getName();
-		
+		className = ClassNameTable.canonical(classReference.getName());
 	}
 
 	@Override
 	public String[] getImports() {
+		return ClassNameTable.namesFor(imports);
+	}
+
+	/**
+	 * @return the imports as sorted ids in the {@link ClassNameTable}
+	 */
+	public int[] getImportIds() {
 		return imports;
 	}
 
-	private String[] findImports(CtClass ctClass) {
+	private int[] findImports(CtClass ctClass) {
 		Set<String> imports = Sets.newHashSet();
 		addDependenciesFromConstantPool(ctClass, imports);
 		addFieldDependencies(ctClass, imports);
@@ -77,13 +84,9 @@ public class JavaAssistClass extends AbstractJavaClass {
 		addFieldAnnotationDependencies(ctClass, imports);
 		addMethodAnnotationDependencies(ctClass, imports);
 
-		String[] array = new String[imports.size()];
-
-		int index = 0;
-		for (String anImport : imports) {
-			array[index++] = anImport.intern(); // Use less memory
-		}
-		return array;
+		int[] ids = ClassNameTable.idsFor(imports); // Use less memory
+		Arrays.sort(ids);
+		return ids;
 	}
 
 	private void addFieldAnnotationDependencies(CtClass ctClass, Collection<String> imports) {
@@ -36,17 +36,22 @@ import static java.io.File.*;
 import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import javassist.*;
 
 import org.infinitest.*;
+import org.infinitest.util.*;
 
 import com.google.common.collect.*;
 import com.google.common.hash.Hashing;
 import com.google.common.io.*;
 
 public class JavaAssistClassParser {
+	private static final int PREFETCH_THRESHOLD = 64;
+
 	private final String classpath;
+	private final Map<File, ClassFileContent> prefetched = new ConcurrentHashMap<File, ClassFileContent>();
 	private ClassPool classPool;
 
 	public JavaAssistClassParser(String classpath) {
@@ -55,6 +60,7 @@ public class JavaAssistClassParser {
 
 	public void clear() {
 		// classPool = null;
+		prefetched.clear();
 	}
 
 	private ClassPool getClassPool() {
@@ -120,37 +126,105 @@ public class JavaAssistClassParser {
 
 	public static class CacheEntry {
 		final String sha1;
-		final String classname;
+		final int classId;
 
 		public CacheEntry(String sha1, String classname) {
 			this.sha1 = sha1;
-			this.classname = classname;
+			this.classId = ClassNameTable.idFor(classname);
+		}
+
+		String getClassname() {
+			return ClassNameTable.nameFor(classId);
+		}
+	}
+
+	/**
+	 * Reads and hashes class files on as many threads as there are
+	 * processors, so {@link #classFileChanged(File)} only has to parse them.
+	 * Small batches are left to be read one by one. Files that cannot be read
+	 * are reported by {@link #classFileChanged(File)}. The content is held
+	 * until it is parsed, discarded or the parser is cleared, so callers
+	 * prefetch a bounded number of files at a time.
+	 */
+	public void prefetch(Collection<File> files) {
+		if (files.size() < PREFETCH_THRESHOLD) {
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		try {
+			for (final File file : files) {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							prefetched.put(file, ClassFileContent.read(file));
+						} catch (IOException e) {
+							// Reported when the file is parsed
+						}
+					}
+				});
+			}
+		} finally {
+			executor.shutdown();
+		}
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * The SHA-1 of the given class file, as used to tell whether it changed.
+	 * The content is kept for {@link #classFileChanged(File)} until the parser
+	 * is cleared.
+	 */
+	public String contentHash(File file) throws IOException {
+		ClassFileContent content = prefetched.get(file);
+		if (content == null) {
+			content = ClassFileContent.read(file);
+			prefetched.put(file, content);
 		}
+		return content.sha1;
+	}
+
+	/**
+	 * Drops the content read for a file that does not need to be parsed.
+	 */
+	public void discard(File file) {
+		prefetched.remove(file);
 	}
 
 	public String classFileChanged(File file) throws IOException {
-		String sha1 = Files.hash(file, Hashing.sha1()).toString();
+		ClassFileContent content = prefetched.remove(file);
+		if (content == null) {
+			content = ClassFileContent.read(file);
+		}
 		CacheEntry entry = BY_PATH.get(file.getAbsolutePath());
-		if ((entry != null) && (entry.sha1.equals(sha1))) {
-			return entry.classname;
+		if ((entry != null) && (entry.sha1.equals(content.sha1))) {
+			return entry.getClassname();
 		}
 
-		FileInputStream inputStream = null;
-		try {
-			inputStream = new FileInputStream(file);
+		CtClass ctClass = getClassPool().makeClass(new ByteArrayInputStream(content.bytes));
+		String classname = ClassNameTable.canonical(ctClass.getName());
 
-			CtClass ctClass = getClassPool().
-					makeClass(inputStream);
-			String classname = ctClass.getName();
+		CLASSES_BY_NAME.remove(classname);
+		BY_PATH.put(file.getAbsolutePath(), new CacheEntry(content.sha1, classname));
 
-			CLASSES_BY_NAME.remove(classname);
-			BY_PATH.put(file.getAbsolutePath(), new CacheEntry(sha1, classname));
+		return classname;
+	}
 
-			return classname;
-		} finally {
-			if (inputStream != null) {
-				inputStream.close();
-			}
+	private static class ClassFileContent {
+		final byte[] bytes;
+		final String sha1;
+
+		private ClassFileContent(byte[] bytes) {
+			this.bytes = bytes;
+			sha1 = Hashing.sha1().hashBytes(bytes).toString();
+		}
+
+		static ClassFileContent read(File file) throws IOException {
+			return new ClassFileContent(Files.toByteArray(file));
 		}
 	}
 
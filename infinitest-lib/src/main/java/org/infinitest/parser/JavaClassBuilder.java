@@ -28,6 +28,7 @@
 package org.infinitest.parser;
 
 import java.io.*;
+import java.util.*;
 
 import javassist.*;
 
@@ -63,6 +64,30 @@ class JavaClassBuilder {
 		}
 	}
 
+	/**
+	 * Reads the given class files ahead of {@link #classFileChanged(File)},
+	 * on several threads.
+	 */
+	public void prefetch(Collection<File> files) {
+		parser.prefetch(files);
+	}
+
+	/**
+	 * @return the hash of the content of the given class file, or null if it
+	 *         cannot be read
+	 */
+	public String contentHash(File file) {
+		try {
+			return parser.contentHash(file);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	public void discard(File file) {
+		parser.discard(file);
+	}
+
 	public String classFileChanged(File file) {
 		try {
 			return parser.classFileChanged(file);
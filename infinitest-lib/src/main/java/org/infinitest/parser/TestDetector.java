@@ -31,6 +31,7 @@ package org.infinitest.parser;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.atomic.*;
 
 import org.infinitest.*;
 
@@ -41,7 +42,41 @@ public interface TestDetector {
 
 	Set<JavaClass> findTestsToRun(Collection<File> changedFiles);
 
+	/**
+	 * Once the flag is set, {@link #findTestsToRun(Collection)} stops at the
+	 * next class file with a {@link java.util.concurrent.CancellationException}.
+	 * Whoever owns the flag clears it.
+	 */
+	void setCancellationFlag(AtomicBoolean cancelled);
+
 	void setClasspathProvider(ClasspathProvider classpath);
 
 	Set<String> getCurrentTests();
+
+	/**
+	 * The tests that were current before the last call to
+	 * {@link #findTestsToRun(Collection)} and no longer are, either because
+	 * they stopped being tests or because they are now filtered.
+	 */
+	Set<String> getDisabledTests();
+
+	/**
+	 * A hash of everything the test depends on: its own class file, the class
+	 * files it uses, directly or not, and the jars on the classpath.
+	 * 
+	 * @return null if the inputs of the test are not known
+	 */
+	String getInputFingerprint(JavaClass test);
+
+	/**
+	 * Follows a checkout: saves the index of the previous commit in the store,
+	 * then restores the index saved for the new commit, if there is one.
+	 * 
+	 * @param previousCommit
+	 *            the commit the index was built on, or null if it is not known
+	 * @return the class files that may differ from the restored index and have
+	 *         to be analyzed again, in addition to the changed files. Empty if
+	 *         nothing was restored.
+	 */
+	Collection<File> switchCommit(IndexSnapshotStore store, String previousCommit, String commit);
 }
\ No newline at end of file
@@ -0,0 +1,214 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Lists.*;
+import static com.google.common.collect.Maps.*;
+import static org.infinitest.util.InfinitestUtils.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.infinitest.*;
+
+import com.google.common.base.*;
+import com.google.common.hash.*;
+import com.google.common.io.Files;
+
+/**
+ * Computes the input fingerprints of tests. Class files, jars and the
+ * resources in classpath directories are identified by the hash of their
+ * content, so a rebuild or a checkout that only touches them does not change
+ * the fingerprint. A file is only hashed again when its size or modification
+ * time changes, and a classpath directory is only listed again when its
+ * modification time changes, that is when a file was added to or removed from
+ * it.
+ */
+class TestInputFingerprints {
+	private static final long CLASSPATH_HASHES_MAXIMUM_AGE = 1000;
+
+	private final Map<File, HashedFile> fileHashes;
+	private final Map<File, ListedDirectory> listedDirectories;
+	private final long classpathHashesMaximumAge;
+	private String hashedClasspath;
+	private String classpathHashes;
+	private long classpathHashesTime;
+
+	TestInputFingerprints() {
+		this(CLASSPATH_HASHES_MAXIMUM_AGE);
+	}
+
+	TestInputFingerprints(long classpathHashesMaximumAge) {
+		this.classpathHashesMaximumAge = classpathHashesMaximumAge;
+		fileHashes = newHashMap();
+		listedDirectories = newHashMap();
+	}
+
+	synchronized String fingerprintOf(JavaClass test, Collection<JavaClass> dependencies, ClasspathProvider classpath) {
+		List<String> inputs = newArrayList();
+		for (JavaClass each : dependencies) {
+			if (each.locatedInClassFile()) {
+				String hash = hashOf(each.getClassFile());
+				if (hash == null) {
+					return null;
+				}
+				inputs.add(each.getName() + '=' + hash);
+			}
+		}
+		Collections.sort(inputs);
+
+		Hasher hasher = Hashing.sha1().newHasher();
+		hasher.putString(test.getName(), Charsets.UTF_8);
+		for (String each : inputs) {
+			hasher.putString(each, Charsets.UTF_8);
+		}
+		if (classpath != null) {
+			String hashes = hashClasspath(classpath.getCompleteClasspath());
+			if (hashes == null) {
+				return null;
+			}
+			hasher.putString(hashes, Charsets.UTF_8);
+		}
+		return hasher.hash().toString();
+	}
+
+	private String hashOf(File file) {
+		HashedFile hashed = fileHashes.get(file);
+		if ((hashed == null) || !hashed.isUpToDate(file)) {
+			try {
+				hashed = new HashedFile(file, Files.hash(file, Hashing.sha1()).toString());
+			} catch (IOException e) {
+				log("Could not read " + file, e);
+				return null;
+			}
+			fileHashes.put(file, hashed);
+		}
+		return hashed.hash;
+	}
+
+	// The hashes are reused for all the tests of an update
+	private String hashClasspath(String completeClasspath) {
+		long now = System.currentTimeMillis();
+		if (!completeClasspath.equals(hashedClasspath) || ((now - classpathHashesTime) >= classpathHashesMaximumAge)) {
+			StringBuilder hashes = new StringBuilder();
+			for (String entry : Splitter.on(File.pathSeparator).split(completeClasspath)) {
+				File file = new File(entry);
+				boolean hashed = true;
+				if (file.isFile()) {
+					hashed = appendHash(hashes, file);
+				} else if (file.isDirectory()) {
+					hashed = appendResourceHashes(hashes, file);
+				}
+				if (!hashed) {
+					return null;
+				}
+			}
+			hashedClasspath = completeClasspath;
+			classpathHashes = hashes.toString();
+			classpathHashesTime = now;
+		}
+		return classpathHashes;
+	}
+
+	// Class files are fingerprinted as dependencies of the test
+	private boolean appendResourceHashes(StringBuilder hashes, File directory) {
+		ListedDirectory listed = listedDirectories.get(directory);
+		if ((listed == null) || !listed.isUpToDate(directory)) {
+			listed = new ListedDirectory(directory);
+			listedDirectories.put(directory, listed);
+		}
+		for (File each : listed.resources) {
+			if (!appendHash(hashes, each)) {
+				return false;
+			}
+		}
+		for (File each : listed.subdirectories) {
+			if (!appendResourceHashes(hashes, each)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean appendHash(StringBuilder hashes, File file) {
+		String hash = hashOf(file);
+		if (hash == null) {
+			return false;
+		}
+		hashes.append(file.getPath()).append('=').append(hash).append(';');
+		return true;
+	}
+
+	private static class HashedFile {
+		private final long length;
+		private final long lastModified;
+		private final String hash;
+
+		HashedFile(File file, String hash) {
+			length = file.length();
+			lastModified = file.lastModified();
+			this.hash = hash;
+		}
+
+		boolean isUpToDate(File file) {
+			return (file.length() == length) && (file.lastModified() == lastModified);
+		}
+	}
+
+	// Only the resources and subdirectories are kept, a package can hold
+	// thousands of class files
+	private static class ListedDirectory {
+		private final long lastModified;
+		private final List<File> resources = newArrayList();
+		private final List<File> subdirectories = newArrayList();
+
+		ListedDirectory(File directory) {
+			lastModified = directory.lastModified();
+			File[] children = directory.listFiles();
+			if (children != null) {
+				Arrays.sort(children);
+				for (File each : children) {
+					if (each.getName().endsWith(".class")) {
+						continue;
+					}
+					if (each.isDirectory()) {
+						subdirectories.add(each);
+					} else {
+						resources.add(each);
+					}
+				}
+			}
+		}
+
+		boolean isUpToDate(File directory) {
+			return directory.lastModified() == lastModified;
+		}
+	}
+}
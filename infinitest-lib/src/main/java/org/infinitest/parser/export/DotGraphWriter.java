@@ -0,0 +1,82 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser.export;
+
+import java.io.*;
+
+/**
+ * Writes the graph in the Graphviz DOT language. Tests are drawn as boxes.
+ */
+public class DotGraphWriter implements GraphWriter {
+	private final Writer writer;
+
+	public DotGraphWriter(Writer writer) {
+		this.writer = writer;
+	}
+
+	@Override
+	public void startGraph() throws IOException {
+		writer.write("digraph dependencies {\n");
+	}
+
+	@Override
+	public void vertex(String className, boolean test) throws IOException {
+		writer.write('\t');
+		writeId(className);
+		writer.write(test ? " [shape=box];\n" : ";\n");
+	}
+
+	@Override
+	public void edge(String source, String target) throws IOException {
+		writer.write('\t');
+		writeId(source);
+		writer.write(" -> ");
+		writeId(target);
+		writer.write(";\n");
+	}
+
+	@Override
+	public void endGraph() throws IOException {
+		writer.write("}\n");
+		writer.close();
+	}
+
+	private void writeId(String className) throws IOException {
+		writer.write('"');
+		for (int i = 0; i < className.length(); i++) {
+			char c = className.charAt(i);
+			if ((c == '"') || (c == '\\')) {
+				writer.write('\\');
+			}
+			writer.write(c);
+		}
+		writer.write('"');
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser.export;
+
+import static com.google.common.collect.Maps.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Writes the graph as a compact binary edge list. After the
+ * {@link #MAGIC} number and a format version byte come records:
+ * 
+ * <pre>
+ * 'V' varint id, boolean test, modified UTF-8 class name   a vertex, numbered from 0 in order
+ * 'E' varint source id, varint target id                   an edge between two vertices written before
+ * 0                                                        the end of the graph
+ * </pre>
+ * 
+ * Varints hold 7 bits per byte, low bits first, with the high bit set on
+ * every byte but the last.
+ */
+public class EdgeListGraphWriter implements GraphWriter {
+	public static final int MAGIC = 0x49454447;
+	public static final int VERSION = 1;
+	public static final int VERTEX = 'V';
+	public static final int EDGE = 'E';
+	public static final int END = 0;
+
+	private final DataOutputStream output;
+	private final Map<String, Integer> vertexIds = newHashMap();
+
+	public EdgeListGraphWriter(OutputStream output) {
+		this.output = new DataOutputStream(output);
+	}
+
+	@Override
+	public void startGraph() throws IOException {
+		output.writeInt(MAGIC);
+		output.writeByte(VERSION);
+	}
+
+	@Override
+	public void vertex(String className, boolean test) throws IOException {
+		int id = vertexIds.size();
+		vertexIds.put(className, id);
+		output.writeByte(VERTEX);
+		writeVarint(id);
+		output.writeBoolean(test);
+		output.writeUTF(className);
+	}
+
+	@Override
+	public void edge(String source, String target) throws IOException {
+		output.writeByte(EDGE);
+		writeVarint(vertexIds.get(source));
+		writeVarint(vertexIds.get(target));
+	}
+
+	@Override
+	public void endGraph() throws IOException {
+		output.writeByte(END);
+		output.close();
+	}
+
+	private void writeVarint(int value) throws IOException {
+		int remaining = value;
+		while ((remaining & ~0x7F) != 0) {
+			output.writeByte((remaining & 0x7F) | 0x80);
+			remaining >>>= 7;
+		}
+		output.writeByte(remaining);
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser.export;
+
+import static com.google.common.collect.Sets.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.infinitest.parser.*;
+
+/**
+ * Streams the dependency graph of an index snapshot to a {@link GraphWriter}.
+ * Edges are derived from the imports of each class as they are written, so
+ * memory stays proportional to the number of classes, whatever the number of
+ * edges. Classes are written in name order, so exports of the same index can
+ * be compared.
+ */
+public class GraphExporter {
+	public void export(ClassIndexSnapshot snapshot, GraphFilter filter, GraphWriter writer) throws IOException {
+		Set<String> writtenVertices = newHashSet();
+		List<JavaClass> classes = new ArrayList<JavaClass>(snapshot.getClasses());
+		Collections.sort(classes, new Comparator<JavaClass>() {
+			@Override
+			public int compare(JavaClass first, JavaClass second) {
+				return first.getName().compareTo(second.getName());
+			}
+		});
+		writer.startGraph();
+		try {
+			for (JavaClass each : classes) {
+				if (filter.includes(each)) {
+					writeVertex(each, writtenVertices, writer);
+				}
+			}
+			for (JavaClass each : classes) {
+				if (filter.includes(each)) {
+					writeEdges(each, snapshot, writtenVertices, writer);
+				}
+			}
+		} finally {
+			writer.endGraph();
+		}
+	}
+
+	private void writeEdges(JavaClass source, ClassIndexSnapshot snapshot, Set<String> writtenVertices, GraphWriter writer) throws IOException {
+		Set<String> targets = newHashSet();
+		for (String each : source.getImports()) {
+			JavaClass target = snapshot.findClass(each);
+			if ((target != null) && !each.equals(source.getName()) && targets.add(each)) {
+				writeVertex(target, writtenVertices, writer);
+				writer.edge(source.getName(), each);
+			}
+		}
+	}
+
+	private void writeVertex(JavaClass javaClass, Set<String> writtenVertices, GraphWriter writer) throws IOException {
+		if (writtenVertices.add(javaClass.getName())) {
+			writer.vertex(javaClass.getName(), javaClass.isATest());
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser.export;
+
+import static com.google.common.base.Charsets.*;
+
+import java.io.*;
+
+/**
+ * The formats the dependency graph can be exported to, chosen by file
+ * extension.
+ */
+public enum GraphFormat {
+	DOT("dot") {
+		@Override
+		public GraphWriter createWriter(OutputStream output) {
+			return new DotGraphWriter(new BufferedWriter(new OutputStreamWriter(output, UTF_8), BUFFER_SIZE));
+		}
+	},
+	GRAPHML("graphml") {
+		@Override
+		public GraphWriter createWriter(OutputStream output) {
+			return new GraphMLGraphWriter(new BufferedWriter(new OutputStreamWriter(output, UTF_8), BUFFER_SIZE));
+		}
+	},
+	EDGE_LIST("edges") {
+		@Override
+		public GraphWriter createWriter(OutputStream output) {
+			return new EdgeListGraphWriter(new BufferedOutputStream(output, BUFFER_SIZE));
+		}
+	};
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final String extension;
+
+	private GraphFormat(String extension) {
+		this.extension = extension;
+	}
+
+	public String getExtension() {
+		return extension;
+	}
+
+	/**
+	 * A buffered writer, which closes the stream once the graph is written.
+	 */
+	public abstract GraphWriter createWriter(OutputStream output);
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the file extension is not one of the formats
+	 */
+	public static GraphFormat forFile(File file) {
+		for (GraphFormat each : values()) {
+			if (file.getName().endsWith("." + each.extension)) {
+				return each;
+			}
+		}
+		throw new IllegalArgumentException("Unknown graph format for " + file + ", use .dot, .graphml or .edges");
+	}
+}
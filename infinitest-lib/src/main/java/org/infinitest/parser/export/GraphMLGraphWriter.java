@@ -0,0 +1,97 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser.export;
+
+import java.io.*;
+
+/**
+ * Writes the graph as GraphML, with a boolean <code>test</code> attribute on
+ * each node.
+ */
+public class GraphMLGraphWriter implements GraphWriter {
+	private final Writer writer;
+
+	public GraphMLGraphWriter(Writer writer) {
+		this.writer = writer;
+	}
+
+	@Override
+	public void startGraph() throws IOException {
+		writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		writer.write("<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n");
+		writer.write("\t<key id=\"test\" for=\"node\" attr.name=\"test\" attr.type=\"boolean\"/>\n");
+		writer.write("\t<graph id=\"dependencies\" edgedefault=\"directed\">\n");
+	}
+
+	@Override
+	public void vertex(String className, boolean test) throws IOException {
+		writer.write("\t\t<node id=\"");
+		writeEscaped(className);
+		writer.write(test ? "\"><data key=\"test\">true</data></node>\n" : "\"/>\n");
+	}
+
+	@Override
+	public void edge(String source, String target) throws IOException {
+		writer.write("\t\t<edge source=\"");
+		writeEscaped(source);
+		writer.write("\" target=\"");
+		writeEscaped(target);
+		writer.write("\"/>\n");
+	}
+
+	@Override
+	public void endGraph() throws IOException {
+		writer.write("\t</graph>\n");
+		writer.write("</graphml>\n");
+		writer.close();
+	}
+
+	private void writeEscaped(String text) throws IOException {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '&':
+				writer.write("&amp;");
+				break;
+			case '<':
+				writer.write("&lt;");
+				break;
+			case '>':
+				writer.write("&gt;");
+				break;
+			case '"':
+				writer.write("&quot;");
+				break;
+			default:
+				writer.write(c);
+			}
+		}
+	}
+}
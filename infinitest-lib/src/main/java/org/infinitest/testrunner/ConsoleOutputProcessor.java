@@ -27,35 +27,238 @@
  */
 package org.infinitest.testrunner;
 
+import static java.util.concurrent.Executors.*;
+import static java.util.concurrent.TimeUnit.*;
 import static org.infinitest.util.InfinitestUtils.*;
 
 import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.concurrent.*;
 
 import org.infinitest.ConsoleOutputListener.OutputType;
+import org.infinitest.util.*;
 
+/**
+ * Reads the output of a test runner process and publishes it as console
+ * events.
+ * <p>
+ * Bytes are read into a bounded ring buffer and published in batches, once a
+ * size threshold is reached or shortly after the first unpublished byte was
+ * read. They are decoded with a single decoder per stream, so characters split
+ * across reads are not garbled. The reader never waits for the listeners: when
+ * they fall behind and the buffer fills up, the overflow is written to a
+ * temporary file and the console shows where to find it.
+ */
 public class ConsoleOutputProcessor implements Runnable {
+	static final int DEFAULT_CAPACITY = 256 * 1024;
+	static final int DEFAULT_FLUSH_THRESHOLD = 8 * 1024;
+	static final long DEFAULT_FLUSH_DELAY = 50;
+	private static final int READ_BUFFER_SIZE = 1024 * 10;
+
+	private static final ExecutorService READERS = newCachedThreadPool(daemonThreads("Infinitest Console Reader"));
+	private static final ScheduledExecutorService FLUSHER = newSingleThreadScheduledExecutor(daemonThreads("Infinitest Console Flusher"));
+
 	private final RunnerEventSupport eventSupport;
 	private final InputStream outputSource;
 	private final OutputType outputType;
+	private final ByteRingBuffer buffer;
+	private final int flushThreshold;
+	private final long flushDelay;
+	private final Object flushLock = new Object();
+	private final CharsetDecoder decoder;
+	private final ByteBuffer undecodedBytes;
+	private final CharBuffer decodedChars;
+	private final Runnable flushTask;
+	private boolean flushScheduled;
+	private boolean immediateFlushScheduled;
+	private boolean spilling;
+	private long spilledBytes;
+	private File spillFile;
+	private OutputStream spillStream;
 
 	public ConsoleOutputProcessor(InputStream stream, OutputType outputType, RunnerEventSupport eventSupport) {
+		this(stream, outputType, eventSupport, Charset.defaultCharset(), DEFAULT_CAPACITY, DEFAULT_FLUSH_THRESHOLD, DEFAULT_FLUSH_DELAY);
+	}
+
+	ConsoleOutputProcessor(InputStream stream, OutputType outputType, RunnerEventSupport eventSupport, Charset charset, int capacity, int flushThreshold, long flushDelay) {
+		this(stream, outputType, eventSupport, charset, new ByteRingBuffer(capacity), flushThreshold, flushDelay);
+	}
+
+	ConsoleOutputProcessor(InputStream stream, OutputType outputType, RunnerEventSupport eventSupport, Charset charset, ByteRingBuffer buffer, int flushThreshold, long flushDelay) {
 		outputSource = stream;
 		this.outputType = outputType;
 		this.eventSupport = eventSupport;
+		this.flushThreshold = flushThreshold;
+		this.flushDelay = flushDelay;
+		this.buffer = buffer;
+		decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+		undecodedBytes = ByteBuffer.allocate(buffer.capacity() + 16);
+		decodedChars = CharBuffer.allocate((int) (undecodedBytes.capacity() * decoder.maxCharsPerByte()));
+		flushTask = new Runnable() {
+			@Override
+			public void run() {
+				flush(false);
+			}
+		};
+	}
+
+	/**
+	 * Reads the stream on a pooled thread.
+	 */
+	public void start() {
+		READERS.execute(this);
 	}
 
 	@Override
 	public void run() {
 		try {
 			int bytesRead;
-			byte[] buffer = new byte[1024 * 10];
-			while ((bytesRead = outputSource.read(buffer)) != -1) {
-				eventSupport.fireConsoleUpdateEvent(new String(buffer, 0, bytesRead), outputType);
+			byte[] chunk = new byte[READ_BUFFER_SIZE];
+			while ((bytesRead = outputSource.read(chunk)) != -1) {
+				append(chunk, bytesRead);
 			}
 			outputSource.close();
 		} catch (IOException e) {
 			log("Error while reading console output from the test runner process", e);
 			throw new RuntimeException(e);
+		} finally {
+			flush(true);
+			closeSpillFile();
+		}
+	}
+
+	/**
+	 * Publishes the output read so far without waiting for the next batch.
+	 */
+	public void flush() {
+		flush(false);
+	}
+
+	private synchronized void append(byte[] chunk, int length) {
+		int written = 0;
+		if (!spilling) {
+			written = buffer.write(chunk, 0, length);
+		}
+		if (written < length) {
+			spill(chunk, written, length - written);
+		}
+
+		if (spilling || (buffer.size() >= flushThreshold)) {
+			if (!immediateFlushScheduled) {
+				immediateFlushScheduled = true;
+				FLUSHER.execute(flushTask);
+			}
+		} else if (!flushScheduled) {
+			flushScheduled = true;
+			FLUSHER.schedule(flushTask, flushDelay, MILLISECONDS);
+		}
+	}
+
+	// Once spilling starts, everything goes to the file until the buffer has
+	// been published, so the console output stays in order
+	private void spill(byte[] chunk, int offset, int length) {
+		spilling = true;
+		spilledBytes += length;
+		try {
+			if (spillStream == null) {
+				spillFile = File.createTempFile("infinitest-" + outputType.name().toLowerCase(), ".log");
+				spillFile.deleteOnExit();
+				spillStream = new BufferedOutputStream(new FileOutputStream(spillFile));
+			}
+			spillStream.write(chunk, offset, length);
+		} catch (IOException e) {
+			log("Error while writing console output to " + spillFile, e);
+		}
+	}
+
+	// Publishes at most what was buffered when the pass started. A test that
+	// keeps printing refills the buffer meanwhile, so draining it until it is
+	// empty would build up an unbounded amount of text. The rest is left to
+	// the next pass.
+	private void flush(boolean endOfInput) {
+		synchronized (flushLock) {
+			StringBuilder text = new StringBuilder();
+			int unpublished = buffer.size();
+			while (unpublished > 0) {
+				int read = buffer.read(undecodedBytes.array(), undecodedBytes.position(), Math.min(unpublished, undecodedBytes.remaining()));
+				undecodedBytes.position(undecodedBytes.position() + read);
+				unpublished -= read;
+				decode(text, false);
+			}
+			if (endOfInput) {
+				decode(text, true);
+			}
+
+			synchronized (this) {
+				// The spilled output follows whatever is still in the buffer
+				if (spilling && (buffer.size() == 0)) {
+					text.append(overflowMessage());
+					spilling = false;
+					spilledBytes = 0;
+				}
+				flushScheduled = false;
+				immediateFlushScheduled = false;
+				if (!endOfInput && (spilling || (buffer.size() >= flushThreshold))) {
+					immediateFlushScheduled = true;
+					FLUSHER.execute(flushTask);
+				} else if (!endOfInput && (buffer.size() > 0)) {
+					flushScheduled = true;
+					FLUSHER.schedule(flushTask, flushDelay, MILLISECONDS);
+				}
+			}
+
+			if (text.length() > 0) {
+				eventSupport.fireConsoleUpdateEvent(text.toString(), outputType);
+			}
+		}
+	}
+
+	private void decode(StringBuilder text, boolean endOfInput) {
+		undecodedBytes.flip();
+		decoder.decode(undecodedBytes, decodedChars, endOfInput);
+		if (endOfInput) {
+			decoder.flush(decodedChars);
+			decoder.reset();
+		}
+		// Incomplete characters stay in the buffer until the next read
+		undecodedBytes.compact();
+		decodedChars.flip();
+		text.append(decodedChars);
+		decodedChars.clear();
+	}
+
+	private String overflowMessage() {
+		String location = "they were dropped";
+		if (spillStream != null) {
+			try {
+				spillStream.flush();
+				location = "see " + spillFile.getAbsolutePath();
+			} catch (IOException e) {
+				log("Error while writing console output to " + spillFile, e);
+			}
+		}
+		return String.format("%n[Infinitest: %d bytes of output were written faster than they could be displayed, %s]%n", spilledBytes, location);
+	}
+
+	private synchronized void closeSpillFile() {
+		if (spillStream != null) {
+			try {
+				spillStream.close();
+			} catch (IOException e) {
+				log("Error while closing " + spillFile, e);
+			}
 		}
 	}
+
+	private static ThreadFactory daemonThreads(final String name) {
+		return new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, name);
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
 }
@@ -51,7 +51,7 @@ public class MultiProcessRunner extends AbstractTestRunner {
 		queueConsumer = new QueueConsumer(getEventSupport(), queue) {
 			@Override
 			protected QueueProcessor createQueueProcessor() throws IOException {
-				return new TestQueueProcessor(getEventSupport(), remoteProcessManager, getRuntimeEnvironment());
+				return new TestQueueProcessor(getEventSupport(), remoteProcessManager, getRuntimeEnvironment().withScheduledTests(queue));
 			}
 		};
 	}
@@ -62,6 +62,14 @@ public class MultiProcessRunner extends AbstractTestRunner {
 		queueConsumer.setConcurrencySemaphore(getConcurrencySemaphore());
 	}
 
+	/**
+	 * Sets how many test classes are handed to the runner process at once.
+	 * Defaults to one.
+	 */
+	public void setBatchSize(int batchSize) {
+		queueConsumer.setBatchSize(batchSize);
+	}
+
 	@Override
 	public void runTests(List<String> testNames) {
 		if (!testNames.isEmpty()) {
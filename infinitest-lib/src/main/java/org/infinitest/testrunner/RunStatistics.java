@@ -28,33 +28,101 @@
 package org.infinitest.testrunner;
 
 import static com.google.common.collect.Maps.*;
+import static com.google.common.collect.Sets.*;
 import static java.lang.System.*;
 
 import java.util.*;
+import java.util.concurrent.*;
 
-public class RunStatistics implements TestResultsListener {
-	private final Map<String, Long> failureTimestamps;
+import org.infinitest.util.*;
+
+public class RunStatistics implements TestResultsListener, TestHistory {
+	private final Map<Integer, Long> failureTimestamps;
+	private final Map<Integer, Long> durations;
+	private final Map<Integer, Long> cpuTimes;
+	private final Set<Integer> testsOutOfMemory;
+	private final Map<Integer, Integer> requiredHeapSizes;
 
 	public RunStatistics() {
 		failureTimestamps = newHashMap();
+		// Read when the runner process is launched, while tests complete
+		durations = newConcurrentMap();
+		cpuTimes = newConcurrentMap();
+		testsOutOfMemory = newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+		requiredHeapSizes = newConcurrentMap();
 	}
 
 	private void update(TestEvent event) {
-		failureTimestamps.put(event.getTestName(), currentTimeMillis());
+		failureTimestamps.put(ClassNameTable.idFor(event.getTestName()), currentTimeMillis());
 	}
 
 	public long getLastFailureTime(String testName) {
-		if (!failureTimestamps.containsKey(testName)) {
+		Long timestamp = failureTimestamps.get(ClassNameTable.existingIdFor(testName));
+		if (timestamp == null) {
 			return 0;
 		}
-		return failureTimestamps.get(testName);
+		return timestamp;
+	}
+
+	@Override
+	public long getLastDuration(String testName) {
+		Long duration = durations.get(ClassNameTable.existingIdFor(testName));
+		if (duration == null) {
+			return 0;
+		}
+		return duration;
+	}
+
+	@Override
+	public long getLastCpuTime(String testName) {
+		Long cpuTime = cpuTimes.get(ClassNameTable.existingIdFor(testName));
+		if (cpuTime == null) {
+			return 0;
+		}
+		return cpuTime;
+	}
+
+	@Override
+	public boolean ranOutOfMemory(String testName) {
+		return testsOutOfMemory.contains(ClassNameTable.existingIdFor(testName));
+	}
+
+	@Override
+	public int getRequiredHeapSize(String testName) {
+		Integer heapSize = requiredHeapSizes.get(ClassNameTable.existingIdFor(testName));
+		if (heapSize == null) {
+			return 0;
+		}
+		return heapSize;
+	}
+
+	@Override
+	public void recordRequiredHeapSize(String testName, int heapSize) {
+		requiredHeapSizes.put(ClassNameTable.idFor(testName), heapSize);
 	}
 
 	@Override
 	public void testCaseComplete(TestCaseEvent event) {
+		Integer id = ClassNameTable.idFor(event.getTestName());
+		boolean outOfMemory = false;
 		for (TestEvent each : event.getFailureEvents()) {
 			update(each);
+			outOfMemory |= OutOfMemoryError.class.getName().equals(each.getFullErrorClassName());
+		}
+		if (outOfMemory) {
+			testsOutOfMemory.add(id);
+		} else {
+			testsOutOfMemory.remove(id);
+		}
+
+		long duration = 0;
+		long cpuTime = 0;
+		for (MethodStats each : event.getRunStats()) {
+			duration += Math.max(0, each.duration());
+			cpuTime += Math.max(0, each.cpuTime());
 		}
+		durations.put(id, duration);
+		cpuTimes.put(id, cpuTime);
 	}
 
 	@Override
@@ -62,6 +62,21 @@ public class RunnerEventSupport {
 				case TEST_CASE_STARTING:
 					each.testCaseStarting(testEvent);
 					break;
+				case METHOD_STARTING:
+					if (each instanceof TestMethodListener) {
+						((TestMethodListener) each).testMethodStarting(testEvent);
+					}
+					break;
+				case METHOD_FAILURE:
+					if (each instanceof TestMethodListener) {
+						((TestMethodListener) each).testMethodFailed(testEvent);
+					}
+					break;
+				case METHOD_FINISHED:
+					if (each instanceof TestMethodListener) {
+						((TestMethodListener) each).testMethodFinished(testEvent);
+					}
+					break;
 				default:
 					throw new IllegalArgumentException("Unknown event type:" + testEvent);
 			}
@@ -78,6 +93,14 @@ public class RunnerEventSupport {
 		fireTestEvent(testCaseStarting(testClass));
 	}
 
+	/**
+	 * Fires a method event streamed by the runner process while its test case
+	 * is still running.
+	 */
+	public void fireMethodEvent(TestEvent methodEvent) {
+		fireTestEvent(methodEvent);
+	}
+
 	public void addConsoleOutputListener(ConsoleOutputListener listener) {
 		consoleListenerList.add(listener);
 	}
@@ -86,4 +86,8 @@ public class TestCaseEvent {
 	public Iterable<MethodStats> getRunStats() {
 		return results.getMethodStats();
 	}
+
+	public long getGarbageCollectionTime() {
+		return results.getGarbageCollectionTime();
+	}
 }
@@ -0,0 +1,60 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+/**
+ * What is known about previous runs of tests.
+ */
+public interface TestHistory {
+	/**
+	 * The time, in milliseconds, the test took the last time it ran, or 0 if
+	 * it never ran.
+	 */
+	long getLastDuration(String testName);
+
+	/**
+	 * The CPU time, in nanoseconds, the test used the last time it ran, or 0
+	 * if it never ran or the CPU time could not be measured.
+	 */
+	long getLastCpuTime(String testName);
+
+	/**
+	 * True if the test ran out of memory the last time it ran.
+	 */
+	boolean ranOutOfMemory(String testName);
+
+	/**
+	 * The heap size, in megabytes, the test turned out to need, or 0 if it
+	 * never exhausted the heap of the runner process.
+	 */
+	int getRequiredHeapSize(String testName);
+
+	void recordRequiredHeapSize(String testName, int heapSize);
+}
@@ -27,10 +27,13 @@
  */
 package org.infinitest.testrunner;
 
+import static com.google.common.collect.Lists.*;
 import static java.util.logging.Level.*;
 import static org.infinitest.util.InfinitestUtils.*;
 
 import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
 
 import org.infinitest.ConsoleOutputListener.OutputType;
 import org.infinitest.*;
@@ -38,26 +41,155 @@ import org.infinitest.testrunner.process.*;
 import org.infinitest.testrunner.queue.*;
 
 class TestQueueProcessor implements QueueProcessor {
+	private static final long MINIMUM_LEARNED_BUDGET = 60000;
+	private static final int LEARNED_BUDGET_FACTOR = 10;
+
 	private final ProcessConnectionFactory factory;
 	private final RunnerEventSupport eventSupport;
 
-	private final ProcessConnection currentConnection;
+	private ProcessConnection currentConnection;
+	private RuntimeEnvironment currentEnvironment;
+	private final List<ConsoleOutputProcessor> outputProcessors = new CopyOnWriteArrayList<ConsoleOutputProcessor>();
+	private final TestEventStream methodEvents = new TestEventStream() {
+		@Override
+		public void publish(TestEvent event) {
+			getEventSupport().fireMethodEvent(event);
+		}
+	};
 
 	public TestQueueProcessor(RunnerEventSupport eventSupport, ProcessConnectionFactory factory, RuntimeEnvironment environment) throws IOException {
 		this.eventSupport = eventSupport;
 		this.factory = factory;
+		currentEnvironment = environment;
 		currentConnection = establishConnection(environment);
 	}
 
 	@Override
-	public void process(String testName) {
+	public void process(String testName) throws IOException {
 		getEventSupport().fireStartingEvent(testName);
-		TestResults results = currentConnection.runTest(testName);
+		sendTimeBudgets(newArrayList(testName));
+		TestResults results;
+		while (true) {
+			try {
+				results = currentConnection.runTest(testName, methodEvents);
+				break;
+			} catch (HeapExhaustedException e) {
+				if (!relaunchWithMoreHeap(testName, newArrayList(testName))) {
+					// The process exits after reporting the exhausted heap
+					relaunch(new ArrayList<String>());
+					results = e.getResults();
+					break;
+				}
+			} catch (TestTimedOutException e) {
+				logTimeout(e);
+				relaunch(new ArrayList<String>());
+				results = e.getResults();
+				break;
+			}
+		}
+		flushConsoleOutput();
 		getEventSupport().fireTestCaseComplete(testName, results);
 	}
 
+	@Override
+	public void process(List<String> testNames) throws IOException {
+		for (String testName : testNames) {
+			getEventSupport().fireStartingEvent(testName);
+		}
+		final Set<String> pendingTests = new LinkedHashSet<String>(testNames);
+		BatchResultsListener listener = new BatchResultsListener() {
+			@Override
+			public void testClassFinished(String testName, TestResults results) {
+				pendingTests.remove(testName);
+				flushConsoleOutput();
+				getEventSupport().fireTestCaseComplete(testName, results);
+			}
+		};
+		while (!pendingTests.isEmpty()) {
+			sendTimeBudgets(pendingTests);
+			try {
+				currentConnection.runTests(newArrayList(pendingTests), listener, methodEvents);
+			} catch (HeapExhaustedException e) {
+				String culprit = culpritAmong(pendingTests, e.getTestName());
+				if (!relaunchWithMoreHeap(culprit, newArrayList(pendingTests))) {
+					// The process exits after reporting the exhausted heap
+					listener.testClassFinished(culprit, e.getResults());
+					relaunch(newArrayList(pendingTests));
+				}
+			} catch (TestTimedOutException e) {
+				logTimeout(e);
+				listener.testClassFinished(culpritAmong(pendingTests, e.getTestName()), e.getResults());
+				relaunch(newArrayList(pendingTests));
+			}
+		}
+	}
+
+	// Each failed attempt has to finish one of the pending tests, or the batch
+	// would be run again and again
+	private static String culpritAmong(Set<String> pendingTests, String testName) {
+		if (pendingTests.contains(testName)) {
+			return testName;
+		}
+		return pendingTests.iterator().next();
+	}
+
+	/**
+	 * A test that ran before gets ten times as long as it took, but at least a
+	 * minute, before the runner considers it hung. Tests with a budget in the
+	 * filters file, or that never ran, keep the configured budget.
+	 */
+	private void sendTimeBudgets(Collection<String> testNames) {
+		if (currentEnvironment == null) {
+			return;
+		}
+		Map<String, Long> budgets = new HashMap<String, Long>();
+		for (String testName : testNames) {
+			long lastDuration = currentEnvironment.getTestHistory().getLastDuration(testName);
+			if (lastDuration > 0) {
+				budgets.put(testName, Math.max(MINIMUM_LEARNED_BUDGET, lastDuration * LEARNED_BUDGET_FACTOR));
+			}
+		}
+		if (!budgets.isEmpty()) {
+			currentConnection.setTimeBudgets(budgets);
+		}
+	}
+
+	private void logTimeout(TestTimedOutException e) {
+		log(WARNING, e.getTestName() + " timed out, the test runner process was restarted. Threads of the process were:\n" + e.getThreadDump());
+	}
+
+	/**
+	 * The runner process exits after a test exhausts its heap. The test is run
+	 * again in a process with twice the heap, up to the maximum heap size of
+	 * the environment, and the heap size is remembered for the next time the
+	 * test runs.
+	 * 
+	 * @return false if the heap cannot grow any further
+	 */
+	private boolean relaunchWithMoreHeap(String testName, List<String> remainingTests) throws IOException {
+		int heapSize = currentEnvironment.getLaunchPolicy().getHeapSize();
+		int largerHeapSize = Math.min(heapSize * 2, currentEnvironment.getMaximumHeapSize());
+		if (largerHeapSize <= heapSize) {
+			log(WARNING, testName + " ran out of memory with the maximum heap size of " + heapSize + "m");
+			return false;
+		}
+		log(INFO, testName + " ran out of memory with a heap size of " + heapSize + "m, relaunching with " + largerHeapSize + "m");
+		currentEnvironment.getTestHistory().recordRequiredHeapSize(testName, largerHeapSize);
+		relaunch(remainingTests);
+		return true;
+	}
+
+	private void relaunch(List<String> remainingTests) throws IOException {
+		flushConsoleOutput();
+		currentConnection.abort();
+		outputProcessors.clear();
+		currentEnvironment = currentEnvironment.withScheduledTests(remainingTests);
+		currentConnection = establishConnection(currentEnvironment);
+	}
+
 	@Override
 	public void close() {
+		flushConsoleOutput();
 		getEventSupport().fireTestRunComplete();
 		currentConnection.close();
 	}
@@ -66,11 +198,21 @@ class TestQueueProcessor implements QueueProcessor {
 		return factory.getConnection(environment, new OutputStreamHandler() {
 			@Override
 			public void processStream(InputStream stream, OutputType type) {
-				new Thread(new ConsoleOutputProcessor(stream, type, getEventSupport())).start();
+				ConsoleOutputProcessor outputProcessor = new ConsoleOutputProcessor(stream, type, getEventSupport());
+				outputProcessors.add(outputProcessor);
+				outputProcessor.start();
 			}
 		});
 	}
 
+	// Output is published in batches, make sure what the test printed shows
+	// up before its results
+	private void flushConsoleOutput() {
+		for (ConsoleOutputProcessor each : outputProcessors) {
+			each.flush();
+		}
+	}
+
 	private RunnerEventSupport getEventSupport() {
 		return eventSupport;
 	}
@@ -0,0 +1,166 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import static org.infinitest.util.InfinitestUtils.*;
+
+import java.io.*;
+import java.util.*;
+
+import com.google.common.base.*;
+import com.google.common.io.*;
+
+/**
+ * Remembers the input fingerprints of tests that passed, so a test whose
+ * inputs have not changed since it last passed does not need to run again.
+ * <p>
+ * Fingerprints are content hashes, so one cache can be shared by every
+ * project. It survives restarts in an append-only file, which is rewritten
+ * when it gets too long. A failure appends a tombstone that takes the
+ * fingerprint out again when the file is loaded. Only the most recently used
+ * fingerprints are kept.
+ */
+public class TestResultCache {
+	static final int DEFAULT_MAXIMUM_ENTRIES = 50000;
+	private static final String TOMBSTONE = "-";
+	private static TestResultCache defaultCache;
+
+	private final File file;
+	private final int maximumEntries;
+	private final Map<String, Boolean> passedInputs;
+	private int linesInFile;
+
+	public TestResultCache(File file) {
+		this(file, DEFAULT_MAXIMUM_ENTRIES);
+	}
+
+	public TestResultCache(File file, final int maximumEntries) {
+		this.file = file;
+		this.maximumEntries = maximumEntries;
+		passedInputs = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+			private static final long serialVersionUID = -1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+				return size() > maximumEntries;
+			}
+		};
+		load();
+	}
+
+	/**
+	 * The cache shared by all the cores, stored in the .infinitest directory of
+	 * the user home.
+	 */
+	public static synchronized TestResultCache getDefault() {
+		if (defaultCache == null) {
+			File directory = new File(System.getProperty("user.home"), ".infinitest");
+			defaultCache = new TestResultCache(new File(directory, "passed-tests.cache"));
+		}
+		return defaultCache;
+	}
+
+	public synchronized boolean hasPassed(String inputFingerprint) {
+		return passedInputs.get(inputFingerprint) != null;
+	}
+
+	public synchronized void recordPass(String inputFingerprint) {
+		if (passedInputs.put(inputFingerprint, Boolean.TRUE) == null) {
+			writeLine(inputFingerprint);
+		}
+	}
+
+	/**
+	 * Forgets a fingerprint, in case a test with unchanged inputs does not
+	 * always pass.
+	 */
+	public synchronized void recordFailure(String inputFingerprint) {
+		if (passedInputs.remove(inputFingerprint) != null) {
+			writeLine(TOMBSTONE + inputFingerprint);
+		}
+	}
+
+	public synchronized int size() {
+		return passedInputs.size();
+	}
+
+	private void load() {
+		if (!file.exists()) {
+			return;
+		}
+		try {
+			for (String line : Files.readLines(file, Charsets.UTF_8)) {
+				if (line.startsWith(TOMBSTONE)) {
+					passedInputs.remove(line.substring(TOMBSTONE.length()));
+					linesInFile++;
+				} else if (!line.isEmpty()) {
+					passedInputs.put(line, Boolean.TRUE);
+					linesInFile++;
+				}
+			}
+		} catch (IOException e) {
+			log("Could not read the test result cache " + file, e);
+		}
+	}
+
+	private void writeLine(String line) {
+		if (linesInFile >= (2 * maximumEntries)) {
+			rewrite();
+		} else {
+			append(line);
+		}
+	}
+
+	private void append(String line) {
+		try {
+			Files.createParentDirs(file);
+			Files.append(line + "\n", file, Charsets.UTF_8);
+			linesInFile++;
+		} catch (IOException e) {
+			log("Could not write the test result cache " + file, e);
+		}
+	}
+
+	// Least recently used fingerprints come first, so they are the first to go
+	// when the cache is loaded again
+	private void rewrite() {
+		StringBuilder content = new StringBuilder();
+		for (String each : passedInputs.keySet()) {
+			content.append(each).append('\n');
+		}
+		try {
+			Files.createParentDirs(file);
+			Files.write(content, file, Charsets.UTF_8);
+			linesInFile = passedInputs.size();
+		} catch (IOException e) {
+			log("Could not write the test result cache " + file, e);
+		}
+	}
+}
@@ -39,6 +39,8 @@ import org.infinitest.*;
 import org.infinitest.testrunner.*;
 
 public class NativeConnectionFactory implements ProcessConnectionFactory {
+	private static final File NICE = new File("/usr/bin/nice");
+
 	private final Class<? extends NativeRunner> runnerClass;
 
 	public NativeConnectionFactory(Class<? extends NativeRunner> testRunnerClass) {
@@ -70,26 +72,41 @@ public class NativeConnectionFactory implements ProcessConnectionFactory {
 		ProcessBuilder builder = new ProcessBuilder();
 		builder.directory(environment.getWorkingDirectory());
 
-		List<String> arguments = environment.createProcessArguments();
+		LaunchPolicy policy = environment.getLaunchPolicy();
+		List<String> arguments = new ArrayList<String>();
+		if (environment.isLowPriority()) {
+			arguments.addAll(lowPriorityCommand());
+		}
+		arguments.addAll(environment.createProcessArguments(policy));
 		arguments.addAll(buildRunnerArgs(port));
 		builder.command(arguments);
 
 		builder.environment().putAll(environment.createProcessEnvironment());
 
-		logProcessEnvironment(builder);
+		logProcessEnvironment(builder, policy);
 		return builder;
 	}
 
-	private void logProcessEnvironment(ProcessBuilder builder) {
+	private void logProcessEnvironment(ProcessBuilder builder, LaunchPolicy policy) {
 		String lineSeparator = System.getProperty("line.separator");
 
 		StringBuilder message = new StringBuilder();
 		message.append("Launching test runner process with the following configuration:").append(lineSeparator);
+		message.append("Launch policy: ").append(policy).append(lineSeparator);
 		message.append("Directory: ").append(builder.directory().getAbsolutePath()).append(lineSeparator).append("Environment: ").append(builder.environment()).append(lineSeparator).append("Command: ").append(builder.command());
 
 		log(INFO, message.toString());
 	}
 
+	// Only where nice is available. The process it starts is the JVM itself,
+	// so destroying the process still kills the runner.
+	private List<String> lowPriorityCommand() {
+		if (NICE.canExecute()) {
+			return asList(NICE.getAbsolutePath(), "-n", "10");
+		}
+		return Collections.emptyList();
+	}
+
 	private Collection<String> buildRunnerArgs(int portNum) {
 		return asList(TestRunnerProcess.class.getName(), runnerClass.getName(), String.valueOf(portNum));
 	}
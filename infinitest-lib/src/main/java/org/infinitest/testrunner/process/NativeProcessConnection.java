@@ -27,6 +27,8 @@
  */
 package org.infinitest.testrunner.process;
 
+import java.util.*;
+
 import org.infinitest.testrunner.*;
 
 public class NativeProcessConnection implements ProcessConnection {
@@ -58,4 +60,19 @@ public class NativeProcessConnection implements ProcessConnection {
 	public TestResults runTest(String testName) {
 		return communicator.sendMessage(testName);
 	}
+
+	@Override
+	public TestResults runTest(String testName, TestEventStream events) {
+		return communicator.sendMessage(testName, events);
+	}
+
+	@Override
+	public void setTimeBudgets(Map<String, Long> budgets) {
+		communicator.sendTimeBudgets(budgets);
+	}
+
+	@Override
+	public void runTests(List<String> testNames, BatchResultsListener listener, TestEventStream events) {
+		communicator.sendBatch(testNames, listener, events);
+	}
 }
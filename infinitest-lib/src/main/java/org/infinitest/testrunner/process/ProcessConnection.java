@@ -27,11 +27,19 @@
  */
 package org.infinitest.testrunner.process;
 
+import java.util.*;
+
 import org.infinitest.testrunner.*;
 
 public interface ProcessConnection {
 	TestResults runTest(String testName);
 
+	TestResults runTest(String testName, TestEventStream events);
+
+	void runTests(List<String> testNames, BatchResultsListener listener, TestEventStream events);
+
+	void setTimeBudgets(Map<String, Long> budgets);
+
 	void close();
 
 	boolean abort();
@@ -31,12 +31,19 @@ import static org.infinitest.util.InfinitestUtils.*;
 
 import java.io.*;
 import java.net.*;
+import java.util.*;
 import java.util.logging.*;
 
 import org.infinitest.*;
 import org.infinitest.testrunner.*;
 
 public class TcpSocketProcessCommunicator {
+	private static final TestEventStream IGNORED_EVENTS = new TestEventStream() {
+		@Override
+		public void publish(TestEvent event) {
+		}
+	};
+
 	private ServerSocket serverSocket;
 	private ObjectInputStream inStream;
 	private ObjectOutputStream outStream;
@@ -105,9 +112,18 @@ public class TcpSocketProcessCommunicator {
 	// Synchronized to prevent sending a message while the socket is being
 	// closed
 	public synchronized TestResults sendMessage(String testName) {
+		return sendMessage(testName, IGNORED_EVENTS);
+	}
+
+	/**
+	 * Method events the runner sends while the test is running are handed to
+	 * the given stream before the results are returned.
+	 */
+	public synchronized TestResults sendMessage(String testName, TestEventStream events) {
 		try {
 			outStream.writeObject(testName);
-			return (TestResults) inStream.readObject();
+			outStream.flush();
+			return (TestResults) readPublishingEvents(events);
 		} catch (IOException e) {
 			throw new TestRunAborted(testName, e);
 		} catch (ClassNotFoundException e) {
@@ -116,4 +132,57 @@ public class TcpSocketProcessCommunicator {
 		}
 
 	}
+
+	/**
+	 * Sends several tests at once. The runner answers with each test name
+	 * followed by its results as soon as that test class is done.
+	 */
+	public synchronized void sendBatch(List<String> testNames, BatchResultsListener listener, TestEventStream events) {
+		Set<String> pendingTests = new LinkedHashSet<String>(testNames);
+		try {
+			outStream.writeObject(new ArrayList<String>(pendingTests));
+			outStream.flush();
+			while (!pendingTests.isEmpty()) {
+				String testName = (String) readPublishingEvents(events);
+				TestResults results = (TestResults) inStream.readObject();
+				pendingTests.remove(testName);
+				listener.testClassFinished(testName, results);
+			}
+		} catch (IOException e) {
+			throw new TestRunAborted(pendingTests.iterator().next(), e);
+		} catch (ClassNotFoundException e) {
+			log("Error reading from socket", e);
+			throw new MissingClassException("Error reading from socket", e);
+		}
+	}
+
+	/**
+	 * Tells the runner how long each test class may run before it is
+	 * considered hung. The runner does not answer.
+	 */
+	public synchronized void sendTimeBudgets(Map<String, Long> budgets) {
+		try {
+			outStream.writeObject(new HashMap<String, Long>(budgets));
+			outStream.flush();
+		} catch (IOException e) {
+			log(Level.WARNING, "Could not send time budgets to the test runner process");
+		}
+	}
+
+	private Object readPublishingEvents(TestEventStream events) throws IOException, ClassNotFoundException {
+		Object message = inStream.readObject();
+		while (message instanceof TestEvent) {
+			events.publish((TestEvent) message);
+			message = inStream.readObject();
+		}
+		if (message instanceof HeapExhausted) {
+			HeapExhausted exhaustion = (HeapExhausted) message;
+			throw new HeapExhaustedException(exhaustion.getTestName(), exhaustion.getResults());
+		}
+		if (message instanceof TestTimedOut) {
+			TestTimedOut timeout = (TestTimedOut) message;
+			throw new TestTimedOutException(timeout.getTestName(), timeout.getResults(), timeout.getThreadDump());
+		}
+		return message;
+	}
 }
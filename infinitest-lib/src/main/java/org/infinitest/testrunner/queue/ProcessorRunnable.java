@@ -27,6 +27,7 @@
  */
 package org.infinitest.testrunner.queue;
 
+import static com.google.common.base.Preconditions.*;
 import static com.google.common.collect.Lists.*;
 import static org.infinitest.util.InfinitestUtils.*;
 
@@ -35,12 +36,15 @@ import java.util.*;
 import org.infinitest.*;
 import org.infinitest.testrunner.*;
 
+import com.google.common.base.*;
+
 class ProcessorRunnable implements Runnable {
 	private final QueueProcessor processor;
 	private final Queue<String> testQueue;
 	private final RunnerEventSupport eventSupport;
-	private final int initialSize;
 	private final ConcurrencyController concurrencySemaphore;
+	private final int initialSize;
+	private int batchSize = 1;
 
 	public ProcessorRunnable(Queue<String> testQueue, QueueProcessor processor, RunnerEventSupport eventSupport, int initialSize, ConcurrencyController concurrencySemaphore) {
 		this.testQueue = testQueue;
@@ -50,23 +54,58 @@ class ProcessorRunnable implements Runnable {
 		this.concurrencySemaphore = concurrencySemaphore;
 	}
 
+	/**
+	 * Tests are taken from the queue this many at a time and handed to the
+	 * runner process together, so it only sets up the test framework once
+	 * per batch.
+	 */
+	public void setBatchSize(int batchSize) {
+		checkArgument(batchSize > 0, "Batch size must be positive");
+		this.batchSize = batchSize;
+	}
+
 	public void terminate() {
 		processor.cleanup();
 	}
 
-	private void fireEvent() {
-		eventSupport.fireQueueEvent(new TestQueueEvent(newArrayList(testQueue), initialSize));
+	private synchronized List<String> nextTests() {
+		List<String> tests = newArrayList();
+		String test;
+		while ((tests.size() < batchSize) && ((test = testQueue.poll()) != null)) {
+			tests.add(test);
+		}
+		return tests;
+	}
+
+	void fireEvent(List<String> addedTests, String completedTest) {
+		TestQueueEvent event;
+		synchronized (this) {
+			event = new TestQueueEvent(addedTests, completedTest, testQueue.peek(), testQueue.size(), initialSize, new QueueSnapshot());
+		}
+		eventSupport.fireQueueEvent(event);
+	}
+
+	private class QueueSnapshot implements Supplier<List<String>> {
+		@Override
+		public List<String> get() {
+			synchronized (ProcessorRunnable.this) {
+				return newArrayList(testQueue);
+			}
+		}
 	}
 
 	@Override
 	public void run() {
 		try {
-			String currentTest = null;
+			List<String> currentTests = Collections.emptyList();
 			try {
 				concurrencySemaphore.acquire();
-				while (!testQueue.isEmpty()) {
-					currentTest = testQueue.poll();
-					processor.process(currentTest);
+				while (!(currentTests = nextTests()).isEmpty()) {
+					if (currentTests.size() == 1) {
+						processor.process(currentTests.get(0));
+					} else {
+						processor.process(currentTests);
+					}
 					// RISK There might be a race condition here.
 					// If we fire all the events for a test
 					// run, and then the run is terminated, it's possible the
@@ -74,14 +113,16 @@ class ProcessorRunnable implements Runnable {
 					// be fired. but testRunComplete would have been fired
 					// already. Is this actually
 					// a problem? I have no idea.
-					fireEvent();
+					for (String completedTest : currentTests) {
+						fireEvent(Collections.<String> emptyList(), completedTest);
+					}
 				}
 			} catch (QueueDispatchException e) {
-				reQueueTestAndTerminateProcess(currentTest);
+				reQueueTestsAndTerminateProcess(currentTests);
 			} catch (InterruptedException e) {
-				reQueueTestAndTerminateProcess(currentTest);
+				reQueueTestsAndTerminateProcess(currentTests);
 			} catch (TestRunAborted e) {
-				reQueueTest(currentTest);
+				reQueueTests(currentTests);
 				// The process is already dead, no need to clean up
 				clearLingeringInterruptedState();
 			} finally {
@@ -99,8 +140,8 @@ class ProcessorRunnable implements Runnable {
 		}
 	}
 
-	private void reQueueTestAndTerminateProcess(String currentTest) {
-		reQueueTest(currentTest);
+	private void reQueueTestsAndTerminateProcess(List<String> currentTests) {
+		reQueueTests(currentTests);
 		processor.cleanup();
 	}
 
@@ -108,10 +149,14 @@ class ProcessorRunnable implements Runnable {
 		Thread.interrupted();
 	}
 
-	private void reQueueTest(String currentTest) {
-		if (currentTest != null) {
+	// Tests of an interrupted batch that had already completed are run again,
+	// the runner process does not tell which of them were done
+	private void reQueueTests(List<String> currentTests) {
+		for (String currentTest : currentTests) {
 			log(currentTest + " was interrupted. Re-running.");
-			testQueue.add(currentTest);
+			synchronized (this) {
+				testQueue.add(currentTest);
+			}
 		}
 	}
 }
\ No newline at end of file
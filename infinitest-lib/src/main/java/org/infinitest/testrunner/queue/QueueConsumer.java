@@ -44,6 +44,7 @@ public abstract class QueueConsumer {
 	private final long testTimeout;
 	private final ExecutorService executor;
 	private ConcurrencyController semaphore;
+	private int batchSize = 1;
 
 	public QueueConsumer(RunnerEventSupport eventSupport, Queue<String> testQueue) {
 		this(eventSupport, testQueue, 2000);
@@ -57,16 +58,23 @@ public abstract class QueueConsumer {
 		semaphore = new SingleLockConcurrencyController();
 	}
 
-	public void push(List<String> tests) {
+	/**
+	 * Stops the run in progress, if any, and starts a new one in a new
+	 * process. The runner process loads test classes with the system class
+	 * loader, so a process that already loaded a changed class would keep
+	 * running its old bytecode.
+	 */
+	public synchronized void push(List<String> tests) {
 		testQueue.addAll(tests);
-		startProcessing();
+		startProcessing(tests);
 	}
 
-	private void startProcessing() {
+	private void startProcessing(List<String> tests) {
 		try {
 			QueueProcessor processor = createQueueProcessor();
 			ProcessorRunnable runnable = new ProcessorRunnable(testQueue, processor, eventSupport, testQueue.size(), semaphore);
-			executor.execute(new ProcessingKickoffRunnable(runnable));
+			runnable.setBatchSize(batchSize);
+			executor.execute(new ProcessingKickoffRunnable(runnable, tests));
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -74,9 +82,11 @@ public abstract class QueueConsumer {
 
 	private class ProcessingKickoffRunnable implements Runnable {
 		private final ProcessorRunnable runnable;
+		private final List<String> addedTests;
 
-		private ProcessingKickoffRunnable(ProcessorRunnable runnable) {
+		private ProcessingKickoffRunnable(ProcessorRunnable runnable, List<String> addedTests) {
 			this.runnable = runnable;
+			this.addedTests = addedTests;
 		}
 
 		@Override
@@ -93,7 +103,7 @@ public abstract class QueueConsumer {
 
 		private void startNewTestRun() {
 			processorThread = new QueueProcessorThread(runnable);
-			eventSupport.fireQueueEvent(new TestQueueEvent(newArrayList(testQueue), testQueue.size()));
+			runnable.fireEvent(addedTests, null);
 			processorThread.start();
 		}
 
@@ -118,6 +128,10 @@ public abstract class QueueConsumer {
 
 	protected abstract QueueProcessor createQueueProcessor() throws IOException;
 
+	public synchronized void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
 	public void setConcurrencySemaphore(ConcurrencyController controller) {
 		semaphore = controller;
 	}
@@ -28,10 +28,13 @@
 package org.infinitest.testrunner.queue;
 
 import java.io.*;
+import java.util.*;
 
 public interface QueueProcessor {
 	void process(String string) throws InterruptedException, IOException;
 
+	void process(List<String> testNames) throws InterruptedException, IOException;
+
 	void close();
 
 	void cleanup();
@@ -31,6 +31,8 @@ import java.util.*;
 
 import org.infinitest.testrunner.*;
 
+import com.google.common.primitives.*;
+
 public class TestComparator implements Comparator<String> {
 	private final RunStatistics stats;
 
@@ -38,8 +40,16 @@ public class TestComparator implements Comparator<String> {
 		this.stats = stats;
 	}
 
+	/**
+	 * Recently failed tests come first. Among the others, the tests that used
+	 * the least CPU time last time come first, so most results show up early.
+	 */
 	@Override
 	public int compare(String test1, String test2) {
-		return new Long(stats.getLastFailureTime(test2)).compareTo(stats.getLastFailureTime(test1));
+		int byFailure = Longs.compare(stats.getLastFailureTime(test2), stats.getLastFailureTime(test1));
+		if (byFailure != 0) {
+			return byFailure;
+		}
+		return Longs.compare(stats.getLastCpuTime(test1), stats.getLastCpuTime(test2));
 	}
 }
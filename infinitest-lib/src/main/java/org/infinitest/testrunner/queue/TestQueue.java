@@ -7,6 +7,8 @@
  * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
  * "David Gageot" <david@gageot.net>, et al.
  *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
  * Permission is hereby granted, free of charge, to any person obtaining a copy
  * of this software and associated documentation files (the "Software"), to deal
  * in the Software without restriction, including without limitation the rights
@@ -27,21 +29,191 @@
  */
 package org.infinitest.testrunner.queue;
 
+import static com.google.common.collect.Maps.*;
+
 import java.util.*;
-import java.util.concurrent.*;
 
-public class TestQueue extends PriorityBlockingQueue<String> {
-	private static final long serialVersionUID = -1L;
+import org.infinitest.util.*;
+
+/**
+ * A thread safe priority queue of test names that never holds the same test
+ * twice.
+ * <p>
+ * Tests are kept in a binary heap together with an index of their position,
+ * so adding and removing a test are O(log n) and checking whether a test is
+ * queued is O(1). Tests with the same priority are run in
+ * the order they were added.
+ */
+public class TestQueue extends AbstractQueue<String> {
+	private final Comparator<String> comparator;
+	private final Map<String, Integer> positions;
+	private String[] heap;
+	private long[] sequences;
+	private int size;
+	private long nextSequence;
 
 	public TestQueue(Comparator<String> comparator) {
-		super(11, comparator);
+		this.comparator = comparator;
+		positions = newHashMap();
+		heap = new String[16];
+		sequences = new long[16];
 	}
 
+	/**
+	 * @return false if the test is already queued
+	 */
 	@Override
 	public boolean add(String testName) {
-		if (!contains(testName)) {
-			return super.add(testName);
+		return offer(testName);
+	}
+
+	@Override
+	public synchronized boolean offer(String testName) {
+		if (!insert(testName)) {
+			return false;
 		}
-		return false;
+		notifyAll();
+		return true;
+	}
+
+	@Override
+	public synchronized boolean addAll(Collection<? extends String> testNames) {
+		boolean added = false;
+		for (String each : testNames) {
+			added |= insert(each);
+		}
+		if (added) {
+			notifyAll();
+		}
+		return added;
+	}
+
+	@Override
+	public synchronized String poll() {
+		if (size == 0) {
+			return null;
+		}
+		return removeAt(0);
+	}
+
+	public synchronized String take() throws InterruptedException {
+		while (size == 0) {
+			wait();
+		}
+		return poll();
+	}
+
+	@Override
+	public synchronized String peek() {
+		return size == 0 ? null : heap[0];
+	}
+
+	@Override
+	public synchronized boolean remove(Object test) {
+		Integer position = positions.get(test);
+		if (position == null) {
+			return false;
+		}
+		removeAt(position);
+		return true;
+	}
+
+	@Override
+	public synchronized boolean contains(Object test) {
+		return positions.containsKey(test);
+	}
+
+	@Override
+	public synchronized int size() {
+		return size;
+	}
+
+	@Override
+	public synchronized void clear() {
+		while (size > 0) {
+			remove(heap[size - 1]);
+		}
+	}
+
+	/**
+	 * Iterates over a copy of the queue, in no particular order.
+	 */
+	@Override
+	public synchronized Iterator<String> iterator() {
+		return Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(heap, size))).iterator();
+	}
+
+	private boolean insert(String testName) {
+		if (positions.containsKey(testName)) {
+			return false;
+		}
+		if (size == heap.length) {
+			heap = Arrays.copyOf(heap, size * 2);
+			sequences = Arrays.copyOf(sequences, size * 2);
+		}
+		int position = size++;
+		place(position, ClassNameTable.canonical(testName), nextSequence++);
+		siftUp(position);
+		return true;
+	}
+
+	private String removeAt(int position) {
+		String removed = heap[position];
+		positions.remove(removed);
+		int last = --size;
+		if (position != last) {
+			place(position, heap[last], sequences[last]);
+			siftDown(siftUp(position));
+		}
+		heap[last] = null;
+		return removed;
+	}
+
+	private int siftUp(int position) {
+		String test = heap[position];
+		long sequence = sequences[position];
+		while (position > 0) {
+			int parent = (position - 1) >>> 1;
+			if (compare(test, sequence, parent) >= 0) {
+				break;
+			}
+			place(position, heap[parent], sequences[parent]);
+			position = parent;
+		}
+		place(position, test, sequence);
+		return position;
+	}
+
+	private void siftDown(int position) {
+		String test = heap[position];
+		long sequence = sequences[position];
+		int half = size >>> 1;
+		while (position < half) {
+			int child = (2 * position) + 1;
+			int right = child + 1;
+			if ((right < size) && (compare(heap[right], sequences[right], child) < 0)) {
+				child = right;
+			}
+			if (compare(test, sequence, child) <= 0) {
+				break;
+			}
+			place(position, heap[child], sequences[child]);
+			position = child;
+		}
+		place(position, test, sequence);
+	}
+
+	private int compare(String test, long sequence, int position) {
+		int result = comparator.compare(test, heap[position]);
+		if (result != 0) {
+			return result;
+		}
+		return sequence < sequences[position] ? -1 : (sequence == sequences[position] ? 0 : 1);
+	}
+
+	private void place(int position, String test, long sequence) {
+		heap[position] = test;
+		sequences[position] = sequence;
+		positions.put(test, position);
 	}
 }
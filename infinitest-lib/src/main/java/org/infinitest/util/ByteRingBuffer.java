@@ -0,0 +1,82 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.util;
+
+import static java.lang.Math.*;
+
+/**
+ * A fixed size, thread safe FIFO buffer of bytes. Writes never block: they
+ * accept as many bytes as there is room for and the caller decides what to do
+ * with the rest.
+ */
+public class ByteRingBuffer {
+	private final byte[] bytes;
+	private int start;
+	private int size;
+
+	public ByteRingBuffer(int capacity) {
+		bytes = new byte[capacity];
+	}
+
+	/**
+	 * @return the number of bytes that were written, which is less than length
+	 *         when the buffer is full
+	 */
+	public synchronized int write(byte[] source, int offset, int length) {
+		int written = min(length, bytes.length - size);
+		int end = (start + size) % bytes.length;
+		int firstPart = min(written, bytes.length - end);
+		System.arraycopy(source, offset, bytes, end, firstPart);
+		System.arraycopy(source, offset + firstPart, bytes, 0, written - firstPart);
+		size += written;
+		return written;
+	}
+
+	/**
+	 * @return the number of bytes that were read, 0 if the buffer is empty
+	 */
+	public synchronized int read(byte[] destination, int offset, int length) {
+		int read = min(length, size);
+		int firstPart = min(read, bytes.length - start);
+		System.arraycopy(bytes, start, destination, offset, firstPart);
+		System.arraycopy(bytes, 0, destination, offset + firstPart, read - firstPart);
+		start = (start + read) % bytes.length;
+		size -= read;
+		return read;
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return bytes.length;
+	}
+}
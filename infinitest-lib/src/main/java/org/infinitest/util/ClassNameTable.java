@@ -0,0 +1,118 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.util;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A process-wide symbol table for class names. Each distinct name is stored
+ * once and given a compact int id, so the index, the test queue and the run
+ * statistics of every core share the same String instances, and dependency
+ * lists can be stored as <code>int[]</code>.
+ * <p>
+ * Ids are never reused, and names are kept for the life of the process.
+ */
+public final class ClassNameTable {
+	public static final int UNKNOWN = -1;
+
+	private static final ConcurrentMap<String, Integer> IDS = new ConcurrentHashMap<String, Integer>();
+	private static volatile String[] names = new String[1024];
+	private static int size;
+
+	private ClassNameTable() {
+	}
+
+	public static int idFor(String className) {
+		Integer id = IDS.get(className);
+		if (id == null) {
+			id = register(className);
+		}
+		return id;
+	}
+
+	/**
+	 * Looks up the id of a name without registering it, for readers that must
+	 * not grow the table.
+	 * 
+	 * @return the id of the name, or {@link #UNKNOWN} if it was never
+	 *         registered
+	 */
+	public static int existingIdFor(String className) {
+		Integer id = IDS.get(className);
+		return (id == null) ? UNKNOWN : id;
+	}
+
+	public static String nameFor(int id) {
+		return names[id];
+	}
+
+	/**
+	 * @return the shared instance of the given class name
+	 */
+	public static String canonical(String className) {
+		return nameFor(idFor(className));
+	}
+
+	public static int[] idsFor(Collection<String> classNames) {
+		int[] ids = new int[classNames.size()];
+		int index = 0;
+		for (String each : classNames) {
+			ids[index++] = idFor(each);
+		}
+		return ids;
+	}
+
+	public static String[] namesFor(int[] ids) {
+		String[] classNames = new String[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			classNames[i] = nameFor(ids[i]);
+		}
+		return classNames;
+	}
+
+	public static int size() {
+		return IDS.size();
+	}
+
+	private static synchronized int register(String className) {
+		Integer id = IDS.get(className);
+		if (id != null) {
+			return id;
+		}
+		if (size == names.length) {
+			names = Arrays.copyOf(names, size * 2);
+		}
+		// The name must be in the array before its id is visible to readers
+		names[size] = className;
+		IDS.put(className, size);
+		return size++;
+	}
+}
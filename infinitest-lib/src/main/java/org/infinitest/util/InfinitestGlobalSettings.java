@@ -39,10 +39,12 @@ import java.util.logging.*;
 public class InfinitestGlobalSettings {
 	private static Level logLevel = Level.ALL;
 	private static long slowTestTimeLimit = 500;
+	private static long heavyTestAllocationLimit = 256 * 1024 * 1024;
 
 	public static void resetToDefaults() {
 		setLogLevel(INFO);
 		setSlowTestTimeLimit(500);
+		setHeavyTestAllocationLimit(256 * 1024 * 1024);
 	}
 
 	public static Level getLogLevel() {
@@ -60,4 +62,16 @@ public class InfinitestGlobalSettings {
 	public static long getSlowTestTimeLimit() {
 		return slowTestTimeLimit;
 	}
+
+	/**
+	 * Test methods that allocate more bytes than this are marked, like slow
+	 * tests.
+	 */
+	public static void setHeavyTestAllocationLimit(long allocationLimit) {
+		heavyTestAllocationLimit = allocationLimit;
+	}
+
+	public static long getHeavyTestAllocationLimit() {
+		return heavyTestAllocationLimit;
+	}
 }
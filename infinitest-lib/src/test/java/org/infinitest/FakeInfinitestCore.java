@@ -56,6 +56,9 @@ public class FakeInfinitestCore implements InfinitestCore {
 	public void reload() {
 	}
 
+	public void runTests(List<String> testNames) {
+	}
+
 	public void setRuntimeEnvironment(RuntimeEnvironment environment) {
 	}
 
@@ -90,4 +93,8 @@ public class FakeInfinitestCore implements InfinitestCore {
 	public Collection<JavaClass> update(Collection<File> changedFiles) {
 		throw new UnsupportedOperationException();
 	}
+
+	public void cancelUpdate() {
+		throw new UnsupportedOperationException();
+	}
 }
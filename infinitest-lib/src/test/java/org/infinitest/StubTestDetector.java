@@ -31,6 +31,7 @@ import static java.util.Collections.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.atomic.*;
 
 import org.infinitest.parser.*;
 
@@ -51,6 +52,10 @@ class StubTestDetector implements TestDetector {
 		return emptySet();
 	}
 
+	@Override
+	public void setCancellationFlag(AtomicBoolean cancelled) {
+	}
+
 	public boolean isEmpty() {
 		throw new UnsupportedOperationException();
 	}
@@ -68,4 +73,19 @@ class StubTestDetector implements TestDetector {
 	public Set<String> getCurrentTests() {
 		return emptySet();
 	}
-}
\ No newline at end of file
+
+	@Override
+	public Set<String> getDisabledTests() {
+		return emptySet();
+	}
+
+	@Override
+	public String getInputFingerprint(JavaClass test) {
+		return null;
+	}
+
+	@Override
+	public Collection<File> switchCommit(IndexSnapshotStore store, String previousCommit, String commit) {
+		return emptySet();
+	}
+}
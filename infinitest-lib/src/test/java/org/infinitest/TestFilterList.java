@@ -95,6 +95,33 @@ public class TestFilterList {
     assertTrue(filter.match(javaClass(TestFilterList.class)));
   }
 
+  @Test
+  public void testPrefixAndRegexFiltersTogether() {
+    TestFilter filter = new RegexFileFilter(file("com\\.fakeco\\.fakeproduct\\.simple\\..*\n.*TestFilterList\norg\\.jmock\\..*Test"));
+
+    assertTrue(filter.match(javaClass(com.fakeco.fakeproduct.simple.PassingTest.class)));
+    assertTrue(filter.match(javaClass(TestFilterList.class)));
+    assertTrue(filter.match(javaClass("org.jmock.AcceptanceTest")));
+    assertFalse(filter.match(javaClass(com.fakeco.fakeproduct.TestFakeProduct.class)));
+  }
+
+  @Test
+  public void testBackReferences() {
+    TestFilter filter = new RegexFileFilter(file("foo\n(\\w+)\\.\\1"));
+
+    assertTrue(filter.match(javaClass("bar.bar")));
+    assertFalse(filter.match(javaClass("bar.baz")));
+  }
+
+  @Test
+  public void testUnterminatedQuotes() {
+    TestFilter filter = new RegexFileFilter(file("\\Qfoo$Bar\n.*Other"));
+
+    assertTrue(filter.match(javaClass("foo$Bar")));
+    assertTrue(filter.match(javaClass("com.Other")));
+    assertFalse(filter.match(javaClass("fooXBar")));
+  }
+
   static File file(String content) {
     try {
       File file = temporaryFolder.newFile();
@@ -123,4 +123,26 @@ public class WhenAggregatingTestQueues {
 	private TestQueueListener listenerForCore(int coreNum) {
 		return listeners.get(coreNum);
 	}
+
+	@Test
+	public void shouldUpdateTheAggregatedCountersFromEachEvent() {
+		listenerForCore(0).testQueueUpdated(new TestQueueEvent(asList("test1", "test2"), 2));
+		listenerForCore(1).testQueueUpdated(new TestQueueEvent(asList("test3"), 1));
+		listenerForCore(0).testQueueUpdated(new TestQueueEvent(asList("test2"), 2));
+
+		assertEquals(2, lastEvent().getSize());
+		assertEquals(3, lastEvent().getInitialSize());
+		assertEquals(1, lastEvent().getTestsRun());
+		assertEquals("test2", lastEvent().getCurrentTest());
+	}
+
+	@Test
+	public void shouldReportTheCurrentTestOfAnotherCoreWhenACoreIsDone() {
+		listenerForCore(0).testQueueUpdated(new TestQueueEvent(asList("test1"), 1));
+		listenerForCore(1).testQueueUpdated(new TestQueueEvent(asList("test3"), 1));
+		listenerForCore(0).testQueueUpdated(new TestQueueEvent(Collections.<String> emptyList(), 1));
+
+		assertEquals("test3", lastEvent().getCurrentTest());
+		assertEquals(asList("test3"), lastEvent().getTestQueue());
+	}
 }
@@ -0,0 +1,173 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest;
+
+import static java.util.Arrays.*;
+import static java.util.Collections.*;
+import static org.infinitest.LaunchProfile.*;
+import static org.infinitest.testrunner.TestEvent.*;
+import static org.infinitest.util.FakeEnvironments.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.infinitest.testrunner.*;
+import org.junit.*;
+
+public class WhenChoosingALaunchProfile {
+	private RunStatistics history;
+
+	@Before
+	public void inContext() {
+		history = new RunStatistics();
+	}
+
+	@Test
+	public void shouldStartQuicklyWhenTheTestsNeverRan() {
+		LaunchPolicy policy = LaunchPolicy.choose(ADAPTIVE, 256, asList("NewTest"), history);
+
+		assertEquals(FAST_START, policy.getProfile());
+		assertEquals(256, policy.getHeapSize());
+		List<String> args = policy.createArguments(Collections.<String> emptyList());
+		assertTrue(args.toString(), args.containsAll(asList("-mx256m", "-XX:TieredStopAtLevel=1", "-XX:+UseSerialGC", "-Xms32m")));
+	}
+
+	@Test
+	public void shouldPreferThroughputForLongSuites() {
+		testTook("SlowTest", 6000);
+		testTook("OtherSlowTest", 5000);
+
+		LaunchPolicy policy = LaunchPolicy.choose(ADAPTIVE, 256, asList("SlowTest", "OtherSlowTest"), history);
+
+		assertEquals(THROUGHPUT, policy.getProfile());
+		List<String> args = policy.createArguments(Collections.<String> emptyList());
+		assertTrue(args.toString(), args.containsAll(asList("-mx256m", "-Xms256m", "-XX:+UseParallelGC")));
+		assertFalse(args.toString(), args.contains("-XX:TieredStopAtLevel=1"));
+	}
+
+	@Test
+	public void shouldDoubleTheHeapWhenATestRanOutOfMemory() {
+		history.testCaseComplete(new TestCaseEvent("HungryTest", this, new TestResults(methodFailed("HungryTest", "shouldEat", new OutOfMemoryError()))));
+
+		LaunchPolicy policy = LaunchPolicy.choose(ADAPTIVE, 256, asList("HungryTest"), history);
+
+		assertEquals(THROUGHPUT, policy.getProfile());
+		assertEquals(512, policy.getHeapSize());
+		assertTrue(policy.toString(), policy.toString().contains("1 ran out of memory"));
+	}
+
+	@Test
+	public void shouldForgetMemoryProblemsOnceTheTestStopsRunningOut() {
+		history.testCaseComplete(new TestCaseEvent("HungryTest", this, new TestResults(methodFailed("HungryTest", "shouldEat", new OutOfMemoryError()))));
+		history.testCaseComplete(new TestCaseEvent("HungryTest", this, new TestResults()));
+
+		assertFalse(history.ranOutOfMemory("HungryTest"));
+	}
+
+	@Test
+	public void shouldGiveTestsTheHeapTheyTurnedOutToNeed() {
+		history.recordRequiredHeapSize("HungryTest", 1024);
+
+		LaunchPolicy policy = LaunchPolicy.choose(FAST_START, 256, asList("HungryTest", "OtherTest"), history);
+
+		assertEquals(1024, policy.getHeapSize());
+		assertEquals("fast-start profile, 1024m heap (requested, tests needed 1024m)", policy.toString());
+	}
+
+	@Test
+	public void shouldUseTheRequestedProfile() {
+		testTook("SlowTest", 60000);
+
+		LaunchPolicy policy = LaunchPolicy.choose(FAST_START, 256, asList("SlowTest"), history);
+
+		assertEquals(FAST_START, policy.getProfile());
+		assertEquals("fast-start profile, 256m heap (requested)", policy.toString());
+	}
+
+	@Test
+	public void shouldLeaveHeapAndCollectorChoicesToTheUser() {
+		LaunchPolicy policy = LaunchPolicy.choose(THROUGHPUT, 256, Collections.<String> emptyList(), history);
+
+		List<String> args = policy.createArguments(asList("-Xmx128m", "-XX:+UseG1GC"));
+
+		assertEquals(asList("-mx256m"), args);
+	}
+
+	@Test
+	public void shouldOnlySetTheHeapByDefault() {
+		RuntimeEnvironment environment = fakeEnvironment();
+		environment.setClassDataSharing(null);
+
+		assertEquals(STANDARD, environment.getLaunchPolicy().getProfile());
+		assertEquals(asList("-mx256m"), environment.getLaunchPolicy().createArguments(Collections.<String> emptyList()));
+	}
+
+	@Test
+	public void shouldReadTheProfileFromTheJvmArguments() {
+		RuntimeEnvironment environment = fakeEnvironment();
+		environment.setClassDataSharing(null);
+		environment.addVMArgs(asList("-Dinfinitest.launch.profile=fast-start"));
+
+		assertEquals(FAST_START, environment.getLaunchPolicy().getProfile());
+	}
+
+	@Test
+	public void shouldIgnoreAnUnknownProfile() {
+		RuntimeEnvironment environment = fakeEnvironment();
+		environment.setLaunchProfile(THROUGHPUT);
+		environment.addVMArgs(asList("-Dinfinitest.launch.profile=turbo"));
+
+		assertEquals(THROUGHPUT, environment.getLaunchProfile());
+	}
+
+	@Test
+	public void shouldResolveTheAdaptiveProfileAgainstTheScheduledTests() {
+		RuntimeEnvironment environment = fakeEnvironment();
+		environment.setClassDataSharing(null);
+		environment.setLaunchProfile(ADAPTIVE);
+		environment.setTestHistory(history);
+		testTook("SlowTest", 20000);
+
+		assertEquals(FAST_START, environment.getLaunchPolicy().getProfile());
+		RuntimeEnvironment scheduled = environment.withScheduledTests(asList("SlowTest"));
+		assertEquals(THROUGHPUT, scheduled.getLaunchPolicy().getProfile());
+		assertTrue(scheduled.createProcessArguments().contains("-XX:+UseParallelGC"));
+		assertEquals(environment, scheduled);
+	}
+
+	private void testTook(String testName, long duration) {
+		MethodStats stats = new MethodStats("shouldRun");
+		stats.startTime = 1000;
+		stats.stopTime = 1000 + duration;
+		TestResults results = new TestResults();
+		results.addMethodStats(singleton(stats));
+		history.testCaseComplete(new TestCaseEvent(testName, this, results));
+	}
+}
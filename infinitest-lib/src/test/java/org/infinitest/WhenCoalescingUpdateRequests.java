@@ -0,0 +1,172 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest;
+
+import static com.google.common.collect.Sets.*;
+import static java.util.Arrays.*;
+import static java.util.concurrent.TimeUnit.*;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+import org.mockito.*;
+import org.mockito.invocation.*;
+import org.mockito.stubbing.*;
+
+public class WhenCoalescingUpdateRequests {
+	private InfinitestCore core;
+	private UpdateScheduler scheduler;
+
+	@Before
+	public void inContext() {
+		core = mock(InfinitestCore.class);
+		scheduler = new UpdateScheduler(core, 50, 1000);
+	}
+
+	@After
+	public void cleanup() {
+		scheduler.shutdown();
+	}
+
+	@Test
+	public void shouldRunASingleAnalysisForABurstOfRequests() {
+		for (int i = 0; i < 500; i++) {
+			scheduler.requestUpdate();
+		}
+
+		verify(core, timeout(1000)).update();
+		verify(core, after(200).times(1)).update();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void shouldMergeTheChangedFilesOfEachRequest() {
+		scheduler.requestUpdate(asList(new File("A.class")));
+		scheduler.requestUpdate(asList(new File("B.class"), new File("A.class")));
+
+		ArgumentCaptor<Collection> files = ArgumentCaptor.forClass(Collection.class);
+		verify(core, timeout(1000)).update(files.capture());
+		assertEquals(newHashSet(new File("A.class"), new File("B.class")), newHashSet(files.getValue()));
+		verify(core, never()).update();
+	}
+
+	@Test
+	public void shouldNotWaitForeverWhenRequestsKeepComing() throws InterruptedException {
+		scheduler = new UpdateScheduler(core, 50, 200);
+		long start = System.currentTimeMillis();
+		while ((System.currentTimeMillis() - start) < 600) {
+			scheduler.requestUpdate();
+			Thread.sleep(10);
+		}
+
+		verify(core, atLeast(2)).update();
+	}
+
+	@Test
+	public void shouldRunAFollowUpAnalysisForRequestsReceivedDuringAnAnalysis() throws InterruptedException {
+		final Object lock = new Object();
+		when(core.update()).thenAnswer(new Answer<Integer>() {
+			@Override
+			public Integer answer(InvocationOnMock invocation) throws InterruptedException {
+				synchronized (lock) {
+					lock.wait(200);
+				}
+				return 0;
+			}
+		});
+		scheduler.requestUpdate();
+		verify(core, timeout(1000)).update();
+
+		scheduler.requestUpdate();
+		scheduler.requestUpdate();
+
+		verify(core, timeout(2000).times(2)).update();
+		verify(core, after(500).times(2)).update();
+	}
+
+	@Test
+	public void shouldCancelAnAnalysisThatANewerRequestSupersedes() throws InterruptedException {
+		final CountDownLatch started = new CountDownLatch(1);
+		final AtomicBoolean cancelled = new AtomicBoolean();
+		final AtomicBoolean interrupted = new AtomicBoolean();
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) {
+				cancelled.set(true);
+				return null;
+			}
+		}).when(core).cancelUpdate();
+		when(core.update()).thenAnswer(new Answer<Integer>() {
+			@Override
+			public Integer answer(InvocationOnMock invocation) {
+				started.countDown();
+				long start = System.currentTimeMillis();
+				while ((System.currentTimeMillis() - start) < 1000) {
+					interrupted.compareAndSet(false, Thread.currentThread().isInterrupted());
+					if (cancelled.get()) {
+						throw new CancellationException();
+					}
+				}
+				return 0;
+			}
+		}).thenReturn(0);
+		scheduler.requestUpdate();
+		assertTrue(started.await(1, SECONDS));
+
+		scheduler.requestUpdate();
+
+		verify(core, timeout(1000).times(2)).update();
+		verify(core).cancelUpdate();
+		assertFalse("The analysis thread must not be interrupted", interrupted.get());
+	}
+
+	@Test
+	public void shouldWaitLongerAfterSlowAnalyses() throws InterruptedException {
+		when(core.update(anyCollectionOf(File.class))).thenAnswer(new Answer<Collection<?>>() {
+			@Override
+			public Collection<?> answer(InvocationOnMock invocation) throws InterruptedException {
+				Thread.sleep(150);
+				return Collections.emptySet();
+			}
+		});
+
+		scheduler.requestUpdate(asList(new File("A.class")));
+		verify(core, timeout(1000)).update(anyCollectionOf(File.class));
+		Thread.sleep(200);
+
+		assertTrue(scheduler.getQuietPeriod() >= 150);
+	}
+}
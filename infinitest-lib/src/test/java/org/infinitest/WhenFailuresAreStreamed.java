@@ -0,0 +1,95 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest;
+
+import static com.google.common.collect.Iterables.*;
+import static org.infinitest.testrunner.TestEvent.*;
+import static org.junit.Assert.*;
+
+import org.infinitest.testrunner.*;
+import org.junit.*;
+
+public class WhenFailuresAreStreamed extends ResultCollectorTestSupport {
+	private TestEvent failure;
+
+	@Before
+	public void inContext() {
+		failure = methodFailed("message", DEFAULT_TEST_NAME, "methodName", new AssertionError());
+	}
+
+	@Test
+	public void shouldReportFailuresBeforeTheTestCaseCompletes() {
+		collector.testMethodFailed(failure);
+
+		assertEquals(failure, getOnlyElement(listener.added));
+		assertTrue(listener.removed.isEmpty());
+	}
+
+	@Test
+	public void shouldNotReportAStreamedFailureAgainWhenTheTestCaseCompletes() {
+		collector.testMethodFailed(failure);
+		testRun(failure);
+
+		assertEquals(failure, getOnlyElement(listener.added));
+		assertTrue(listener.changed.isEmpty());
+		assertEquals(failure, getOnlyElement(collector.getFailures()));
+	}
+
+	@Test
+	public void shouldNotReportFailuresThatAreAlreadyKnown() {
+		testRun(failure);
+		listener.clear();
+
+		collector.testMethodFailed(failure);
+		testRun(failure);
+
+		assertTrue(listener.added.isEmpty());
+		assertTrue(listener.removed.isEmpty());
+	}
+
+	@Test
+	public void shouldRemoveStreamedFailuresMissingFromTheCompleteResults() {
+		collector.testMethodFailed(failure);
+		testRunWith(DEFAULT_TEST_NAME);
+
+		assertEquals(failure, getOnlyElement(listener.removed));
+		assertTrue(collector.getFailures().isEmpty());
+		assertTrue(collector.getFailuresForPointOfFailure(failure.getPointOfFailure()).isEmpty());
+	}
+
+	@Test
+	public void shouldRemoveUnconfirmedFailuresWhenTheRunCompletes() {
+		collector.testMethodFailed(methodFailed("message", "SomeOtherTest", "methodName", new AssertionError()));
+		collector.testRunComplete();
+
+		assertEquals("SomeOtherTest", getOnlyElement(listener.removed).getTestName());
+		assertTrue(listener.failures.isEmpty());
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest;
+
+import static org.infinitest.ConcurrencyGovernor.*;
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+import com.google.common.base.*;
+
+public class WhenGoverningConcurrency {
+	private MultiCoreConcurrencyController controller;
+	private FakeSystemLoad systemLoad;
+	private FakeTicker ticker;
+	private ConcurrencyGovernor governor;
+
+	@Before
+	public void inContext() {
+		controller = new MultiCoreConcurrencyController(1, 32);
+		systemLoad = new FakeSystemLoad();
+		systemLoad.processors = 32;
+		systemLoad.loadAverage = 0;
+		systemLoad.availableMemory = 64 * MEMORY_PER_CORE;
+		ticker = new FakeTicker();
+		governor = new ConcurrencyGovernor(controller, systemLoad, ticker);
+		governor.setMaximumCoreCount(32);
+	}
+
+	@Test
+	public void shouldGrowOneCoreAtATimeOnAnIdleMachine() {
+		assertEquals(3, adjustLater());
+		assertEquals(4, adjustLater());
+		assertEquals(4, controller.getCoreCount());
+	}
+
+	@Test
+	public void shouldWaitForTheLoadAverageBeforeGrowingAgain() {
+		assertEquals(2, governor.adjust());
+
+		ticker.nanos += GROWTH_INTERVAL / 2;
+		assertEquals(2, governor.adjust());
+		ticker.nanos += GROWTH_INTERVAL / 2;
+		assertEquals(3, governor.adjust());
+	}
+
+	@Test
+	public void shouldUseTheWholeMachineWhenItIsIdle() {
+		for (int i = 0; i < 40; i++) {
+			adjustLater();
+		}
+
+		assertEquals(32, controller.getCoreCount());
+	}
+
+	@Test
+	public void shouldNeverExceedTheMaximumTheUserChose() {
+		governor.setMaximumCoreCount(2);
+
+		assertEquals(2, adjustLater());
+		assertEquals(2, adjustLater());
+	}
+
+	@Test
+	public void shouldRespectTheCpuQuota() {
+		systemLoad.processors = 2;
+
+		assertEquals(2, adjustLater());
+		assertEquals(2, adjustLater());
+	}
+
+	@Test
+	public void shouldBackOffWhenTheMachineIsOverloaded() {
+		adjustLater();
+		adjustLater();
+
+		systemLoad.loadAverage = 34;
+
+		assertEquals(2, governor.adjust());
+		assertEquals(1, governor.adjust());
+	}
+
+	@Test
+	public void shouldNotGrowWithoutMemoryForAnotherRunnerProcess() {
+		systemLoad.availableMemory = MEMORY_PER_CORE / 2;
+
+		assertEquals(2, adjustLater());
+		assertEquals(2, adjustLater());
+	}
+
+	@Test
+	public void shouldTestOnASingleCoreWhileTheIdeIsBusy() {
+		adjustLater();
+
+		governor.setIdeBusy(true);
+		assertEquals(1, controller.getCoreCount());
+		assertEquals(1, adjustLater());
+
+		governor.setIdeBusy(false);
+		assertEquals(3, adjustLater());
+	}
+
+	@Test
+	public void shouldBackOffWhileRunsHoldTheirCores() throws InterruptedException {
+		adjustLater();
+		controller.acquire();
+		controller.acquire();
+		controller.acquire();
+
+		governor.setIdeBusy(true);
+		assertEquals(1, controller.getCoreCount());
+		controller.release();
+		controller.release();
+		controller.release();
+
+		assertEquals(1, controller.availablePermits());
+	}
+
+	@Test
+	public void shouldIgnoreLoadAndMemoryWhenTheyAreUnknown() {
+		systemLoad.loadAverage = -1;
+		systemLoad.availableMemory = -1;
+		governor.setMaximumCoreCount(3);
+
+		assertEquals(3, adjustLater());
+	}
+
+	@Test
+	public void shouldReadTheCpuQuotaOfTheCgroup() {
+		assertEquals(0, OperatingSystemLoad.cpusFromCpuMax("max 100000"));
+		assertEquals(2, OperatingSystemLoad.cpusFromCpuMax("200000 100000\n"));
+		assertEquals(2, OperatingSystemLoad.cpusFromCpuMax("150000 100000"));
+		assertEquals(1, OperatingSystemLoad.cpusFromCpuMax("50000 100000"));
+	}
+
+	@Test
+	public void shouldCountReclaimableMemoryAsAvailable() {
+		String meminfo = "MemTotal:       16318480 kB\nMemFree:          532000 kB\nMemAvailable:    8000000 kB\n";
+
+		assertEquals(8000000L * 1024, OperatingSystemLoad.availableMemoryFromMeminfo(meminfo));
+		assertEquals(-1, OperatingSystemLoad.availableMemoryFromMeminfo("MemTotal: 1 kB\n"));
+	}
+
+	@Test
+	public void shouldReadTheCpuUsageOfTheCgroup() {
+		String cpuStat = "usage_usec 2500\nuser_usec 2000\nsystem_usec 500\n";
+
+		assertEquals(2500000, OperatingSystemLoad.cpuUsageFromCpuStat(cpuStat));
+		assertEquals(-1, OperatingSystemLoad.cpuUsageFromCpuStat("nr_periods 0\n"));
+	}
+
+	private int adjustLater() {
+		ticker.nanos += GROWTH_INTERVAL;
+		return governor.adjust();
+	}
+
+	private static class FakeTicker extends Ticker {
+		long nanos;
+
+		@Override
+		public long read() {
+			return nanos;
+		}
+	}
+
+	private static class FakeSystemLoad implements SystemLoad {
+		int processors;
+		double loadAverage;
+		long availableMemory;
+
+		@Override
+		public int availableProcessors() {
+			return processors;
+		}
+
+		@Override
+		public double loadAverage() {
+			return loadAverage;
+		}
+
+		@Override
+		public long availableMemory() {
+			return availableMemory;
+		}
+	}
+}
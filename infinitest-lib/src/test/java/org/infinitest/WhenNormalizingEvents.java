@@ -0,0 +1,151 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest;
+
+import static com.google.common.collect.Lists.*;
+import static java.util.Arrays.*;
+import static org.infinitest.ConsoleOutputListener.OutputType.*;
+import static org.infinitest.EventSupport.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.infinitest.testrunner.*;
+import org.junit.*;
+
+public class WhenNormalizingEvents {
+	private List<Runnable> pushedRunnables;
+	private ControlledEventQueue eventQueue;
+	private EventNormalizer normalizer;
+	private List<String> received;
+
+	@Before
+	public void inContext() {
+		pushedRunnables = newArrayList();
+		received = newArrayList();
+		eventQueue = new ControlledEventQueue() {
+			@Override
+			public synchronized void push(Runnable runnable) {
+				pushedRunnables.add(runnable);
+				super.push(runnable);
+			}
+		};
+		normalizer = new EventNormalizer(eventQueue);
+	}
+
+	@Test
+	public void shouldDispatchABatchOfEventsWithASingleRunnable() {
+		TestResultsListener listener = normalizer.testEventNormalizer(new TestResultsListener() {
+			@Override
+			public void testCaseStarting(TestEvent event) {
+				received.add("starting " + event.getTestName());
+			}
+
+			@Override
+			public void testCaseComplete(TestCaseEvent event) {
+				received.add("complete " + event.getTestName());
+			}
+		});
+
+		listener.testCaseComplete(testCaseFailing("test1", "", new Exception()));
+		listener.testCaseComplete(testCaseFailing("test2", "", new Exception()));
+		eventQueue.flush();
+
+		assertEquals(1, pushedRunnables.size());
+		assertEquals(asList("complete test1", "complete test2"), received);
+	}
+
+	@Test
+	public void shouldConcatenateConsoleOutputWaitingForDispatch() {
+		ConsoleOutputListener listener = normalizer.consoleEventNormalizer(new ConsoleOutputListener() {
+			@Override
+			public void consoleOutputUpdate(String newText, OutputType outputType) {
+				received.add(outputType + ":" + newText);
+			}
+		});
+
+		listener.consoleOutputUpdate("a", STDOUT);
+		listener.consoleOutputUpdate("b", STDOUT);
+		listener.consoleOutputUpdate("c", STDERR);
+		listener.consoleOutputUpdate("d", STDOUT);
+		eventQueue.flush();
+
+		assertEquals(asList("STDOUT:ab", "STDERR:c", "STDOUT:d"), received);
+	}
+
+	@Test
+	public void shouldOnlyDispatchTheLatestQueueUpdate() {
+		final List<TestQueueEvent> events = newArrayList();
+		TestQueueListener listener = normalizer.testQueueNormalizer(new TestQueueAdapter() {
+			@Override
+			public void testQueueUpdated(TestQueueEvent event) {
+				events.add(event);
+			}
+
+			@Override
+			public void testRunComplete() {
+				received.add("complete");
+			}
+		});
+
+		listener.testQueueUpdated(new TestQueueEvent(asList("test1", "test2"), 2));
+		listener.testQueueUpdated(new TestQueueEvent(asList("test2"), 2));
+		listener.testRunComplete();
+		listener.testQueueUpdated(new TestQueueEvent(Collections.<String> emptyList(), 2));
+		eventQueue.flush();
+
+		assertEquals(2, events.size());
+		assertEquals(1, events.get(0).getSize());
+		assertEquals(asList("complete"), received);
+		assertTrue(events.get(1).isEmpty());
+	}
+
+	@Test
+	public void shouldKeepDeliveringEventsAfterAListenerFails() {
+		ConsoleOutputListener failing = normalizer.consoleEventNormalizer(new ConsoleOutputListener() {
+			@Override
+			public void consoleOutputUpdate(String newText, OutputType outputType) {
+				throw new IllegalStateException();
+			}
+		});
+		ConsoleOutputListener listener = normalizer.consoleEventNormalizer(new ConsoleOutputListener() {
+			@Override
+			public void consoleOutputUpdate(String newText, OutputType outputType) {
+				received.add(newText);
+			}
+		});
+
+		failing.consoleOutputUpdate("a", STDOUT);
+		listener.consoleOutputUpdate("b", STDOUT);
+		eventQueue.flush();
+
+		assertEquals(asList("b"), received);
+	}
+}
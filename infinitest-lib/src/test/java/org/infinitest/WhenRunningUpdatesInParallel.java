@@ -66,13 +66,51 @@ public class WhenRunningUpdatesInParallel {
 	}
 
 	@Test(timeout = 1000)
-	public void shouldIgnoreChangeIfNotEnoughPermits() throws InterruptedException {
+	public void shouldShrinkAsHeldPermitsAreReleased() throws InterruptedException {
+		MultiCoreConcurrencyController controller = new MultiCoreConcurrencyController(3, 3);
+		controller.acquire();
+		controller.acquire();
+		controller.acquire();
+
+		controller.setCoreCount(1);
+		assertEquals(1, controller.getCoreCount());
+
+		controller.release();
+		controller.release();
+		assertEquals(0, controller.availablePermits());
+		controller.release();
+		assertEquals(1, controller.availablePermits());
+	}
+
+	@Test(timeout = 1000)
+	public void shouldTakeFreePermitsRightAwayWhenShrinking() throws InterruptedException {
+		MultiCoreConcurrencyController controller = new MultiCoreConcurrencyController(3, 3);
+		controller.acquire();
+		controller.acquire();
+
+		controller.setCoreCount(1);
+		assertEquals(0, controller.availablePermits());
+
+		controller.release();
+		assertEquals(0, controller.availablePermits());
+		controller.release();
+		assertEquals(1, controller.availablePermits());
+	}
+
+	@Test(timeout = 1000)
+	public void shouldForgiveOwedPermitsWhenGrowingAgain() throws InterruptedException {
 		MultiCoreConcurrencyController controller = new MultiCoreConcurrencyController(3, 3);
 		controller.acquire();
 		controller.acquire();
 		controller.acquire();
 		controller.setCoreCount(1);
+
+		controller.setCoreCount(2);
 		assertEquals(0, controller.availablePermits());
-		assertEquals(3, controller.getCoreCount());
+
+		controller.release();
+		controller.release();
+		controller.release();
+		assertEquals(2, controller.availablePermits());
 	}
 }
@@ -0,0 +1,237 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest;
+
+import static com.google.common.collect.Iterables.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+import org.junit.rules.*;
+
+import com.google.common.base.*;
+import com.google.common.io.*;
+
+public class WhenSharingClassData {
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	private File javaHome;
+	private File javaExecutable;
+	private File directory;
+	private String classpath;
+	private BlockingQueue<File> archivesCreated;
+	private BlockingQueue<String> archivedClasspaths;
+	private boolean archivingFails;
+	private ClassDataSharing sharing;
+
+	@Before
+	public void inContext() throws IOException {
+		javaHome = temp.newFolder("jdk");
+		javaExecutable = new File(javaHome, "bin/java");
+		Files.write("JAVA_VERSION=\"1.8.0_392\"\n", new File(javaHome, "release"), Charsets.UTF_8);
+		directory = new File(temp.getRoot(), "cds");
+		classpath = temp.newFolder("classes").getAbsolutePath();
+		archivesCreated = new LinkedBlockingQueue<File>();
+		archivedClasspaths = new LinkedBlockingQueue<String>();
+		sharing = new ClassDataSharing(directory) {
+			@Override
+			boolean createArchive(File java, String archivedClasspath, File classList, File archive) {
+				try {
+					if (!archivingFails) {
+						Files.touch(archive);
+					}
+					archivedClasspaths.put(archivedClasspath);
+					archivesCreated.put(archive);
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+				return !archivingFails;
+			}
+		};
+	}
+
+	@Test
+	public void shouldRecordTheLoadedClassesOnTheFirstLaunch() {
+		String argument = getOnlyElement(arguments());
+
+		assertTrue(argument, argument.startsWith("-XX:DumpLoadedClassList=" + directory.getAbsolutePath()));
+	}
+
+	@Test
+	public void shouldCreateTheArchiveOnceTheClassesHaveBeenRecorded() throws Exception {
+		recordClasses();
+
+		assertTrue(arguments().isEmpty());
+		File archive = archivesCreated.poll(5, TimeUnit.SECONDS);
+
+		assertNotNull(archive);
+		assertTrue(arguments().contains("-XX:SharedArchiveFile=" + archive.getAbsolutePath()));
+	}
+
+	@Test
+	public void shouldNotCreateTheArchiveWhileClassesAreStillBeingRecorded() throws Exception {
+		File classList = new File(recordClasses());
+		classList.setLastModified(System.currentTimeMillis());
+
+		assertTrue(arguments().isEmpty());
+		assertNull(archivesCreated.poll(200, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void shouldUseADifferentArchiveForADifferentJdk() throws IOException {
+		String first = getOnlyElement(arguments());
+		Files.write("JAVA_VERSION=\"11.0.21\"\n", new File(javaHome, "release"), Charsets.UTF_8);
+		String second = getOnlyElement(arguments());
+
+		assertFalse(first.equals(second));
+	}
+
+	@Test
+	public void shouldOnlyKeepTheMostRecentlyUsedArchives() throws IOException {
+		directory.mkdirs();
+		for (int i = 0; i < 6; i++) {
+			File archive = new File(directory, "archive" + i + ".jsa");
+			Files.touch(archive);
+			Files.touch(new File(directory, "archive" + i + ".classlist"));
+			archive.setLastModified(System.currentTimeMillis() - ((i + 1) * 60000));
+		}
+
+		sharing.evictLeastRecentlyUsed();
+
+		assertTrue(new File(directory, "archive3.jsa").exists());
+		assertFalse(new File(directory, "archive4.jsa").exists());
+		assertFalse(new File(directory, "archive5.classlist").exists());
+	}
+
+	@Test
+	public void shouldStopTryingWhenTheArchiveCannotBeCreated() throws Exception {
+		archivingFails = true;
+		recordClasses();
+
+		arguments();
+		assertNotNull(archivesCreated.poll(5, TimeUnit.SECONDS));
+
+		assertTrue(arguments().isEmpty());
+		assertNull(archivesCreated.poll(200, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void shouldNotShareClassDataForUnknownJdks() {
+		new File(javaHome, "release").delete();
+
+		assertTrue(arguments().isEmpty());
+	}
+
+	@Test
+	public void shouldLaunchWithTheJarsBeforeTheClassDirectories() throws IOException {
+		useJdk11();
+		String jar = newJar("junit.jar");
+
+		String arranged = sharing.arrangeClasspath(javaHome, classpath + File.pathSeparator + jar);
+
+		assertEquals(jar + File.pathSeparator + classpath, arranged);
+	}
+
+	@Test
+	public void shouldKeepTheClasspathOrderWhenOnlyJdkClassesCanBeArchived() throws IOException {
+		String original = classpath + File.pathSeparator + newJar("junit.jar");
+
+		assertEquals(original, sharing.arrangeClasspath(javaHome, original));
+	}
+
+	@Test
+	public void shouldArchiveTheClassesOfTheLeadingJars() throws Exception {
+		useJdk11();
+		String jars = newJar("runner.jar") + File.pathSeparator + newJar("junit.jar");
+		classpath = jars + File.pathSeparator + classpath;
+		recordClasses();
+
+		arguments();
+
+		assertEquals(jars, archivedClasspaths.poll(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void shouldOnlyArchiveJdkClassesWhenTheJdkCannotArchiveApplicationClasses() throws Exception {
+		classpath = newJar("junit.jar") + File.pathSeparator + classpath;
+		recordClasses();
+
+		arguments();
+
+		assertEquals("", archivedClasspaths.poll(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void shouldUseADifferentArchiveWhenAJarChanges() throws IOException {
+		useJdk11();
+		String jar = newJar("junit.jar");
+		classpath = jar + File.pathSeparator + classpath;
+		String first = getOnlyElement(arguments());
+		Files.write("changed", new File(jar), Charsets.UTF_8);
+
+		assertFalse(first.equals(getOnlyElement(arguments())));
+	}
+
+	@Test
+	public void shouldLeaveAJdkWithADefaultArchiveAloneWhenThereAreNoJarsToArchive() throws IOException {
+		useJdk11();
+		File defaultArchive = new File(javaHome, "lib/server/classes.jsa");
+		defaultArchive.getParentFile().mkdirs();
+		Files.touch(defaultArchive);
+
+		assertTrue(arguments().isEmpty());
+	}
+
+	private void useJdk11() throws IOException {
+		Files.write("JAVA_VERSION=\"11.0.21\"\n", new File(javaHome, "release"), Charsets.UTF_8);
+	}
+
+	private String newJar(String name) throws IOException {
+		File jar = temp.newFile(name);
+		Files.write(name, jar, Charsets.UTF_8);
+		return jar.getAbsolutePath();
+	}
+
+	private String recordClasses() throws IOException {
+		String argument = getOnlyElement(arguments());
+		File classList = new File(argument.substring(argument.indexOf('=') + 1));
+		Files.write("java/lang/Object\n", classList, Charsets.UTF_8);
+		classList.setLastModified(System.currentTimeMillis() - 60000);
+		return classList.getAbsolutePath();
+	}
+
+	private List<String> arguments() {
+		return sharing.createProcessArguments(javaHome, javaExecutable, classpath);
+	}
+}
@@ -49,7 +49,7 @@ public class WhenTestsAreDisabled {
 	public void shouldFireAppropriateEvent() {
 		TestRunner runner = mock(TestRunner.class);
 		TestDetector testDetector = mock(TestDetector.class);
-		when(testDetector.getCurrentTests()).thenReturn(setify("MyClass", "OtherClass"), setify("OtherClass"));
+		when(testDetector.getDisabledTests()).thenReturn(setify("MyClass"));
 		Set<JavaClass> emptyClassSet = Collections.<JavaClass> emptySet();
 		when(testDetector.findTestsToRun(any(Collection.class))).thenReturn(emptyClassSet);
 
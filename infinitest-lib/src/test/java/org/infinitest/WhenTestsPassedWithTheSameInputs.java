@@ -0,0 +1,191 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest;
+
+import static com.google.common.collect.Sets.*;
+import static org.infinitest.EventSupport.*;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.infinitest.changedetect.*;
+import org.infinitest.parser.*;
+import org.infinitest.testrunner.*;
+import org.junit.*;
+import org.junit.rules.*;
+import org.mockito.*;
+
+public class WhenTestsPassedWithTheSameInputs {
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private ControlledEventQueue eventQueue;
+	private DefaultInfinitestCore core;
+	private TestDetector testDetector;
+	private TestResultsListener resultsListener;
+	private TestResultCache cache;
+	private JavaClass test;
+	private final List<File> changedFiles = Collections.emptyList();
+
+	@Before
+	public void inContext() throws IOException {
+		TestRunner runner = mock(TestRunner.class);
+		testDetector = mock(TestDetector.class);
+		test = new FakeJavaClass("com.fakeco.MyTest");
+		when(testDetector.findTestsToRun(changedFiles)).thenReturn(newHashSet(test));
+		when(testDetector.getInputFingerprint(test)).thenReturn("inputs");
+		cache = new TestResultCache(new File(temporaryFolder.getRoot(), "passed-tests.cache"));
+
+		eventQueue = new ControlledEventQueue();
+		core = new DefaultInfinitestCore(runner, eventQueue);
+		core.setTestDetector(testDetector);
+		core.setChangeDetector(mock(ChangeDetector.class));
+		core.setResultCache(cache);
+
+		ArgumentCaptor<TestResultsListener> listeners = ArgumentCaptor.forClass(TestResultsListener.class);
+		verify(runner, atLeastOnce()).addTestResultsListener(listeners.capture());
+		resultsListener = listeners.getAllValues().get(listeners.getAllValues().size() - 1);
+	}
+
+	@Test
+	public void shouldSkipTestsThatPassedWithTheSameInputs() {
+		assertEquals(1, core.update(changedFiles).size());
+		core.runTests(Arrays.asList(test.getName()));
+		resultsListener.testCaseComplete(new TestCaseEvent(test.getName(), this, new TestResults()));
+
+		assertTrue(cache.hasPassed("inputs"));
+		assertTrue(core.update(changedFiles).isEmpty());
+	}
+
+	@Test
+	public void shouldRunTestsAgainWhenTheirInputsChange() {
+		core.update(changedFiles);
+		core.runTests(Arrays.asList(test.getName()));
+		resultsListener.testCaseComplete(new TestCaseEvent(test.getName(), this, new TestResults()));
+		when(testDetector.getInputFingerprint(test)).thenReturn("new inputs");
+
+		assertEquals(1, core.update(changedFiles).size());
+	}
+
+	@Test
+	public void shouldForgetInputsWhenTheTestFails() {
+		core.update(changedFiles);
+		core.runTests(Arrays.asList(test.getName()));
+		cache.recordPass("inputs");
+		resultsListener.testCaseComplete(testCaseFailing(test.getName(), "shouldPass", new Exception()));
+
+		assertFalse(cache.hasPassed("inputs"));
+		TestResultCache reloaded = new TestResultCache(new File(temporaryFolder.getRoot(), "passed-tests.cache"));
+		assertFalse(reloaded.hasPassed("inputs"));
+	}
+
+	@Test
+	public void shouldOnlyRememberInputsOfTestsThatWereRun() {
+		core.update(changedFiles);
+		resultsListener.testCaseComplete(new TestCaseEvent(test.getName(), this, new TestResults()));
+
+		assertFalse(cache.hasPassed("inputs"));
+	}
+
+	@Test
+	public void shouldForgetInputsOfTestsSelectedByAnEarlierUpdate() {
+		core.update(changedFiles);
+		when(testDetector.findTestsToRun(changedFiles)).thenReturn(Collections.<JavaClass> emptySet());
+		core.update(changedFiles);
+		core.runTests(Arrays.asList(test.getName()));
+		resultsListener.testCaseComplete(new TestCaseEvent(test.getName(), this, new TestResults()));
+
+		assertFalse(cache.hasPassed("inputs"));
+	}
+
+	@Test
+	public void shouldReportSkippedTestsAsPassed() {
+		TestResultsListener listener = mock(TestResultsListener.class);
+		core.addTestResultsListener(listener);
+		cache.recordPass("inputs");
+
+		core.update(changedFiles);
+		eventQueue.flush();
+
+		ArgumentCaptor<TestCaseEvent> event = ArgumentCaptor.forClass(TestCaseEvent.class);
+		verify(listener).testCaseComplete(event.capture());
+		assertEquals(test.getName(), event.getValue().getTestName());
+		assertFalse(event.getValue().failed());
+	}
+
+	@Test
+	public void shouldRunTestsAgainWhenTheJvmArgumentsChange() {
+		RuntimeEnvironment environment = new RuntimeEnvironment(Collections.<File> emptyList(), temporaryFolder.getRoot(), "classpath", new File(System.getProperty("java.home")));
+		core.setRuntimeEnvironment(environment);
+		core.update(changedFiles);
+		core.runTests(Arrays.asList(test.getName()));
+		resultsListener.testCaseComplete(new TestCaseEvent(test.getName(), this, new TestResults()));
+		assertTrue(core.update(changedFiles).isEmpty());
+
+		environment.addVMArgs(Arrays.asList("-Dsome.property=changed"));
+
+		assertEquals(1, core.update(changedFiles).size());
+	}
+
+	@Test
+	public void shouldRememberPassingInputsAcrossRestarts() {
+		cache.recordPass("inputs");
+
+		TestResultCache reloaded = new TestResultCache(new File(temporaryFolder.getRoot(), "passed-tests.cache"));
+		assertTrue(reloaded.hasPassed("inputs"));
+	}
+
+	@Test
+	public void shouldOnlyKeepTheMostRecentlyUsedInputs() {
+		File file = new File(temporaryFolder.getRoot(), "bounded.cache");
+		TestResultCache boundedCache = new TestResultCache(file, 2);
+		boundedCache.recordPass("first");
+		boundedCache.recordPass("second");
+		boundedCache.hasPassed("first");
+		boundedCache.recordPass("third");
+
+		assertFalse(boundedCache.hasPassed("second"));
+		for (int i = 0; i < 10; i++) {
+			boundedCache.recordPass("other" + i);
+		}
+		assertEquals(2, new TestResultCache(file, 2).size());
+	}
+
+	@Test
+	public void shouldAlwaysRunTestsWhenThereIsNoCache() {
+		core.setResultCache(null);
+		when(testDetector.getInputFingerprint(any(JavaClass.class))).thenThrow(new AssertionError());
+
+		assertEquals(1, core.update(changedFiles).size());
+	}
+}
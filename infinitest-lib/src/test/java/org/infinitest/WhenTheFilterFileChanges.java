@@ -62,6 +62,28 @@ public class WhenTheFilterFileChanges {
     verify(testFilter).updateFilterList();
   }
 
+  @Test
+  public void shouldNotReadTheFilterFileAgainWhenItIsUnchanged() throws IOException {
+    File file = File.createTempFile("infinitest", "shouldNotReadTheFilterFileAgainWhenItIsUnchanged");
+    new PrintWriter(file).append("com.foo.Bar").close();
+
+    TestFilter list = new RegexFileFilter(file);
+
+    assertFalse(list.updateFilterList());
+    assertTrue(list.match(javaClass("com.foo.Bar")));
+  }
+
+  @Test
+  public void shouldReportWhenTheFiltersChanged() throws IOException {
+    File file = File.createTempFile("infinitest", "shouldReportWhenTheFiltersChanged");
+    TestFilter list = new RegexFileFilter(file);
+
+    new PrintWriter(file).append("com.foo.Bar\ncom.foo.Baz").close();
+
+    assertTrue(list.updateFilterList());
+    assertTrue(list.match(javaClass("com.foo.Baz")));
+  }
+
   static JavaClass javaClass(String name) {
     JavaClass javaClass = mock(JavaClass.class);
     when(javaClass.getName()).thenReturn(name);
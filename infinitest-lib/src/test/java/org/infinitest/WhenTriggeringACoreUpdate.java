@@ -34,10 +34,13 @@ import static org.mockito.Mockito.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import org.infinitest.parser.*;
 import org.infinitest.testrunner.*;
 import org.junit.*;
+import org.mockito.*;
 
 public class WhenTriggeringACoreUpdate {
 	private List<File> updatedFiles;
@@ -63,6 +66,31 @@ public class WhenTriggeringACoreUpdate {
 		core.update(updatedFiles);
 	}
 
+	@Test
+	public void shouldAnalyzeTheFilesOfACancelledUpdateWithTheNextOne() {
+		File cancelled = new File("Cancelled.class");
+		File next = new File("Next.class");
+		when(testDetector.findTestsToRun(Collections.singletonList(cancelled))).thenThrow(new CancellationException());
+
+		assertTrue(core.update(Collections.singletonList(cancelled)).isEmpty());
+		core.update(Collections.singletonList(next));
+
+		verify(testDetector).findTestsToRun(newArrayList(cancelled, next));
+	}
+
+	@Test
+	public void shouldNotLetACancellationReachTheNextUpdate() {
+		ArgumentCaptor<AtomicBoolean> cancelled = ArgumentCaptor.forClass(AtomicBoolean.class);
+		verify(testDetector).setCancellationFlag(cancelled.capture());
+		testsToExpect();
+
+		core.cancelUpdate();
+		assertTrue(cancelled.getValue().get());
+		core.update(updatedFiles);
+
+		assertFalse(cancelled.getValue().get());
+	}
+
 	@Test
 	public void shouldReturnTheNumberOfTestsRun() {
 		JavaClass javaClass = mock(JavaClass.class);
@@ -0,0 +1,105 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.changedetect;
+
+import static com.google.common.base.Charsets.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.*;
+import org.junit.rules.*;
+
+import com.google.common.io.*;
+
+public class WhenReadingTheGitHead {
+	private static final String COMMIT = "0123456789abcdef0123456789abcdef01234567";
+	private static final String OTHER_COMMIT = "fedcba9876543210fedcba9876543210fedcba98";
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	private File workingDirectory;
+	private File gitDirectory;
+
+	@Before
+	public void inContext() throws IOException {
+		workingDirectory = temp.newFolder("project");
+		gitDirectory = new File(workingDirectory, ".git");
+	}
+
+	@Test
+	public void shouldReadADetachedHead() throws IOException {
+		write(new File(gitDirectory, "HEAD"), COMMIT);
+
+		assertEquals(COMMIT, new GitHead(workingDirectory).readCommit());
+	}
+
+	@Test
+	public void shouldFollowTheCheckedOutBranch() throws IOException {
+		write(new File(gitDirectory, "HEAD"), "ref: refs/heads/feature");
+		write(new File(gitDirectory, "refs/heads/feature"), COMMIT);
+
+		assertEquals(COMMIT, new GitHead(new File(workingDirectory, "module")).readCommit());
+	}
+
+	@Test
+	public void shouldLookForBranchesInPackedRefs() throws IOException {
+		write(new File(gitDirectory, "HEAD"), "ref: refs/heads/master");
+		write(new File(gitDirectory, "packed-refs"), "# pack-refs with: peeled fully-peeled sorted\n" + OTHER_COMMIT + " refs/heads/feature\n" + COMMIT + " refs/heads/master\n");
+
+		assertEquals(COMMIT, new GitHead(workingDirectory).readCommit());
+	}
+
+	@Test
+	public void shouldFollowGitFilesOfLinkedWorktrees() throws IOException {
+		File mainGitDirectory = temp.newFolder("main.git");
+		File worktreeGitDirectory = new File(mainGitDirectory, "worktrees/project");
+		write(new File(workingDirectory, ".git"), "gitdir: " + worktreeGitDirectory.getAbsolutePath());
+		write(new File(worktreeGitDirectory, "HEAD"), "ref: refs/heads/feature");
+		write(new File(worktreeGitDirectory, "commondir"), "../..");
+		write(new File(mainGitDirectory, "refs/heads/feature"), COMMIT);
+
+		assertEquals(COMMIT, new GitHead(workingDirectory).readCommit());
+	}
+
+	@Test
+	public void shouldNotFindACommitOnAnUnbornBranchOrOutsideOfARepository() throws IOException {
+		write(new File(gitDirectory, "HEAD"), "ref: refs/heads/unborn");
+
+		assertNull(new GitHead(workingDirectory).readCommit());
+		assertNull(new GitHead(temp.newFolder("elsewhere")).readCommit());
+	}
+
+	private static void write(File file, String content) throws IOException {
+		Files.createParentDirs(file);
+		Files.write(content + "\n", file, UTF_8);
+	}
+}
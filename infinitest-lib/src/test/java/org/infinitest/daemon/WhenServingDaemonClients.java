@@ -0,0 +1,198 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.daemon;
+
+import static com.google.common.base.Charsets.*;
+import static java.util.Arrays.*;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+import org.infinitest.*;
+import org.infinitest.changedetect.*;
+import org.infinitest.parser.*;
+import org.infinitest.testrunner.*;
+import org.junit.*;
+import org.junit.rules.*;
+import org.mockito.*;
+
+import com.google.common.io.*;
+
+public class WhenServingDaemonClients {
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	private InfinitestCore core;
+	private ChangeDetector changeDetector;
+	private InfinitestDaemon daemon;
+	private int port;
+	private Socket client;
+	private BufferedReader in;
+	private PrintWriter out;
+
+	@Before
+	public void inContext() throws IOException {
+		core = mock(InfinitestCore.class);
+		changeDetector = mock(ChangeDetector.class);
+		daemon = new InfinitestDaemon(core, changeDetector, temp.getRoot());
+		port = daemon.start(0);
+		connect(port);
+		out.println("auth " + Files.toString(new File(temp.getRoot(), InfinitestDaemon.TOKEN_FILE), UTF_8));
+		assertEquals("ok 0", in.readLine());
+	}
+
+	private void connect(int port) throws IOException {
+		client = new Socket("127.0.0.1", port);
+		in = new BufferedReader(new InputStreamReader(client.getInputStream(), UTF_8));
+		out = new PrintWriter(new OutputStreamWriter(client.getOutputStream(), UTF_8), true);
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		client.close();
+		daemon.stop();
+	}
+
+	@Test
+	public void shouldAdvertiseItsPortInTheWorkingDirectory() throws IOException {
+		String port = Files.toString(new File(temp.getRoot(), InfinitestDaemon.PORT_FILE), UTF_8);
+
+		assertEquals(String.valueOf(client.getPort()), port);
+	}
+
+	@Test
+	public void shouldRejectClientsWithoutTheToken() throws IOException {
+		client.close();
+		connect(port);
+		out.println("auth guessed");
+
+		assertEquals("error Not authenticated", in.readLine());
+		assertNull(in.readLine());
+	}
+
+	@Test(expected = IOException.class)
+	public void shouldNotStartWhileAnotherDaemonServesTheWorkingDirectory() throws IOException {
+		new InfinitestDaemon(core, changeDetector, temp.getRoot()).start(0);
+	}
+
+	@Test
+	public void shouldReplaceThePortFileOfADaemonThatDied() throws IOException {
+		daemon.stop();
+		Files.write(String.valueOf(port), new File(temp.getRoot(), InfinitestDaemon.PORT_FILE), UTF_8);
+
+		daemon = new InfinitestDaemon(core, changeDetector, temp.getRoot());
+		port = daemon.start(0);
+
+		assertEquals(String.valueOf(port), Files.toString(new File(temp.getRoot(), InfinitestDaemon.PORT_FILE), UTF_8));
+	}
+
+	@Test
+	public void shouldListTestsAffectedByChangedFiles() throws IOException {
+		File changedClass = new File(temp.getRoot(), "target/classes/Foo.class");
+		Collection<JavaClass> tests = classes("FooTest");
+		when(core.update(Collections.singletonList(changedClass))).thenReturn(tests);
+
+		out.println("changed target/classes/Foo.class");
+
+		assertEquals("test FooTest", in.readLine());
+		assertEquals("ok 1", in.readLine());
+		out.println("tests");
+		assertEquals("test FooTest", in.readLine());
+		assertEquals("ok 1", in.readLine());
+	}
+
+	@Test
+	public void shouldLookForChangesWhenNoFilesAreGiven() throws IOException {
+		File changedClass = new File("Foo.class");
+		when(changeDetector.findChangedFiles()).thenReturn(Collections.singleton(changedClass));
+		Collection<JavaClass> tests = classes("FooTest", "BarTest");
+		when(core.update(Collections.singleton(changedClass))).thenReturn(tests);
+
+		out.println("changed");
+
+		assertEquals("test FooTest", in.readLine());
+		assertEquals("test BarTest", in.readLine());
+		assertEquals("ok 2", in.readLine());
+	}
+
+	@Test
+	public void shouldRunAffectedTestsOnlyOnce() throws IOException {
+		when(changeDetector.findChangedFiles()).thenReturn(Collections.singleton(new File("Foo.class")));
+		Collection<JavaClass> tests = classes("FooTest");
+		when(core.update(anyCollectionOf(File.class))).thenReturn(tests);
+		out.println("changed");
+		in.readLine();
+		in.readLine();
+
+		out.println("run");
+		assertEquals("test FooTest", in.readLine());
+		assertEquals("ok 1", in.readLine());
+		out.println("tests");
+		assertEquals("ok 0", in.readLine());
+
+		verify(core).runTests(asList("FooTest"));
+	}
+
+	@Test
+	public void shouldStreamResultsToSubscribers() throws IOException {
+		ArgumentCaptor<TestResultsListener> listener = ArgumentCaptor.forClass(TestResultsListener.class);
+		verify(core).addTestResultsListener(listener.capture());
+		out.println("subscribe");
+		assertEquals("ok 0", in.readLine());
+
+		listener.getValue().testCaseComplete(new TestCaseEvent("FooTest", this, new TestResults()));
+		TestEvent failure = TestEvent.methodFailed("BarTest", "shouldWork", new AssertionError("expected\nsomething"));
+		listener.getValue().testCaseComplete(new TestCaseEvent("BarTest", this, new TestResults(failure)));
+
+		assertEquals("passed FooTest", in.readLine());
+		assertEquals("failed BarTest shouldWork: expected something", in.readLine());
+	}
+
+	@Test
+	public void shouldRejectUnknownCommands() throws IOException {
+		out.println("explode");
+
+		assertEquals("error Unknown command explode", in.readLine());
+	}
+
+	private Collection<JavaClass> classes(String... names) {
+		List<JavaClass> classes = new ArrayList<JavaClass>();
+		for (String name : names) {
+			JavaClass javaClass = mock(JavaClass.class);
+			when(javaClass.getName()).thenReturn(name);
+			classes.add(javaClass);
+		}
+		return classes;
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.filter;
+
+import static com.google.common.collect.Lists.*;
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.regex.*;
+
+import org.infinitest.parser.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+import com.google.common.base.*;
+import com.google.common.io.*;
+
+public class LargeFilterFilePerformanceSimulation {
+  private static final int FILTER_COUNT = 500;
+  private static final int CLASS_COUNT = 50000;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private List<String> filterLines;
+  private List<JavaClass> classes;
+
+  @Before
+  public void inContext() {
+    filterLines = createFilterLines();
+    classes = createClasses();
+  }
+
+  public static void main(String[] args) throws IOException {
+    LargeFilterFilePerformanceSimulation harness = new LargeFilterFilePerformanceSimulation();
+    harness.temporaryFolder.create();
+    harness.inContext();
+    try {
+      File filterFile = harness.writeFilterFile();
+
+      long timestamp = System.currentTimeMillis();
+      int naiveMatches = harness.countNaiveMatches();
+      System.out.println("Sequential patterns: " + naiveMatches + " matches in " + (System.currentTimeMillis() - timestamp) + "ms");
+
+      timestamp = System.currentTimeMillis();
+      RegexFileFilter filter = new RegexFileFilter(filterFile);
+      System.out.println("Compiled " + FILTER_COUNT + " filters in " + (System.currentTimeMillis() - timestamp) + "ms");
+
+      timestamp = System.currentTimeMillis();
+      int matches = harness.countMatches(filter);
+      System.out.println("First pass: " + matches + " matches in " + (System.currentTimeMillis() - timestamp) + "ms");
+
+      timestamp = System.currentTimeMillis();
+      filter.updateFilterList();
+      harness.countMatches(filter);
+      System.out.println("Unchanged file, second pass in " + (System.currentTimeMillis() - timestamp) + "ms");
+    } finally {
+      harness.temporaryFolder.delete();
+    }
+  }
+
+  @Test
+  public void shouldMatchTheSameClassesAsSequentialPatterns() throws IOException {
+    RegexFileFilter filter = new RegexFileFilter(writeFilterFile());
+    List<Pattern> patterns = compileSequentially();
+
+    for (JavaClass each : classes.subList(0, 5000)) {
+      assertThat(filter.match(each)).as(each.getName()).isEqualTo(matchesSequentially(patterns, each.getName()));
+    }
+  }
+
+  @Test
+  public void canFilter50kClassesWith500Filters() throws IOException {
+    RegexFileFilter filter = new RegexFileFilter(writeFilterFile());
+
+    long timestamp = System.currentTimeMillis();
+    countMatches(filter);
+    assertThat(System.currentTimeMillis() - timestamp).isLessThan(10000L);
+
+    timestamp = System.currentTimeMillis();
+    assertThat(filter.updateFilterList()).isFalse();
+    countMatches(filter);
+    // Unchanged filters are not read again and decisions are remembered
+    assertThat(System.currentTimeMillis() - timestamp).isLessThan(1000L);
+  }
+
+  private int countMatches(TestFilter filter) {
+    int matches = 0;
+    for (JavaClass each : classes) {
+      if (filter.match(each)) {
+        matches++;
+      }
+    }
+    return matches;
+  }
+
+  private int countNaiveMatches() {
+    List<Pattern> patterns = compileSequentially();
+    int matches = 0;
+    for (JavaClass each : classes) {
+      if (matchesSequentially(patterns, each.getName())) {
+        matches++;
+      }
+    }
+    return matches;
+  }
+
+  private List<Pattern> compileSequentially() {
+    List<Pattern> patterns = newArrayList();
+    for (String each : filterLines) {
+      patterns.add(Pattern.compile(each));
+    }
+    return patterns;
+  }
+
+  private static boolean matchesSequentially(List<Pattern> patterns, String className) {
+    for (Pattern each : patterns) {
+      if (each.matcher(className).lookingAt()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private File writeFilterFile() throws IOException {
+    File file = temporaryFolder.newFile("infinitest.filters");
+    Files.write(Joiner.on('\n').join(filterLines), file, Charsets.UTF_8);
+    return file;
+  }
+
+  private static List<String> createFilterLines() {
+    List<String> lines = newArrayList();
+    for (int i = 0; lines.size() < FILTER_COUNT; i++) {
+      switch (i % 4) {
+        case 0:
+          lines.add("com\\.acme\\.module" + i + "\\.internal\\..*");
+          break;
+        case 1:
+          lines.add("com\\.acme\\.module" + i + "\\.Legacy");
+          break;
+        case 2:
+          lines.add("com\\.acme\\.module" + i + "\\..*IT");
+          break;
+        default:
+          lines.add(".*Generated" + i + "Test");
+      }
+    }
+    return lines;
+  }
+
+  private static List<JavaClass> createClasses() {
+    List<JavaClass> classes = newArrayList();
+    String[] packages = { "internal", "api", "impl", "Legacy" };
+    for (int i = 0; classes.size() < CLASS_COUNT; i++) {
+      String packageName = "com.acme.module" + (i % 700) + "." + packages[i % packages.length];
+      String suffix = (i % 3 == 0) ? "IT" : "Test";
+      classes.add(new FakeJavaClass(packageName + ".Generated" + (i % 600) + suffix));
+    }
+    return classes;
+  }
+}
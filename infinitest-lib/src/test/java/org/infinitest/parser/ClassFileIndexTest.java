@@ -28,16 +28,22 @@
 package org.infinitest.parser;
 
 import static com.google.common.collect.Lists.*;
+import static com.google.common.collect.Sets.*;
 import static java.util.Arrays.*;
 import static org.infinitest.util.FakeEnvironments.*;
 import static org.infinitest.util.InfinitestTestUtils.*;
 import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import org.junit.*;
+import org.mockito.invocation.*;
+import org.mockito.stubbing.*;
 
 import com.fakeco.fakeproduct.*;
 
@@ -65,4 +71,336 @@ public class ClassFileIndexTest {
 		ClassFileIndex index = new ClassFileIndex(fakeClasspath());
 		assertEquals(Collections.emptySet(), index.findClasses(newArrayList(new File("notAClassFile"))));
 	}
+
+	@Test
+	public void shouldPublishASnapshotOnceAnUpdateCompletes() {
+		File file = getFileForClass(FakeProduct.class);
+		when(builder.classFileChanged(file)).thenReturn("FakeProduct");
+		when(builder.getClass("FakeProduct")).thenReturn(new FakeJavaClass("FakeProduct"));
+		ClassIndexSnapshot before = index.getSnapshot();
+
+		index.findClasses(asList(file));
+
+		ClassIndexSnapshot after = index.getSnapshot();
+		assertTrue(after.getVersion() > before.getVersion());
+		assertTrue(after.isIndexed("FakeProduct"));
+		assertFalse("Old snapshots should never change", before.isIndexed("FakeProduct"));
+	}
+
+	@Test
+	public void shouldCarryUnchangedClassesOverToTheNextSnapshot() {
+		File product = getFileForClass(FakeProduct.class);
+		File tree = getFileForClass(FakeTree.class);
+		when(builder.classFileChanged(any(File.class))).thenReturn("FakeProduct", "FakeTree");
+		JavaClass productClass = new FakeJavaClass("FakeProduct");
+		when(builder.getClass("FakeProduct")).thenReturn(productClass);
+		when(builder.getClass("FakeTree")).thenReturn(new FakeJavaClass("FakeTree"));
+
+		index.findClasses(asList(product));
+		ClassIndexSnapshot first = index.getSnapshot();
+		index.findClasses(asList(tree));
+		ClassIndexSnapshot second = index.getSnapshot();
+
+		assertTrue(second.isIncremental());
+		assertEquals(newHashSet("FakeTree"), second.getUpdatedClasses());
+		assertEquals(newHashSet("FakeProduct", "FakeTree"), second.getIndexedClasses());
+		assertSame(productClass, second.findClass("FakeProduct"));
+		assertEquals(2, second.getClasses().size());
+		assertEquals(newHashSet("FakeProduct"), first.getIndexedClasses());
+	}
+
+	@Test
+	public void shouldDropUpdatedClassesThatAreNoLongerIndexedFromTheNextSnapshot() {
+		Map<String, JavaClass> classes = new HashMap<String, JavaClass>();
+		classes.put("FakeProduct", new FakeJavaClass("FakeProduct"));
+		classes.put("FakeTree", new FakeJavaClass("FakeTree"));
+		ClassIndexSnapshot snapshot = new ClassIndexSnapshot(1, classes, classes.keySet(), false);
+
+		classes.remove("FakeTree");
+		ClassIndexSnapshot next = snapshot.update(classes, newHashSet("FakeTree"));
+
+		assertEquals(newHashSet("FakeProduct"), next.getIndexedClasses());
+		assertNull(next.findClass("FakeTree"));
+		assertTrue(snapshot.isIndexed("FakeTree"));
+	}
+
+	@Test
+	public void shouldNotExposePartialUpdatesToReaders() {
+		File file = getFileForClass(FakeProduct.class);
+		when(builder.classFileChanged(any(File.class))).thenReturn("FakeProduct", "FakeTree");
+		when(builder.getClass("FakeProduct")).thenReturn(new FakeJavaClass("FakeProduct"));
+		when(builder.getClass("FakeTree")).thenAnswer(new Answer<JavaClass>() {
+			@Override
+			public JavaClass answer(InvocationOnMock invocation) {
+				assertFalse(index.getSnapshot().isIndexed("FakeProduct"));
+				return new FakeJavaClass("FakeTree");
+			}
+		});
+
+		index.findClasses(asList(file, getFileForClass(FakeTree.class)));
+
+		assertEquals(newHashSet("FakeProduct", "FakeTree"), index.getIndexedClasses());
+	}
+
+	@Test
+	public void shouldNotRewireTheGraphWhenOnlyMethodBodiesChange() {
+		File file = getFileForClass(FakeProduct.class);
+		when(builder.classFileChanged(file)).thenReturn("FakeProduct");
+		when(builder.getClass("java.lang.String")).thenReturn(new FakeJavaClass("java.lang.String") {
+			@Override
+			public boolean locatedInClassFile() {
+				return false;
+			}
+		});
+		JavaClass original = classWithImports("FakeProduct", false, "java.lang.String");
+		JavaClass edited = classWithImports("FakeProduct", false, "java.lang.String");
+		when(builder.getClass("FakeProduct")).thenReturn(original, edited);
+
+		index.findClasses(asList(file));
+		index.findClasses(asList(file));
+
+		verify(builder, times(1)).getClass("java.lang.String");
+		assertSame(edited, index.getSnapshot().findClass("FakeProduct"));
+		assertEquals(newHashSet("FakeProduct"), index.getSnapshot().getUpdatedClasses());
+	}
+
+	@Test
+	public void shouldKeepTheNewInstanceInTheGraphWhenOnlyMethodBodiesChange() {
+		File parentFile = getFileForClass(FakeProduct.class);
+		File childFile = getFileForClass(FakeTree.class);
+		when(builder.classFileChanged(parentFile)).thenReturn("FakeProduct");
+		when(builder.classFileChanged(childFile)).thenReturn("FakeTree");
+		JavaClass parent = classWithImports("FakeProduct", true, "FakeTree");
+		JavaClass original = classWithImports("FakeTree", false);
+		JavaClass edited = classWithImports("FakeTree", false);
+		when(builder.getClass("FakeProduct")).thenReturn(parent);
+		when(builder.getClass("FakeTree")).thenReturn(original, edited);
+		index.findClasses(asList(childFile, parentFile));
+
+		index.findClasses(asList(childFile));
+
+		assertEquals(newHashSet(parent, edited), index.findChangedParents(newHashSet(edited)));
+		for (JavaClass each : index.findDependencies(parent)) {
+			if (each.equals(edited)) {
+				assertSame(edited, each);
+			}
+		}
+	}
+
+	@Test
+	public void shouldStopIndexingWhenTheUpdateIsCancelled() {
+		File file = getFileForClass(FakeProduct.class);
+		when(builder.classFileChanged(file)).thenReturn("FakeProduct");
+		when(builder.getClass("FakeProduct")).thenReturn(classWithImports("FakeProduct", false));
+
+		AtomicBoolean cancelled = new AtomicBoolean();
+		index.setCancellationFlag(cancelled);
+		cancelled.set(true);
+		try {
+			index.findClasses(asList(file));
+			fail();
+		} catch (CancellationException expected) {
+		}
+
+		assertTrue(index.getIndexedClasses().isEmpty());
+		verify(builder, never()).classFileChanged(file);
+		verify(builder).clear();
+	}
+
+	@Test
+	public void shouldReleasePrefetchedClassFilesWhenParsingFails() {
+		File file = getFileForClass(FakeProduct.class);
+		when(builder.classFileChanged(file)).thenThrow(new IllegalStateException());
+
+		try {
+			index.findClasses(asList(file));
+			fail();
+		} catch (IllegalStateException expected) {
+		}
+
+		verify(builder).clear();
+	}
+
+	@Test
+	public void shouldPrefetchClassFilesInBoundedChunks() {
+		List<File> files = newArrayList();
+		for (int i = 0; i < 1000; i++) {
+			files.add(new File("Missing" + i + ".class"));
+		}
+
+		index.findClasses(files);
+
+		verify(builder).prefetch(files.subList(0, 512));
+		verify(builder).prefetch(files.subList(512, 1000));
+	}
+
+	@Test
+	public void shouldRewireTheGraphWhenDependenciesChange() {
+		File parentFile = getFileForClass(FakeProduct.class);
+		File childFile = getFileForClass(FakeTree.class);
+		when(builder.classFileChanged(parentFile)).thenReturn("FakeProduct");
+		when(builder.classFileChanged(childFile)).thenReturn("FakeTree");
+		JavaClass child = classWithImports("FakeTree", false);
+		when(builder.getClass("FakeTree")).thenReturn(child);
+		JavaClass original = classWithImports("FakeProduct", false, "FakeTree");
+		JavaClass edited = classWithImports("FakeProduct", false);
+		when(builder.getClass("FakeProduct")).thenReturn(original, edited);
+
+		index.findClasses(asList(childFile, parentFile));
+		assertEquals(newHashSet(child, original), index.findChangedParents(newHashSet(child)));
+
+		index.findClasses(asList(parentFile));
+		assertEquals(newHashSet(child), index.findChangedParents(newHashSet(child)));
+	}
+
+	@Test
+	public void shouldTreatAClassThatBecomesATestAsAStructuralChange() {
+		JavaClass production = classWithImports("FakeProduct", false);
+		JavaClass test = classWithImports("FakeProduct", true);
+
+		assertTrue(ClassFileIndex.hasSameDependencies(production, classWithImports("FakeProduct", false)));
+		assertFalse(ClassFileIndex.hasSameDependencies(production, test));
+	}
+
+	@Test
+	public void shouldFindTransitiveDependencies() {
+		File file = getFileForClass(FakeProduct.class);
+		when(builder.classFileChanged(file)).thenReturn("A", "B", "C");
+		JavaClass a = classWithImports("A", true, "B");
+		JavaClass b = classWithImports("B", false, "C");
+		JavaClass c = classWithImports("C", false);
+		when(builder.getClass("A")).thenReturn(a);
+		when(builder.getClass("B")).thenReturn(b);
+		when(builder.getClass("C")).thenReturn(c);
+
+		index.findClasses(asList(file, file, file));
+
+		assertEquals(newHashSet(a, b, c), index.findDependencies(a));
+		assertEquals(newHashSet(c), index.findDependencies(c));
+	}
+
+	@Test
+	public void shouldFindWhichClassesDependOnEachClassInOnePass() {
+		File file = getFileForClass(FakeProduct.class);
+		when(builder.classFileChanged(file)).thenReturn("A", "B", "C", "D");
+		JavaClass a = classWithImports("A", true, "B");
+		JavaClass b = classWithImports("B", false, "C");
+		JavaClass c = classWithImports("C", false);
+		JavaClass d = classWithImports("D", true, "C");
+		when(builder.getClass("A")).thenReturn(a);
+		when(builder.getClass("B")).thenReturn(b);
+		when(builder.getClass("C")).thenReturn(c);
+		when(builder.getClass("D")).thenReturn(d);
+		index.findClasses(asList(file, file, file, file));
+
+		Map<String, Set<String>> dependents = index.findDependents(asList(a, d));
+
+		assertEquals(newHashSet("A"), dependents.get("A"));
+		assertEquals(newHashSet("A"), dependents.get("B"));
+		assertEquals(newHashSet("A", "D"), dependents.get("C"));
+		assertEquals(newHashSet("D"), dependents.get("D"));
+	}
+
+	@Test
+	public void shouldTellWhichClassEachFileHolds() {
+		File productFile = getFileForClass(FakeProduct.class);
+		File treeFile = getFileForClass(FakeTree.class);
+		when(builder.classFileChanged(productFile)).thenReturn("FakeProduct");
+		when(builder.classFileChanged(treeFile)).thenReturn("FakeTree");
+		JavaClass product = classWithImports("FakeProduct", false);
+		JavaClass tree = classWithImports("FakeTree", false);
+		when(builder.getClass("FakeProduct")).thenReturn(product);
+		when(builder.getClass("FakeTree")).thenReturn(tree);
+
+		Map<File, JavaClass> classes = index.findClassesByFile(asList(productFile, treeFile));
+
+		assertSame(product, classes.get(productFile));
+		assertSame(tree, classes.get(treeFile));
+		verify(builder).prefetch(asList(productFile, treeFile));
+	}
+
+	@Test
+	public void shouldRestoreTheGraphOfStoredClassesWithoutParsingThem() {
+		File productFile = getFileForClass(FakeProduct.class);
+		File treeFile = getFileForClass(FakeTree.class);
+		JavaClass product = new StoredJavaClass("FakeProduct", new String[] { "FakeTree" }, false, productFile);
+		JavaClass tree = new StoredJavaClass("FakeTree", new String[0], false, treeFile);
+		JavaClass removed = new StoredJavaClass("Removed", new String[0], false, new File("Removed.class"));
+		long version = index.getSnapshot().getVersion();
+
+		index.restore(asList(product, tree, removed), Collections.singletonMap(productFile.getAbsolutePath(), "1234"));
+
+		assertEquals(newHashSet("FakeProduct", "FakeTree"), index.getIndexedClasses());
+		assertEquals(newHashSet(tree, product), index.findChangedParents(newHashSet(tree)));
+		assertEquals(Collections.singletonMap(productFile.getAbsolutePath(), "1234"), index.getFileHashes());
+		assertFalse(index.getSnapshot().isIncremental());
+		assertTrue(index.getSnapshot().getVersion() > version);
+		verify(builder, never()).getClass(anyString());
+	}
+
+	@Test
+	public void shouldNotParseFilesWithTheContentTheyWereIndexedWith() {
+		File file = getFileForClass(FakeProduct.class);
+		JavaClass stored = new StoredJavaClass("FakeProduct", new String[0], true, file);
+		index.restore(asList(stored), Collections.singletonMap(file.getAbsolutePath(), "1234"));
+		when(builder.contentHash(file)).thenReturn("1234");
+
+		assertEquals(newHashSet(stored), index.findClasses(asList(file)));
+		assertEquals(newHashSet("FakeProduct"), index.getSnapshot().getUpdatedClasses());
+		verify(builder, never()).classFileChanged(file);
+
+		JavaClass edited = classWithImports("FakeProduct", true);
+		when(builder.contentHash(file)).thenReturn("5678");
+		when(builder.classFileChanged(file)).thenReturn("FakeProduct");
+		when(builder.getClass("FakeProduct")).thenReturn(edited);
+
+		assertEquals(newHashSet(edited), index.findClasses(asList(file)));
+		assertEquals("5678", index.getFileHashes().get(file.getAbsolutePath()));
+	}
+
+	@Test
+	public void shouldLeaveRestoredFilesWithUnchangedContentOutOfTheChangedClasses() {
+		File file = getFileForClass(FakeProduct.class);
+		JavaClass parsed = classWithImports("FakeProduct", true);
+		when(builder.contentHash(file)).thenReturn("1234");
+		when(builder.classFileChanged(file)).thenReturn("FakeProduct");
+		when(builder.getClass("FakeProduct")).thenReturn(parsed);
+		assertEquals(newHashSet(parsed), index.findClasses(asList(file)));
+
+		JavaClass stored = new StoredJavaClass("FakeProduct", new String[0], true, file);
+		index.restore(asList(stored), Collections.singletonMap(file.getAbsolutePath(), "1234"));
+
+		assertTrue(index.findClasses(asList(file)).isEmpty());
+		assertSame(stored, index.findClassesByFile(asList(file)).get(file));
+	}
+
+	private static JavaClass classWithImports(String name, boolean isATest, String... imports) {
+		return new StubJavaClass(name, isATest, imports);
+	}
+
+	private static class StubJavaClass extends FakeJavaClass {
+		private final boolean isATest;
+		private final String[] imports;
+
+		StubJavaClass(String name, boolean isATest, String... imports) {
+			super(name);
+			this.isATest = isATest;
+			this.imports = imports;
+		}
+
+		@Override
+		public String[] getImports() {
+			return imports;
+		}
+
+		@Override
+		public boolean isATest() {
+			return isATest;
+		}
+
+		@Override
+		public boolean locatedInClassFile() {
+			return true;
+		}
+	}
 }
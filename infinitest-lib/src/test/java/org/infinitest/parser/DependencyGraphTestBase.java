@@ -88,6 +88,7 @@ public abstract class DependencyGraphTestBase {
 
   static class FilterStub implements TestFilter {
     private final Set<String> classesToFilter = new HashSet<String>();
+    private boolean changed;
 
     @Override
     public boolean match(JavaClass javaClass) {
@@ -95,12 +96,14 @@ public abstract class DependencyGraphTestBase {
     }
 
     @Override
-    public void updateFilterList() {
-      // nothing to do here
+    public boolean updateFilterList() {
+      boolean wasChanged = changed;
+      changed = false;
+      return wasChanged;
     }
 
     void addClass(String className) {
-      classesToFilter.add(className);
+      changed |= classesToFilter.add(className);
     }
   }
 }
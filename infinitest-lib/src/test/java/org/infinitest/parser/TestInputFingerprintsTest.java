@@ -0,0 +1,142 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.infinitest.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+import com.google.common.base.*;
+import com.google.common.io.*;
+
+public class TestInputFingerprintsTest {
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	private TestInputFingerprints fingerprints;
+	private File classes;
+	private File jar;
+	private ClasspathProvider classpath;
+
+	@Before
+	public void inContext() throws IOException {
+		fingerprints = new TestInputFingerprints(0);
+		classes = temp.newFolder("classes");
+		jar = temp.newFile("library.jar");
+		Files.write("library", jar, Charsets.UTF_8);
+		classpath = mock(ClasspathProvider.class);
+		when(classpath.getCompleteClasspath()).thenReturn(classes.getPath() + File.pathSeparator + jar.getPath());
+	}
+
+	@Test
+	public void shouldKeepTheFingerprintWhenAResourceIsRewrittenWithTheSameContent() throws IOException {
+		File resource = write("com/foo/config.properties", "a=1");
+		String before = fingerprint();
+
+		Files.write("a=1", resource, Charsets.UTF_8);
+		resource.setLastModified(resource.lastModified() + 60000);
+
+		assertEquals(before, fingerprint());
+	}
+
+	@Test
+	public void shouldChangeTheFingerprintWhenAResourceChanges() throws IOException {
+		File resource = write("com/foo/config.properties", "a=1");
+		String before = fingerprint();
+
+		Files.write("a=2", resource, Charsets.UTF_8);
+		resource.setLastModified(resource.lastModified() + 60000);
+
+		assertFalse(before.equals(fingerprint()));
+	}
+
+	@Test
+	public void shouldChangeTheFingerprintWhenAResourceIsAdded() throws IOException {
+		write("com/foo/config.properties", "a=1");
+		String before = fingerprint();
+
+		File added = write("com/foo/other.properties", "b=1");
+		added.getParentFile().setLastModified(added.getParentFile().lastModified() + 60000);
+
+		assertFalse(before.equals(fingerprint()));
+	}
+
+	@Test
+	public void shouldOnlyListDirectoriesAgainWhenTheyChange() throws IOException {
+		write("com/foo/config.properties", "a=1");
+		File directory = new File(classes, "com/foo");
+		long lastModified = directory.lastModified();
+		String before = fingerprint();
+
+		write("com/foo/other.properties", "b=1");
+		directory.setLastModified(lastModified);
+
+		assertEquals(before, fingerprint());
+	}
+
+	@Test
+	public void shouldIgnoreClassFilesInClasspathDirectories() throws IOException {
+		write("com/foo/Bar.class", "version 1");
+		String before = fingerprint();
+
+		File directory = new File(classes, "com/foo");
+		write("com/foo/Baz.class", "version 1");
+		directory.setLastModified(directory.lastModified() + 60000);
+
+		assertEquals(before, fingerprint());
+	}
+
+	@Test
+	public void shouldKeepTheFingerprintWhenAJarIsRebuiltWithTheSameContent() throws IOException {
+		String before = fingerprint();
+
+		Files.write("library", jar, Charsets.UTF_8);
+		jar.setLastModified(jar.lastModified() + 60000);
+
+		assertEquals(before, fingerprint());
+	}
+
+	private File write(String path, String content) throws IOException {
+		File file = new File(classes, path);
+		file.getParentFile().mkdirs();
+		Files.write(content, file, Charsets.UTF_8);
+		return file;
+	}
+
+	private String fingerprint() {
+		return fingerprints.fingerprintOf(new FakeJavaClass("com.foo.BarTest"), Collections.<JavaClass> emptyList(), classpath);
+	}
+}
@@ -72,6 +72,39 @@ public class WhenClassesChange extends DependencyGraphTestBase {
     assertFalse("Class was not reloaded", javaClass.isATest());
   }
 
+  @Test
+  public void shouldDisableTestsThatAreChangedToRegularClasses() throws Exception {
+    runTest(TestAlmostNotATest.class);
+    assertThat(getGraph().getCurrentTests()).contains(TestAlmostNotATest.class.getName());
+
+    untestify();
+    updateGraphWithChangedClass(TestAlmostNotATest.class);
+
+    assertThat(getGraph().getDisabledTests()).containsOnly(TestAlmostNotATest.class.getName());
+  }
+
+  @Test
+  public void shouldDisableTestsWhenTheyAreFiltered() {
+    runTest(TestAlmostNotATest.class);
+
+    addFilter(TestAlmostNotATest.class.getName());
+    getGraph().findTestsToRun(Collections.<File> emptySet());
+
+    assertThat(getGraph().getDisabledTests()).containsOnly(TestAlmostNotATest.class.getName());
+    assertThat(getGraph().getCurrentTests()).doesNotContain(TestAlmostNotATest.class.getName());
+  }
+
+  @Test
+  public void shouldOnlyReportDisabledTestsOnce() throws Exception {
+    runTest(TestAlmostNotATest.class);
+    untestify();
+    updateGraphWithChangedClass(TestAlmostNotATest.class);
+
+    getGraph().findTestsToRun(Collections.<File> emptySet());
+
+    assertThat(getGraph().getDisabledTests()).isEmpty();
+  }
+
   private JavaClass runTest(Class<?> testClass) {
     Set<JavaClass> classes = updateGraphWithChangedClass(testClass);
     assertEquals(1, classes.size());
@@ -84,7 +117,7 @@ public class WhenClassesChange extends DependencyGraphTestBase {
   }
 
   private void untestify() throws Exception {
-    ClassPool pool = ClassPool.getDefault();
+    ClassPool pool = new ClassPool(true);
     CtClass cc = pool.makeClass(TestAlmostNotATest.class.getName());
     cc.setSuperclass(pool.get(Object.class.getName()));
     cc.writeFile(FakeEnvironments.fakeClassDirectory().getAbsolutePath());
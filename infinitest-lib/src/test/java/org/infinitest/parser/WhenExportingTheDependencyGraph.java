@@ -0,0 +1,157 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.base.Charsets.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.infinitest.parser.export.*;
+import org.junit.*;
+
+import com.google.common.collect.*;
+
+public class WhenExportingTheDependencyGraph {
+	private ClassIndexSnapshot snapshot;
+
+	@Before
+	public void inContext() {
+		Map<String, JavaClass> classes = new LinkedHashMap<String, JavaClass>();
+		add(classes, new GraphClass("com.acme.FooTest", true, "com.acme.Foo", "java.lang.String", "com.acme.Foo"));
+		add(classes, new GraphClass("com.acme.Foo", false, "com.acme.Bar", "com.acme.Foo"));
+		add(classes, new GraphClass("com.acme.Bar", false));
+		add(classes, new GraphClass("org.other.Baz\"Quoted", false, "com.acme.Bar"));
+		snapshot = new ClassIndexSnapshot(1, classes, ImmutableSet.<String> of(), false);
+	}
+
+	private static void add(Map<String, JavaClass> classes, JavaClass javaClass) {
+		classes.put(javaClass.getName(), javaClass);
+	}
+
+	@Test
+	public void shouldWriteEachIndexedDependencyOnceAsDot() throws IOException {
+		String dot = export(GraphFormat.DOT, GraphFilter.ALL);
+
+		assertEquals("digraph dependencies {\n" //
+				+ "\t\"com.acme.Bar\";\n" //
+				+ "\t\"com.acme.Foo\";\n" //
+				+ "\t\"com.acme.FooTest\" [shape=box];\n" //
+				+ "\t\"org.other.Baz\\\"Quoted\";\n" //
+				+ "\t\"com.acme.Foo\" -> \"com.acme.Bar\";\n" //
+				+ "\t\"com.acme.FooTest\" -> \"com.acme.Foo\";\n" //
+				+ "\t\"org.other.Baz\\\"Quoted\" -> \"com.acme.Bar\";\n" //
+				+ "}\n", dot);
+	}
+
+	@Test
+	public void shouldEscapeGraphMLAttributes() throws IOException {
+		String graphml = export(GraphFormat.GRAPHML, GraphFilter.ALL);
+
+		assertTrue(graphml.contains("<node id=\"com.acme.FooTest\"><data key=\"test\">true</data></node>"));
+		assertTrue(graphml.contains("<node id=\"org.other.Baz&quot;Quoted\"/>"));
+		assertTrue(graphml.contains("<edge source=\"com.acme.Foo\" target=\"com.acme.Bar\"/>"));
+		assertTrue(graphml.endsWith("</graphml>\n"));
+	}
+
+	@Test
+	public void shouldOnlyFollowTestsWhenAskedTo() throws IOException {
+		String dot = export(GraphFormat.DOT, new GraphFilter(true, ""));
+
+		assertEquals("digraph dependencies {\n" //
+				+ "\t\"com.acme.FooTest\" [shape=box];\n" //
+				+ "\t\"com.acme.Foo\";\n" //
+				+ "\t\"com.acme.FooTest\" -> \"com.acme.Foo\";\n" //
+				+ "}\n", dot);
+	}
+
+	@Test
+	public void shouldRestrictToAPackageAndTheClassesItDependsOn() throws IOException {
+		String dot = export(GraphFormat.DOT, new GraphFilter(false, "org.other"));
+
+		assertEquals("digraph dependencies {\n" //
+				+ "\t\"org.other.Baz\\\"Quoted\";\n" //
+				+ "\t\"com.acme.Bar\";\n" //
+				+ "\t\"org.other.Baz\\\"Quoted\" -> \"com.acme.Bar\";\n" //
+				+ "}\n", dot);
+	}
+
+	@Test
+	public void shouldWriteACompactBinaryEdgeList() throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		new GraphExporter().export(snapshot, GraphFilter.ALL, GraphFormat.EDGE_LIST.createWriter(output));
+
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(output.toByteArray()));
+		assertEquals(EdgeListGraphWriter.MAGIC, input.readInt());
+		assertEquals(EdgeListGraphWriter.VERSION, input.readByte());
+		List<String> names = new ArrayList<String>();
+		List<String> edges = new ArrayList<String>();
+		for (int record = input.readByte(); record != EdgeListGraphWriter.END; record = input.readByte()) {
+			if (record == EdgeListGraphWriter.VERTEX) {
+				assertEquals(names.size(), input.readByte());
+				input.readBoolean();
+				names.add(input.readUTF());
+			} else {
+				assertEquals(EdgeListGraphWriter.EDGE, record);
+				edges.add(names.get(input.readByte()) + " -> " + names.get(input.readByte()));
+			}
+		}
+		assertEquals(4, names.size());
+		assertEquals(Arrays.asList("com.acme.Foo -> com.acme.Bar", "com.acme.FooTest -> com.acme.Foo", "org.other.Baz\"Quoted -> com.acme.Bar"), edges);
+	}
+
+	private String export(GraphFormat format, GraphFilter filter) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		new GraphExporter().export(snapshot, filter, format.createWriter(output));
+		return new String(output.toByteArray(), UTF_8);
+	}
+
+	private static class GraphClass extends FakeJavaClass {
+		private final boolean isATest;
+		private final String[] imports;
+
+		GraphClass(String name, boolean isATest, String... imports) {
+			super(name);
+			this.isATest = isATest;
+			this.imports = imports;
+		}
+
+		@Override
+		public String[] getImports() {
+			return imports;
+		}
+
+		@Override
+		public boolean isATest() {
+			return isATest;
+		}
+	}
+}
@@ -32,6 +32,7 @@ import static org.infinitest.util.FakeEnvironments.*;
 import static org.junit.Assert.*;
 
 import java.io.*;
+import java.util.*;
 
 import org.infinitest.*;
 import org.junit.*;
@@ -94,6 +95,30 @@ public class WhenParsingClassFiles {
 		assertNotNull(parseClass(FakeProduct.class));
 	}
 
+	@Test
+	public void shouldParsePrefetchedClassFilesLikeOthers() throws IOException {
+		List<File> classFiles = new ArrayList<File>();
+		findClassFiles(fakeClassDirectory(), classFiles);
+		JavaAssistClassParser prefetchingParser = new JavaAssistClassParser(fakeClasspath().getCompleteClasspath());
+
+		prefetchingParser.prefetch(classFiles);
+
+		assertThat(classFiles.size()).isGreaterThan(64);
+		for (File each : classFiles) {
+			assertEquals(parser.classFileChanged(each), prefetchingParser.classFileChanged(each));
+		}
+	}
+
+	private static void findClassFiles(File directory, List<File> classFiles) {
+		for (File each : directory.listFiles()) {
+			if (each.isDirectory()) {
+				findClassFiles(each, classFiles);
+			} else if (each.getName().endsWith(".class")) {
+				classFiles.add(each);
+			}
+		}
+	}
+
 	@Test
 	public void shouldHandleMissingClassDirs() {
 		parser = new JavaAssistClassParser("notADirYet");
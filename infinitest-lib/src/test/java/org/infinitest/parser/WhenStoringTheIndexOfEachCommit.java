@@ -0,0 +1,112 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.parser;
+
+import static java.util.Arrays.*;
+import static org.infinitest.util.FakeEnvironments.*;
+import static org.infinitest.util.InfinitestTestUtils.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+import org.junit.rules.*;
+
+import com.fakeco.fakeproduct.*;
+
+public class WhenStoringTheIndexOfEachCommit {
+	private static final String COMMIT = "0123456789abcdef0123456789abcdef01234567";
+	private static final String OTHER_COMMIT = "89abcdef0123456789abcdef0123456789abcdef";
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	private IndexSnapshotStore store;
+
+	@Before
+	public void inContext() {
+		store = new IndexSnapshotStore(new File(temp.getRoot(), "index"));
+	}
+
+	@Test
+	public void shouldRestoreTheClassesSavedForACommit() {
+		File productFile = getFileForClass(FakeProduct.class);
+		File treeFile = getFileForClass(FakeTree.class);
+		JavaClass product = new StoredJavaClass("FakeProduct", new String[] { "FakeTree", "java.lang.String" }, true, productFile);
+		JavaClass tree = new StoredJavaClass("FakeTree", new String[0], false, treeFile);
+
+		store.save(COMMIT, asList(product, tree), Collections.singletonMap(productFile.getAbsolutePath(), "1234"));
+		IndexSnapshotStore.StoredIndex restored = store.load(COMMIT);
+
+		assertEquals(2, restored.getClasses().size());
+		JavaClass restoredProduct = restored.getClasses().get(0);
+		assertEquals("FakeProduct", restoredProduct.getName());
+		assertArrayEquals(new String[] { "FakeTree", "java.lang.String" }, restoredProduct.getImports());
+		assertTrue(restoredProduct.isATest());
+		assertEquals(productFile.getAbsoluteFile(), restoredProduct.getClassFile());
+		assertFalse(restored.getClasses().get(1).isATest());
+		assertEquals(Collections.singletonMap(productFile.getAbsolutePath(), "1234"), restored.getFileHashes());
+	}
+
+	@Test
+	public void shouldNotFindTheIndexOfAnUnknownCommit() {
+		assertNull(store.load(COMMIT));
+		assertFalse("Looking up an index should not create the store", new File(temp.getRoot(), "index").exists());
+	}
+
+	@Test
+	public void shouldOnlyKeepTheMostRecentlyUsedIndexes() {
+		List<JavaClass> classes = Collections.emptyList();
+		Map<String, String> hashes = Collections.emptyMap();
+		store.save(COMMIT, classes, hashes);
+		new File(temp.getRoot(), "index/" + COMMIT + ".index").setLastModified(System.currentTimeMillis() + 60000);
+		for (int i = 0; i < 20; i++) {
+			store.save(String.format("%040d", i), classes, hashes);
+		}
+
+		assertEquals(16, new File(temp.getRoot(), "index").list().length);
+		assertNotNull(store.load(COMMIT));
+	}
+
+	@Test
+	public void shouldNotSelectTestsWhenACheckoutOnlyTouchesIdenticalFiles() {
+		ClassFileTestDetector detector = new ClassFileTestDetector(new DependencyGraphTestBase.FilterStub());
+		detector.setClasspathProvider(fakeClasspath());
+		List<File> files = asList(getFileForClass(TestFakeProduct.class), getFileForClass(FakeProduct.class));
+		assertFalse(detector.findTestsToRun(files).isEmpty());
+
+		detector.switchCommit(store, COMMIT, OTHER_COMMIT);
+		Collection<File> filesToAnalyze = detector.switchCommit(store, OTHER_COMMIT, COMMIT);
+
+		assertTrue(filesToAnalyze.isEmpty());
+		assertTrue(detector.findTestsToRun(files).isEmpty());
+	}
+}
@@ -31,21 +31,100 @@ import static org.infinitest.ConsoleOutputListener.OutputType.*;
 import static org.infinitest.util.InfinitestTestUtils.*;
 import static org.junit.Assert.*;
 
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+
 import org.infinitest.*;
+import org.infinitest.util.*;
 import org.junit.*;
 
 public class ConsoleOutputProcessorTest {
-	@Test
-	public void shouldFireEventsToPublishConsoleOutput() {
-		RunnerEventSupport eventSupport = new RunnerEventSupport(this);
-		final StringBuffer updatedText = new StringBuffer();
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private RunnerEventSupport eventSupport;
+	private StringBuffer updatedText;
+	private List<String> updates;
+
+	@Before
+	public void inContext() {
+		eventSupport = new RunnerEventSupport(this);
+		updatedText = new StringBuffer();
+		updates = Collections.synchronizedList(new ArrayList<String>());
 		eventSupport.addConsoleOutputListener(new ConsoleOutputListener() {
 			@Override
 			public void consoleOutputUpdate(String newText, OutputType outputType) {
 				updatedText.append(newText);
+				updates.add(newText);
 			}
 		});
+	}
+
+	@Test
+	public void shouldFireEventsToPublishConsoleOutput() {
 		new ConsoleOutputProcessor(toInputStream("hello"), STDERR, eventSupport).run();
 		assertEquals("hello", updatedText.toString());
 	}
+
+	@Test
+	public void shouldCoalesceSmallWritesIntoASingleEvent() {
+		new ConsoleOutputProcessor(new OneByteAtATime("hello world", UTF8), STDOUT, eventSupport, UTF8, 1024, 1024, 10000).run();
+
+		assertEquals(Arrays.asList("hello world"), updates);
+	}
+
+	@Test
+	public void shouldNotSplitCharactersAcrossReads() {
+		new ConsoleOutputProcessor(new OneByteAtATime("\u00e9t\u00e9 \u20ac", UTF8), STDOUT, eventSupport, UTF8, 1024, 1, 10000).run();
+
+		assertEquals("\u00e9t\u00e9 \u20ac", updatedText.toString());
+	}
+
+	@Test
+	public void shouldSpillOutputThatDoesNotFitInTheBuffer() {
+		new ConsoleOutputProcessor(toInputStream("0123456789"), STDOUT, eventSupport, UTF8, 4, 1024, 10000).run();
+
+		assertTrue(updatedText.toString(), updatedText.toString().startsWith("0123"));
+		assertTrue(updatedText.toString(), updatedText.toString().contains("6 bytes of output"));
+	}
+
+	@Test
+	public void shouldOnlyPublishWhatWasBufferedWhenTheFlushStarted() {
+		ByteRingBuffer buffer = new ByteRingBuffer(1024) {
+			private int refills = 10;
+
+			// Output that keeps coming while the buffer is being read
+			@Override
+			public synchronized int read(byte[] destination, int offset, int length) {
+				int read = super.read(destination, offset, length);
+				if (refills-- > 0) {
+					write("more\n".getBytes(UTF8), 0, 5);
+				}
+				return read;
+			}
+		};
+		buffer.write("first\n".getBytes(UTF8), 0, 6);
+
+		new ConsoleOutputProcessor(toInputStream(""), STDOUT, eventSupport, UTF8, buffer, 1024, 10000).flush();
+
+		assertEquals("first\n", updates.get(0));
+	}
+
+	private static class OneByteAtATime extends InputStream {
+		private final InputStream bytes;
+
+		OneByteAtATime(String text, Charset charset) {
+			bytes = new ByteArrayInputStream(text.getBytes(charset));
+		}
+
+		@Override
+		public int read() throws IOException {
+			return bytes.read();
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			return bytes.read(buffer, offset, Math.min(length, 1));
+		}
+	}
 }
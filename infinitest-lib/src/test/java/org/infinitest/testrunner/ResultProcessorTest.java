@@ -28,15 +28,22 @@
 package org.infinitest.testrunner;
 
 import static org.infinitest.testrunner.TestEvent.TestState.*;
+import static org.infinitest.testrunner.TestEvent.*;
+import static org.infinitest.util.FakeEnvironments.*;
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 
+import static java.util.Arrays.*;
+
 import java.io.*;
+import java.util.*;
 
 import org.infinitest.*;
 import org.infinitest.testrunner.process.*;
 import org.junit.*;
+import org.mockito.invocation.*;
+import org.mockito.stubbing.*;
 
 public class ResultProcessorTest {
 	private TestQueueProcessor reader;
@@ -59,7 +66,7 @@ public class ResultProcessorTest {
 		reader = new TestQueueProcessor(runnerEventSupport, factory, null);
 		connection.close();
 
-		when(connection.runTest("test1")).thenReturn(new TestResults());
+		when(connection.runTest(eq("test1"), any(TestEventStream.class))).thenReturn(new TestResults());
 	}
 
 	@Test
@@ -71,12 +78,35 @@ public class ResultProcessorTest {
 		eventAssert.assertTestPassed("test1");
 		eventAssert.assertRunComplete();
 
-		verify(connection).runTest("test1");
+		verify(connection).runTest(eq("test1"), any(TestEventStream.class));
+	}
+
+	@Test
+	public void shouldReportEachTestOfABatch() throws Exception {
+		final List<String> tests = asList("test1", "test2");
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) {
+				BatchResultsListener listener = (BatchResultsListener) invocation.getArguments()[1];
+				for (String test : tests) {
+					listener.testClassFinished(test, new TestResults());
+				}
+				return null;
+			}
+		}).when(connection).runTests(eq(tests), any(BatchResultsListener.class), any(TestEventStream.class));
+
+		reader.process(tests);
+		reader.close();
+
+		eventAssert.assertTestsStarted("test1", "test2");
+		eventAssert.assertTestPassed("test1");
+		eventAssert.assertTestPassed("test2");
+		eventAssert.assertRunComplete();
 	}
 
 	@Test
 	public void shouldOnlyOpenOneConnection() throws Exception {
-		when(connection.runTest("test2")).thenReturn(new TestResults());
+		when(connection.runTest(eq("test2"), any(TestEventStream.class))).thenReturn(new TestResults());
 
 		reader.process("test1");
 		reader.process("test2");
@@ -86,9 +116,168 @@ public class ResultProcessorTest {
 		verify(factory, times(1)).getConnection(any(RuntimeEnvironment.class), any(OutputStreamHandler.class));
 	}
 
+	@Test
+	public void shouldRelaunchWithMoreHeapWhenATestExhaustsIt() throws Exception {
+		RunStatistics history = new RunStatistics();
+		ProcessConnection largerConnection = mock(ProcessConnection.class);
+		when(factory.getConnection(any(RuntimeEnvironment.class), any(OutputStreamHandler.class))).thenReturn(connection, largerConnection);
+		when(connection.runTest(eq("hungryTest"), any(TestEventStream.class))).thenThrow(new HeapExhaustedException("hungryTest", new TestResults()));
+		when(largerConnection.runTest(eq("hungryTest"), any(TestEventStream.class))).thenReturn(new TestResults());
+
+		reader = new TestQueueProcessor(runnerEventSupport, factory, environmentWith(history, 1024));
+		reader.process("hungryTest");
+		reader.close();
+
+		eventAssert.assertTestPassed("hungryTest");
+		assertEquals(512, history.getRequiredHeapSize("hungryTest"));
+		verify(connection).abort();
+	}
+
+	@Test
+	public void shouldReportWhatTheTestDidOnceTheHeapCannotGrow() throws Exception {
+		RunStatistics history = new RunStatistics();
+		TestResults outOfMemory = new TestResults(methodFailed("hungryTest", "shouldEat", new OutOfMemoryError()));
+		when(factory.getConnection(any(RuntimeEnvironment.class), any(OutputStreamHandler.class))).thenReturn(connection);
+		when(connection.runTest(eq("hungryTest"), any(TestEventStream.class))).thenThrow(new HeapExhaustedException("hungryTest", outOfMemory));
+
+		reader = new TestQueueProcessor(runnerEventSupport, factory, environmentWith(history, 256));
+		reader.process("hungryTest");
+		reader.close();
+
+		eventAssert.assertTestFailed("hungryTest");
+		assertEquals(0, history.getRequiredHeapSize("hungryTest"));
+		verify(connection, times(1)).runTest(eq("hungryTest"), any(TestEventStream.class));
+		verify(connection).abort();
+		verify(factory, times(2)).getConnection((RuntimeEnvironment) notNull(), any(OutputStreamHandler.class));
+	}
+
+	@Test
+	public void shouldRelaunchWhenTheLastTestOfABatchExhaustsTheMaximumHeap() throws Exception {
+		when(factory.getConnection(any(RuntimeEnvironment.class), any(OutputStreamHandler.class))).thenReturn(connection);
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) {
+				((BatchResultsListener) invocation.getArguments()[1]).testClassFinished("test1", new TestResults());
+				throw new HeapExhaustedException("hungryTest", new TestResults(methodFailed("hungryTest", "shouldEat", new OutOfMemoryError())));
+			}
+		}).when(connection).runTests(eq(asList("test1", "hungryTest")), any(BatchResultsListener.class), any(TestEventStream.class));
+
+		reader = new TestQueueProcessor(runnerEventSupport, factory, environmentWith(new RunStatistics(), 256));
+		reader.process(asList("test1", "hungryTest"));
+		reader.close();
+
+		eventAssert.assertTestPassed("test1");
+		eventAssert.assertTestFailed("hungryTest");
+		verify(connection).abort();
+		verify(factory, times(2)).getConnection((RuntimeEnvironment) notNull(), any(OutputStreamHandler.class));
+	}
+
+	@Test
+	public void shouldRunTheRestOfABatchAfterRelaunching() throws Exception {
+		ProcessConnection largerConnection = mock(ProcessConnection.class);
+		when(factory.getConnection(any(RuntimeEnvironment.class), any(OutputStreamHandler.class))).thenReturn(connection, largerConnection);
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) {
+				((BatchResultsListener) invocation.getArguments()[1]).testClassFinished("test1", new TestResults());
+				throw new HeapExhaustedException("hungryTest", new TestResults());
+			}
+		}).when(connection).runTests(eq(asList("test1", "hungryTest", "test2")), any(BatchResultsListener.class), any(TestEventStream.class));
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) {
+				BatchResultsListener listener = (BatchResultsListener) invocation.getArguments()[1];
+				listener.testClassFinished("hungryTest", new TestResults());
+				listener.testClassFinished("test2", new TestResults());
+				return null;
+			}
+		}).when(largerConnection).runTests(eq(asList("hungryTest", "test2")), any(BatchResultsListener.class), any(TestEventStream.class));
+
+		reader = new TestQueueProcessor(runnerEventSupport, factory, environmentWith(new RunStatistics(), 1024));
+		reader.process(asList("test1", "hungryTest", "test2"));
+		reader.close();
+
+		eventAssert.assertTestPassed("test1");
+		eventAssert.assertTestPassed("hungryTest");
+		eventAssert.assertTestPassed("test2");
+	}
+
+	@Test
+	public void shouldReportTheTimeoutAndRunTheRestOfABatchInANewProcess() throws Exception {
+		ProcessConnection freshConnection = mock(ProcessConnection.class);
+		when(factory.getConnection(any(RuntimeEnvironment.class), any(OutputStreamHandler.class))).thenReturn(connection, freshConnection);
+		final TestResults timeout = new TestResults(methodFailed("hungTest", "shouldReturn", new RuntimeException("timed out")));
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) {
+				((BatchResultsListener) invocation.getArguments()[1]).testClassFinished("test1", new TestResults());
+				throw new TestTimedOutException("hungTest", timeout, "");
+			}
+		}).when(connection).runTests(eq(asList("test1", "hungTest", "test2")), any(BatchResultsListener.class), any(TestEventStream.class));
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) {
+				((BatchResultsListener) invocation.getArguments()[1]).testClassFinished("test2", new TestResults());
+				return null;
+			}
+		}).when(freshConnection).runTests(eq(asList("test2")), any(BatchResultsListener.class), any(TestEventStream.class));
+
+		reader = new TestQueueProcessor(runnerEventSupport, factory, environmentWith(new RunStatistics(), 1024));
+		reader.process(asList("test1", "hungTest", "test2"));
+		reader.close();
+
+		eventAssert.assertTestPassed("test1");
+		eventAssert.assertTestFailed("hungTest");
+		eventAssert.assertTestPassed("test2");
+		verify(connection).abort();
+	}
+
+	@Test
+	public void shouldBlameTheFirstPendingTestWhenTheTimedOutTestIsNotPartOfTheBatch() throws Exception {
+		ProcessConnection freshConnection = mock(ProcessConnection.class);
+		when(factory.getConnection(any(RuntimeEnvironment.class), any(OutputStreamHandler.class))).thenReturn(connection, freshConnection);
+		final TestResults timeout = new TestResults(methodFailed("otherTest", "shouldReturn", new RuntimeException("timed out")));
+		doThrow(new TestTimedOutException("otherTest", timeout, "")).when(connection).runTests(eq(asList("test1", "test2")), any(BatchResultsListener.class), any(TestEventStream.class));
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) {
+				((BatchResultsListener) invocation.getArguments()[1]).testClassFinished("test2", new TestResults());
+				return null;
+			}
+		}).when(freshConnection).runTests(eq(asList("test2")), any(BatchResultsListener.class), any(TestEventStream.class));
+
+		reader = new TestQueueProcessor(runnerEventSupport, factory, environmentWith(new RunStatistics(), 1024));
+		reader.process(asList("test1", "test2"));
+		reader.close();
+
+		eventAssert.assertTestFailed("test1");
+		eventAssert.assertTestPassed("test2");
+	}
+
+	@Test
+	public void shouldGiveTestsThatRanBeforeABudgetBasedOnTheirLastDuration() throws Exception {
+		TestHistory history = mock(TestHistory.class);
+		when(history.getLastDuration("test1")).thenReturn(30000L);
+		when(factory.getConnection(any(RuntimeEnvironment.class), any(OutputStreamHandler.class))).thenReturn(connection);
+
+		reader = new TestQueueProcessor(runnerEventSupport, factory, environmentWith(history, 1024));
+		reader.process("test1");
+		reader.close();
+
+		verify(connection).setTimeBudgets(Collections.singletonMap("test1", 300000L));
+	}
+
+	private RuntimeEnvironment environmentWith(TestHistory history, int maximumHeapSize) {
+		RuntimeEnvironment environment = fakeEnvironment();
+		environment.setClassDataSharing(null);
+		environment.setTestHistory(history);
+		environment.setMaximumHeapSize(maximumHeapSize);
+		return environment;
+	}
+
 	@Test
 	public void shouldFireStartingEventBeforeTestStarts() throws Exception {
-		when(connection.runTest("test2")).thenThrow(new RuntimeException());
+		when(connection.runTest(eq("test2"), any(TestEventStream.class))).thenThrow(new RuntimeException());
 		try {
 			reader.process("test2");
 			fail("shouldHaveThrownException");
@@ -100,6 +289,6 @@ public class ResultProcessorTest {
 
 		eventAssert.assertEventsReceived(TEST_CASE_STARTING);
 		eventAssert.assertRunComplete();
-		verify(connection).runTest("test2");
+		verify(connection).runTest(eq("test2"), any(TestEventStream.class));
 	}
 }
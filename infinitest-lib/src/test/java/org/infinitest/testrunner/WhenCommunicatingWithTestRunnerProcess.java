@@ -33,7 +33,10 @@ import static org.junit.Assert.*;
 
 import java.io.*;
 import java.net.*;
+import java.util.*;
 
+import org.infinitest.*;
+import org.infinitest.testrunner.TestEvent.TestState;
 import org.infinitest.testrunner.process.*;
 import org.junit.*;
 
@@ -90,6 +93,106 @@ public class WhenCommunicatingWithTestRunnerProcess {
 		assertTrue(isEmpty(communicator.sendMessage(null)));
 	}
 
+	@Test
+	public void shouldPublishMethodEventsSentAheadOfTheResults() {
+		final int portNum = communicator.createSocket();
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Socket clientSocket = new Socket("127.0.0.1", portNum);
+					ObjectOutputStream ooStream = new ObjectOutputStream(clientSocket.getOutputStream());
+					ObjectInputStream inStream = new ObjectInputStream(clientSocket.getInputStream());
+					assertEquals("hello", inStream.readObject());
+					ooStream.writeObject(methodStarting("hello", "shouldWork"));
+					ooStream.writeObject(methodFinished("hello", "shouldWork"));
+					ooStream.writeObject(new TestResults());
+					inStream.readObject();
+					clientSocket.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				} catch (ClassNotFoundException e) {
+					e.printStackTrace();
+				}
+			}
+		}).start();
+		communicator.openSocket();
+		final List<TestEvent> events = new ArrayList<TestEvent>();
+		TestResults results = communicator.sendMessage("hello", new TestEventStream() {
+			@Override
+			public void publish(TestEvent event) {
+				events.add(event);
+			}
+		});
+
+		assertTrue(isEmpty(results));
+		assertEquals(2, events.size());
+		assertEquals(TestState.METHOD_STARTING, events.get(0).getType());
+		assertEquals(TestState.METHOD_FINISHED, events.get(1).getType());
+	}
+
+	@Test
+	public void shouldReportHeapExhaustionDistinctly() {
+		final int portNum = communicator.createSocket();
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Socket clientSocket = new Socket("127.0.0.1", portNum);
+					ObjectOutputStream ooStream = new ObjectOutputStream(clientSocket.getOutputStream());
+					ObjectInputStream inStream = new ObjectInputStream(clientSocket.getInputStream());
+					assertEquals("hello", inStream.readObject());
+					ooStream.writeObject(new HeapExhausted("hello", new TestResults()));
+					ooStream.flush();
+					clientSocket.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				} catch (ClassNotFoundException e) {
+					e.printStackTrace();
+				}
+			}
+		}).start();
+		communicator.openSocket();
+		try {
+			communicator.sendMessage("hello");
+			fail();
+		} catch (HeapExhaustedException e) {
+			assertEquals("hello", e.getTestName());
+			assertTrue(isEmpty(e.getResults()));
+		}
+	}
+
+	@Test
+	public void shouldReportTimeoutsDistinctly() {
+		final int portNum = communicator.createSocket();
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Socket clientSocket = new Socket("127.0.0.1", portNum);
+					ObjectOutputStream ooStream = new ObjectOutputStream(clientSocket.getOutputStream());
+					ObjectInputStream inStream = new ObjectInputStream(clientSocket.getInputStream());
+					assertEquals("hello", inStream.readObject());
+					ooStream.writeObject(new TestTimedOut("hello", new TestResults(), "\"main\" WAITING"));
+					ooStream.flush();
+					clientSocket.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				} catch (ClassNotFoundException e) {
+					e.printStackTrace();
+				}
+			}
+		}).start();
+		communicator.openSocket();
+		try {
+			communicator.sendMessage("hello");
+			fail();
+		} catch (TestTimedOutException e) {
+			assertEquals("hello", e.getTestName());
+			assertEquals("\"main\" WAITING", e.getThreadDump());
+		}
+	}
+
 	@Test(timeout = 1000)
 	public void shouldTimeOutIfRunnerProcessFailsToStart() {
 		communicator = new TcpSocketProcessCommunicator(250);
@@ -124,6 +124,15 @@ public class WhenRunningTestsInDifferentEnvironments extends AbstractRunnerTest
     assertTrue(actualArgs.toString(), actualArgs.containsAll(additionalArgs));
   }
 
+  @Test
+  public void shouldReadTheBatchSizeFromTheVMArguments() {
+    RuntimeEnvironment environment = fakeEnvironment();
+    assertEquals(1, environment.getBatchSize());
+
+    environment.addVMArgs(asList("-Dinfinitest.batch.size=8"));
+    assertEquals(8, environment.getBatchSize());
+  }
+
   @Test
   public void canUseACustomWorkingDirectory() throws Exception {
     runner.setRuntimeEnvironment(new RuntimeEnvironment(fakeBuildPaths(), new File("src"), FakeEnvironments.systemClasspath(), currentJavaHome()));
@@ -37,6 +37,7 @@ import java.io.*;
 import java.util.*;
 
 import org.infinitest.*;
+import org.infinitest.testrunner.*;
 import org.junit.*;
 
 public class ProcessorRunnableTest {
@@ -76,4 +77,31 @@ public class ProcessorRunnableTest {
 		runnable.run();
 		assertEquals("test1", getOnlyElement(testQueue));
 	}
+
+	@Test
+	public void shouldHandTestsToTheProcessorInBatches() throws InterruptedException, IOException {
+		Queue<String> testQueue = newLinkedList(asList("test1", "test2", "test3"));
+		QueueProcessor processor = mock(QueueProcessor.class);
+
+		ProcessorRunnable runnable = new ProcessorRunnable(testQueue, processor, new RunnerEventSupport(this), 3, mock(ConcurrencyController.class));
+		runnable.setBatchSize(2);
+		runnable.run();
+
+		verify(processor).process(asList("test1", "test2"));
+		verify(processor).process("test3");
+		assertTrue(testQueue.isEmpty());
+	}
+
+	@Test
+	public void shouldReQueueTheWholeBatchIfEventDispatchFails() throws InterruptedException, IOException {
+		Queue<String> testQueue = newLinkedList(asList("test1", "test2"));
+		QueueProcessor processor = mock(QueueProcessor.class);
+		doThrow(new QueueDispatchException(new Throwable())).when(processor).process(asList("test1", "test2"));
+
+		ProcessorRunnable runnable = new ProcessorRunnable(testQueue, processor, null, 2, mock(ConcurrencyController.class));
+		runnable.setBatchSize(2);
+		runnable.run();
+
+		assertEquals(asList("test1", "test2"), newArrayList(testQueue));
+	}
 }
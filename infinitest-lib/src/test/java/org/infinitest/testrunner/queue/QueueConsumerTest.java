@@ -142,14 +142,19 @@ public class QueueConsumerTest {
 
 	private void assertQueueEventsFired() {
 		TestQueueEvent firstEvent = get(queueUpdates, 0);
-		assertEquals(firstEvent.getTestQueue(), asList("test1", "test2"));
+		assertEquals(asList("test1", "test2"), firstEvent.getAddedTests());
+		assertEquals(2, firstEvent.getSize());
+		assertEquals("test1", firstEvent.getCurrentTest());
 		assertEquals(firstEvent.getInitialSize(), 2);
 
 		TestQueueEvent secondEvent = get(queueUpdates, 1);
-		assertEquals(secondEvent.getTestQueue(), asList("test2"));
+		assertEquals("test1", secondEvent.getCompletedTest());
+		assertEquals(1, secondEvent.getSize());
+		assertEquals("test2", secondEvent.getCurrentTest());
 		assertEquals(secondEvent.getInitialSize(), 2);
 
 		TestQueueEvent thirdEvent = get(queueUpdates, 2);
+		assertTrue(thirdEvent.isEmpty());
 		assertEquals(thirdEvent.getTestQueue(), emptyList());
 	}
 
@@ -198,6 +203,11 @@ public class QueueConsumerTest {
 			}
 			throw new TestRunAborted(test, new NullPointerException());
 		}
+
+		@Override
+		public void process(List<String> tests) throws InterruptedException {
+			process(tests.get(0));
+		}
 	}
 
 	private class FakeQueueProcessor implements QueueProcessor {
@@ -213,6 +223,13 @@ public class QueueConsumerTest {
 			}
 		}
 
+		@Override
+		public void process(List<String> tests) throws InterruptedException {
+			for (String test : tests) {
+				process(test);
+			}
+		}
+
 		@Override
 		public void close() {
 			try {
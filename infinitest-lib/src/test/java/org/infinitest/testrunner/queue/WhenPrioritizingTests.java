@@ -27,11 +27,14 @@
  */
 package org.infinitest.testrunner.queue;
 
+import static com.google.common.collect.Lists.*;
 import static java.lang.Thread.*;
 import static java.util.Arrays.*;
 import static org.infinitest.EventSupport.*;
 import static org.junit.Assert.*;
 
+import java.util.*;
+
 import org.infinitest.testrunner.*;
 import org.junit.*;
 
@@ -57,9 +60,64 @@ public class WhenPrioritizingTests {
 		assertEquals("test2", queue.take());
 	}
 
+	@Test
+	public void shouldRunCheaperTestsFirstWhenNoneFailedRecently() {
+		testUsedCpu("test1", 900);
+		testUsedCpu("test2", 100);
+
+		queue.addAll(asList("test1", "test2", "test3"));
+
+		assertEquals("test3", queue.poll());
+		assertEquals("test2", queue.poll());
+		assertEquals("test1", queue.poll());
+	}
+
+	private void testUsedCpu(String testName, long cpuTime) {
+		MethodStats methodStats = new MethodStats("shouldWork");
+		methodStats.stopCpuTime = cpuTime;
+		TestResults results = new TestResults();
+		results.addMethodStats(asList(methodStats));
+		stats.testCaseComplete(new TestCaseEvent(testName, this, results));
+	}
+
 	@Test
 	public void shouldNeverRunTheSameTestTwice() {
 		queue.addAll(asList("test1", "test2", "test1"));
 		assertEquals(2, queue.size());
 	}
+
+	@Test
+	public void shouldRunTestsWithTheSamePriorityInTheOrderTheyWereAdded() {
+		queue.addAll(asList("test3", "test1", "test2"));
+
+		assertEquals("test3", queue.poll());
+		assertEquals("test1", queue.poll());
+		assertEquals("test2", queue.poll());
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void shouldRemoveQueuedTests() {
+		queue.addAll(asList("test1", "test2", "test3"));
+
+		assertTrue(queue.remove("test2"));
+		assertFalse(queue.contains("test2"));
+		assertEquals(asList("test1", "test3"), newArrayList(queue.poll(), queue.poll()));
+	}
+
+	@Test
+	public void shouldHandleLargeRunsWithoutQuadraticOverhead() {
+		List<String> tests = newArrayList();
+		for (int i = 0; i < 20000; i++) {
+			tests.add("com.fakeco.Test" + i);
+		}
+
+		long start = System.currentTimeMillis();
+		queue.addAll(tests);
+		queue.addAll(tests);
+		while (queue.poll() != null) {
+		}
+
+		assertTrue(System.currentTimeMillis() - start < 2000);
+	}
 }
@@ -0,0 +1,68 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+public class ByteRingBufferTest {
+	private ByteRingBuffer buffer;
+
+	@Before
+	public void inContext() {
+		buffer = new ByteRingBuffer(4);
+	}
+
+	@Test
+	public void shouldOnlyAcceptWhatFits() {
+		assertEquals(3, buffer.write("abc".getBytes(), 0, 3));
+		assertEquals(1, buffer.write("def".getBytes(), 0, 3));
+		assertEquals(4, buffer.size());
+
+		assertEquals("abcd", read(10));
+	}
+
+	@Test
+	public void shouldWrapAround() {
+		buffer.write("abc".getBytes(), 0, 3);
+		assertEquals("ab", read(2));
+
+		assertEquals(3, buffer.write("def".getBytes(), 0, 3));
+		assertEquals("cdef", read(10));
+		assertEquals(0, buffer.size());
+	}
+
+	private String read(int length) {
+		byte[] bytes = new byte[length];
+		int read = buffer.read(bytes, 0, length);
+		return new String(bytes, 0, read);
+	}
+}
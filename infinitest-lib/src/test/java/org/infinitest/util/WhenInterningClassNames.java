@@ -0,0 +1,79 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.util;
+
+import static com.google.common.collect.Lists.*;
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+public class WhenInterningClassNames {
+	@Test
+	public void shouldGiveTheSameIdToEqualNames() {
+		int id = ClassNameTable.idFor("com.fakeco.Interned");
+
+		assertEquals(id, ClassNameTable.idFor(new String("com.fakeco.Interned")));
+		assertEquals("com.fakeco.Interned", ClassNameTable.nameFor(id));
+	}
+
+	@Test
+	public void shouldLookUpNamesWithoutRegisteringThem() {
+		int size = ClassNameTable.size();
+
+		assertEquals(ClassNameTable.UNKNOWN, ClassNameTable.existingIdFor("com.fakeco.NeverRegistered"));
+		assertEquals(size, ClassNameTable.size());
+		assertEquals(ClassNameTable.idFor("com.fakeco.Registered"), ClassNameTable.existingIdFor("com.fakeco.Registered"));
+	}
+
+	@Test
+	public void shouldShareASingleInstanceOfEachName() {
+		String first = ClassNameTable.canonical(new String("com.fakeco.Shared"));
+
+		assertSame(first, ClassNameTable.canonical(new String("com.fakeco.Shared")));
+	}
+
+	@Test
+	public void shouldRoundTripListsOfNames() {
+		int[] ids = ClassNameTable.idsFor(newArrayList("com.fakeco.A", "com.fakeco.B"));
+
+		assertArrayEquals(new String[] { "com.fakeco.A", "com.fakeco.B" }, ClassNameTable.namesFor(ids));
+	}
+
+	@Test
+	public void shouldGrowToHoldManyNames() {
+		int first = ClassNameTable.idFor("com.fakeco.Grow0");
+		for (int i = 1; i < 5000; i++) {
+			ClassNameTable.idFor("com.fakeco.Grow" + i);
+		}
+
+		assertEquals("com.fakeco.Grow0", ClassNameTable.nameFor(first));
+		assertEquals("com.fakeco.Grow4999", ClassNameTable.nameFor(ClassNameTable.idFor("com.fakeco.Grow4999")));
+	}
+}
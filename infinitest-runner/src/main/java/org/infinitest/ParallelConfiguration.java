@@ -0,0 +1,124 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest;
+
+import java.lang.annotation.*;
+import java.util.*;
+
+/**
+ * Says which test classes may be run concurrently inside the runner JVM, and
+ * whether their classes, their methods or both are run in parallel.
+ */
+public class ParallelConfiguration {
+	public enum Mode {
+		NONE, CLASSES, METHODS, ALL
+	}
+
+	private Mode mode = Mode.NONE;
+	private List<String> packages = new ArrayList<String>();
+	private String annotation;
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	public void setMode(Mode mode) {
+		this.mode = mode;
+	}
+
+	public List<String> getPackages() {
+		return packages;
+	}
+
+	public void setPackages(List<String> packages) {
+		this.packages = packages;
+	}
+
+	public String getAnnotation() {
+		return annotation;
+	}
+
+	public void setAnnotation(String annotation) {
+		this.annotation = annotation;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public boolean isParallelClasses() {
+		return (mode == Mode.CLASSES) || (mode == Mode.ALL);
+	}
+
+	public boolean isParallelMethods() {
+		return (mode == Mode.METHODS) || (mode == Mode.ALL);
+	}
+
+	/**
+	 * When neither packages nor an annotation are given, every test class is
+	 * considered thread safe. Otherwise a class has to be in one of the
+	 * packages (or a sub package) or carry the annotation.
+	 */
+	public boolean appliesTo(Class<?> testClass) {
+		if (mode == Mode.NONE) {
+			return false;
+		}
+		if (packages.isEmpty() && (annotation == null)) {
+			return true;
+		}
+		return isInPackages(testClass.getName()) || isAnnotated(testClass);
+	}
+
+	private boolean isInPackages(String className) {
+		for (String each : packages) {
+			if (className.startsWith(each + ".")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isAnnotated(Class<?> testClass) {
+		if (annotation == null) {
+			return false;
+		}
+		for (Annotation each : testClass.getAnnotations()) {
+			if (each.annotationType().getName().equals(annotation)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest;
+
+import static java.util.Arrays.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.regex.*;
+
+import org.infinitest.ParallelConfiguration.Mode;
+
+/**
+ * Reads the parallel execution settings from the filter file, using the same
+ * comment syntax as the TestNG settings:
+ * 
+ * <pre>
+ * ## parallel = classes | methods | all
+ * ## parallel-packages = com.acme.core, com.acme.util
+ * ## parallel-annotation = com.acme.ThreadSafe
+ * ## parallel-threads = 4
+ * </pre>
+ * 
+ * The same settings can be given as system properties in infinitest.args, for
+ * instance <code>-Dinfinitest.parallel=classes</code>. They take precedence
+ * over the filter file.
+ */
+public class ParallelConfigurator {
+	private static final String SUFFIX = "\\s?=\\s?(.+)";
+	private static final String PREFIX = "^\\s*#+\\s?";
+	private static final String MODE = "parallel";
+	private static final String PACKAGES = "parallel-packages";
+	private static final String ANNOTATION = "parallel-annotation";
+	private static final String THREADS = "parallel-threads";
+	private static final String PROPERTY_PREFIX = "infinitest.";
+	private static final Pattern SETTING = Pattern.compile(PREFIX + "(" + MODE + "|" + PACKAGES + "|" + ANNOTATION + "|" + THREADS + ")" + SUFFIX);
+	private static final File FILTERFILE = new File("infinitest.filters");
+
+	public ParallelConfiguration readConfig() {
+		return readConfig(FILTERFILE, System.getProperties());
+	}
+
+	ParallelConfiguration readConfig(File file, Properties systemProperties) {
+		Map<String, String> settings = new HashMap<String, String>();
+		if ((file != null) && file.exists()) {
+			try {
+				readSettings(file, settings);
+			} catch (IOException e) {
+				throw new RuntimeException("Something horrible happened to the filter file", e);
+			}
+		}
+		for (String name : asList(MODE, PACKAGES, ANNOTATION, THREADS)) {
+			String value = systemProperties.getProperty(PROPERTY_PREFIX + name);
+			if (value != null) {
+				settings.put(name, value.trim());
+			}
+		}
+		return createConfiguration(settings);
+	}
+
+	private void readSettings(File file, Map<String, String> settings) throws IOException {
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new FileReader(file));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				Matcher matcher = SETTING.matcher(line.trim());
+				if (matcher.matches()) {
+					settings.put(matcher.group(1), matcher.group(2).trim());
+				}
+			}
+		} finally {
+			if (reader != null) {
+				reader.close();
+			}
+		}
+	}
+
+	private ParallelConfiguration createConfiguration(Map<String, String> settings) {
+		ParallelConfiguration configuration = new ParallelConfiguration();
+		if (settings.containsKey(MODE)) {
+			configuration.setMode(parseMode(settings.get(MODE)));
+		}
+		if (settings.containsKey(PACKAGES)) {
+			configuration.setPackages(asList(settings.get(PACKAGES).split("\\s*,\\s*")));
+		}
+		if (settings.containsKey(ANNOTATION)) {
+			configuration.setAnnotation(settings.get(ANNOTATION));
+		}
+		if (settings.containsKey(THREADS)) {
+			configuration.setThreads(parseThreads(settings.get(THREADS), configuration.getThreads()));
+		}
+		return configuration;
+	}
+
+	private static Mode parseMode(String value) {
+		try {
+			return Mode.valueOf(value.toUpperCase(Locale.ENGLISH));
+		} catch (IllegalArgumentException e) {
+			return Mode.NONE;
+		}
+	}
+
+	private static int parseThreads(String value, int defaultThreads) {
+		try {
+			return Math.max(1, Integer.parseInt(value));
+		} catch (NumberFormatException e) {
+			return defaultThreads;
+		}
+	}
+}
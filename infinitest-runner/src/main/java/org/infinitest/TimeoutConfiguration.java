@@ -0,0 +1,76 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest;
+
+import java.util.*;
+
+/**
+ * How long a test class may run before the runner process gives up on it.
+ * Budgets set for a package or class win, the longest prefix first. Budgets
+ * learned from earlier runs come next, but never exceed the global budget.
+ */
+public class TimeoutConfiguration {
+	public static final long DEFAULT_TIMEOUT = 300000;
+
+	private long globalTimeout = DEFAULT_TIMEOUT;
+	private final Map<String, Long> packageTimeouts = new HashMap<String, Long>();
+
+	public long getGlobalTimeout() {
+		return globalTimeout;
+	}
+
+	public void setGlobalTimeout(long globalTimeout) {
+		this.globalTimeout = globalTimeout;
+	}
+
+	public void setPackageTimeout(String packageOrClass, long timeout) {
+		packageTimeouts.put(packageOrClass, timeout);
+	}
+
+	/**
+	 * @param learnedTimeout
+	 *            the budget learned from earlier runs of the class, or null
+	 */
+	public long getTimeout(String testClass, Long learnedTimeout) {
+		String bestMatch = null;
+		for (String prefix : packageTimeouts.keySet()) {
+			if ((testClass.equals(prefix) || testClass.startsWith(prefix + ".")) && ((bestMatch == null) || (prefix.length() > bestMatch.length()))) {
+				bestMatch = prefix;
+			}
+		}
+		if (bestMatch != null) {
+			return packageTimeouts.get(bestMatch);
+		}
+		if (learnedTimeout != null) {
+			return Math.min(learnedTimeout, globalTimeout);
+		}
+		return globalTimeout;
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest;
+
+import java.io.*;
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * Reads test class timeouts, in milliseconds, from the filter file, using the
+ * same comment syntax as the TestNG settings:
+ * 
+ * <pre>
+ * ## timeout = 300000
+ * ## timeout.com.acme.integration = 900000
+ * </pre>
+ * 
+ * The global timeout can also be given as a system property in
+ * infinitest.args, for instance <code>-Dinfinitest.timeout=60000</code>. It
+ * takes precedence over the filter file.
+ */
+public class TimeoutConfigurator {
+	private static final Pattern SETTING = Pattern.compile("^\\s*#+\\s?timeout(\\.[\\w.$]+)?\\s?=\\s?(\\d+)\\s*");
+	private static final String PROPERTY = "infinitest.timeout";
+	private static final File FILTERFILE = new File("infinitest.filters");
+
+	public TimeoutConfiguration readConfig() {
+		return readConfig(FILTERFILE, System.getProperties());
+	}
+
+	TimeoutConfiguration readConfig(File file, Properties systemProperties) {
+		TimeoutConfiguration configuration = new TimeoutConfiguration();
+		if ((file != null) && file.exists()) {
+			try {
+				readSettings(file, configuration);
+			} catch (IOException e) {
+				throw new RuntimeException("Something horrible happened to the filter file", e);
+			}
+		}
+		String globalTimeout = systemProperties.getProperty(PROPERTY);
+		if (globalTimeout != null) {
+			try {
+				configuration.setGlobalTimeout(Long.parseLong(globalTimeout.trim()));
+			} catch (NumberFormatException e) {
+				// Keep the timeout of the filter file
+			}
+		}
+		return configuration;
+	}
+
+	private void readSettings(File file, TimeoutConfiguration configuration) throws IOException {
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new FileReader(file));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				Matcher matcher = SETTING.matcher(line.trim());
+				if (matcher.matches()) {
+					long timeout = Long.parseLong(matcher.group(2));
+					if (matcher.group(1) == null) {
+						configuration.setGlobalTimeout(timeout);
+					} else {
+						configuration.setPackageTimeout(matcher.group(1).substring(1), timeout);
+					}
+				}
+			}
+		} finally {
+			if (reader != null) {
+				reader.close();
+			}
+		}
+	}
+}
@@ -38,28 +38,71 @@ import org.junit.runner.notification.*;
  * A listener for JUnit lifecycle events during test execution.
  */
 class EventTranslator extends RunListener {
+	static final TestEventStream NO_STREAM = new TestEventStream() {
+		@Override
+		public void publish(TestEvent event) {
+		}
+	};
+
 	private final List<TestEvent> eventsCollected;
 	private final Map<Description, MethodStats> methodStats;
 	private final Clock clock;
+	private final ResourceMeter meter;
+	private final TestEventStream eventStream;
+	private final long garbageCollectionTimeAtStart;
+	private long garbageCollectionTime;
 
-	EventTranslator(Clock clock) {
+	EventTranslator(Clock clock, ResourceMeter meter, TestEventStream eventStream) {
 		this.clock = clock;
+		this.meter = meter;
+		this.eventStream = eventStream;
 		eventsCollected = new ArrayList<TestEvent>();
 		methodStats = new HashMap<Description, MethodStats>();
+		garbageCollectionTimeAtStart = meter.garbageCollectionTime();
+	}
+
+	EventTranslator(Clock clock, TestEventStream eventStream) {
+		this(clock, new SystemResourceMeter(), eventStream);
+	}
+
+	EventTranslator(Clock clock) {
+		this(clock, NO_STREAM);
+	}
+
+	EventTranslator(TestEventStream eventStream) {
+		this(new SystemClock(), eventStream);
 	}
 
 	EventTranslator() {
-		this(new SystemClock());
+		this(NO_STREAM);
 	}
 
+	// JUnit reports the start and end of a test on the thread that runs it
 	@Override
 	public void testStarted(Description description) {
-		getMethodStats(description).startTime = clock.currentTimeMillis();
+		MethodStats stats = getMethodStats(description);
+		stats.startTime = clock.currentTimeMillis();
+		stats.startCpuTime = meter.currentThreadCpuTime();
+		stats.startAllocatedBytes = meter.currentThreadAllocatedBytes();
+		eventStream.publish(methodStarting(getTestCaseName(description), getMethodName(description)));
 	}
 
 	@Override
 	public void testFinished(Description description) {
-		getMethodStats(description).stopTime = clock.currentTimeMillis();
+		MethodStats stats = getMethodStats(description);
+		stats.stopTime = clock.currentTimeMillis();
+		stats.stopCpuTime = meter.currentThreadCpuTime();
+		stats.stopAllocatedBytes = meter.currentThreadAllocatedBytes();
+		eventStream.publish(methodFinished(getTestCaseName(description), getMethodName(description)));
+	}
+
+	/**
+	 * Failures are only streamed from here. The results of the class are still
+	 * built from the {@link Result} when the run is finished.
+	 */
+	@Override
+	public void testFailure(Failure failure) {
+		eventStream.publish(createEventFrom(failure));
 	}
 
 	@Override
@@ -67,11 +110,13 @@ class EventTranslator extends RunListener {
 		for (Failure failure : result.getFailures()) {
 			eventsCollected.add(createEventFrom(failure));
 		}
+		garbageCollectionTime = meter.garbageCollectionTime() - garbageCollectionTimeAtStart;
 	}
 
 	public TestResults getTestResults() {
 		TestResults results = new TestResults(eventsCollected);
 		results.addMethodStats(methodStats.values());
+		results.setGarbageCollectionTime(garbageCollectionTime);
 		return results;
 	}
 
@@ -99,7 +144,8 @@ class EventTranslator extends RunListener {
 		return description.getDisplayName().split("\\(|\\)")[0];
 	}
 
-	private MethodStats getMethodStats(Description description) {
+	// Methods of a class can run in parallel
+	private synchronized MethodStats getMethodStats(Description description) {
 		MethodStats stats = methodStats.get(description);
 		if (stats == null) {
 			stats = new MethodStats(getMethodName(description));
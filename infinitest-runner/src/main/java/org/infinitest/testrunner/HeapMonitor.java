@@ -0,0 +1,119 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import static java.lang.management.MemoryNotificationInfo.*;
+import static java.lang.management.MemoryType.*;
+
+import java.lang.management.*;
+import java.util.*;
+
+import javax.management.*;
+
+/**
+ * Notices when the heap is nearly full even right after a garbage collection,
+ * which is when a test is about to run out of memory or already has.
+ */
+public class HeapMonitor implements NotificationListener {
+	static final double THRESHOLD = 0.9;
+
+	private volatile boolean exhausted;
+	private MemoryPoolMXBean watchedPool;
+
+	public void start() {
+		watchedPool = findTenuredPool(ManagementFactory.getMemoryPoolMXBeans());
+		if (watchedPool != null) {
+			watchedPool.setCollectionUsageThreshold((long) (watchedPool.getUsage().getMax() * THRESHOLD));
+		}
+		emitter().addNotificationListener(this, null, null);
+	}
+
+	public void stop() {
+		try {
+			emitter().removeNotificationListener(this);
+		} catch (ListenerNotFoundException e) {
+			// Never started
+		}
+		if (watchedPool != null) {
+			watchedPool.setCollectionUsageThreshold(0);
+			watchedPool = null;
+		}
+	}
+
+	/**
+	 * Eden and the survivor spaces are nearly full after many collections that
+	 * are perfectly healthy, only the pool long lived objects end up in tells
+	 * whether the heap is exhausted. Collectors without an old or tenured pool
+	 * get their largest heap pool watched.
+	 */
+	static MemoryPoolMXBean findTenuredPool(List<MemoryPoolMXBean> pools) {
+		MemoryPoolMXBean largest = null;
+		for (MemoryPoolMXBean pool : pools) {
+			long max = pool.getUsage().getMax();
+			if ((pool.getType() != HEAP) || !pool.isCollectionUsageThresholdSupported() || (max <= 0)) {
+				continue;
+			}
+			if (pool.getName().contains("Old") || pool.getName().contains("Tenured")) {
+				return pool;
+			}
+			if ((largest == null) || (max > largest.getUsage().getMax())) {
+				largest = pool;
+			}
+		}
+		return largest;
+	}
+
+	private NotificationEmitter emitter() {
+		return (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+	}
+
+	@Override
+	public void handleNotification(Notification notification, Object handback) {
+		if (MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+			exhausted = true;
+		}
+	}
+
+	/**
+	 * True if the heap was exhausted at some point, or the results contain an
+	 * {@link OutOfMemoryError}.
+	 */
+	public boolean isExhausted(TestResults results) {
+		if (exhausted) {
+			return true;
+		}
+		for (TestEvent event : results) {
+			if (OutOfMemoryError.class.getName().equals(event.getFullErrorClassName())) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
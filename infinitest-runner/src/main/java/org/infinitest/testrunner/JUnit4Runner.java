@@ -27,15 +27,22 @@
  */
 package org.infinitest.testrunner;
 
+import static org.infinitest.testrunner.TestEvent.*;
+import static java.util.concurrent.Executors.*;
 import static org.junit.runner.Request.*;
 
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import junit.framework.*;
 
 import org.infinitest.*;
+import org.junit.internal.builders.*;
 import org.junit.runner.*;
+import org.junit.runner.notification.*;
+import org.junit.runners.*;
+import org.junit.runners.model.*;
 import org.testng.*;
 
 /**
@@ -44,13 +51,31 @@ import org.testng.*;
  * TODO: we should either rename this class or split it up in
  * two classes with the respective JUnit/TestNG functionality.
  */
-public class JUnit4Runner implements NativeRunner {
+public class JUnit4Runner implements BatchRunner, StreamingRunner {
 	private TestNGConfiguration config;
+	private ParallelConfiguration parallelConfig;
+	private TestEventStream eventStream = EventTranslator.NO_STREAM;
 
 	public void setTestNGConfiguration(TestNGConfiguration configuration) {
 		config = configuration;
 	}
 
+	public void setParallelConfiguration(ParallelConfiguration configuration) {
+		parallelConfig = configuration;
+	}
+
+	@Override
+	public void setTestEventStream(TestEventStream eventStream) {
+		this.eventStream = eventStream;
+	}
+
+	private ParallelConfiguration getParallelConfiguration() {
+		if (parallelConfig == null) {
+			parallelConfig = new ParallelConfigurator().readConfig();
+		}
+		return parallelConfig;
+	}
+
 	@Override
 	public TestResults runTest(String testClass) {
 		Class<?> clazz;
@@ -64,11 +89,15 @@ public class JUnit4Runner implements NativeRunner {
 	}
 
 	private TestResults runTestNGTest(Class<?> clazz) {
-		TestNGEventTranslator eventTranslator = new TestNGEventTranslator();
+		TestNGEventTranslator eventTranslator = new TestNGEventTranslator(eventStream);
+		createTestNG(eventTranslator, clazz).run();
+		return eventTranslator.getTestResults();
+	}
 
+	private TestNG createTestNG(TestNGEventTranslator eventTranslator, Class<?>... classes) {
 		TestNG core = new TestNG();
 		core.addListener(eventTranslator);
-		core.setTestClasses(new Class[]{clazz});
+		core.setTestClasses(classes);
 		if (config == null) {
 			config = new TestNGConfigurator().readConfig();
 		}
@@ -79,20 +108,26 @@ public class JUnit4Runner implements NativeRunner {
 				core.addListener(listener);
 			}
 		}
-
-		core.run();
-
-		return eventTranslator.getTestResults();
+		return core;
 	}
 
 	private TestResults runJUnitTest(Class<?> clazz) {
-		EventTranslator eventTranslator = new EventTranslator();
+		EventTranslator eventTranslator = new EventTranslator(eventStream);
 
 		JUnitCore core = new JUnitCore();
 		core.addListener(eventTranslator);
 
 		if (isJUnit3TestCase(clazz) && cannotBeInstantiated(clazz)) {
 			core.run(new UninstantiableJUnit3TestRequest(clazz));
+		} else if (runsMethodsInParallel(clazz)) {
+			ExecutorService methodExecutor = newFixedThreadPool(getParallelConfiguration().getThreads());
+			try {
+				Runner runner = classWithoutSuiteMethod(clazz).getRunner();
+				scheduleMethodsOn(methodExecutor, runner);
+				core.run(runner);
+			} finally {
+				methodExecutor.shutdownNow();
+			}
 		} else {
 			core.run(classWithoutSuiteMethod(clazz));
 		}
@@ -100,6 +135,236 @@ public class JUnit4Runner implements NativeRunner {
 		return eventTranslator.getTestResults();
 	}
 
+	private boolean runsMethodsInParallel(Class<?> clazz) {
+		return getParallelConfiguration().isParallelMethods() && getParallelConfiguration().appliesTo(clazz);
+	}
+
+	private boolean runsInParallelWithOtherClasses(Class<?> clazz) {
+		return getParallelConfiguration().isParallelClasses() && getParallelConfiguration().appliesTo(clazz);
+	}
+
+	private static void scheduleMethodsOn(ExecutorService methodExecutor, Runner runner) {
+		if (runner instanceof ParentRunner) {
+			((ParentRunner<?>) runner).setScheduler(new ConcurrentScheduler(methodExecutor));
+		}
+	}
+
+	/**
+	 * JUnit classes are run as a single suite and TestNG classes as a single
+	 * TestNG run, so the framework is only set up once per batch. Each class
+	 * keeps its own runner, and therefore its own class level fixtures.
+	 */
+	@Override
+	public void runTests(List<String> testClasses, BatchResultsListener listener) {
+		List<Class<?>> junitClasses = new ArrayList<Class<?>>();
+		List<Class<?>> testNGClasses = new ArrayList<Class<?>>();
+		for (String testClass : testClasses) {
+			try {
+				Class<?> clazz = Class.forName(testClass);
+				if (isTestNGTest(clazz)) {
+					testNGClasses.add(clazz);
+				} else {
+					junitClasses.add(clazz);
+				}
+			} catch (ClassNotFoundException e) {
+				listener.testClassFinished(testClass, new TestResults(methodFailed(testClass, "", new MissingClassException(testClass))));
+			}
+		}
+
+		if (!junitClasses.isEmpty()) {
+			runJUnitTests(junitClasses, listener);
+		}
+		if (!testNGClasses.isEmpty()) {
+			runTestNGTests(testNGClasses, listener);
+		}
+	}
+
+	private void runJUnitTests(List<Class<?>> classes, BatchResultsListener listener) {
+		RunnerBuilder builder = new InfinitestRunnerBuilder();
+		Map<Runner, String> classNames = new IdentityHashMap<Runner, String>();
+		List<Runner> runners = new ArrayList<Runner>();
+		List<Runner> parallelRunners = new ArrayList<Runner>();
+		ExecutorService methodExecutor = null;
+		for (Class<?> clazz : classes) {
+			Runner runner = builder.safeRunnerForClass(clazz);
+			if (runner == null) {
+				listener.testClassFinished(clazz.getName(), new TestResults());
+				continue;
+			}
+			classNames.put(runner, clazz.getName());
+			if (runsMethodsInParallel(clazz)) {
+				if (methodExecutor == null) {
+					methodExecutor = newFixedThreadPool(getParallelConfiguration().getThreads());
+				}
+				scheduleMethodsOn(methodExecutor, runner);
+			}
+			if (runsInParallelWithOtherClasses(clazz)) {
+				parallelRunners.add(runner);
+			} else {
+				runners.add(runner);
+			}
+		}
+
+		try {
+			if (!parallelRunners.isEmpty()) {
+				runConcurrently(parallelRunners, classNames, new SynchronizedResultsListener(listener));
+			}
+			if (!runners.isEmpty()) {
+				new JUnitCore().run(new BatchSuite(runners, classNames, listener, eventStream));
+			}
+		} catch (InitializationError e) {
+			// Only thrown for an invalid suite class, and there is none
+			throw new IllegalStateException(e);
+		} finally {
+			if (methodExecutor != null) {
+				methodExecutor.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * Each class gets its own notifier, so its events cannot be mixed up with
+	 * the ones of classes running at the same time.
+	 */
+	private void runConcurrently(List<Runner> runners, final Map<Runner, String> classNames, final BatchResultsListener listener) {
+		ExecutorService classExecutor = newFixedThreadPool(getParallelConfiguration().getThreads());
+		try {
+			List<Future<?>> classRuns = new ArrayList<Future<?>>();
+			for (final Runner runner : runners) {
+				classRuns.add(classExecutor.submit(new Runnable() {
+					@Override
+					public void run() {
+						listener.testClassFinished(classNames.get(runner), runInIsolation(runner));
+					}
+				}));
+			}
+			for (Future<?> classRun : classRuns) {
+				waitFor(classRun);
+			}
+		} finally {
+			classExecutor.shutdownNow();
+		}
+	}
+
+	private TestResults runInIsolation(Runner runner) {
+		EventTranslator eventTranslator = new EventTranslator(eventStream);
+		Result result = new Result();
+		RunNotifier notifier = new RunNotifier();
+		notifier.addListener(result.createListener());
+		notifier.addListener(eventTranslator);
+		runner.run(notifier);
+		eventTranslator.testRunFinished(result);
+		return eventTranslator.getTestResults();
+	}
+
+	private static void waitFor(Future<?> task) {
+		try {
+			task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			// Test failures go through the notifier, this is a bug in the runner
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private void runTestNGTests(List<Class<?>> classes, BatchResultsListener listener) {
+		TestNGEventTranslator eventTranslator = new TestNGEventTranslator(eventStream);
+		createTestNG(eventTranslator, classes.toArray(new Class<?>[classes.size()])).run();
+		for (Class<?> clazz : classes) {
+			listener.testClassFinished(clazz.getName(), eventTranslator.getTestResults(clazz.getName()));
+		}
+	}
+
+	private static class InfinitestRunnerBuilder extends RunnerBuilder {
+		private final RunnerBuilder delegate = new AllDefaultPossibilitiesBuilder(false);
+
+		@Override
+		public Runner runnerForClass(Class<?> testClass) throws Throwable {
+			if (isJUnit3TestCase(testClass) && cannotBeInstantiated(testClass)) {
+				return new UninstantiateableJUnit3TestRunner(testClass);
+			}
+			return delegate.runnerForClass(testClass);
+		}
+	}
+
+	/**
+	 * Runs the children of a class, usually its test methods, on a shared
+	 * thread pool and waits for all of them before the class is finished.
+	 */
+	private static class ConcurrentScheduler implements RunnerScheduler {
+		private final ExecutorService executor;
+		private final List<Future<?>> children = new ArrayList<Future<?>>();
+
+		ConcurrentScheduler(ExecutorService executor) {
+			this.executor = executor;
+		}
+
+		@Override
+		public void schedule(Runnable childStatement) {
+			children.add(executor.submit(childStatement));
+		}
+
+		@Override
+		public void finished() {
+			for (Future<?> child : children) {
+				waitFor(child);
+			}
+		}
+	}
+
+	/**
+	 * Classes running concurrently finish on different threads, but the
+	 * listener usually writes to a single stream.
+	 */
+	private static class SynchronizedResultsListener implements BatchResultsListener {
+		private final BatchResultsListener delegate;
+
+		SynchronizedResultsListener(BatchResultsListener delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public synchronized void testClassFinished(String testClass, TestResults results) {
+			delegate.testClassFinished(testClass, results);
+		}
+	}
+
+	/**
+	 * Runs each class like its own JUnitCore run would, collecting its events
+	 * separately and reporting them as soon as the class is done.
+	 */
+	private static class BatchSuite extends Suite {
+		private final Map<Runner, String> classNames;
+		private final BatchResultsListener listener;
+		private final TestEventStream eventStream;
+
+		BatchSuite(List<Runner> runners, Map<Runner, String> classNames, BatchResultsListener listener, TestEventStream eventStream) throws InitializationError {
+			super((Class<?>) null, runners);
+			this.classNames = classNames;
+			this.listener = listener;
+			this.eventStream = eventStream;
+		}
+
+		@Override
+		protected void runChild(Runner runner, RunNotifier notifier) {
+			EventTranslator eventTranslator = new EventTranslator(eventStream);
+			Result result = new Result();
+			RunListener resultListener = result.createListener();
+			notifier.addListener(resultListener);
+			notifier.addListener(eventTranslator);
+			try {
+				super.runChild(runner, notifier);
+			} finally {
+				notifier.removeListener(eventTranslator);
+				notifier.removeListener(resultListener);
+			}
+			eventTranslator.testRunFinished(result);
+			listener.testClassFinished(classNames.get(runner), eventTranslator.getTestResults());
+		}
+	}
+
 	private static boolean isJUnit3TestCase(Class<?> clazz) {
 		return TestCase.class.isAssignableFrom(clazz);
 	}
@@ -159,10 +424,22 @@ public class JUnit4Runner implements NativeRunner {
 
 	private static class TestNGEventTranslator implements ITestListener {
 		private final List<TestEvent> events = new ArrayList<TestEvent>();
+		private final TestEventStream eventStream;
+
+		TestNGEventTranslator(TestEventStream eventStream) {
+			this.eventStream = eventStream;
+		}
 
 		@Override
 		public void onTestFailure(ITestResult failure) {
-			events.add(createEventFrom(failure));
+			TestEvent event = createEventFrom(failure);
+			events.add(event);
+			eventStream.publish(event);
+			publishFinished(failure);
+		}
+
+		private void publishFinished(ITestResult result) {
+			eventStream.publish(methodFinished(result.getTestClass().getName(), result.getName()));
 		}
 
 		private TestEvent createEventFrom(ITestResult failure) {
@@ -173,20 +450,34 @@ public class JUnit4Runner implements NativeRunner {
 			return new TestResults(events);
 		}
 
+		public TestResults getTestResults(String testClass) {
+			List<TestEvent> classEvents = new ArrayList<TestEvent>();
+			for (TestEvent event : events) {
+				if (event.getTestName().equals(testClass)) {
+					classEvents.add(event);
+				}
+			}
+			return new TestResults(classEvents);
+		}
+
 		@Override
 		public void onTestStart(ITestResult result) {
+			eventStream.publish(methodStarting(result.getTestClass().getName(), result.getName()));
 		}
 
 		@Override
 		public void onTestSuccess(ITestResult result) {
+			publishFinished(result);
 		}
 
 		@Override
 		public void onTestSkipped(ITestResult result) {
+			publishFinished(result);
 		}
 
 		@Override
 		public void onTestFailedButWithinSuccessPercentage(ITestResult result) {
+			publishFinished(result);
 		}
 
 		@Override
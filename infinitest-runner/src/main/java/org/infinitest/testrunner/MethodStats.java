@@ -30,7 +30,9 @@ package org.infinitest.testrunner;
 import java.io.*;
 
 /**
- * Holds temporal statistics about test method execution.
+ * Holds temporal and resource statistics about test method execution. CPU
+ * time is in nanoseconds, and stays zero (like allocation) when the JVM
+ * running the test cannot measure it.
  */
 public class MethodStats implements Serializable {
 	private static final long serialVersionUID = -8853619641593524214L;
@@ -39,6 +41,10 @@ public class MethodStats implements Serializable {
   // with something like start(timestamp) and stop(timestamp) methods.
 	public long startTime;
 	public long stopTime;
+	public long startCpuTime;
+	public long stopCpuTime;
+	public long startAllocatedBytes;
+	public long stopAllocatedBytes;
 	public final String methodName;
 
 	public MethodStats(String methodName) {
@@ -48,4 +54,12 @@ public class MethodStats implements Serializable {
 	public long duration() {
 		return stopTime - startTime;
 	}
+
+	public long cpuTime() {
+		return stopCpuTime - startCpuTime;
+	}
+
+	public long allocatedBytes() {
+		return stopAllocatedBytes - startAllocatedBytes;
+	}
 }
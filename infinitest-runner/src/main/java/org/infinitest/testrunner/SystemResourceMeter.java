@@ -0,0 +1,81 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import java.lang.management.*;
+
+/**
+ * Measures resources through the platform MXBeans. Allocation is only known
+ * on JVMs that implement {@link com.sun.management.ThreadMXBean}.
+ */
+public class SystemResourceMeter implements ResourceMeter {
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	public SystemResourceMeter() {
+		if (threads.isCurrentThreadCpuTimeSupported() && !threads.isThreadCpuTimeEnabled()) {
+			threads.setThreadCpuTimeEnabled(true);
+		}
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+			if (allocations.isThreadAllocatedMemorySupported() && !allocations.isThreadAllocatedMemoryEnabled()) {
+				allocations.setThreadAllocatedMemoryEnabled(true);
+			}
+		}
+	}
+
+	@Override
+	public long currentThreadCpuTime() {
+		if (!threads.isCurrentThreadCpuTimeSupported()) {
+			return -1;
+		}
+		return threads.getCurrentThreadCpuTime();
+	}
+
+	@Override
+	public long currentThreadAllocatedBytes() {
+		if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+			return -1;
+		}
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+		if (!allocations.isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+		return allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	@Override
+	public long garbageCollectionTime() {
+		long time = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			time += Math.max(0, collector.getCollectionTime());
+		}
+		return time;
+	}
+}
@@ -42,7 +42,7 @@ public class TestEvent implements Serializable {
 	private static final long serialVersionUID = -1821340797590868333L;
 
 	public enum TestState {
-		METHOD_FAILURE, TEST_CASE_STARTING
+		METHOD_FAILURE, TEST_CASE_STARTING, METHOD_STARTING, METHOD_FINISHED
 	}
 
 	private final String message;
@@ -77,6 +77,14 @@ public class TestEvent implements Serializable {
 		return new TestEvent(TEST_CASE_STARTING, "Test Starting", testClass, "", null);
 	}
 
+	public static TestEvent methodStarting(String testClass, String methodName) {
+		return new TestEvent(METHOD_STARTING, "Method Starting", testClass, methodName, null);
+	}
+
+	public static TestEvent methodFinished(String testClass, String methodName) {
+		return new TestEvent(METHOD_FINISHED, "Method Finished", testClass, methodName, null);
+	}
+
 	private void populateAttributesToEnsureSerializability(Throwable error) {
 		isAssertionFailure = isTestFailure(error);
 		stackTrace = error.getStackTrace();
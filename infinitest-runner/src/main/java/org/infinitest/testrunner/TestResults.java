@@ -37,6 +37,7 @@ public class TestResults implements Iterable<TestEvent>, Serializable {
 
 	private final List<TestEvent> eventsCollected;
 	private final List<MethodStats> methodStats = new LinkedList<MethodStats>();
+	private long garbageCollectionTime;
 
 	public TestResults(List<TestEvent> eventsCollected) {
 		this.eventsCollected = eventsCollected;
@@ -58,4 +59,17 @@ public class TestResults implements Iterable<TestEvent>, Serializable {
 	public void addMethodStats(Collection<MethodStats> methodStatistics) {
 		methodStats.addAll(methodStatistics);
 	}
+
+	/**
+	 * The time, in milliseconds, the runner process spent collecting garbage
+	 * while the test class ran. Classes running in parallel share their
+	 * collections.
+	 */
+	public long getGarbageCollectionTime() {
+		return garbageCollectionTime;
+	}
+
+	public void setGarbageCollectionTime(long garbageCollectionTime) {
+		this.garbageCollectionTime = garbageCollectionTime;
+	}
 }
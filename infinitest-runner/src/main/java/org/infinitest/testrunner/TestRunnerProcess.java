@@ -29,13 +29,19 @@ package org.infinitest.testrunner;
 
 import static org.infinitest.testrunner.TestEvent.*;
 
+import org.infinitest.*;
+import org.infinitest.testrunner.TestEvent.TestState;
+
 import java.io.*;
 import java.net.*;
+import java.util.*;
 
 // RISK This class is only tested by running it, which is slow and throws off coverage
 public class TestRunnerProcess {
 	public static final String TEST_RUN_ERROR = "Error occurred during test run";
 	private NativeRunner runner;
+	private final HeapMonitor heapMonitor = new HeapMonitor();
+	private TestWatchdog watchdog;
 
 	private TestRunnerProcess(String runnerClass) {
 		createRunner(runnerClass);
@@ -70,6 +76,67 @@ public class TestRunnerProcess {
 		return runner.runTest(testName);
 	}
 
+	/**
+	 * Method events are written ahead of the results of their test, so the
+	 * other side can show progress while a long test class is still running.
+	 */
+	private void streamEventsTo(final ObjectOutputStream outputStream) {
+		if (runner instanceof StreamingRunner) {
+			((StreamingRunner) runner).setTestEventStream(new TestEventStream() {
+				@Override
+				public void publish(TestEvent event) {
+					if (event.getType() == TestState.METHOD_STARTING) {
+						watchdog.methodStarted(event.getTestName(), event.getTestMethod());
+					} else if (event.getType() == TestState.METHOD_FAILURE) {
+						watchdog.failureStreamed(event);
+					}
+					try {
+						synchronized (outputStream) {
+							outputStream.writeObject(event);
+							outputStream.flush();
+						}
+					} catch (IOException e) {
+						throw new IllegalStateException(e);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * A test class that runs past its budget gets a timeout failure pointing at
+	 * where it is stuck, and the process exits so the other side can start a
+	 * fresh one for the remaining tests.
+	 */
+	private void watchOver(final ObjectOutputStream outputStream) {
+		watchdog = new TestWatchdog(new TimeoutConfigurator().readConfig(), new SystemClock(), new TestWatchdog.TimeoutListener() {
+			@Override
+			public void testTimedOut(TestTimedOut timeout) {
+				try {
+					synchronized (outputStream) {
+						outputStream.writeObject(timeout);
+						outputStream.flush();
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+				} finally {
+					Runtime.getRuntime().halt(1);
+				}
+			}
+		});
+		watchdog.start();
+	}
+
+	private void runTests(List<String> testNames, BatchResultsListener listener) {
+		if (runner instanceof BatchRunner) {
+			((BatchRunner) runner).runTests(testNames, listener);
+		} else {
+			for (String testName : testNames) {
+				listener.testClassFinished(testName, runTest(testName));
+			}
+		}
+	}
+
 	public static void main(String[] args) {
 		try {
 			checkForJUnit4();
@@ -80,16 +147,29 @@ public class TestRunnerProcess {
 			// DEBT Extract this to a reader class
 			ObjectOutputStream outputStream = new ObjectOutputStream(clientSocket.getOutputStream());
 			ObjectInputStream inputStream = new ObjectInputStream(clientSocket.getInputStream());
+			process.watchOver(outputStream);
+			process.streamEventsTo(outputStream);
+			process.heapMonitor.start();
 
-			String testName;
+			// A message is either a single test name, a list of test names to
+			// run as a batch, or the time budgets of test classes
+			Object message;
 			do {
-				testName = (String) inputStream.readObject();
+				message = inputStream.readObject();
 
-				if (testName != null) {
-					writeTestResultToOutputStream(process, outputStream, testName);
+				if (message instanceof String) {
+					writeTestResultToOutputStream(process, outputStream, (String) message);
+				} else if (message instanceof List) {
+					@SuppressWarnings("unchecked")
+					List<String> testNames = (List<String>) message;
+					writeBatchResultsToOutputStream(process, outputStream, testNames);
+				} else if (message instanceof Map) {
+					@SuppressWarnings("unchecked")
+					Map<String, Long> learnedTimeouts = (Map<String, Long>) message;
+					process.watchdog.setLearnedTimeouts(learnedTimeouts);
 				}
 
-			} while (testName != null);
+			} while (message != null);
 
 			outputStream.close();
 			clientSocket.close();
@@ -108,6 +188,7 @@ public class TestRunnerProcess {
 
 	private static void writeTestResultToOutputStream(TestRunnerProcess process, ObjectOutputStream outputStream, String testName) throws IOException {
 		TestResults results;
+		process.watchdog.classStarted(testName);
 		try {
 			results = process.runTest(testName);
 		}
@@ -116,7 +197,108 @@ public class TestRunnerProcess {
 		// CHECKSTYLE:ON
 		{
 			results = new TestResults(methodFailed(testName, "", e));
+		} finally {
+			process.watchdog.classFinished(testName);
+		}
+		if (process.heapMonitor.isExhausted(results)) {
+			reportHeapExhaustion(outputStream, new HeapExhausted(testName, results));
+		}
+		synchronized (outputStream) {
+			outputStream.writeObject(results);
+			// Keeps the stream from holding on to everything it has written
+			outputStream.reset();
+			outputStream.flush();
+		}
+	}
+
+	/**
+	 * Streams a test name followed by its results as soon as each class is
+	 * done. Every test in the batch is answered exactly once, in whatever order
+	 * the classes finish.
+	 */
+	private static void writeBatchResultsToOutputStream(TestRunnerProcess process, ObjectOutputStream outputStream, List<String> testNames) throws IOException {
+		StreamingResultsWriter writer = new StreamingResultsWriter(outputStream, testNames, process.heapMonitor, process.watchdog);
+		process.watchdog.batchStarted(testNames);
+		try {
+			process.runTests(testNames, writer);
+		}
+		// CHECKSTYLE:OFF
+		catch (Throwable e)
+		// CHECKSTYLE:ON
+		{
+			writer.checkForWriteFailure();
+			for (String testName : writer.getPendingTests()) {
+				writer.write(testName, new TestResults(methodFailed(testName, "", e)));
+			}
+		}
+		// A class the framework never reported on did not pass either, most
+		// likely it was not run at all
+		for (String testName : writer.getPendingTests()) {
+			Throwable noResult = new IllegalStateException("No result was reported for " + testName);
+			writer.write(testName, new TestResults(methodFailed(testName, "", noResult)));
+		}
+		process.watchdog.batchFinished();
+	}
+
+	/**
+	 * Whatever the test left behind could make the tests after it run out of
+	 * memory too, so the process exits and the other side relaunches it.
+	 */
+	private static void reportHeapExhaustion(ObjectOutputStream outputStream, HeapExhausted message) throws IOException {
+		synchronized (outputStream) {
+			outputStream.writeObject(message);
+			outputStream.flush();
+			Runtime.getRuntime().halt(1);
+		}
+	}
+
+	private static class StreamingResultsWriter implements BatchResultsListener {
+		private final ObjectOutputStream outputStream;
+		private final Set<String> pendingTests;
+		private final HeapMonitor heapMonitor;
+		private final TestWatchdog watchdog;
+		private IOException writeFailure;
+
+		StreamingResultsWriter(ObjectOutputStream outputStream, List<String> testNames, HeapMonitor heapMonitor, TestWatchdog watchdog) {
+			this.outputStream = outputStream;
+			this.heapMonitor = heapMonitor;
+			this.watchdog = watchdog;
+			pendingTests = new LinkedHashSet<String>(testNames);
+		}
+
+		@Override
+		public void testClassFinished(String testClass, TestResults results) {
+			try {
+				write(testClass, results);
+			} catch (IOException e) {
+				writeFailure = e;
+				throw new IllegalStateException(e);
+			}
+		}
+
+		void write(String testName, TestResults results) throws IOException {
+			if (pendingTests.remove(testName)) {
+				watchdog.classFinished(testName);
+				if (heapMonitor.isExhausted(results)) {
+					reportHeapExhaustion(outputStream, new HeapExhausted(testName, results));
+				}
+				synchronized (outputStream) {
+					outputStream.writeObject(testName);
+					outputStream.writeObject(results);
+					outputStream.reset();
+					outputStream.flush();
+				}
+			}
+		}
+
+		List<String> getPendingTests() {
+			return new ArrayList<String>(pendingTests);
+		}
+
+		void checkForWriteFailure() throws IOException {
+			if (writeFailure != null) {
+				throw writeFailure;
+			}
 		}
-		outputStream.writeObject(results);
 	}
 }
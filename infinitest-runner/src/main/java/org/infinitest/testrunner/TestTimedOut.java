@@ -0,0 +1,65 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import java.io.*;
+
+/**
+ * Sent by the runner process when a test class ran past its time budget,
+ * instead of the results of that class. The process exits right after.
+ */
+public class TestTimedOut implements Serializable {
+	private static final long serialVersionUID = -1L;
+
+	private final String testName;
+	private final TestResults results;
+	private final String threadDump;
+
+	public TestTimedOut(String testName, TestResults results, String threadDump) {
+		this.testName = testName;
+		this.results = results;
+		this.threadDump = threadDump;
+	}
+
+	public String getTestName() {
+		return testName;
+	}
+
+	/**
+	 * A timeout failure, pointing at where the test was stuck.
+	 */
+	public TestResults getResults() {
+		return results;
+	}
+
+	public String getThreadDump() {
+		return threadDump;
+	}
+}
@@ -0,0 +1,240 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import static java.util.concurrent.TimeUnit.*;
+import static org.infinitest.testrunner.TestEvent.*;
+
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.concurrent.*;
+
+import org.infinitest.*;
+
+/**
+ * Keeps track of how long each running test class takes, and reports the
+ * first one that runs past its time budget, together with a dump of every
+ * thread.
+ * <p>
+ * A batch is timed as one unit against the sum of the budgets of its classes,
+ * since frameworks like TestNG only report the classes of a batch once all of
+ * them are done.
+ */
+public class TestWatchdog {
+	public interface TimeoutListener {
+		void testTimedOut(TestTimedOut timeout);
+	}
+
+	private static final long CHECK_INTERVAL = 250;
+
+	private final TimeoutConfiguration configuration;
+	private final Clock clock;
+	private final TimeoutListener listener;
+	private final Map<String, RunningClass> runningClasses = new LinkedHashMap<String, RunningClass>();
+	private final Map<String, List<TestEvent>> streamedFailures = new HashMap<String, List<TestEvent>>();
+	private Map<String, Long> learnedTimeouts = new HashMap<String, Long>();
+	private RunningBatch batch;
+	private boolean timedOut;
+
+	public TestWatchdog(TimeoutConfiguration configuration, Clock clock, TimeoutListener listener) {
+		this.configuration = configuration;
+		this.clock = clock;
+		this.listener = listener;
+	}
+
+	/**
+	 * Budgets the other side learned from earlier runs, by test class.
+	 */
+	public synchronized void setLearnedTimeouts(Map<String, Long> learnedTimeouts) {
+		this.learnedTimeouts = new HashMap<String, Long>(learnedTimeouts);
+	}
+
+	/**
+	 * Starts the clock of a test class, on the thread that runs it. Does
+	 * nothing if the class is already running.
+	 */
+	public synchronized void classStarted(String testClass) {
+		if (!runningClasses.containsKey(testClass)) {
+			runningClasses.put(testClass, new RunningClass(Thread.currentThread(), clock.currentTimeMillis()));
+		}
+	}
+
+	/**
+	 * Starts the clock of a batch of test classes, on the thread that runs
+	 * them. The classes of the batch are not timed on their own.
+	 */
+	public synchronized void batchStarted(Collection<String> testClasses) {
+		batch = new RunningBatch(testClasses, Thread.currentThread(), clock.currentTimeMillis());
+	}
+
+	public synchronized void batchFinished() {
+		batch = null;
+	}
+
+	public synchronized void methodStarted(String testClass, String methodName) {
+		RunningClass runningClass;
+		if ((batch != null) && batch.pendingClasses.contains(testClass)) {
+			runningClass = batch;
+			batch.testClass = testClass;
+		} else {
+			classStarted(testClass);
+			runningClass = runningClasses.get(testClass);
+		}
+		runningClass.thread = Thread.currentThread();
+		runningClass.methodName = methodName;
+	}
+
+	/**
+	 * Remembers a failure the test class already streamed, so a timeout
+	 * reports it along with the timeout itself.
+	 */
+	public synchronized void failureStreamed(TestEvent failure) {
+		List<TestEvent> failures = streamedFailures.get(failure.getTestName());
+		if (failures == null) {
+			failures = new ArrayList<TestEvent>();
+			streamedFailures.put(failure.getTestName(), failures);
+		}
+		failures.add(failure);
+	}
+
+	public synchronized void classFinished(String testClass) {
+		runningClasses.remove(testClass);
+		streamedFailures.remove(testClass);
+		if (batch != null) {
+			batch.pendingClasses.remove(testClass);
+		}
+	}
+
+	public void start() {
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Infinitest test watchdog");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				check();
+			}
+		}, CHECK_INTERVAL, CHECK_INTERVAL, MILLISECONDS);
+	}
+
+	void check() {
+		TestTimedOut timeout = findTimeout();
+		if (timeout != null) {
+			listener.testTimedOut(timeout);
+		}
+	}
+
+	private synchronized TestTimedOut findTimeout() {
+		if (timedOut) {
+			return null;
+		}
+		long now = clock.currentTimeMillis();
+		if ((batch != null) && !batch.pendingClasses.isEmpty()) {
+			long budget = 0;
+			for (String testClass : batch.classes) {
+				budget += configuration.getTimeout(testClass, learnedTimeouts.get(testClass));
+			}
+			if ((now - batch.startTime) > budget) {
+				timedOut = true;
+				return createTimeout(batch.culprit(), batch, budget);
+			}
+		}
+		for (Entry<String, RunningClass> each : runningClasses.entrySet()) {
+			String testClass = each.getKey();
+			RunningClass runningClass = each.getValue();
+			long budget = configuration.getTimeout(testClass, learnedTimeouts.get(testClass));
+			if ((now - runningClass.startTime) > budget) {
+				timedOut = true;
+				return createTimeout(testClass, runningClass, budget);
+			}
+		}
+		return null;
+	}
+
+	private TestTimedOut createTimeout(String testClass, RunningClass runningClass, long budget) {
+		TimeoutException error = new TimeoutException(testClass + " did not finish within " + budget + "ms");
+		error.setStackTrace(runningClass.thread.getStackTrace());
+		List<TestEvent> failures = new ArrayList<TestEvent>();
+		if (streamedFailures.containsKey(testClass)) {
+			failures.addAll(streamedFailures.get(testClass));
+		}
+		failures.add(methodFailed(testClass, runningClass.methodName, error));
+		return new TestTimedOut(testClass, new TestResults(failures), threadDump());
+	}
+
+	static String threadDump() {
+		StringBuilder dump = new StringBuilder();
+		for (Entry<Thread, StackTraceElement[]> each : Thread.getAllStackTraces().entrySet()) {
+			Thread thread = each.getKey();
+			dump.append('"').append(thread.getName()).append("\" ").append(thread.getState()).append('\n');
+			for (StackTraceElement element : each.getValue()) {
+				dump.append("\tat ").append(element).append('\n');
+			}
+			dump.append('\n');
+		}
+		return dump.toString();
+	}
+
+	private static class RunningClass {
+		protected final long startTime;
+		protected Thread thread;
+		protected String methodName = "";
+
+		RunningClass(Thread thread, long startTime) {
+			this.thread = thread;
+			this.startTime = startTime;
+		}
+	}
+
+	private static class RunningBatch extends RunningClass {
+		private final List<String> classes;
+		private final Set<String> pendingClasses;
+		private String testClass;
+
+		RunningBatch(Collection<String> classes, Thread thread, long startTime) {
+			super(thread, startTime);
+			this.classes = new ArrayList<String>(classes);
+			pendingClasses = new LinkedHashSet<String>(classes);
+		}
+
+		// The class whose method started last, if it is still pending
+		String culprit() {
+			if ((testClass != null) && pendingClasses.contains(testClass)) {
+				return testClass;
+			}
+			return pendingClasses.iterator().next();
+		}
+	}
+}
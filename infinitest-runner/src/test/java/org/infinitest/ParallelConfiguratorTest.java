@@ -0,0 +1,125 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest;
+
+import static java.util.Arrays.*;
+import static org.assertj.core.api.Assertions.*;
+import static org.infinitest.ParallelConfiguration.Mode.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+public class ParallelConfiguratorTest {
+	ParallelConfigurator configurator = new ParallelConfigurator();
+	Properties systemProperties = new Properties();
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void isDisabledByDefault() {
+		ParallelConfiguration config = read();
+
+		assertThat(config.getMode()).isEqualTo(NONE);
+		assertThat(config.appliesTo(getClass())).isFalse();
+	}
+
+	@Test
+	public void canReadModeFromFilterFile() {
+		ParallelConfiguration config = read("## parallel = methods");
+
+		assertThat(config.getMode()).isEqualTo(METHODS);
+		assertThat(config.isParallelMethods()).isTrue();
+		assertThat(config.isParallelClasses()).isFalse();
+	}
+
+	@Test
+	public void appliesToEveryClassWithoutPackagesOrAnnotation() {
+		ParallelConfiguration config = read("## parallel = all");
+
+		assertThat(config.appliesTo(getClass())).isTrue();
+	}
+
+	@Test
+	public void canRestrictToPackages() {
+		ParallelConfiguration config = read("## parallel = classes", "## parallel-packages = com.acme, org.infinitest");
+
+		assertThat(config.getPackages()).containsExactly("com.acme", "org.infinitest");
+		assertThat(config.appliesTo(getClass())).isTrue();
+		assertThat(config.appliesTo(String.class)).isFalse();
+	}
+
+	@Test
+	public void canRestrictToAnAnnotation() {
+		ParallelConfiguration config = read("## parallel = classes", "## parallel-annotation = " + Ignore.class.getName());
+
+		assertThat(config.appliesTo(getClass())).isFalse();
+		assertThat(config.appliesTo(IgnoredTest.class)).isTrue();
+	}
+
+	@Test
+	public void systemPropertiesOverrideTheFilterFile() {
+		systemProperties.setProperty("infinitest.parallel", "classes");
+		systemProperties.setProperty("infinitest.parallel-threads", "3");
+
+		ParallelConfiguration config = read("## parallel = methods", "## parallel-threads = 8");
+
+		assertThat(config.getMode()).isEqualTo(CLASSES);
+		assertThat(config.getThreads()).isEqualTo(3);
+	}
+
+	@Test
+	public void ignoresUnknownModes() {
+		ParallelConfiguration config = read("## parallel = sometimes");
+
+		assertThat(config.getMode()).isEqualTo(NONE);
+	}
+
+	private ParallelConfiguration read(String... lines) {
+		try {
+			File file = temp.newFile("infinitest.filters");
+			PrintWriter writer = new PrintWriter(file);
+			for (String line : asList(lines)) {
+				writer.println(line);
+			}
+			writer.close();
+			return configurator.readConfig(file, systemProperties);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Ignore
+	private static class IgnoredTest {
+	}
+}
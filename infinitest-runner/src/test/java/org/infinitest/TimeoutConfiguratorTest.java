@@ -0,0 +1,102 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest;
+
+import static java.util.Arrays.*;
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+public class TimeoutConfiguratorTest {
+	TimeoutConfigurator configurator = new TimeoutConfigurator();
+	Properties systemProperties = new Properties();
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void givesEveryClassFiveMinutesByDefault() {
+		TimeoutConfiguration config = read();
+
+		assertThat(config.getTimeout("com.acme.FooTest", null)).isEqualTo(300000);
+	}
+
+	@Test
+	public void canReadGlobalTimeoutFromFilterFile() {
+		TimeoutConfiguration config = read("## timeout = 60000");
+
+		assertThat(config.getTimeout("com.acme.FooTest", null)).isEqualTo(60000);
+	}
+
+	@Test
+	public void longestPackagePrefixWins() {
+		TimeoutConfiguration config = read("## timeout.com.acme = 1000", "## timeout.com.acme.integration = 2000");
+
+		assertThat(config.getTimeout("com.acme.FooTest", null)).isEqualTo(1000);
+		assertThat(config.getTimeout("com.acme.integration.BarTest", null)).isEqualTo(2000);
+		assertThat(config.getTimeout("com.acmeish.BazTest", null)).isEqualTo(300000);
+	}
+
+	@Test
+	public void learnedTimeoutsNeverExceedTheGlobalOne() {
+		TimeoutConfiguration config = read("## timeout = 60000", "## timeout.com.acme.integration = 900000");
+
+		assertThat(config.getTimeout("com.acme.FooTest", 10000L)).isEqualTo(10000);
+		assertThat(config.getTimeout("com.acme.FooTest", 120000L)).isEqualTo(60000);
+		assertThat(config.getTimeout("com.acme.integration.BarTest", 10000L)).isEqualTo(900000);
+	}
+
+	@Test
+	public void systemPropertyOverridesTheFilterFile() {
+		systemProperties.setProperty("infinitest.timeout", "5000");
+
+		TimeoutConfiguration config = read("## timeout = 60000");
+
+		assertThat(config.getTimeout("com.acme.FooTest", null)).isEqualTo(5000);
+	}
+
+	private TimeoutConfiguration read(String... lines) {
+		try {
+			File file = temp.newFile("infinitest.filters");
+			PrintWriter writer = new PrintWriter(file);
+			for (String line : asList(lines)) {
+				writer.println(line);
+			}
+			writer.close();
+			return configurator.readConfig(file, systemProperties);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
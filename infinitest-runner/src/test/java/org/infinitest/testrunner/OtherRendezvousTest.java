@@ -1,6 +1,12 @@
 /*
  * Infinitest, a Continuous Test Runner.
  *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
  * Copyright (C) 2014-2017 Atos Worldline
  *
  * Permission is hereby granted, free of charge, to any person obtaining a copy
@@ -21,32 +27,20 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
  * SOFTWARE.
  */
+package org.infinitest.testrunner;
 
-package aa.worldline.vbu.infinitest;
-
-import java.io.File;
-import java.io.Serializable;
-
-import org.apache.commons.io.filefilter.IOFileFilter;
+import static org.infinitest.testrunner.RendezvousTest.*;
 
-public class TargetClassesFilter implements IOFileFilter, Serializable {
+import org.junit.*;
 
-	/**
-	 * 
-	 */
-	private static final long serialVersionUID = 1L;
-
-	@Override
-	public boolean accept(File file) {
-		// TODO Auto-generated method stub
-		return file.isDirectory();
-		
+public class OtherRendezvousTest {
+	@Test
+	public void shouldMeetAnotherTest() throws Exception {
+		rendezvous();
 	}
 
-	@Override
-	public boolean accept(File dir, String name) {
-		// TODO Auto-generated method stub
-		return false;
+	@Test
+	public void shouldMeetAnotherTestAgain() throws Exception {
+		rendezvous();
 	}
-
 }
@@ -28,10 +28,17 @@
 package org.infinitest.testrunner;
 
 import static com.google.common.collect.Iterables.*;
+import static java.util.Arrays.*;
 import static org.infinitest.testrunner.TestEvent.*;
+import static org.infinitest.testrunner.TestEvent.TestState.*;
 import static org.junit.Assert.*;
+import static org.junit.Assume.*;
 import static org.junit.runner.Description.*;
 
+import java.lang.management.*;
+import java.util.*;
+
+import org.infinitest.testrunner.TestEvent.TestState;
 import org.junit.*;
 import org.junit.runner.*;
 import org.junit.runner.notification.*;
@@ -69,6 +76,47 @@ public class WhenConvertingJUnitEventsToInfinitestEvents {
 		assertEquals(20, methodStats.stopTime);
 	}
 
+	@Test
+	public void shouldCollectTheResourcesEachMethodUsed() {
+		StubResourceMeter meter = new StubResourceMeter();
+		meter.garbageCollectionTime = 100;
+		eventTranslator = new EventTranslator(stubClock, meter, EventTranslator.NO_STREAM);
+
+		meter.cpuTime = 1000000;
+		meter.allocatedBytes = 2048;
+		eventTranslator.testStarted(description);
+		meter.cpuTime = 5000000;
+		meter.allocatedBytes = 10240;
+		meter.garbageCollectionTime = 130;
+		eventTranslator.testFinished(description);
+		eventTranslator.testRunFinished(result);
+
+		TestResults results = eventTranslator.getTestResults();
+		MethodStats methodStats = getOnlyElement(results.getMethodStats());
+		assertEquals(4000000, methodStats.cpuTime());
+		assertEquals(8192, methodStats.allocatedBytes());
+		assertEquals(30, results.getGarbageCollectionTime());
+	}
+
+	@Test
+	public void shouldMeasureTheCpuTimeOfTheThreadRunningTheTest() {
+		eventTranslator = new EventTranslator(stubClock, new SystemResourceMeter(), EventTranslator.NO_STREAM);
+
+		eventTranslator.testStarted(description);
+		long work = 0;
+		for (int i = 0; i < 5000000; i++) {
+			work += i % 7;
+		}
+		byte[] garbage = new byte[100000];
+		eventTranslator.testFinished(description);
+
+		MethodStats methodStats = getOnlyElement(eventTranslator.getTestResults().getMethodStats());
+		assertTrue(work + garbage.length > 0);
+		assertTrue(methodStats.cpuTime() >= 0);
+		assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		assertTrue(String.valueOf(methodStats.allocatedBytes()), methodStats.allocatedBytes() >= garbage.length);
+	}
+
 	@Test
 	public void shouldCollectFailureEvents() throws Exception {
 		AssertionError error = new AssertionError();
@@ -86,4 +134,32 @@ public class WhenConvertingJUnitEventsToInfinitestEvents {
 		TestEvent expectedEvent = methodFailed("", getClass().getName(), "methodName", error);
 		assertEquals(expectedEvent, getOnlyElement(eventTranslator.getTestResults()));
 	}
+
+	@Test
+	public void shouldStreamMethodEventsAsTheyHappen() {
+		final List<TestEvent> events = new ArrayList<TestEvent>();
+		eventTranslator = new EventTranslator(stubClock, new TestEventStream() {
+			@Override
+			public void publish(TestEvent event) {
+				events.add(event);
+			}
+		});
+		AssertionError error = new AssertionError();
+
+		eventTranslator.testStarted(description);
+		eventTranslator.testFailure(new Failure(description, error));
+		eventTranslator.testFinished(description);
+
+		assertEquals(asList(METHOD_STARTING, METHOD_FAILURE, METHOD_FINISHED), typesOf(events));
+		assertEquals(methodFailed("", getClass().getName(), "methodName", error), events.get(1));
+		assertTrue(isEmpty(eventTranslator.getTestResults()));
+	}
+
+	private static List<TestState> typesOf(List<TestEvent> events) {
+		List<TestState> types = new ArrayList<TestState>();
+		for (TestEvent event : events) {
+			types.add(event.getType());
+		}
+		return types;
+	}
 }
@@ -0,0 +1,94 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import static java.lang.management.MemoryNotificationInfo.*;
+import static java.lang.management.MemoryType.*;
+import static org.infinitest.testrunner.TestEvent.*;
+import static org.junit.Assert.*;
+
+import java.lang.management.*;
+
+import javax.management.*;
+
+import org.junit.*;
+
+public class WhenMonitoringTheHeap {
+	private HeapMonitor monitor;
+
+	@Before
+	public void inContext() {
+		monitor = new HeapMonitor();
+	}
+
+	@After
+	public void cleanup() {
+		monitor.stop();
+	}
+
+	@Test
+	public void shouldNotReportPassingTests() {
+		assertFalse(monitor.isExhausted(new TestResults()));
+	}
+
+	@Test
+	public void shouldReportTestsThatRanOutOfMemory() {
+		TestResults results = new TestResults(methodFailed("HungryTest", "shouldEat", new OutOfMemoryError()));
+
+		assertTrue(monitor.isExhausted(results));
+	}
+
+	@Test
+	public void shouldReportEveryTestOnceTheHeapStaysFullAfterACollection() {
+		monitor.handleNotification(new Notification(MEMORY_COLLECTION_THRESHOLD_EXCEEDED, this, 1), null);
+
+		assertTrue(monitor.isExhausted(new TestResults()));
+	}
+
+	@Test
+	public void shouldIgnoreUsageThatIsOnlyHighBeforeACollection() {
+		monitor.handleNotification(new Notification(MEMORY_THRESHOLD_EXCEEDED, this, 1), null);
+
+		assertFalse(monitor.isExhausted(new TestResults()));
+	}
+
+	@Test
+	public void shouldWatchTheTenuredPoolAfterEachCollection() {
+		monitor.start();
+
+		MemoryPoolMXBean tenured = HeapMonitor.findTenuredPool(ManagementFactory.getMemoryPoolMXBeans());
+		assertFalse(tenured.getName(), tenured.getName().contains("Eden") || tenured.getName().contains("Survivor"));
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if ((pool.getType() == HEAP) && pool.isCollectionUsageThresholdSupported()) {
+				assertEquals(pool.getName(), pool.equals(tenured), pool.getCollectionUsageThreshold() > 0);
+			}
+		}
+	}
+}
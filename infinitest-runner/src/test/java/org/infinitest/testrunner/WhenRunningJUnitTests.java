@@ -29,8 +29,11 @@ package org.infinitest.testrunner;
 
 import static com.google.common.collect.Iterables.*;
 import static org.infinitest.testrunner.TestEvent.*;
+import static java.util.Arrays.*;
 import static org.junit.Assert.*;
 
+import java.util.*;
+
 import org.infinitest.*;
 import org.junit.*;
 
@@ -110,6 +113,66 @@ public class WhenRunningJUnitTests {
 		assertEventsEquals(expectedEvent, getOnlyElement(events));
 	}
 
+	@Test
+	public void shouldReportEachClassOfABatch() {
+		Map<String, TestResults> results = runBatch(PassingTestCase.class, FailingTest.class, TestNGTest.class);
+
+		assertEquals(3, results.size());
+		assertTrue(isEmpty(results.get(PassingTestCase.class.getName())));
+		assertEquals(methodFailed("", FailingTest.class.getName(), "shouldFail", new AssertionError()), getOnlyElement(results.get(FailingTest.class.getName())));
+		assertEquals(methodFailed(TestNGTest.class.getName(), "shouldFail", new AssertionError()), getOnlyElement(results.get(TestNGTest.class.getName())));
+	}
+
+	@Test
+	public void shouldKeepClassFixturesSeparateInABatch() {
+		Map<String, TestResults> results = runBatch(FailingJUnit4TestWithBeforeClass.class, MultiTest.class);
+
+		assertFalse(isEmpty(results.get(FailingJUnit4TestWithBeforeClass.class.getName())));
+		assertTrue(isEmpty(results.get(MultiTest.class.getName())));
+		assertEquals(2, size(results.get(MultiTest.class.getName()).getMethodStats()));
+	}
+
+	@Test
+	public void shouldTreatUninstantiableTestsAsFailuresInABatch() {
+		Map<String, TestResults> results = runBatch(TEST_CLASS, PassingTestCase.class);
+
+		TestEvent expectedEvent = methodFailed(null, TEST_CLASS.getName(), "shouldPass", new IllegalStateException());
+		assertEventsEquals(expectedEvent, getOnlyElement(results.get(TEST_CLASS.getName())));
+		assertTrue(isEmpty(results.get(PassingTestCase.class.getName())));
+	}
+
+	@Test
+	public void shouldReportMissingClassesInABatch() {
+		Map<String, TestResults> results = new HashMap<String, TestResults>();
+		runner.runTests(asList("test", PassingTestCase.class.getName()), new CollectingListener(results));
+
+		assertEquals(MissingClassException.class.getSimpleName(), getOnlyElement(results.get("test")).getErrorClassName());
+		assertTrue(isEmpty(results.get(PassingTestCase.class.getName())));
+	}
+
+	private Map<String, TestResults> runBatch(Class<?>... classes) {
+		List<String> testNames = new ArrayList<String>();
+		for (Class<?> clazz : classes) {
+			testNames.add(clazz.getName());
+		}
+		Map<String, TestResults> results = new HashMap<String, TestResults>();
+		runner.runTests(testNames, new CollectingListener(results));
+		return results;
+	}
+
+	private static class CollectingListener implements BatchResultsListener {
+		private final Map<String, TestResults> results;
+
+		CollectingListener(Map<String, TestResults> results) {
+			this.results = results;
+		}
+
+		@Override
+		public void testClassFinished(String testClass, TestResults testResults) {
+			assertNull("Reported twice: " + testClass, results.put(testClass, testResults));
+		}
+	}
+
 	private void assertEventsEquals(TestEvent expected, TestEvent actual) {
 		assertEquals(expected, actual);
 		assertEquals(expected.getMessage(), actual.getMessage());
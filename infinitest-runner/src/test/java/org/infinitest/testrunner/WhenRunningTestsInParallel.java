@@ -0,0 +1,112 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import static com.google.common.collect.Iterables.*;
+import static java.util.Arrays.*;
+import static org.infinitest.ParallelConfiguration.Mode.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.infinitest.*;
+import org.junit.*;
+
+public class WhenRunningTestsInParallel {
+	private JUnit4Runner runner;
+	private ParallelConfiguration config;
+
+	@Before
+	public void inContext() {
+		RendezvousTest.barrier = new CyclicBarrier(2);
+		config = new ParallelConfiguration();
+		config.setThreads(2);
+		runner = new JUnit4Runner();
+		runner.setParallelConfiguration(config);
+	}
+
+	@After
+	public void cleanup() {
+		RendezvousTest.barrier = null;
+	}
+
+	@Test
+	public void shouldRunMethodsOfAClassConcurrently() {
+		config.setMode(METHODS);
+
+		TestResults results = runner.runTest(RendezvousTest.class.getName());
+
+		assertTrue(isEmpty(results));
+		assertEquals(2, size(results.getMethodStats()));
+	}
+
+	@Test
+	public void shouldRunClassesOfABatchConcurrently() {
+		config.setMode(CLASSES);
+
+		Map<String, TestResults> results = runBatch();
+
+		assertTrue(isEmpty(results.get(RendezvousTest.class.getName())));
+		assertTrue(isEmpty(results.get(OtherRendezvousTest.class.getName())));
+	}
+
+	@Test
+	public void shouldAttributeMethodStatsToTheirClass() {
+		config.setMode(CLASSES);
+
+		Map<String, TestResults> results = runBatch();
+
+		assertEquals(2, size(results.get(RendezvousTest.class.getName()).getMethodStats()));
+		assertEquals(2, size(results.get(OtherRendezvousTest.class.getName()).getMethodStats()));
+	}
+
+	@Test
+	public void shouldRunClassesOutsideTheConfiguredPackagesOneAtATime() {
+		RendezvousTest.barrier = null;
+		config.setMode(CLASSES);
+		config.setPackages(asList("com.example"));
+
+		assertFalse(config.appliesTo(RendezvousTest.class));
+		Map<String, TestResults> results = runBatch();
+		assertEquals(2, results.size());
+	}
+
+	private Map<String, TestResults> runBatch() {
+		final Map<String, TestResults> results = new HashMap<String, TestResults>();
+		runner.runTests(asList(RendezvousTest.class.getName(), OtherRendezvousTest.class.getName()), new BatchResultsListener() {
+			@Override
+			public void testClassFinished(String testClass, TestResults testResults) {
+				results.put(testClass, testResults);
+			}
+		});
+		return results;
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Infinitest, a Continuous Test Runner.
+ *
+ * Copyright (C) 2010-2013
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>
+ * "David Gageot" <david@gageot.net>, et al.
+ *
+ * Copyright (C) 2014-2017 Atos Worldline
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.infinitest.testrunner;
+
+import static com.google.common.collect.Iterables.*;
+import static com.google.common.collect.Lists.*;
+import static org.infinitest.testrunner.TestEvent.TestState.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.infinitest.*;
+import org.junit.*;
+
+public class WhenWatchingForHungTests implements TestWatchdog.TimeoutListener {
+	private StubClock clock;
+	private TimeoutConfiguration configuration;
+	private TestWatchdog watchdog;
+	private List<TestTimedOut> timeouts;
+
+	@Before
+	public void inContext() {
+		clock = new StubClock();
+		configuration = new TimeoutConfiguration();
+		configuration.setGlobalTimeout(1000);
+		watchdog = new TestWatchdog(configuration, clock, this);
+		timeouts = new ArrayList<TestTimedOut>();
+	}
+
+	@Override
+	public void testTimedOut(TestTimedOut timeout) {
+		timeouts.add(timeout);
+	}
+
+	@Test
+	public void shouldLeaveTestsWithinTheirBudgetAlone() {
+		watchdog.classStarted("FastTest");
+		clock.time = 1000;
+		watchdog.check();
+
+		assertTrue(timeouts.isEmpty());
+	}
+
+	@Test
+	public void shouldFailTheMethodThatWasRunningWhenTheBudgetRanOut() {
+		watchdog.classStarted("HungTest");
+		watchdog.methodStarted("HungTest", "shouldNeverReturn");
+		clock.time = 1001;
+		watchdog.check();
+
+		assertEquals(1, timeouts.size());
+		TestTimedOut timeout = timeouts.get(0);
+		assertEquals("HungTest", timeout.getTestName());
+		TestEvent failure = getOnlyElement(timeout.getResults());
+		assertEquals(METHOD_FAILURE, failure.getType());
+		assertEquals("shouldNeverReturn", failure.getTestMethod());
+		assertEquals(TimeoutException.class.getName(), failure.getFullErrorClassName());
+		assertTrue(timeout.getThreadDump().contains(Thread.currentThread().getName()));
+	}
+
+	@Test
+	public void shouldKeepTheFailuresTheClassAlreadyReported() {
+		watchdog.classStarted("HungTest");
+		watchdog.failureStreamed(TestEvent.methodFailed("HungTest", "shouldFail", new AssertionError()));
+		watchdog.methodStarted("HungTest", "shouldNeverReturn");
+		clock.time = 1001;
+		watchdog.check();
+
+		List<TestEvent> failures = newArrayList(getOnlyElement(timeouts).getResults());
+		assertEquals(2, failures.size());
+		assertEquals("shouldFail", failures.get(0).getTestMethod());
+		assertEquals("shouldNeverReturn", failures.get(1).getTestMethod());
+	}
+
+	@Test
+	public void shouldGiveABatchTheSumOfTheBudgetsOfItsClasses() {
+		watchdog.batchStarted(Arrays.asList("FirstTest", "SecondTest"));
+		watchdog.methodStarted("FirstTest", "shouldRun");
+		watchdog.methodStarted("SecondTest", "shouldNeverReturn");
+		clock.time = 1500;
+		watchdog.check();
+		assertTrue(timeouts.isEmpty());
+
+		clock.time = 2001;
+		watchdog.check();
+
+		TestTimedOut timeout = getOnlyElement(timeouts);
+		assertEquals("SecondTest", timeout.getTestName());
+		assertEquals("shouldNeverReturn", getOnlyElement(timeout.getResults()).getTestMethod());
+	}
+
+	@Test
+	public void shouldNotWatchFinishedBatches() {
+		watchdog.batchStarted(Arrays.asList("FirstTest", "SecondTest"));
+		watchdog.classFinished("FirstTest");
+		watchdog.classFinished("SecondTest");
+		watchdog.batchFinished();
+		clock.time = 5000;
+		watchdog.check();
+
+		assertTrue(timeouts.isEmpty());
+	}
+
+	@Test
+	public void shouldNotWatchFinishedTests() {
+		watchdog.classStarted("FastTest");
+		watchdog.classFinished("FastTest");
+		clock.time = 5000;
+		watchdog.check();
+
+		assertTrue(timeouts.isEmpty());
+	}
+
+	@Test
+	public void shouldUseLearnedBudgets() {
+		watchdog.setLearnedTimeouts(Collections.singletonMap("UsuallyFastTest", 100L));
+		watchdog.classStarted("UsuallyFastTest");
+		clock.time = 101;
+		watchdog.check();
+
+		assertEquals("UsuallyFastTest", getOnlyElement(timeouts).getTestName());
+	}
+
+	@Test
+	public void shouldOnlyReportTheFirstTimeout() {
+		watchdog.classStarted("HungTest");
+		watchdog.classStarted("OtherHungTest");
+		clock.time = 5000;
+		watchdog.check();
+		watchdog.check();
+
+		assertEquals(1, timeouts.size());
+	}
+}